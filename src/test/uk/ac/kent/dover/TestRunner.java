@@ -6,12 +6,25 @@ import org.junit.runner.notification.Failure;
 
 import test.uk.ac.kent.dover.fastGraph.AdjacencyMatrixTest;
 import test.uk.ac.kent.dover.fastGraph.ApproximateSubgraphIsomorphismTest;
+import test.uk.ac.kent.dover.fastGraph.CanonicalFormTest;
+import test.uk.ac.kent.dover.fastGraph.CanonicalLabellingTest;
+import test.uk.ac.kent.dover.fastGraph.AutomorphismGroupTest;
+import test.uk.ac.kent.dover.fastGraph.EnumerateSubgraphFanmodTest;
 import test.uk.ac.kent.dover.fastGraph.ExactIsomorphismTest;
 import test.uk.ac.kent.dover.fastGraph.ExactMotifFinderTest;
 import test.uk.ac.kent.dover.fastGraph.ExactSubgraphIsomorphismTest;
 import test.uk.ac.kent.dover.fastGraph.FastGraphTest;
+import test.uk.ac.kent.dover.fastGraph.IdIndexMapTest;
+import test.uk.ac.kent.dover.fastGraph.IsomorphismStatisticsTest;
+import test.uk.ac.kent.dover.fastGraph.NeighbourCursorTest;
 import test.uk.ac.kent.dover.fastGraph.InducedSubgraphTest;
 import test.uk.ac.kent.dover.fastGraph.RandomTimeSliceTest;
+import test.uk.ac.kent.dover.fastGraph.SegmentedByteBufferTest;
+import test.uk.ac.kent.dover.fastGraph.SmallMotifTableTest;
+import test.uk.ac.kent.dover.fastGraph.SubgraphDeduplicatorTest;
+import test.uk.ac.kent.dover.fastGraph.SvgExporterTest;
+import test.uk.ac.kent.dover.fastGraph.SubgraphPipelineTest;
+import test.uk.ac.kent.dover.fastGraph.SubgraphViewTest;
 
 public class TestRunner {
 	public static void main(String[] args) {
@@ -64,6 +77,84 @@ public class TestRunner {
 			System.out.println(failure.toString());
 		}
 		System.out.println(result.wasSuccessful());
+
+		result = JUnitCore.runClasses(SegmentedByteBufferTest.class);
+		for (Failure failure : result.getFailures()) {
+			System.out.println(failure.toString());
+		}
+		System.out.println(result.wasSuccessful());
+
+		result = JUnitCore.runClasses(IdIndexMapTest.class);
+		for (Failure failure : result.getFailures()) {
+			System.out.println(failure.toString());
+		}
+		System.out.println(result.wasSuccessful());
+
+		result = JUnitCore.runClasses(NeighbourCursorTest.class);
+		for (Failure failure : result.getFailures()) {
+			System.out.println(failure.toString());
+		}
+		System.out.println(result.wasSuccessful());
+
+		result = JUnitCore.runClasses(CanonicalFormTest.class);
+		for (Failure failure : result.getFailures()) {
+			System.out.println(failure.toString());
+		}
+		System.out.println(result.wasSuccessful());
+
+		result = JUnitCore.runClasses(CanonicalLabellingTest.class);
+		for (Failure failure : result.getFailures()) {
+			System.out.println(failure.toString());
+		}
+		System.out.println(result.wasSuccessful());
+
+		result = JUnitCore.runClasses(AutomorphismGroupTest.class);
+		for (Failure failure : result.getFailures()) {
+			System.out.println(failure.toString());
+		}
+		System.out.println(result.wasSuccessful());
+
+		result = JUnitCore.runClasses(SmallMotifTableTest.class);
+		for (Failure failure : result.getFailures()) {
+			System.out.println(failure.toString());
+		}
+		System.out.println(result.wasSuccessful());
+
+		result = JUnitCore.runClasses(SubgraphViewTest.class);
+		for (Failure failure : result.getFailures()) {
+			System.out.println(failure.toString());
+		}
+		System.out.println(result.wasSuccessful());
+
+		result = JUnitCore.runClasses(EnumerateSubgraphFanmodTest.class);
+		for (Failure failure : result.getFailures()) {
+			System.out.println(failure.toString());
+		}
+		System.out.println(result.wasSuccessful());
+
+		result = JUnitCore.runClasses(SubgraphPipelineTest.class);
+		for (Failure failure : result.getFailures()) {
+			System.out.println(failure.toString());
+		}
+		System.out.println(result.wasSuccessful());
+
+		result = JUnitCore.runClasses(SubgraphDeduplicatorTest.class);
+		for (Failure failure : result.getFailures()) {
+			System.out.println(failure.toString());
+		}
+		System.out.println(result.wasSuccessful());
+
+		result = JUnitCore.runClasses(SvgExporterTest.class);
+		for (Failure failure : result.getFailures()) {
+			System.out.println(failure.toString());
+		}
+		System.out.println(result.wasSuccessful());
+
+		result = JUnitCore.runClasses(IsomorphismStatisticsTest.class);
+		for (Failure failure : result.getFailures()) {
+			System.out.println(failure.toString());
+		}
+		System.out.println(result.wasSuccessful());
    }
 	
 	public static String get0Node0Edge() {
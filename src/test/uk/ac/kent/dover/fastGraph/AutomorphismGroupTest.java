@@ -0,0 +1,167 @@
+package test.uk.ac.kent.dover.fastGraph;
+
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import test.uk.ac.kent.dover.TestRunner;
+import uk.ac.kent.dover.fastGraph.FastGraph;
+import uk.ac.kent.dover.fastGraph.isomorphism.AutomorphismGroup;
+import uk.ac.kent.dover.fastGraph.isomorphism.Permutation;
+
+public class AutomorphismGroupTest {
+
+	@Test
+	public void test001() {
+		// a cycle has the dihedral group, with every node in one orbit
+		FastGraph cycle = cycle(12);
+		AutomorphismGroup group = new AutomorphismGroup(cycle);
+		assertEquals(BigInteger.valueOf(24), group.getOrder());
+		assertEquals(1, group.getOrbits().size());
+		assertEquals(12, group.getOrbits().get(0).length);
+		for(int r : group.getOrbitRepresentatives()) {
+			assertEquals(0, r);
+		}
+		for(Permutation p : group.getGenerators()) {
+			assertTrue(group.contains(p));
+			for(int e = 0; e < cycle.getNumberOfEdges(); e++) {
+				assertTrue(cycle.hasEdge(p.get(cycle.getEdgeNode1(e)), p.get(cycle.getEdgeNode2(e))));
+			}
+		}
+		// a rotation by one is in the group, swapping two neighbours is not
+		int[] rotation = new int[12];
+		int[] swap = new int[12];
+		for(int i = 0; i < 12; i++) {
+			rotation[i] = (i+1)%12;
+			swap[i] = i;
+		}
+		swap[0] = 1;
+		swap[1] = 0;
+		assertTrue(group.contains(new Permutation(rotation)));
+		assertFalse(group.contains(new Permutation(swap)));
+	}
+
+	@Test
+	public void test002() {
+		// the graph with no nodes has only the identity, as does a graph with a different colour for each node
+		FastGraph empty = FastGraph.jsonStringGraphFactory(TestRunner.get0Node0Edge(), false);
+		assertEquals(BigInteger.ONE, new AutomorphismGroup(empty).getOrder());
+		assertEquals(0, new AutomorphismGroup(empty).getOrbits().size());
+
+		FastGraph g = FastGraph.jsonStringGraphFactory(TestRunner.get5Node7EdgeA(), false);
+		AutomorphismGroup coloured = new AutomorphismGroup(g, new int[] {0, 1, 2, 3, 4});
+		assertEquals(BigInteger.ONE, coloured.getOrder());
+		assertEquals(5, coloured.getOrbits().size());
+	}
+
+	@Test
+	public void test003() {
+		// Schreier-Sims from generators of the symmetric group on 6 points
+		ArrayList<Permutation> generators = new ArrayList<Permutation>();
+		generators.add(new Permutation(1, 2, 3, 4, 5, 0));
+		generators.add(new Permutation(1, 0, 2, 3, 4, 5));
+		AutomorphismGroup group = new AutomorphismGroup(6, generators);
+		assertEquals(BigInteger.valueOf(720), group.getOrder());
+		assertTrue(group.contains(new Permutation(5, 4, 3, 2, 1, 0)));
+
+		// two disjoint 3-cycles give a group of order 9, with two orbits
+		generators.clear();
+		generators.add(new Permutation(1, 2, 0, 3, 4, 5));
+		generators.add(new Permutation(0, 1, 2, 4, 5, 3));
+		group = new AutomorphismGroup(6, generators);
+		assertEquals(BigInteger.valueOf(9), group.getOrder());
+		assertArrayEquals(new int[] {0, 0, 0, 3, 3, 3}, group.getOrbitRepresentatives());
+		assertFalse(group.contains(new Permutation(1, 0, 2, 3, 4, 5)));
+	}
+
+	@Test
+	public void test004() throws Exception {
+		// the group found by the search agrees with Schreier-Sims on its generators
+		for(int seed = 0; seed < 30; seed++) {
+			FastGraph g = FastGraph.randomGraphFactory(12, 14, seed, true, false);
+			AutomorphismGroup group = new AutomorphismGroup(g);
+			AutomorphismGroup generated = new AutomorphismGroup(12, group.getGenerators());
+			assertEquals(group.getOrder(), generated.getOrder());
+			assertArrayEquals(group.getOrbitRepresentatives(), generated.getOrbitRepresentatives());
+		}
+	}
+
+	@Test
+	public void test005() {
+		// thousands of nodes, the order of the group of two cycles is 2*(2*1000)^2
+		FastGraph twoCycles = FastGraph.jsonStringGraphFactory(cycleJson(1000, 2), false);
+		AutomorphismGroup group = new AutomorphismGroup(twoCycles);
+		assertEquals(BigInteger.valueOf(8000000), group.getOrder());
+		assertEquals(1, group.getOrbits().size());
+	}
+
+	@Rule
+	public ExpectedException thrown1 = ExpectedException.none();
+	@Test
+	public void test006() {
+		FastGraph g = FastGraph.jsonStringGraphFactory(TestRunner.get5Node7EdgeA(), false);
+		thrown1.expect(IllegalArgumentException.class);
+		new AutomorphismGroup(g, new int[] {0, 1});
+	}
+
+	@Test
+	public void test007() {
+		// a star with 2000 leaves has a base point for every leaf but one, and order 2000!
+		AutomorphismGroup group = new AutomorphismGroup(star(2000));
+		BigInteger factorial = BigInteger.ONE;
+		for(int i = 2; i <= 2000; i++) {
+			factorial = factorial.multiply(BigInteger.valueOf(i));
+		}
+		assertEquals(factorial, group.getOrder());
+		assertEquals(1999, group.getBase().length);
+		assertEquals(2, group.getOrbits().size());
+
+		// Schreier-Sims agrees on a smaller star
+		group = new AutomorphismGroup(star(30));
+		AutomorphismGroup generated = new AutomorphismGroup(31, group.getGenerators());
+		assertEquals(group.getOrder(), generated.getOrder());
+		assertArrayEquals(group.getOrbitRepresentatives(), generated.getOrbitRepresentatives());
+	}
+
+	private static FastGraph cycle(int length) {
+		return FastGraph.jsonStringGraphFactory(cycleJson(length, 1), false);
+	}
+
+	private static FastGraph star(int leaves) {
+		StringBuilder json = new StringBuilder("{\"name\": \"star\", \"nodes\": [");
+		for(int n = 0; n <= leaves; n++) {
+			json.append(n == 0 ? "" : ",").append("{\"nodeIndex\": "+n+", \"nodeLabel\": \"\", \"nodeWeight\": 0, \"nodeType\": 0, \"nodeAge\": 0}");
+		}
+		json.append("], \"edges\": [");
+		for(int e = 0; e < leaves; e++) {
+			json.append(e == 0 ? "" : ",").append("{\"edgeIndex\": "+e+", \"node1\": 0, \"node2\": "+(e+1)+", \"edgeLabel\": \"\", \"edgeWeight\": 0, \"edgeType\": 0, \"edgeAge\": 0}");
+		}
+		json.append("]}");
+		return FastGraph.jsonStringGraphFactory(json.toString(), false);
+	}
+
+	private static String cycleJson(int length, int copies) {
+		StringBuilder json = new StringBuilder("{\"name\": \"cycle\", \"nodes\": [");
+		for(int n = 0; n < length*copies; n++) {
+			json.append(n == 0 ? "" : ",").append("{\"nodeIndex\": "+n+", \"nodeLabel\": \"\", \"nodeWeight\": 0, \"nodeType\": 0, \"nodeAge\": 0}");
+		}
+		json.append("], \"edges\": [");
+		int e = 0;
+		for(int c = 0; c < copies; c++) {
+			for(int i = 0; i < length; i++) {
+				int n1 = c*length+i;
+				int n2 = c*length+(i+1)%length;
+				json.append(e == 0 ? "" : ",").append("{\"edgeIndex\": "+e+", \"node1\": "+n1+", \"node2\": "+n2+", \"edgeLabel\": \"\", \"edgeWeight\": 0, \"edgeType\": 0, \"edgeAge\": 0}");
+				e++;
+			}
+		}
+		json.append("]}");
+		return json.toString();
+	}
+
+}
@@ -0,0 +1,123 @@
+package test.uk.ac.kent.dover.fastGraph;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import test.uk.ac.kent.dover.TestRunner;
+import uk.ac.kent.dover.fastGraph.Connected;
+import uk.ac.kent.dover.fastGraph.ExactIsomorphism;
+import uk.ac.kent.dover.fastGraph.FastGraph;
+import uk.ac.kent.dover.fastGraph.isomorphism.CanonicalForm;
+import uk.ac.kent.dover.fastGraph.isomorphism.CanonicalLabelling;
+
+public class CanonicalFormTest {
+
+	@Test
+	public void test001() {
+		FastGraph g1 = FastGraph.jsonStringGraphFactory(TestRunner.get5Node7EdgeA(), false);
+		FastGraph g2 = FastGraph.jsonStringGraphFactory(TestRunner.get5Node7EdgeB(), false);
+		FastGraph g3 = FastGraph.jsonStringGraphFactory(TestRunner.get5Node7EdgeC(), false);
+		assertEquals(new CanonicalForm(g1).getCode(), new CanonicalForm(g2).getCode());
+		assertNotEquals(new CanonicalForm(g1).getCode(), new CanonicalForm(g3).getCode());
+		assertTrue(CanonicalForm.isomorphic(g1, g2));
+		assertFalse(CanonicalForm.isomorphic(g2, g3));
+
+		FastGraph empty = FastGraph.jsonStringGraphFactory(TestRunner.get0Node0Edge(), false);
+		assertEquals("n0ae", new CanonicalForm(empty).getCode());
+	}
+
+	@Test
+	public void test002() throws Exception {
+		// relabelled graphs have the same code, and the labelling maps the graph onto it
+		for(int seed = 0; seed < 30; seed++) {
+			FastGraph g = FastGraph.randomGraphFactory(8, 12, seed, false);
+			FastGraph relabelled = ExactIsomorphism.generateRandomIsomorphicGraph(g, seed+100, false);
+			CanonicalForm form = new CanonicalForm(g);
+			assertEquals(form.getCode(), new CanonicalForm(relabelled).getCode());
+			int[] labelling = form.getLabelling();
+			HashSet<Integer> nodes = new HashSet<Integer>();
+			for(int n : labelling) {
+				nodes.add(n);
+			}
+			assertEquals(8, nodes.size());
+			for(int[] automorphism : form.getAutomorphisms()) {
+				for(int e = 0; e < g.getNumberOfEdges(); e++) {
+					int n1 = automorphism[g.getEdgeNode1(e)];
+					int n2 = automorphism[g.getEdgeNode2(e)];
+					assertTrue(g.hasEdge(n1, n2));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void test003() throws Exception {
+		// agrees with ExactIsomorphism on small simple connected graphs
+		FastGraph[] graphs = new FastGraph[40];
+		for(int i = 0; i < graphs.length; i++) {
+			graphs[i] = FastGraph.randomGraphFactory(5, 6, i, true, false);
+		}
+		for(int i = 0; i < graphs.length; i++) {
+			if(!Connected.connected(graphs[i])) {
+				continue;
+			}
+			ExactIsomorphism ei = new ExactIsomorphism(graphs[i]);
+			for(int j = 0; j < graphs.length; j++) {
+				if(!Connected.connected(graphs[j])) {
+					continue;
+				}
+				assertEquals(ei.isomorphic(graphs[j]), CanonicalForm.isomorphic(graphs[i], graphs[j]));
+			}
+		}
+	}
+
+	@Test
+	public void test004() {
+		// regular graphs, where refinement alone does not separate the nodes
+		FastGraph cycle = cycle(12, 1);
+		FastGraph twoCycles = cycle(6, 2);
+		assertNotEquals(new CanonicalForm(cycle).getCode(), new CanonicalForm(twoCycles).getCode());
+		assertTrue(new CanonicalForm(cycle).getAutomorphisms().size() > 0);
+	}
+
+	@Test
+	public void test005() throws Exception {
+		// the codes and the certificates of CanonicalLabelling agree on which graphs are equivalent
+		FastGraph[] graphs = new FastGraph[30];
+		for(int i = 0; i < graphs.length; i++) {
+			graphs[i] = FastGraph.randomGraphFactory(5, 7, i%10, false);
+			graphs[i].setNodeAge(i%5, (byte)(i/10));
+		}
+		for(int i = 0; i < graphs.length; i++) {
+			CanonicalLabelling cl = new CanonicalLabelling(graphs[i]);
+			for(int j = 0; j < graphs.length; j++) {
+				boolean sameCertificate = Arrays.equals(cl.getCertificate(), new CanonicalLabelling(graphs[j]).getCertificate());
+				assertEquals(sameCertificate, new CanonicalForm(graphs[i]).getCode().equals(new CanonicalForm(graphs[j]).getCode()));
+			}
+		}
+	}
+
+	private static FastGraph cycle(int length, int copies) {
+		StringBuilder json = new StringBuilder("{\"name\": \"cycle\", \"nodes\": [");
+		for(int n = 0; n < length*copies; n++) {
+			json.append(n == 0 ? "" : ",").append("{\"nodeIndex\": "+n+", \"nodeLabel\": \"\", \"nodeWeight\": 0, \"nodeType\": 0, \"nodeAge\": 0}");
+		}
+		json.append("], \"edges\": [");
+		int e = 0;
+		for(int c = 0; c < copies; c++) {
+			for(int i = 0; i < length; i++) {
+				int n1 = c*length+i;
+				int n2 = c*length+(i+1)%length;
+				json.append(e == 0 ? "" : ",").append("{\"edgeIndex\": "+e+", \"node1\": "+n1+", \"node2\": "+n2+", \"edgeLabel\": \"\", \"edgeWeight\": 0, \"edgeType\": 0, \"edgeAge\": 0}");
+				e++;
+			}
+		}
+		json.append("]}");
+		return FastGraph.jsonStringGraphFactory(json.toString(), false);
+	}
+
+}
@@ -0,0 +1,181 @@
+package test.uk.ac.kent.dover.fastGraph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import test.uk.ac.kent.dover.TestRunner;
+import uk.ac.kent.dover.fastGraph.Connected;
+import uk.ac.kent.dover.fastGraph.EdgeStructure;
+import uk.ac.kent.dover.fastGraph.ExactIsomorphism;
+import uk.ac.kent.dover.fastGraph.FastGraph;
+import uk.ac.kent.dover.fastGraph.NodeStructure;
+import uk.ac.kent.dover.fastGraph.isomorphism.CanonicalForm;
+import uk.ac.kent.dover.fastGraph.isomorphism.CanonicalLabelling;
+import uk.ac.kent.dover.fastGraph.isomorphism.Permutation;
+
+public class CanonicalLabellingTest {
+
+	@Test
+	public void test001() {
+		FastGraph g1 = FastGraph.jsonStringGraphFactory(TestRunner.get5Node7EdgeA(), false);
+		FastGraph g2 = FastGraph.jsonStringGraphFactory(TestRunner.get5Node7EdgeB(), false);
+		FastGraph g3 = FastGraph.jsonStringGraphFactory(TestRunner.get5Node7EdgeC(), false);
+		assertArrayEquals(new CanonicalLabelling(g1).getCertificate(), new CanonicalLabelling(g2).getCertificate());
+		assertFalse(Arrays.equals(new CanonicalLabelling(g1).getCertificate(), new CanonicalLabelling(g3).getCertificate()));
+		assertEquals(new CanonicalLabelling(g1).getCertificateHash(), new CanonicalLabelling(g2).getCertificateHash());
+		assertTrue(CanonicalLabelling.isomorphic(g1, g2));
+		assertFalse(CanonicalLabelling.isomorphic(g2, g3));
+
+		FastGraph empty = FastGraph.jsonStringGraphFactory(TestRunner.get0Node0Edge(), false);
+		assertArrayEquals(new byte[] {0}, new CanonicalLabelling(empty).getCertificate());
+		assertEquals(0, new CanonicalLabelling(empty).getLabelling().length);
+	}
+
+	@Test
+	public void test002() throws Exception {
+		// relabelled graphs have the same certificate, and the automorphisms map edges onto edges
+		for(int seed = 0; seed < 30; seed++) {
+			FastGraph g = FastGraph.randomGraphFactory(10, 20, seed, false);
+			FastGraph relabelled = ExactIsomorphism.generateRandomIsomorphicGraph(g, seed+100, false);
+			CanonicalLabelling cl = new CanonicalLabelling(g);
+			assertArrayEquals(cl.getCertificate(), new CanonicalLabelling(relabelled).getCertificate());
+			HashSet<Integer> nodes = new HashSet<Integer>();
+			for(int n : cl.getLabelling()) {
+				nodes.add(n);
+			}
+			assertEquals(10, nodes.size());
+			for(Permutation automorphism : cl.getAutomorphisms()) {
+				for(int e = 0; e < g.getNumberOfEdges(); e++) {
+					int n1 = automorphism.get(g.getEdgeNode1(e));
+					int n2 = automorphism.get(g.getEdgeNode2(e));
+					assertTrue(g.hasEdge(n1, n2));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void test003() throws Exception {
+		// agrees with ExactIsomorphism and CanonicalForm on small simple connected graphs
+		FastGraph[] graphs = new FastGraph[40];
+		for(int i = 0; i < graphs.length; i++) {
+			graphs[i] = FastGraph.randomGraphFactory(5, 6, i, true, false);
+		}
+		for(int i = 0; i < graphs.length; i++) {
+			if(!Connected.connected(graphs[i])) {
+				continue;
+			}
+			ExactIsomorphism ei = new ExactIsomorphism(graphs[i]);
+			for(int j = 0; j < graphs.length; j++) {
+				if(!Connected.connected(graphs[j])) {
+					continue;
+				}
+				boolean expected = ei.isomorphic(graphs[j]);
+				assertEquals(expected, CanonicalLabelling.isomorphic(graphs[i], graphs[j]));
+				assertEquals(expected, CanonicalForm.isomorphic(graphs[i], graphs[j]));
+			}
+		}
+	}
+
+	@Test
+	public void test004() {
+		// regular graphs, where refinement alone does not separate the nodes
+		FastGraph cycle = cycle(12, 1);
+		FastGraph twoCycles = cycle(6, 2);
+		assertFalse(CanonicalLabelling.isomorphic(cycle, twoCycles));
+		assertTrue(CanonicalLabelling.isomorphic(twoCycles, cycle(6, 2)));
+		// the cycle has two generators, a rotation and a reflection
+		assertEquals(2, new CanonicalLabelling(cycle).getAutomorphisms().size());
+	}
+
+	@Test
+	public void test005() throws Exception {
+		// thousands of nodes
+		FastGraph bigCycle = cycle(2000, 1);
+		FastGraph bigCycles = cycle(1000, 2);
+		CanonicalLabelling cl = new CanonicalLabelling(bigCycle);
+		assertFalse(Arrays.equals(cl.getCertificate(), new CanonicalLabelling(bigCycles).getCertificate()));
+		assertArrayEquals(cl.getCertificate(), new CanonicalLabelling(ExactIsomorphism.generateRandomIsomorphicGraph(bigCycle, 5, false)).getCertificate());
+
+		FastGraph g1 = FastGraph.randomGraphFactory(5000, 20000, 1, false);
+		FastGraph g2 = ExactIsomorphism.generateRandomIsomorphicGraph(g1, 2, false);
+		FastGraph g3 = FastGraph.randomGraphFactory(5000, 20000, 3, false);
+		assertTrue(CanonicalLabelling.isomorphic(g1, g2));
+		assertFalse(CanonicalLabelling.isomorphic(g1, g3));
+	}
+
+	@Test
+	public void test006() throws Exception {
+		// node ages are part of the certificate
+		FastGraph g1 = FastGraph.randomGraphFactory(8, 12, 4, false);
+		FastGraph g2 = ExactIsomorphism.generateRandomIsomorphicGraph(g1, 5, false);
+		assertTrue(CanonicalLabelling.isomorphic(g1, g2));
+		g2.setNodeAge(0, (byte)(g2.getNodeAge(0)+1));
+		assertFalse(CanonicalLabelling.isomorphic(g1, g2));
+	}
+
+	@Test
+	public void test007() throws Exception {
+		// twins, such as the leaves of a star, are swapped without searching below each of them
+		FastGraph star = tree(2001, true);
+		CanonicalLabelling cl = new CanonicalLabelling(star);
+		assertArrayEquals(cl.getCertificate(), new CanonicalLabelling(ExactIsomorphism.generateRandomIsomorphicGraph(star, 1, false)).getCertificate());
+		assertTrue(cl.getSearchNodes() <= 2*star.getNumberOfNodes());
+		for(Permutation automorphism : cl.getAutomorphisms()) {
+			assertEquals(0, automorphism.get(0));
+		}
+
+		// a preferential attachment tree has many leaves on the same node
+		FastGraph tree = tree(5000, false);
+		cl = new CanonicalLabelling(tree);
+		assertArrayEquals(cl.getCertificate(), new CanonicalLabelling(ExactIsomorphism.generateRandomIsomorphicGraph(tree, 2, false)).getCertificate());
+		assertTrue(cl.getSearchNodes() < 20*tree.getNumberOfNodes());
+		assertFalse(CanonicalLabelling.isomorphic(tree, tree(5000, true)));
+	}
+
+	/**
+	 * Node i is joined to node 0 for a star, otherwise to the end of a random earlier edge.
+	 */
+	private static FastGraph tree(int nodeCount, boolean star) {
+		Random r = new Random(nodeCount);
+		ArrayList<NodeStructure> nodes = new ArrayList<NodeStructure>();
+		ArrayList<EdgeStructure> edges = new ArrayList<EdgeStructure>();
+		int[] ends = new int[2*nodeCount];
+		for(int n = 0; n < nodeCount; n++) {
+			nodes.add(new NodeStructure(n, "", 0, (byte)0, (byte)0));
+			if(n > 0) {
+				int parent = star || n == 1 ? 0 : ends[r.nextInt(2*(n-1))];
+				edges.add(new EdgeStructure(n-1, "", 0, (byte)0, (byte)0, parent, n));
+				ends[2*(n-1)] = parent;
+				ends[2*(n-1)+1] = n;
+			}
+		}
+		return FastGraph.structureFactory("tree", (byte)0, nodes, edges, false);
+	}
+
+	private static FastGraph cycle(int length, int copies) {
+		StringBuilder json = new StringBuilder("{\"name\": \"cycle\", \"nodes\": [");
+		for(int n = 0; n < length*copies; n++) {
+			json.append(n == 0 ? "" : ",").append("{\"nodeIndex\": "+n+", \"nodeLabel\": \"\", \"nodeWeight\": 0, \"nodeType\": 0, \"nodeAge\": 0}");
+		}
+		json.append("], \"edges\": [");
+		int e = 0;
+		for(int c = 0; c < copies; c++) {
+			for(int i = 0; i < length; i++) {
+				int n1 = c*length+i;
+				int n2 = c*length+(i+1)%length;
+				json.append(e == 0 ? "" : ",").append("{\"edgeIndex\": "+e+", \"node1\": "+n1+", \"node2\": "+n2+", \"edgeLabel\": \"\", \"edgeWeight\": 0, \"edgeType\": 0, \"edgeAge\": 0}");
+				e++;
+			}
+		}
+		json.append("]}");
+		return FastGraph.jsonStringGraphFactory(json.toString(), false);
+	}
+
+}
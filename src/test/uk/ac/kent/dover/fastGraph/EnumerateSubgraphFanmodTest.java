@@ -0,0 +1,127 @@
+package test.uk.ac.kent.dover.fastGraph;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import test.uk.ac.kent.dover.TestRunner;
+import uk.ac.kent.dover.fastGraph.EnumerateSubgraphFanmod;
+import uk.ac.kent.dover.fastGraph.FastGraph;
+import uk.ac.kent.dover.fastGraph.SubgraphView;
+
+public class EnumerateSubgraphFanmodTest {
+
+	@Test
+	public void test001() {
+		FastGraph g = FastGraph.jsonStringGraphFactory(TestRunner.get5Node7EdgeA(), false);
+		EnumerateSubgraphFanmod esu = new EnumerateSubgraphFanmod(g);
+		assertEquals(5, esu.enumerate(1, view -> {}));
+		assertEquals(7, esu.enumerate(2, view -> {}));
+		// every 3 node set except {0,2,4} and {0,3,4} is connected
+		assertEquals(8, esu.enumerate(3, view -> {}));
+		assertEquals(5, esu.enumerate(4, view -> {}));
+		assertEquals(1, esu.enumerate(5, view -> {}));
+		assertEquals(0, esu.enumerate(6, view -> {}));
+	}
+
+	@Test
+	public void test002() throws Exception {
+		// each connected induced subgraph is found exactly once, including with parallel and self sourcing edges
+		for(int seed = 0; seed < 3; seed++) {
+			FastGraph g = FastGraph.randomGraphFactory(25, 50, seed, seed == 0, false);
+			EnumerateSubgraphFanmod esu = new EnumerateSubgraphFanmod(g);
+			for(int k = 2; k <= 4; k++) {
+				HashSet<String> found = new HashSet<String>();
+				long count = esu.enumerate(k, view -> {
+					assertTrue(view.isConnected());
+					int[] nodes = view.copyNodes();
+					Arrays.sort(nodes);
+					assertTrue(found.add(Arrays.toString(nodes)));
+				});
+				assertEquals(found.size(), count);
+				assertEquals(connectedSets(g, k), found);
+			}
+		}
+	}
+
+	@Test
+	public void test003() throws Exception {
+		// RAND-ESU finds about the product of the probabilities, the same for the same seed
+		FastGraph g = FastGraph.randomGraphFactory(200, 600, 3, false);
+		EnumerateSubgraphFanmod esu = new EnumerateSubgraphFanmod(g);
+		long all = esu.enumerate(4, view -> {});
+		double[] probabilities = {1.0, 1.0, 0.5, 0.5};
+		long sampled = esu.enumerate(4, probabilities, new Random(1), view -> {});
+		assertTrue(sampled > all*0.15);
+		assertTrue(sampled < all*0.35);
+		assertEquals(sampled, esu.enumerate(4, probabilities, new Random(1), view -> {}));
+
+		long fromNodes = 0;
+		for(int v = 0; v < g.getNumberOfNodes(); v++) {
+			fromNodes += esu.enumerateFromNode(v, 4, new double[] {1, 1, 1, 1}, null, view -> {});
+		}
+		assertEquals(all, fromNodes);
+		assertEquals(all, esu.enumerateSubgraphs(4, 1.0).size());
+	}
+
+	@Rule
+	public ExpectedException thrown1 = ExpectedException.none();
+	@Test
+	public void test004() throws Exception {
+		// connections compressed without edge indexes, the node sets are still found
+		FastGraph g = FastGraph.randomGraphFactory(25, 50, 6, true, false);
+		HashSet<String> expected = connectedSets(g, 3);
+		g.compressConnections(false);
+		EnumerateSubgraphFanmod esu = new EnumerateSubgraphFanmod(g);
+		HashSet<String> found = new HashSet<String>();
+		esu.enumerate(3, view -> {
+			int[] nodes = view.copyNodes();
+			Arrays.sort(nodes);
+			found.add(Arrays.toString(nodes));
+		});
+		assertEquals(expected, found);
+		thrown1.expect(UnsupportedOperationException.class);
+		esu.enumerateSubgraphs(3, 1.0);
+	}
+
+	/**
+	 * @return the sorted node sets of the connected induced subgraphs of size k, by trying every set
+	 */
+	private static HashSet<String> connectedSets(FastGraph g, int k) {
+		HashSet<String> ret = new HashSet<String>();
+		SubgraphView view = new SubgraphView(g, k);
+		int[] nodes = new int[k];
+		for(int i = 0; i < k; i++) {
+			nodes[i] = i;
+		}
+		while(true) {
+			view.clear();
+			for(int n : nodes) {
+				view.addNode(n);
+			}
+			view.induce();
+			if(view.isConnected()) {
+				ret.add(Arrays.toString(nodes));
+			}
+			// next combination
+			int i = k-1;
+			while(i >= 0 && nodes[i] == g.getNumberOfNodes()-k+i) {
+				i--;
+			}
+			if(i < 0) {
+				return ret;
+			}
+			nodes[i]++;
+			for(int j = i+1; j < k; j++) {
+				nodes[j] = nodes[j-1]+1;
+			}
+		}
+	}
+
+}
@@ -1,8 +1,11 @@
 package test.uk.ac.kent.dover.fastGraph;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 
 import org.junit.Rule;
@@ -13,6 +16,7 @@ import test.uk.ac.kent.dover.TestRunner;
 import uk.ac.kent.displayGraph.Edge;
 import uk.ac.kent.displayGraph.Graph;
 import uk.ac.kent.displayGraph.Node;
+import uk.ac.kent.dover.fastGraph.EnumerateSubgraphNeighbourhood;
 import uk.ac.kent.dover.fastGraph.ExactIsomorphism;
 import uk.ac.kent.dover.fastGraph.FastGraph;
 import uk.ac.kent.dover.fastGraph.FastGraphException;
@@ -678,4 +682,152 @@ public class ExactIsomorphismTest {
 		
 	}
 
+	@Test
+	public void test018() throws Exception {
+		// bitsets and sets of Integers give the same results, on small subgraphs
+		FastGraph target = FastGraph.randomGraphFactory(200,600,5,true,false);
+		ArrayList<FastGraph> subs = new ArrayList<FastGraph>(new EnumerateSubgraphNeighbourhood(target).enumerateSubgraphs(5,1,20));
+		int same = 0;
+		int different = 0;
+		for(int i = 0; i < 60; i++) {
+			ExactIsomorphism bitsets = new ExactIsomorphism(subs.get(i));
+			ExactIsomorphism hashSets = new ExactIsomorphism(subs.get(i));
+			hashSets.setBitsetAdjacency(false);
+			assertTrue(bitsets.isBitsetAdjacency());
+			assertFalse(hashSets.isBitsetAdjacency());
+			for(int j = 0; j < 60; j++) {
+				boolean iso = bitsets.isomorphic(subs.get(j));
+				assertEquals(iso, hashSets.isomorphic(subs.get(j)));
+				if(iso) {
+					same++;
+				} else {
+					different++;
+				}
+			}
+			assertTrue(bitsets.isomorphic(ExactIsomorphism.generateRandomIsomorphicGraph(subs.get(i),i,false)));
+		}
+		assertTrue(same > 60);
+		assertTrue(different > 0);
+	}
+
+	@Test
+	public void test019() throws Exception {
+		// more than one long for the neighbours of each node
+		FastGraph g1 = FastGraph.randomGraphFactory(100,300,1,true,false);
+		FastGraph g2 = ExactIsomorphism.generateRandomIsomorphicGraph(g1,2,false);
+		ExactIsomorphism ei = new ExactIsomorphism(g1);
+		assertTrue(ei.isomorphic(g2));
+		int[] match = ei.getLastMatch();
+		for(int e = 0; e < g1.getNumberOfEdges(); e++) {
+			int n1 = match[g1.getEdgeNode1(e)];
+			int n2 = match[g1.getEdgeNode2(e)];
+			boolean found = false;
+			for(int n : g2.getNodeConnectingNodes(n1)) {
+				if(n == n2) {
+					found = true;
+				}
+			}
+			assertTrue(found);
+		}
+		ei.setBitsetAdjacency(false);
+		assertTrue(ei.isomorphic(g2));
+	}
+
+	@Test
+	public void test020() throws Exception {
+		// same degree sequence, different degrees of the neighbours of the degree 3 node
+		Graph dg1 = new Graph("dg1");
+		dg1.addAdjacencyEdge("a", "b");
+		dg1.addAdjacencyEdge("b", "c");
+		dg1.addAdjacencyEdge("c", "d");
+		dg1.addAdjacencyEdge("d", "e");
+		dg1.addAdjacencyEdge("c", "f");
+		Graph dg2 = new Graph("dg2");
+		dg2.addAdjacencyEdge("a", "b");
+		dg2.addAdjacencyEdge("b", "c");
+		dg2.addAdjacencyEdge("c", "d");
+		dg2.addAdjacencyEdge("d", "e");
+		dg2.addAdjacencyEdge("b", "f");
+		FastGraph g1 = FastGraph.displayGraphFactory(dg1, false);
+		FastGraph g2 = FastGraph.displayGraphFactory(dg2, false);
+		int[] degrees1 = g1.findDegrees();
+		int[] degrees2 = g2.findDegrees();
+		long[] bits1 = ExactIsomorphism.findNeighbourBits(g1, 1);
+		long[] bits2 = ExactIsomorphism.findNeighbourBits(g2, 1);
+		assertFalse(Arrays.equals(ExactIsomorphism.findNeighbourDegrees(bits1, 1, degrees1), ExactIsomorphism.findNeighbourDegrees(bits2, 1, degrees2)));
+		assertArrayEquals(new int[6], ExactIsomorphism.findTriangles(bits1, 1, 6));
+
+		ExactIsomorphism ei = new ExactIsomorphism(g1);
+		ei.setTriangleFilter(false);
+		ei.setWeisfeilerLehmanRounds(0);
+		ei.setEigenvalueFilter(false);
+		assertFalse(ei.isomorphic(g2));
+		ei.setNeighbourDegreeFilter(false);
+		assertFalse(ei.isomorphic(g2));
+	}
+
+	@Test
+	public void test021() throws Exception {
+		// the prism and K3,3 are both 3 regular, only the triangles and eigenvalues differ
+		Graph dg1 = new Graph("prism");
+		dg1.addAdjacencyEdge("a", "b");
+		dg1.addAdjacencyEdge("b", "c");
+		dg1.addAdjacencyEdge("c", "a");
+		dg1.addAdjacencyEdge("d", "e");
+		dg1.addAdjacencyEdge("e", "f");
+		dg1.addAdjacencyEdge("f", "d");
+		dg1.addAdjacencyEdge("a", "d");
+		dg1.addAdjacencyEdge("b", "e");
+		dg1.addAdjacencyEdge("c", "f");
+		Graph dg2 = new Graph("k33");
+		for(String n1 : new String[] {"a", "b", "c"}) {
+			for(String n2 : new String[] {"d", "e", "f"}) {
+				dg2.addAdjacencyEdge(n1, n2);
+			}
+		}
+		FastGraph g1 = FastGraph.displayGraphFactory(dg1, false);
+		FastGraph g2 = FastGraph.displayGraphFactory(dg2, false);
+		int[] degrees = g1.findDegrees();
+		long[] bits1 = ExactIsomorphism.findNeighbourBits(g1, 1);
+		long[] bits2 = ExactIsomorphism.findNeighbourBits(g2, 1);
+		assertArrayEquals(new int[] {1,1,1,1,1,1}, ExactIsomorphism.findTriangles(bits1, 1, 6));
+		assertArrayEquals(new int[6], ExactIsomorphism.findTriangles(bits2, 1, 6));
+		assertArrayEquals(ExactIsomorphism.findWeisfeilerLehmanColours(bits1, 1, degrees, 3), ExactIsomorphism.findWeisfeilerLehmanColours(bits2, 1, degrees, 3));
+
+		ExactIsomorphism ei = new ExactIsomorphism(g1);
+		assertFalse(ei.isomorphic(g2));
+		ei.setTriangleFilter(false);
+		assertFalse(ei.isomorphic(g2));
+		ei.setEigenvalueFilter(false);
+		assertFalse(ei.isomorphic(g2));
+		assertTrue(ei.isomorphic(ExactIsomorphism.generateRandomIsomorphicGraph(g1, 3, false)));
+	}
+
+	@Test
+	public void test022() throws Exception {
+		// the invariants do not change the results
+		FastGraph target = FastGraph.randomGraphFactory(200,600,6,true,false);
+		ArrayList<FastGraph> subs = new ArrayList<FastGraph>(new EnumerateSubgraphNeighbourhood(target).enumerateSubgraphs(6,1,20));
+		for(int i = 0; i < 40; i++) {
+			ExactIsomorphism all = new ExactIsomorphism(subs.get(i));
+			ExactIsomorphism none = new ExactIsomorphism(subs.get(i));
+			none.setNeighbourDegreeFilter(false);
+			none.setTriangleFilter(false);
+			none.setWeisfeilerLehmanRounds(0);
+			none.setEigenvalueFilter(false);
+			for(int j = 0; j < 40; j++) {
+				assertEquals(all.isomorphic(subs.get(j)), none.isomorphic(subs.get(j)));
+			}
+		}
+	}
+
+	@Rule
+	public ExpectedException thrown3 = ExpectedException.none();
+	@Test
+	public void test023() throws Exception {
+		thrown3.expect(IllegalArgumentException.class);
+		FastGraph g1 = FastGraph.randomGraphFactory(1,0,1,false);
+		new ExactIsomorphism(g1).setWeisfeilerLehmanRounds(-1);
+	}
+
 }
@@ -1,14 +1,20 @@
 package test.uk.ac.kent.dover.fastGraph;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
 
 import org.junit.Test;
 
 import test.uk.ac.kent.dover.TestRunner;
+import uk.ac.kent.dover.fastGraph.EnumerateSubgraphFanmod;
 import uk.ac.kent.dover.fastGraph.ExactMotifFinder;
+import uk.ac.kent.dover.fastGraph.ExactMotifFinder.IsoHolder;
 import uk.ac.kent.dover.fastGraph.ExactMotifFinder.MotifResultHolder;
 import uk.ac.kent.dover.fastGraph.FastGraph;
 import uk.ac.kent.dover.fastGraph.FastGraphException;
@@ -88,4 +94,190 @@ public class ExactMotifFinderTest {
 		ArrayList<MotifResultHolder> results = emf.compareAndExportResults(4, 4, 4);
 		assertEquals(15.16, results.get(0).generateDifference(), 0.1);
 	}
+	
+	@Test
+	public void test005() throws Exception {
+		// parallel chunks give the same classes and counts for the same seed
+		FastGraph g = FastGraph.randomGraphFactory(2500, 6000, 8, false);
+		g.setName("parallelMotifs");
+		ExactMotifFinder emf = new ExactMotifFinder(g, false);
+		HashMap<String,LinkedList<IsoHolder>> buckets1 = new HashMap<String,LinkedList<IsoHolder>>();
+		emf.findMotifs(3, 0, buckets1, 42);
+		HashMap<String,LinkedList<IsoHolder>> buckets2 = new HashMap<String,LinkedList<IsoHolder>>();
+		emf.findMotifs(3, 0, buckets2, 42);
+		
+		assertEquals(buckets1.keySet(), buckets2.keySet());
+		int total = 0;
+		for(String key : buckets1.keySet()) {
+			assertEquals(buckets1.get(key).toString(), buckets2.get(key).toString());
+			for(IsoHolder holder : buckets1.get(key)) {
+				total += holder.getNumber();
+			}
+		}
+		assertTrue(total > g.getNumberOfNodes());
+	}
+	
+	@Test
+	public void test006() throws Exception {
+		// class graphs spilled to disk give the same results as those kept in memory, and all are saved at the end
+		FastGraph g = FastGraph.randomGraphFactory(1500, 4000, 9, false);
+		g.setName("motifClassCache");
+		ExactMotifFinder emf = new ExactMotifFinder(g, false);
+		HashMap<String,LinkedList<IsoHolder>> buckets1 = new HashMap<String,LinkedList<IsoHolder>>();
+		emf.findMotifs(4, 0, buckets1, 7);
+		emf = new ExactMotifFinder(g, false);
+		emf.setMaxClassGraphsInMemory(1);
+		HashMap<String,LinkedList<IsoHolder>> buckets2 = new HashMap<String,LinkedList<IsoHolder>>();
+		emf.findMotifs(4, 0, buckets2, 7);
+		
+		assertEquals(buckets1.keySet(), buckets2.keySet());
+		for(String key : buckets1.keySet()) {
+			assertEquals(buckets1.get(key).toString(), buckets2.get(key).toString());
+			for(IsoHolder holder : buckets2.get(key)) {
+				assertTrue(new File("motifs"+File.separatorChar+g.getName()+File.separatorChar+holder.getKey()).exists());
+				assertEquals(4, holder.getGraph().getNumberOfNodes());
+			}
+		}
+	}
+	
+	@Test
+	public void test007() throws Exception {
+		// with ESU every connected subgraph is classified once
+		FastGraph g = FastGraph.randomGraphFactory(300, 700, 5, false);
+		g.setName("esuMotifs");
+		ExactMotifFinder emf = new ExactMotifFinder(g, false);
+		emf.setEsuProbabilities(new double[] {1, 1, 1});
+		HashMap<String,LinkedList<IsoHolder>> buckets = new HashMap<String,LinkedList<IsoHolder>>();
+		emf.findMotifs(3, 0, buckets, 3);
+		long total = 0;
+		for(LinkedList<IsoHolder> holders : buckets.values()) {
+			for(IsoHolder holder : holders) {
+				total += holder.getNumber();
+			}
+		}
+		assertEquals(new EnumerateSubgraphFanmod(g).enumerate(3, view -> {}), total);
+	}
+	
+	@Test
+	public void test008() throws Exception {
+		// with deduplication each node set is counted once
+		FastGraph g = FastGraph.randomGraphFactory(300, 600, 6, false);
+		g.setName("dedupMotifs");
+		ExactMotifFinder emf = new ExactMotifFinder(g, false);
+		HashMap<String,LinkedList<IsoHolder>> buckets1 = new HashMap<String,LinkedList<IsoHolder>>();
+		emf.findMotifs(3, 0, buckets1, 11);
+		assertEquals(0, emf.getDuplicatesSkipped());
+		emf.setDeduplicate(true);
+		HashMap<String,LinkedList<IsoHolder>> buckets2 = new HashMap<String,LinkedList<IsoHolder>>();
+		emf.findMotifs(3, 0, buckets2, 11);
+		
+		long total1 = 0;
+		long total2 = 0;
+		for(String key : buckets1.keySet()) {
+			total1 += buckets1.get(key).getFirst().getNumber();
+		}
+		for(String key : buckets2.keySet()) {
+			total2 += buckets2.get(key).getFirst().getNumber();
+		}
+		assertTrue(emf.getDuplicatesSkipped() > 0);
+		assertEquals(total1, total2+emf.getDuplicatesSkipped());
+	}
+	
+	@Test
+	public void test009() throws Exception {
+		// independent rewires differ from each other, are the same for the same graph, and searching
+		// them in parallel gives the same classes as searching each in turn
+		FastGraph g = FastGraph.randomGraphFactory(800, 2000, 12, false);
+		g.setName("parallelRewires");
+		ExactMotifFinder emf = new ExactMotifFinder(g, false);
+		FastGraph[] rewires = emf.buildIndependentRewires(3);
+		FastGraph[] again = emf.buildIndependentRewires(3);
+		assertEquals(3, rewires.length);
+		assertEquals(edgeString(rewires[0]), edgeString(again[0]));
+		assertTrue(!edgeString(rewires[0]).equals(edgeString(rewires[1])));
+		assertTrue(!edgeString(rewires[0]).equals(edgeString(g)));
+		
+		HashMap<String,LinkedList<IsoHolder>> sequential = new HashMap<String,LinkedList<IsoHolder>>();
+		for(FastGraph rewire : rewires) {
+			assertEquals(g.getName(), rewire.getName());
+			new ExactMotifFinder(rewire, false).findMotifs(3, 0, sequential);
+		}
+		HashMap<String,LinkedList<IsoHolder>> parallel = new HashMap<String,LinkedList<IsoHolder>>();
+		emf.findMotifsInRewires(3, again, parallel);
+		assertEquals(sequential.keySet(), parallel.keySet());
+		for(String key : sequential.keySet()) {
+			assertEquals(sequential.get(key).toString(), parallel.get(key).toString());
+		}
+	}
+	
+	@Test
+	public void test010() throws Exception {
+		// a run carried on from a checkpoint gives the same counts as one that was not stopped
+		FastGraph g = FastGraph.randomGraphFactory(3000, 7000, 13, false);
+		g.setName("motifCheckpoint");
+		ExactMotifFinder emf = new ExactMotifFinder(g, false);
+		HashMap<String,LinkedList<IsoHolder>> full = new HashMap<String,LinkedList<IsoHolder>>();
+		emf.findMotifs(3, 0, full, 5);
+		HashMap<String,LinkedList<IsoHolder>> fromChunk2 = new HashMap<String,LinkedList<IsoHolder>>();
+		emf.findMotifs(3, 0, fromChunk2, 5, 2);
+		
+		// the classes of the first two chunks, as a run stopped there would have found them
+		HashMap<String,LinkedList<IsoHolder>> stopped = new HashMap<String,LinkedList<IsoHolder>>();
+		for(String key : full.keySet()) {
+			IsoHolder holder = full.get(key).getFirst();
+			int later = fromChunk2.containsKey(key) ? fromChunk2.get(key).getFirst().getNumber() : 0;
+			if(holder.getNumber() > later) {
+				LinkedList<IsoHolder> holders = new LinkedList<IsoHolder>();
+				holders.add(emf.new IsoHolder(holder.getKey(), holder.getNumber()-later));
+				stopped.put(key, holders);
+			}
+		}
+		File file = new File("motifs"+File.separatorChar+g.getName()+File.separatorChar+"checkpoint_size3_real.txt");
+		emf.saveCheckpoint(file, 0, 2, stopped);
+		assertTrue(file.exists());
+		assertTrue(!new File(file.getPath()+".tmp").exists());
+		
+		HashMap<String,LinkedList<IsoHolder>> resumed = new HashMap<String,LinkedList<IsoHolder>>();
+		int[] position = emf.loadCheckpoint(file, resumed);
+		assertEquals(0, position[0]);
+		assertEquals(2, position[1]);
+		assertEquals(stopped.keySet(), resumed.keySet());
+		emf.findMotifs(3, 0, resumed, 5, position[1]);
+		assertEquals(full.keySet(), resumed.keySet());
+		for(String key : full.keySet()) {
+			assertEquals(full.get(key).toString(), resumed.get(key).toString());
+		}
+	}
+	
+	@Test
+	public void test011() throws Exception {
+		// the limit on class graphs in memory covers all the rewires, not each one
+		FastGraph g = FastGraph.randomGraphFactory(800, 2000, 14, false);
+		g.setName("rewireClassCache");
+		ExactMotifFinder emf = new ExactMotifFinder(g, false);
+		HashMap<String,LinkedList<IsoHolder>> unlimited = new HashMap<String,LinkedList<IsoHolder>>();
+		emf.findMotifsInRewires(4, emf.buildIndependentRewires(3), unlimited);
+		assertTrue(unlimited.size() > 2);
+		
+		emf = new ExactMotifFinder(g, false);
+		emf.setMaxClassGraphsInMemory(2);
+		HashMap<String,LinkedList<IsoHolder>> limited = new HashMap<String,LinkedList<IsoHolder>>();
+		emf.findMotifsInRewires(4, emf.buildIndependentRewires(3), limited);
+		assertEquals(2, emf.getClassGraphsInMemory());
+		assertEquals(unlimited.keySet(), limited.keySet());
+		for(String key : limited.keySet()) {
+			assertEquals(unlimited.get(key).toString(), limited.get(key).toString());
+			for(IsoHolder holder : limited.get(key)) {
+				assertEquals(4, holder.getGraph().getNumberOfNodes());
+			}
+		}
+	}
+	
+	private static String edgeString(FastGraph g) {
+		StringBuilder sb = new StringBuilder();
+		for(int e = 0; e < g.getNumberOfEdges(); e++) {
+			sb.append(g.getEdgeNode1(e)+"-"+g.getEdgeNode2(e)+" ");
+		}
+		return sb.toString();
+	}
 }
@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.HashSet;
 import java.util.LinkedList;
 
 import org.junit.Test;
@@ -1127,4 +1128,82 @@ public class ExactSubgraphIsomorphismTest {
 	
 
 
+	@Test
+	public void test020() throws Exception {
+		// the same mappings are found when the target connections are sorted by node
+		FastGraph target = FastGraph.randomGraphFactory(30, 90, 2, false);
+		
+		Graph patternGraph = new Graph("triangle");
+		Node nnX0 = new Node("");
+		patternGraph.addNode(nnX0);
+		Node nnX1 = new Node("");
+		patternGraph.addNode(nnX1);
+		Node nnX2 = new Node("");
+		patternGraph.addNode(nnX2);
+		patternGraph.addEdge(new Edge(nnX0,nnX1,""));
+		patternGraph.addEdge(new Edge(nnX1,nnX2,""));
+		patternGraph.addEdge(new Edge(nnX2,nnX0,""));
+		FastGraph pattern = FastGraph.displayGraphFactory(patternGraph,false);
+		
+		ExactSubgraphIsomorphism esi = new ExactSubgraphIsomorphism(target, pattern, null, null);
+		esi.subgraphIsomorphismFinder();
+		int unsortedCount = esi.getFoundMappings().size();
+		assertTrue(unsortedCount > 0);
+		
+		target.sortConnectionsByNode();
+		esi = new ExactSubgraphIsomorphism(target, pattern, null, null);
+		esi.subgraphIsomorphismFinder();
+		assertEquals(unsortedCount,esi.getFoundMappings().size());
+	}
+
+	@Test
+	public void test021() throws Exception {
+		// symmetry breaking finds one mapping for each match, the same matches as without
+		FastGraph target = FastGraph.randomGraphFactory(30, 90, 2, false);
+		
+		Graph patternGraph = new Graph("triangle with tail");
+		Node nnX0 = new Node("");
+		patternGraph.addNode(nnX0);
+		Node nnX1 = new Node("");
+		patternGraph.addNode(nnX1);
+		Node nnX2 = new Node("");
+		patternGraph.addNode(nnX2);
+		Node nnX3 = new Node("");
+		patternGraph.addNode(nnX3);
+		patternGraph.addEdge(new Edge(nnX0,nnX1,""));
+		patternGraph.addEdge(new Edge(nnX1,nnX2,""));
+		patternGraph.addEdge(new Edge(nnX2,nnX0,""));
+		patternGraph.addEdge(new Edge(nnX2,nnX3,""));
+		FastGraph pattern = FastGraph.displayGraphFactory(patternGraph,false);
+		
+		ExactSubgraphIsomorphism esi = new ExactSubgraphIsomorphism(target, pattern, null, null);
+		esi.subgraphIsomorphismFinder();
+		HashSet<String> allMatches = new HashSet<String>();
+		for(SubgraphMapping mapping : esi.getFoundMappings()) {
+			allMatches.add(matchKey(mapping));
+		}
+		int allCount = esi.getFoundMappings().size();
+		assertTrue(allCount > 0);
+		
+		esi = new ExactSubgraphIsomorphism(target, pattern, null, null);
+		esi.setSymmetryBreaking(true);
+		esi.subgraphIsomorphismFinder();
+		HashSet<String> brokenMatches = new HashSet<String>();
+		for(SubgraphMapping mapping : esi.getFoundMappings()) {
+			brokenMatches.add(matchKey(mapping));
+		}
+		// the two triangle nodes without the tail can be swapped
+		assertEquals(allCount, esi.getFoundMappings().size()*2);
+		assertEquals(esi.getFoundMappings().size(), brokenMatches.size());
+		assertEquals(allMatches, brokenMatches);
+	}
+
+	/**
+	 * @return the matched target nodes in pattern order up to swapping pattern nodes 0 and 1
+	 */
+	private static String matchKey(SubgraphMapping mapping) {
+		int[] nodes = mapping.getNodeMapping();
+		return Math.min(nodes[0], nodes[1])+" "+Math.max(nodes[0], nodes[1])+" "+nodes[2]+" "+nodes[3];
+	}
+
 }
@@ -7,8 +7,11 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
 
@@ -3105,4 +3108,435 @@ public class FastGraphTest {
 	    
 	}
 
+
+	@Test
+	public void test162() throws Exception {
+		FastGraph g1,g2;
+		g1 = FastGraph.jsonStringGraphFactory(TestRunner.get4Node5Edge(),false);
+		g1.saveBuffers(null,"testMapped");
+		g2 = FastGraph.loadBuffersGraphFactory(null,"testMapped",true);
+		assertTrue(g2.getMapped());
+		assertFalse(g1.getMapped());
+		assertEquals("four nodes, five edges",g2.getName());
+		assertEquals(4,g2.getNumberOfNodes());
+		assertEquals(5,g2.getNumberOfEdges());
+		assertEquals(0,g2.getNodeInDegree(0));
+		assertEquals(2,g2.getNodeOutDegree(2));
+		assertEquals(2,g2.getNodeInDegree(3));
+		assertEquals("node label 3",g2.getNodeLabel(3));
+		assertEquals("edge label 4",g2.getEdgeLabel(4));
+		assertEquals(4,g2.getEdgeWeight(4));
+		assertTrue(g2.checkConsistency());
+		assertTrue(Connected.connected(g2));
+		assertTrue(ExactIsomorphism.isomorphic(g1, g2));
+	}
+
+	@Rule
+	public ExpectedException thrown3 = ExpectedException.none();
+	@Test
+	public void test163() throws Exception {
+		FastGraph g1,g2;
+		g1 = FastGraph.randomGraphFactory(10,20,6,false);
+		g1.saveBuffers(null,"testMapped");
+		g2 = FastGraph.loadBuffersGraphFactory(null,"testMapped",true);
+		FastGraph g3 = g2.generateGraphFromSubgraph(new int[]{0,1,2}, new int[]{});
+		g3.setNodeWeight(0, 5);
+		assertEquals(5,g3.getNodeWeight(0));
+		thrown3.expect(ReadOnlyBufferException.class);
+		g2.setNodeWeight(0, 5);
+	}
+
+
+	@Test
+	public void test164() throws Exception {
+		FastGraph g = FastGraph.adjacencyListGraphFactory(5, 7, Launcher.startingWorkingDirectory+File.separatorChar+"testData", "testAdj4.txt", false);
+		assertEquals(5,g.getNumberOfNodes());
+		assertEquals(7,g.getNumberOfEdges());
+		assertEquals("11",g.getNodeLabel(0));
+		assertEquals("13",g.getNodeLabel(2));
+		assertEquals("15",g.getNodeLabel(4));
+		assertEquals("e0",g.getEdgeLabel(0));
+		assertEquals("e6",g.getEdgeLabel(6));
+		assertEquals(2,g.getEdgeNode1(6));
+		assertEquals(4,g.getEdgeNode2(6));
+		assertEquals(2,g.getNodeInDegree(0));
+		assertEquals(3,g.getNodeOutDegree(0));
+		int[] connections;
+		connections = g.getNodeConnectingOutEdges(0);
+		assertEquals(3,connections.length);
+		assertEquals(0,connections[0]);
+		assertEquals(1,connections[1]);
+		assertEquals(3,connections[2]);
+		connections = g.getNodeConnectingInNodes(0);
+		assertEquals(2,connections.length);
+		assertEquals(0,connections[0]);
+		assertEquals(1,connections[1]);
+		connections = g.getNodeConnectingNodes(4);
+		assertEquals(2,connections.length);
+		assertEquals(3,connections[0]);
+		assertEquals(2,connections[1]);
+		assertTrue(g.checkConsistency());
+		assertFalse(Connected.connected(g));
+	}
+
+	@Rule
+	public ExpectedException thrown4 = ExpectedException.none();
+	@Test
+	public void test165() throws Exception {
+		thrown4.expect(IOException.class);
+		FastGraph.adjacencyListGraphFactory(5, 8, Launcher.startingWorkingDirectory+File.separatorChar+"testData", "testAdj4.txt", false);
+	}
+
+
+	@Test
+	public void test166() {
+		// edges given out of index order, connections are still in edge index order
+		ArrayList<NodeStructure> addNodes = new ArrayList<NodeStructure>();
+		ArrayList<EdgeStructure> addEdges = new ArrayList<EdgeStructure>();
+		addNodes.add(new NodeStructure(0,"n0", 1, (byte)1, (byte)0));
+		addNodes.add(new NodeStructure(1,"n1", 1, (byte)1, (byte)0));
+		addNodes.add(new NodeStructure(2,"n2", 1, (byte)1, (byte)0));
+		addEdges.add(new EdgeStructure(3,"e3", 1, (byte)1, (byte)0, 0, 2));
+		addEdges.add(new EdgeStructure(1,"e1", 1, (byte)1, (byte)0, 0, 1));
+		addEdges.add(new EdgeStructure(2,"e2", 1, (byte)1, (byte)0, 2, 0));
+		addEdges.add(new EdgeStructure(0,"e0", 1, (byte)1, (byte)0, 0, 0));
+		FastGraph g = FastGraph.structureFactory("g", (byte)0, addNodes, addEdges, false);
+		int[] connections;
+		connections = g.getNodeConnectingOutEdges(0);
+		assertEquals(3,connections.length);
+		assertEquals(0,connections[0]);
+		assertEquals(1,connections[1]);
+		assertEquals(3,connections[2]);
+		connections = g.getNodeConnectingInNodes(0);
+		assertEquals(2,connections.length);
+		assertEquals(0,connections[0]);
+		assertEquals(2,connections[1]);
+		connections = g.getNodeConnectingNodes(2);
+		assertEquals(2,connections.length);
+		assertEquals(0,connections[0]);
+		assertEquals(0,connections[1]);
+		assertEquals(5,g.getNodeDegree(0));
+		assertTrue(g.checkConsistency());
+	}
+
+
+	@Test
+	public void test167() throws Exception {
+		// compact labels are shared between items with the same label
+		FastGraph g = FastGraph.randomGraphFactory(5, 4, 1, false);
+		g.setAllNodeLabels(new String[] {"a", "b\u00e9", "a", "", "\ud83d\ude00x"});
+		g.setAllEdgeLabels(new String[] {"e", "e", "f", "e"});
+		g.setCompactLabels(true);
+		assertTrue(g.getCompactLabels());
+		assertEquals("a",g.getNodeLabel(0));
+		assertEquals("b\u00e9",g.getNodeLabel(1));
+		assertEquals("",g.getNodeLabel(3));
+		assertEquals("\ud83d\ude00x",g.getNodeLabel(4));
+		assertEquals("f",g.getEdgeLabel(2));
+		assertEquals(g.getNodeLabelId(0),g.getNodeLabelId(2));
+		assertNotEquals(g.getNodeLabelId(0),g.getNodeLabelId(1));
+		assertEquals(g.getEdgeLabelId(0),g.getEdgeLabelId(3));
+		assertEquals(9,g.getNodeLabelBuf().capacity());
+		assertEquals(2,g.getEdgeLabelBuf().capacity());
+		assertTrue(g.nodeLabelEquals(1,"b\u00e9"));
+		assertFalse(g.nodeLabelEquals(1,"b"));
+		assertTrue(g.nodeLabelEquals(4,"\ud83d\ude00x"));
+		assertTrue(g.isNodeLabelEmpty(3));
+		assertFalse(g.isNodeLabelEmpty(0));
+		assertTrue(g.edgeLabelEquals(1,"e"));
+		g.setCompactLabels(false);
+		assertFalse(g.getCompactLabels());
+		assertEquals("b\u00e9",g.getNodeLabel(1));
+		assertEquals("\ud83d\ude00x",g.getNodeLabel(4));
+		assertEquals(14,g.getNodeLabelBuf().capacity());
+	}
+
+
+	@Test
+	public void test168() throws Exception {
+		// label comparisons without Strings agree with String.compareTo, across storage modes
+		String[] labels = {"a", "ab", "b", "", "\uffff", "\ud83d\ude00", "B\u00e9", "a"};
+		FastGraph g1 = FastGraph.randomGraphFactory(labels.length, 0, 1, false);
+		g1.setAllNodeLabels(labels);
+		FastGraph g2 = FastGraph.randomGraphFactory(labels.length, 0, 1, false);
+		g2.setAllNodeLabels(labels);
+		g2.setCompactLabels(true);
+		for(int i = 0; i < labels.length; i++) {
+			for(int j = 0; j < labels.length; j++) {
+				int expected = Integer.signum(labels[i].compareTo(labels[j]));
+				assertEquals(expected,Integer.signum(g1.compareNodeLabels(i, g2, j)));
+				assertEquals(expected,Integer.signum(g2.compareNodeLabels(i, g1, j)));
+				assertEquals(expected,Integer.signum(g2.compareNodeLabels(i, g2, j)));
+				assertEquals(expected,Integer.signum(g1.compareNodeLabels(i, g1, j)));
+				assertEquals(labels[i].equals(labels[j]),g2.nodeLabelEquals(i, labels[j]));
+				assertEquals(labels[i].equals(labels[j]),g1.nodeLabelEquals(i, labels[j]));
+			}
+		}
+	}
+
+
+	@Test
+	public void test169() throws Exception {
+		// compact labels are kept through save, load and subgraph creation
+		FastGraph g = FastGraph.jsonStringGraphFactory(TestRunner.get4Node5Edge(),false);
+		g.setCompactLabels(true);
+		g.saveBuffers(null,"testCompact");
+		FastGraph g2 = FastGraph.loadBuffersGraphFactory(null,"testCompact");
+		assertTrue(g2.getCompactLabels());
+		assertEquals("node label 3",g2.getNodeLabel(3));
+		assertEquals("edge label 4",g2.getEdgeLabel(4));
+		FastGraph g3 = FastGraph.loadBuffersGraphFactory(null,"testCompact",true);
+		assertTrue(g3.getCompactLabels());
+		assertEquals("node label 2",g3.getNodeLabel(2));
+		assertTrue(g3.edgeLabelEquals(1,"edge label 1"));
+		FastGraph g4 = g.generateGraphFromSubgraph(new int[] {2,3}, new int[] {});
+		assertTrue(g4.getCompactLabels());
+		assertEquals("node label 3",g4.getNodeLabel(1));
+	}
+
+	@Test
+	public void test170() throws Exception {
+		// edge lookup gives the same results with connections in edge order and in node order
+		FastGraph g = FastGraph.randomGraphFactory(50, 400, 3, false);
+		int[][] first = new int[50][50];
+		int[][] size = new int[50][50];
+		for(int n1 = 0; n1 < 50; n1++) {
+			for(int n2 = 0; n2 < 50; n2++) {
+				ArrayList<Integer> edges = g.edgesBetween(n1, n2);
+				size[n1][n2] = edges.size();
+				first[n1][n2] = edges.isEmpty() ? -1 : edges.get(0);
+				assertEquals(first[n1][n2],g.firstEdgeBetween(n1, n2));
+				assertEquals(!edges.isEmpty(),g.hasEdge(n1, n2));
+			}
+		}
+		assertFalse(g.getConnectionsSortedByNode());
+		g.sortConnectionsByNode();
+		assertTrue(g.getConnectionsSortedByNode());
+		assertTrue(g.checkConsistency());
+		for(int n = 0; n < 50; n++) {
+			int[] nodes = g.getNodeConnectingOutNodes(n);
+			for(int i = 1; i < nodes.length; i++) {
+				assertTrue(nodes[i-1] <= nodes[i]);
+			}
+		}
+		for(int n1 = 0; n1 < 50; n1++) {
+			for(int n2 = 0; n2 < 50; n2++) {
+				ArrayList<Integer> edges = g.edgesBetween(n1, n2);
+				assertEquals(size[n1][n2],edges.size());
+				assertEquals(!edges.isEmpty(),g.hasEdge(n1, n2));
+				assertEquals(edges.isEmpty() ? -1 : edges.get(0).intValue(),g.firstEdgeBetween(n1, n2));
+				for(int i = 1; i < edges.size(); i++) {
+					assertEquals(n1,g.oppositeEnd(edges.get(i), n2));
+				}
+			}
+		}
+		g.saveBuffers(null,"testSorted");
+		FastGraph g2 = FastGraph.loadBuffersGraphFactory(null,"testSorted");
+		assertTrue(g2.getConnectionsSortedByNode());
+		assertEquals(g.firstEdgeBetween(3, 7),g2.firstEdgeBetween(3, 7));
+	}
+
+	@Test
+	public void test171() throws Exception {
+		// single file container, read and mapped
+		FastGraph g = FastGraph.randomGraphFactory(100, 300, 4, false);
+		g.setName("container graph");
+		g.setCompactLabels(true);
+		g.sortConnectionsByNode();
+		File file = File.createTempFile("graph", ".fg");
+		file.deleteOnExit();
+		g.saveContainer(file.getPath());
+		assertEquals(0,file.length()%FastGraph.CONTAINER_PAGE_SIZE);
+		for(boolean mapped : new boolean[] {false, true}) {
+			FastGraph g2 = FastGraph.loadContainerGraphFactory(file.getPath(), mapped);
+			assertEquals(mapped,g2.getMapped());
+			assertEquals("container graph",g2.getName());
+			assertEquals(100,g2.getNumberOfNodes());
+			assertEquals(300,g2.getNumberOfEdges());
+			assertTrue(g2.getCompactLabels());
+			assertTrue(g2.getConnectionsSortedByNode());
+			for(int n = 0; n < 100; n++) {
+				assertEquals(g.getNodeLabel(n),g2.getNodeLabel(n));
+				assertEquals(g.getNodeWeight(n),g2.getNodeWeight(n));
+				assertTrue(Arrays.equals(g.getNodeConnectingEdges(n),g2.getNodeConnectingEdges(n)));
+			}
+			for(int e = 0; e < 300; e++) {
+				assertEquals(g.getEdgeLabel(e),g2.getEdgeLabel(e));
+				assertEquals(g.getEdgeNode1(e),g2.getEdgeNode1(e));
+				assertEquals(g.getEdgeNode2(e),g2.getEdgeNode2(e));
+			}
+			assertTrue(g2.checkConsistency());
+		}
+		file.delete();
+	}
+
+	@Rule
+	public ExpectedException thrown5 = ExpectedException.none();
+	@Test
+	public void test172() throws Exception {
+		// a changed byte in a section fails the checksum
+		FastGraph g = FastGraph.randomGraphFactory(10, 20, 5, false);
+		File file = File.createTempFile("graph", ".fg");
+		file.deleteOnExit();
+		g.saveContainer(file.getPath());
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(FastGraph.CONTAINER_PAGE_SIZE+3);
+			int b = raf.read();
+			raf.seek(FastGraph.CONTAINER_PAGE_SIZE+3);
+			raf.write(b^1);
+		}
+		thrown5.expect(IOException.class);
+		thrown5.expectMessage("Checksum failed");
+		FastGraph.loadContainerGraphFactory(file.getPath(), false);
+	}
+
+	@Rule
+	public ExpectedException thrown6 = ExpectedException.none();
+	@Test
+	public void test173() throws Exception {
+		// files that are not containers, or are from a later version, are rejected
+		FastGraph g = FastGraph.randomGraphFactory(10, 20, 5, false);
+		File file = File.createTempFile("graph", ".fg");
+		file.deleteOnExit();
+		g.saveContainer(file.getPath());
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(FastGraph.CONTAINER_VERSION_OFFSET);
+			raf.writeInt(FastGraph.CONTAINER_VERSION+1);
+		}
+		thrown6.expect(IOException.class);
+		thrown6.expectMessage("version");
+		FastGraph.loadContainerGraphFactory(file.getPath(), false);
+	}
+
+	@Test
+	public void test174() throws Exception {
+		// compressed connections read the same as connections sorted by node, in less space
+		FastGraph g = FastGraph.randomGraphFactory(200, 2000, 6, false);
+		FastGraph sorted = FastGraph.randomGraphFactory(200, 2000, 6, false);
+		sorted.sortConnectionsByNode();
+		long pairBytes = g.getSegmentedConnectionBuf().capacity();
+		g.compressConnections(true);
+		assertTrue(g.getConnectionsCompressed());
+		assertTrue(g.getCompressedEdgeIndexes());
+		assertTrue(g.getConnectionsSortedByNode());
+		assertTrue(g.getSegmentedConnectionBuf().capacity() < pairBytes/2);
+		int[] nodes = new int[g.maximumDegree()];
+		for(int n = 0; n < 200; n++) {
+			assertTrue(Arrays.equals(sorted.getNodeConnectingNodes(n),g.getNodeConnectingNodes(n)));
+			assertTrue(Arrays.equals(sorted.getNodeConnectingEdges(n),g.getNodeConnectingEdges(n)));
+			assertTrue(Arrays.equals(sorted.getNodeConnectingInNodes(n),g.getNodeConnectingInNodes(n)));
+			assertTrue(Arrays.equals(sorted.getNodeConnectingInEdges(n),g.getNodeConnectingInEdges(n)));
+			assertTrue(Arrays.equals(sorted.getNodeConnectingOutNodes(n),g.getNodeConnectingOutNodes(n)));
+			assertTrue(Arrays.equals(sorted.getNodeConnectingOutEdges(n),g.getNodeConnectingOutEdges(n)));
+			g.getNodeConnectingOutNodes(nodes, n);
+			for(int i = 0; i < g.getNodeOutDegree(n); i++) {
+				assertEquals(sorted.getNodeConnectingOutNodes(n)[i],nodes[i]);
+			}
+		}
+		for(int n1 = 0; n1 < 200; n1 += 7) {
+			for(int n2 = 0; n2 < 200; n2++) {
+				assertEquals(sorted.edgesBetween(n1, n2),g.edgesBetween(n1, n2));
+				assertEquals(sorted.firstEdgeBetween(n1, n2),g.firstEdgeBetween(n1, n2));
+				assertEquals(sorted.hasEdge(n1, n2),g.hasEdge(n1, n2));
+			}
+		}
+		assertEquals(Connected.connected(sorted),Connected.connected(g));
+		assertTrue(g.checkConsistency());
+		
+		File file = File.createTempFile("graph", ".fg");
+		file.deleteOnExit();
+		g.saveContainer(file.getPath());
+		FastGraph g2 = FastGraph.loadContainerGraphFactory(file.getPath(), true);
+		assertTrue(g2.getConnectionsCompressed());
+		assertTrue(Arrays.equals(g.getNodeConnectingEdges(5),g2.getNodeConnectingEdges(5)));
+		file.delete();
+	}
+
+	@Rule
+	public ExpectedException thrown7 = ExpectedException.none();
+	@Test
+	public void test175() throws Exception {
+		// compressed without edge indexes, nodes are still available but edges are not
+		FastGraph g = FastGraph.randomGraphFactory(100, 500, 7, true, false);
+		FastGraph withEdges = FastGraph.randomGraphFactory(100, 500, 7, true, false);
+		withEdges.compressConnections(true);
+		g.compressConnections(false);
+		assertFalse(g.getCompressedEdgeIndexes());
+		assertTrue(g.getSegmentedConnectionBuf().capacity() < withEdges.getSegmentedConnectionBuf().capacity());
+		g.saveBuffers(null,"testCompressed");
+		FastGraph g2 = FastGraph.loadBuffersGraphFactory(null,"testCompressed");
+		assertTrue(g2.getConnectionsCompressed());
+		assertFalse(g2.getCompressedEdgeIndexes());
+		for(int n = 0; n < 100; n++) {
+			assertTrue(Arrays.equals(withEdges.getNodeConnectingNodes(n),g2.getNodeConnectingNodes(n)));
+			assertTrue(Arrays.equals(withEdges.getNodeConnectingInNodes(n),g2.getNodeConnectingInNodes(n)));
+			assertEquals(withEdges.hasEdge(n, 3),g2.hasEdge(n, 3));
+		}
+		thrown7.expect(UnsupportedOperationException.class);
+		g2.getNodeConnectingEdges(0);
+	}
+
+	@Rule
+	public ExpectedException thrown8 = ExpectedException.none();
+	@Test
+	public void test176() throws Exception {
+		// changing the label storage of a mapped graph is refused before the labels are touched
+		FastGraph g1 = FastGraph.jsonStringGraphFactory(TestRunner.get4Node5Edge(),false);
+		g1.saveBuffers(null,"testMappedLabels");
+		FastGraph g2 = FastGraph.loadBuffersGraphFactory(null,"testMappedLabels",true);
+		boolean refused = false;
+		try {
+			g2.setCompactLabels(true);
+		} catch(ReadOnlyBufferException e) {
+			refused = true;
+		}
+		assertTrue(refused);
+		assertFalse(g2.getCompactLabels());
+		for(int i = 0; i < g1.getNumberOfNodes(); i++) {
+			assertEquals(g1.getNodeLabel(i),g2.getNodeLabel(i));
+		}
+		for(int i = 0; i < g1.getNumberOfEdges(); i++) {
+			assertEquals(g1.getEdgeLabel(i),g2.getEdgeLabel(i));
+		}
+		thrown8.expect(ReadOnlyBufferException.class);
+		g2.setCompactLabels(true);
+	}
+
+	@Rule
+	public ExpectedException thrown9 = ExpectedException.none();
+	@Test
+	public void test177() throws Exception {
+		// edge indexes can only be dropped from simple graphs
+		assertTrue(FastGraph.randomGraphFactory(100, 500, 7, true, false).isSimple());
+		assertTrue(FastGraph.jsonStringGraphFactory(TestRunner.get0Node0Edge(),false).isSimple());
+		FastGraph g = FastGraph.randomGraphFactory(100, 500, 7, false);
+		assertFalse(g.isSimple());
+		boolean refused = false;
+		try {
+			g.compressConnections(false);
+		} catch(IllegalArgumentException e) {
+			refused = true;
+		}
+		assertTrue(refused);
+		assertFalse(g.getConnectionsCompressed());
+		g.compressConnections(true);
+		assertTrue(g.getCompressedEdgeIndexes());
+		assertFalse(g.isSimple());
+		thrown9.expect(IllegalArgumentException.class);
+		FastGraph.randomGraphFactory(100, 500, 7, false).compressConnections(false);
+	}
+
+	@Test
+	public void test178() throws Exception {
+		// non-ASCII ids are decoded as UTF-8 for the node labels
+		FastGraph g = FastGraph.adjacencyListGraphFactory(4, 4, Launcher.startingWorkingDirectory+File.separatorChar+"testData", "testAdj5.txt", false);
+		assertEquals("Z\u00fcrich",g.getNodeLabel(0));
+		assertEquals("Gen\u00e8ve",g.getNodeLabel(1));
+		assertEquals("\u6771\u4eac",g.getNodeLabel(2));
+		assertEquals("Krak\u00f3w",g.getNodeLabel(3));
+		assertEquals(2,g.getEdgeNode1(3));
+		assertEquals(3,g.getEdgeNode2(3));
+		assertTrue(g.checkConsistency());
+	}
+
 }
\ No newline at end of file
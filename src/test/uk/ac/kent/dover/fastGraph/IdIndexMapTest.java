@@ -0,0 +1,94 @@
+package test.uk.ac.kent.dover.fastGraph;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import uk.ac.kent.dover.fastGraph.IdIndexMap;
+
+public class IdIndexMapTest {
+
+	@Test
+	public void test001() {
+		IdIndexMap map = new IdIndexMap(0);
+		assertEquals(0, map.size());
+		byte[] line = "45 76 45".getBytes();
+		assertEquals(0, map.getOrAdd(line, 0, 2));
+		assertEquals(1, map.getOrAdd(line, 3, 2));
+		assertEquals(0, map.getOrAdd(line, 6, 2));
+		assertEquals(2, map.size());
+		assertEquals("45", map.getId(0));
+		assertEquals("76", map.getId(1));
+		assertEquals(2, map.getIdLength(1));
+		assertEquals('7', map.getIdByte(1, 0));
+	}
+
+	@Test
+	public void test002() {
+		// grows well beyond the expected size, forcing rehashes and array growth
+		IdIndexMap map = new IdIndexMap(4);
+		for(int i = 0; i < 100000; i++) {
+			byte[] id = Integer.toString(i*7).getBytes();
+			assertEquals(i, map.getOrAdd(id, 0, id.length));
+		}
+		assertEquals(100000, map.size());
+		for(int i = 0; i < 100000; i += 997) {
+			byte[] id = Integer.toString(i*7).getBytes();
+			assertEquals(i, map.getOrAdd(id, 0, id.length));
+			assertEquals(Integer.toString(i*7), map.getId(i));
+		}
+		assertEquals(100000, map.size());
+	}
+
+	@Test
+	public void test003() {
+		// ids differing only in leading zeros are different ids
+		IdIndexMap map = new IdIndexMap(10);
+		byte[] a = "7".getBytes();
+		byte[] b = "007".getBytes();
+		assertEquals(0, map.getOrAdd(a, 0, a.length));
+		assertEquals(1, map.getOrAdd(b, 0, b.length));
+		assertEquals("007", map.getId(1));
+	}
+
+	@Test
+	public void test004() {
+		// ids are spread over several chunks
+		IdIndexMap map = new IdIndexMap(10);
+		byte[] id = new byte[1000];
+		int count = IdIndexMap.CHUNK_SIZE/1000*3;
+		for(int i = 0; i < count; i++) {
+			id[0] = (byte)i;
+			id[1] = (byte)(i>>8);
+			id[999] = (byte)(i>>16);
+			assertEquals(i, map.getOrAdd(id, 0, id.length));
+		}
+		id[0] = 5;
+		id[1] = 0;
+		id[999] = 0;
+		assertEquals(5, map.getOrAdd(id, 0, id.length));
+		assertEquals(count, map.size());
+		assertEquals(1000, map.getIdLength(count-1));
+	}
+
+	@Test
+	public void test005() {
+		// ids are UTF-8, so non-ASCII ids come back as they were written
+		IdIndexMap map = new IdIndexMap(10);
+		byte[] line = "Z\u00fcrich \u6771\u4eac 7".getBytes(StandardCharsets.UTF_8);
+		assertEquals(0, map.getOrAdd(line, 0, 7));
+		assertTrue(!map.isAscii());
+		assertEquals(1, map.getOrAdd(line, 8, 6));
+		assertEquals(2, map.getOrAdd(line, 15, 1));
+		assertEquals("Z\u00fcrich", map.getId(0));
+		assertEquals("\u6771\u4eac", map.getId(1));
+		assertEquals("7", map.getId(2));
+		assertEquals(6, map.getIdLength(1));
+		IdIndexMap asciiMap = new IdIndexMap(10);
+		asciiMap.getOrAdd(line, 15, 1);
+		assertTrue(asciiMap.isAscii());
+	}
+
+}
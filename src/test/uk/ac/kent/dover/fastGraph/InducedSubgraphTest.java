@@ -6,7 +6,9 @@ import java.util.Arrays;
 import java.util.LinkedList;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 
 import test.uk.ac.kent.dover.TestRunner;
 import uk.ac.kent.dover.fastGraph.FastGraph;
@@ -131,5 +133,17 @@ public class InducedSubgraphTest {
 		assertEquals(edges.toString(),Arrays.toString(new int[]{1,0,2}));
 		
 	}
+	
+	@Rule
+	public ExpectedException thrown1 = ExpectedException.none();
+	@Test
+	public void test004() throws Exception {
+		//the subgraph is a list of edges, so the edge indexes are needed
+		g = FastGraph.randomGraphFactory(20, 40, 1, true, false);
+		g.compressConnections(false);
+		InducedSubgraph is = new InducedSubgraph(g);
+		thrown1.expect(UnsupportedOperationException.class);
+		is.createInducedSubgraph(nodes, edges, 4);
+	}
 
 }
@@ -0,0 +1,89 @@
+package test.uk.ac.kent.dover.fastGraph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import uk.ac.kent.dover.fastGraph.EnumerateSubgraphNeighbourhood;
+import uk.ac.kent.dover.fastGraph.ExactIsomorphism;
+import uk.ac.kent.dover.fastGraph.FastGraph;
+import uk.ac.kent.dover.fastGraph.FastGraphException;
+import uk.ac.kent.dover.fastGraph.IsomorphismStatistics;
+import uk.ac.kent.dover.fastGraph.IsomorphismStatistics.Outcome;
+
+public class IsomorphismStatisticsTest {
+
+	@Test
+	public void test001() throws Exception {
+		IsomorphismStatistics stats = new IsomorphismStatistics();
+		stats.record(Outcome.NODE_COUNT, 100);
+		stats.record(Outcome.NODE_COUNT, 200);
+		stats.record(Outcome.SUCCEED, 5000);
+		stats.recordBruteForce(3000);
+		IsomorphismStatistics.Snapshot s = stats.snapshot();
+		assertEquals(2, s.getCount(Outcome.NODE_COUNT));
+		assertEquals(1, s.getCount(Outcome.SUCCEED));
+		assertEquals(0, s.getCount(Outcome.EIGENVALUES));
+		assertEquals(3, s.getTests());
+		assertEquals(5300, s.getTotalNanos());
+		assertEquals(1, s.getBruteForceTests());
+		assertEquals(3000, s.getBruteForceNanos());
+		assertEquals(1, s.getHistogram()[6]);
+		assertEquals(1, s.getHistogram()[7]);
+		assertEquals(1, s.getHistogram()[12]);
+		assertEquals(255, s.getPercentile(0.5));
+		assertEquals(8191, s.getPercentile(1.0));
+
+		stats.reset();
+		assertEquals(3, s.getTests()); // a snapshot does not change
+		assertEquals(0, stats.snapshot().getTests());
+		assertEquals(0, stats.snapshot().getPercentile(0.5));
+	}
+
+	@Test
+	public void test002() throws Exception {
+		assertEquals(0, IsomorphismStatistics.bucket(0));
+		assertEquals(0, IsomorphismStatistics.bucket(1));
+		assertEquals(1, IsomorphismStatistics.bucket(2));
+		assertEquals(1, IsomorphismStatistics.bucket(3));
+		assertEquals(10, IsomorphismStatistics.bucket(1024));
+		assertEquals(62, IsomorphismStatistics.bucket(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void test003() throws Exception {
+		// threads each with their own ExactIsomorphism record every test in the same statistics
+		FastGraph target = FastGraph.randomGraphFactory(200,600,7,true,false);
+		ArrayList<FastGraph> subs = new ArrayList<FastGraph>(new EnumerateSubgraphNeighbourhood(target).enumerateSubgraphs(5,1,20));
+		IsomorphismStatistics stats = new IsomorphismStatistics();
+		long isomorphic = IntStream.range(0, 100).parallel().mapToLong(i -> {
+			try {
+				ExactIsomorphism ei = new ExactIsomorphism(subs.get(i));
+				ei.setStatistics(stats);
+				long found = 0;
+				for(int j = 0; j < 100; j++) {
+					if(ei.isomorphic(subs.get(j))) {
+						found++;
+					}
+				}
+				return found;
+			} catch(FastGraphException e) {
+				throw new IllegalStateException(e);
+			}
+		}).sum();
+		IsomorphismStatistics.Snapshot s = stats.snapshot();
+		assertEquals(10000, s.getTests());
+		assertEquals(isomorphic, s.getCount(Outcome.SUCCEED));
+		// each graph tested against itself succeeds without a search
+		assertEquals(s.getCount(Outcome.SUCCEED)+s.getCount(Outcome.BRUTE_FORCE)-100, s.getBruteForceTests());
+		long histogramTotal = 0;
+		for(long count : s.getHistogram()) {
+			histogramTotal += count;
+		}
+		assertEquals(10000, histogramTotal);
+	}
+
+}
@@ -0,0 +1,171 @@
+package test.uk.ac.kent.dover.fastGraph;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import test.uk.ac.kent.dover.TestRunner;
+import uk.ac.kent.dover.fastGraph.FastGraph;
+import uk.ac.kent.dover.fastGraph.NeighbourCursor;
+
+public class NeighbourCursorTest {
+
+	@Test
+	public void test001() {
+		// same order as the array methods
+		FastGraph g = FastGraph.jsonStringGraphFactory(TestRunner.get5Node7EdgeA(), false);
+		NeighbourCursor cursor = new NeighbourCursor(g);
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			int[] nodes = g.getNodeConnectingNodes(n);
+			int[] edges = g.getNodeConnectingEdges(n);
+			cursor.setAll(n);
+			assertEquals(nodes.length, cursor.getRemaining());
+			for(int i = 0; i < nodes.length; i++) {
+				assertTrue(cursor.next());
+				assertEquals(nodes[i], cursor.getNode());
+				assertEquals(edges[i], cursor.getEdge());
+			}
+			assertFalse(cursor.next());
+			assertEquals(0, cursor.getRemaining());
+		}
+	}
+
+	@Test
+	public void test002() {
+		FastGraph g = FastGraph.jsonStringGraphFactory(TestRunner.get5Node7EdgeA(), false);
+		NeighbourCursor cursor = new NeighbourCursor(g);
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			int[] inNodes = g.getNodeConnectingInNodes(n);
+			int[] inEdges = g.getNodeConnectingInEdges(n);
+			cursor.setIn(n);
+			for(int i = 0; i < inNodes.length; i++) {
+				assertTrue(cursor.next());
+				assertEquals(inNodes[i], cursor.getNode());
+				assertEquals(inEdges[i], cursor.getEdge());
+			}
+			assertFalse(cursor.next());
+			int[] outNodes = g.getNodeConnectingOutNodes(n);
+			int[] outEdges = g.getNodeConnectingOutEdges(n);
+			cursor.setOut(n);
+			for(int i = 0; i < outNodes.length; i++) {
+				assertTrue(cursor.next());
+				assertEquals(outNodes[i], cursor.getNode());
+				assertEquals(outEdges[i], cursor.getEdge());
+			}
+			assertFalse(cursor.next());
+		}
+	}
+
+	@Test
+	public void test003() {
+		FastGraph g = FastGraph.jsonStringGraphFactory(TestRunner.get5Node7EdgeA(), false);
+		NeighbourCursor cursor = new NeighbourCursor(g);
+		int[] nodes = g.getNodeConnectingNodes(0);
+		cursor.setAll(0);
+		cursor.skip(nodes.length-1);
+		assertEquals(1, cursor.getRemaining());
+		assertTrue(cursor.next());
+		assertEquals(nodes[nodes.length-1], cursor.getNode());
+		cursor.setAll(0);
+		cursor.skip(nodes.length+5);
+		assertFalse(cursor.next());
+	}
+
+	@Test
+	public void test004() throws Exception {
+		// iterating with a cursor creates no objects, unlike the array methods
+		Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled());
+		long thread = Thread.currentThread().getId();
+
+		FastGraph g = FastGraph.randomGraphFactory(2000, 20000, 1, false);
+		NeighbourCursor cursor = new NeighbourCursor(g);
+		long total = sumWithCursor(g, cursor);
+		assertEquals(total, sumWithArrays(g));
+
+		long before = bean.getThreadAllocatedBytes(thread);
+		long cursorTotal = sumWithCursor(g, cursor);
+		long cursorBytes = bean.getThreadAllocatedBytes(thread)-before;
+
+		before = bean.getThreadAllocatedBytes(thread);
+		long arrayTotal = sumWithArrays(g);
+		long arrayBytes = bean.getThreadAllocatedBytes(thread)-before;
+
+		assertEquals(total, cursorTotal);
+		assertEquals(total, arrayTotal);
+		assertTrue(arrayBytes > 2000*16);
+		assertTrue("cursor allocated "+cursorBytes+" bytes", cursorBytes < 1024);
+	}
+
+	@Test
+	public void test005() throws Exception {
+		// compressed connections, with and without edge indexes
+		for(boolean keepEdges : new boolean[] {true, false}) {
+			FastGraph g = FastGraph.randomGraphFactory(100, 600, 2, true, false);
+			g.compressConnections(keepEdges);
+			NeighbourCursor cursor = new NeighbourCursor(g);
+			for(int n = 0; n < g.getNumberOfNodes(); n++) {
+				int[] nodes = g.getNodeConnectingNodes(n);
+				cursor.setAll(n);
+				for(int i = 0; i < nodes.length; i++) {
+					assertTrue(cursor.next());
+					assertEquals(nodes[i], cursor.getNode());
+					if(keepEdges) {
+						assertEquals(g.getNodeConnectingEdges(n)[i], cursor.getEdge());
+					}
+				}
+				assertFalse(cursor.next());
+				int[] outNodes = g.getNodeConnectingOutNodes(n);
+				cursor.setOut(n);
+				if(outNodes.length > 1) {
+					cursor.skip(outNodes.length-1);
+					assertTrue(cursor.next());
+					assertEquals(outNodes[outNodes.length-1], cursor.getNode());
+				}
+			}
+		}
+	}
+
+	@Rule
+	public ExpectedException thrown1 = ExpectedException.none();
+	@Test
+	public void test006() throws Exception {
+		FastGraph g = FastGraph.randomGraphFactory(100, 600, 2, true, false);
+		g.compressConnections(false);
+		NeighbourCursor cursor = new NeighbourCursor(g);
+		cursor.setAll(0);
+		assertTrue(cursor.next());
+		thrown1.expect(UnsupportedOperationException.class);
+		cursor.getEdge();
+	}
+
+	private static long sumWithCursor(FastGraph g, NeighbourCursor cursor) {
+		long sum = 0;
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			cursor.setAll(n);
+			while(cursor.next()) {
+				sum += cursor.getNode()+cursor.getEdge();
+			}
+		}
+		return sum;
+	}
+
+	private static long sumWithArrays(FastGraph g) {
+		long sum = 0;
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			int[] nodes = g.getNodeConnectingNodes(n);
+			int[] edges = g.getNodeConnectingEdges(n);
+			for(int i = 0; i < nodes.length; i++) {
+				sum += nodes[i]+edges[i];
+			}
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,159 @@
+package test.uk.ac.kent.dover.fastGraph;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import org.junit.Test;
+
+import uk.ac.kent.dover.fastGraph.SegmentedByteBuffer;
+
+public class SegmentedByteBufferTest {
+
+	@Test
+	public void test001() {
+		SegmentedByteBuffer buf = SegmentedByteBuffer.allocate(100, 8, false);
+		assertEquals(100, buf.capacity());
+		assertEquals(1, buf.getSegmentCount());
+		assertFalse(buf.isDirect());
+		buf.putInt(96, 123456);
+		assertEquals(123456, buf.getInt(96));
+		assertEquals(123456, buf.getSegment(0).getInt(96));
+	}
+
+	@Test
+	public void test002() {
+		// 20 byte records, segments of at most 50 bytes hold two records each
+		SegmentedByteBuffer buf = SegmentedByteBuffer.allocate(200, 20, 50, true);
+		assertEquals(200, buf.capacity());
+		assertEquals(5, buf.getSegmentCount());
+		assertTrue(buf.isDirect());
+		assertEquals(40, buf.getSegment(0).capacity());
+		for(int i = 0; i < 10; i++) {
+			buf.putInt(i*20L, i);
+			buf.putShort(i*20L+4, (short)(i*2));
+			buf.putChar(i*20L+6, (char)('a'+i));
+			buf.put(i*20L+19, (byte)(i*3));
+		}
+		for(int i = 0; i < 10; i++) {
+			assertEquals(i, buf.getInt(i*20L));
+			assertEquals(i*2, buf.getShort(i*20L+4));
+			assertEquals('a'+i, buf.getChar(i*20L+6));
+			assertEquals(i*3, buf.get(i*20L+19));
+		}
+		assertEquals(9, buf.getSegment(4).getInt(20));
+	}
+
+	@Test
+	public void test003() {
+		SegmentedByteBuffer buf = SegmentedByteBuffer.allocate(100, 10, 30, false);
+		assertEquals(4, buf.getSegmentCount());
+		assertEquals(10, buf.getSegment(3).capacity());
+		buf.putInt(95, 7);
+		SegmentedByteBuffer copy = buf.copy();
+		assertEquals(4, copy.getSegmentCount());
+		assertEquals(7, copy.getInt(95));
+		copy.putInt(95, 8);
+		assertEquals(7, buf.getInt(95));
+		assertEquals(8, copy.getInt(95));
+	}
+
+	@Test
+	public void test004() throws IOException {
+		SegmentedByteBuffer buf = SegmentedByteBuffer.allocate(100, 8, 16, false);
+		for(int i = 0; i < 25; i++) {
+			buf.putInt(i*4L, i*i);
+		}
+		File file = File.createTempFile("segmented", ".buf");
+		file.deleteOnExit();
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			buf.write(raf.getChannel());
+		}
+		assertEquals(100, file.length());
+
+		SegmentedByteBuffer read = SegmentedByteBuffer.allocate(100, 8, 24, true);
+		try(RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			read.read(raf.getChannel());
+		}
+		SegmentedByteBuffer mapped;
+		try(RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			mapped = SegmentedByteBuffer.map(channel, channel.size(), 8);
+		}
+		for(int i = 0; i < 25; i++) {
+			assertEquals(i*i, read.getInt(i*4L));
+			assertEquals(i*i, mapped.getInt(i*4L));
+		}
+		file.delete();
+	}
+
+	@Test(expected=IOException.class)
+	public void test005() throws IOException {
+		File file = File.createTempFile("segmented", ".buf");
+		file.deleteOnExit();
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.write(new byte[10]);
+		}
+		SegmentedByteBuffer buf = SegmentedByteBuffer.allocate(20, 4, false);
+		try(RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			buf.read(raf.getChannel());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void test006() {
+		ByteBuffer bb = ByteBuffer.allocate(12);
+		SegmentedByteBuffer buf = SegmentedByteBuffer.wrap(bb);
+		assertEquals(12, buf.capacity());
+		buf.putInt(8, 42);
+		assertEquals(42, bb.getInt(8));
+		assertSame(bb, buf.getSegment(0));
+	}
+
+	@Test
+	public void test007() {
+		// checksum and views do not depend on the segment structure
+		SegmentedByteBuffer buf = SegmentedByteBuffer.allocate(40, 4, 8, false);
+		byte[] bytes = new byte[40];
+		for(int i = 0; i < 40; i++) {
+			buf.put(i, (byte)(i*3));
+			bytes[i] = (byte)(i*3);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		assertEquals((int)crc.getValue(), buf.checksum());
+		ByteBuffer[] views = buf.getSegmentViews();
+		assertEquals(5, views.length);
+		views[1].get();
+		assertEquals(1, views[1].position());
+		assertEquals(0, buf.getSegment(1).position());
+		assertEquals((int)crc.getValue(), buf.checksum());
+	}
+
+	@Test
+	public void test008() throws IOException {
+		File file = File.createTempFile("segmented", ".buf");
+		file.deleteOnExit();
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.write(new byte[100]);
+			raf.seek(64);
+			raf.writeInt(7);
+			raf.writeInt(9);
+		}
+		try(RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			SegmentedByteBuffer buf = SegmentedByteBuffer.map(raf.getChannel(), 64, 8, 4);
+			assertEquals(8, buf.capacity());
+			assertEquals(7, buf.getInt(0));
+			assertEquals(9, buf.getInt(4));
+		}
+		file.delete();
+	}
+
+}
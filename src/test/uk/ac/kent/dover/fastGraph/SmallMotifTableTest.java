@@ -0,0 +1,64 @@
+package test.uk.ac.kent.dover.fastGraph;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import uk.ac.kent.dover.fastGraph.EnumerateSubgraphNeighbourhood;
+import uk.ac.kent.dover.fastGraph.FastGraph;
+import uk.ac.kent.dover.fastGraph.SmallMotifTable;
+import uk.ac.kent.dover.fastGraph.isomorphism.CanonicalForm;
+
+public class SmallMotifTableTest {
+
+	@Test
+	public void test001() {
+		// the number of simple undirected graphs, and of connected ones
+		int[] all = {1, 1, 2, 4, 11, 34};
+		int[] connected = {1, 1, 1, 2, 6, 21};
+		for(int k = 0; k <= SmallMotifTable.MAX_SIZE; k++) {
+			assertEquals(all[k], SmallMotifTable.getNumberOfClasses(k));
+			HashSet<Integer> connectedClasses = new HashSet<Integer>();
+			for(int mask = 0; mask < 1<<(k*(k-1)/2); mask++) {
+				if(SmallMotifTable.isConnected(k, mask)) {
+					connectedClasses.add(SmallMotifTable.getClassId(k, mask));
+				}
+			}
+			assertEquals(connected[k], connectedClasses.size());
+		}
+		assertEquals("n3a0.0.0e011010", SmallMotifTable.getClassCode(3, SmallMotifTable.getClassId(3, 7)));
+	}
+
+	@Test
+	public void test002() throws Exception {
+		// the table gives the same codes as the subgraphs, with and without ages
+		for(int seed = 0; seed < 4; seed++) {
+			FastGraph g = FastGraph.randomGraphFactory(40, 120, seed, true, false);
+			Random r = new Random(seed);
+			if(seed % 2 == 1) {
+				for(int n = 0; n < g.getNumberOfNodes(); n++) {
+					g.setNodeAge(n, (byte)r.nextInt(3));
+				}
+			}
+			for(int k = 3; k <= SmallMotifTable.MAX_SIZE; k++) {
+				HashSet<FastGraph> subgraphs = new EnumerateSubgraphNeighbourhood(g).enumerateSubgraphs(k, 2, 10);
+				assertFalse(subgraphs.isEmpty());
+				for(FastGraph subgraph : subgraphs) {
+					int mask = 0;
+					for(int e = 0; e < subgraph.getNumberOfEdges(); e++) {
+						mask |= 1<<SmallMotifTable.pairBit(subgraph.getEdgeNode1(e), subgraph.getEdgeNode2(e));
+					}
+					int[] ages = new int[k];
+					for(int n = 0; n < k; n++) {
+						ages[n] = subgraph.getNodeAge(n)-subgraph.findMinimumNodeAge();
+					}
+					assertEquals(new CanonicalForm(subgraph).getCode(), SmallMotifTable.getCode(k, mask, ages));
+				}
+			}
+		}
+	}
+
+}
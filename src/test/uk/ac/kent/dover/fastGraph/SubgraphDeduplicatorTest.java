@@ -0,0 +1,56 @@
+package test.uk.ac.kent.dover.fastGraph;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import uk.ac.kent.dover.fastGraph.EnumerateSubgraphNeighbourhood;
+import uk.ac.kent.dover.fastGraph.FastGraph;
+import uk.ac.kent.dover.fastGraph.SubgraphDeduplicator;
+
+public class SubgraphDeduplicatorTest {
+
+	@Test
+	public void test001() {
+		// the fingerprint does not depend on the order of the nodes
+		assertEquals(SubgraphDeduplicator.fingerprint(new int[] {3, 1, 2}, 3), SubgraphDeduplicator.fingerprint(new int[] {1, 2, 3}, 3));
+		assertNotEquals(SubgraphDeduplicator.fingerprint(new int[] {1, 2, 3}, 3), SubgraphDeduplicator.fingerprint(new int[] {1, 2, 4}, 3));
+		assertNotEquals(SubgraphDeduplicator.fingerprint(new int[] {1, 2, 3}, 3), SubgraphDeduplicator.fingerprint(new int[] {1, 2, 3}, 2));
+
+		SubgraphDeduplicator dedup = new SubgraphDeduplicator();
+		for(int i = 0; i < 100000; i++) {
+			assertTrue(dedup.add(SubgraphDeduplicator.fingerprint(new int[] {i, i+1}, 2)));
+		}
+		for(int i = 0; i < 100000; i += 7) {
+			assertFalse(dedup.add(SubgraphDeduplicator.fingerprint(new int[] {i+1, i}, 2)));
+		}
+		assertEquals(100000, dedup.getUnique());
+		assertEquals(100000/7+1, dedup.getDuplicates());
+	}
+
+	@Test
+	public void test002() throws Exception {
+		// only the first sample of each node set is passed on
+		FastGraph g = FastGraph.randomGraphFactory(200, 500, 2, false);
+		SubgraphDeduplicator dedup = new SubgraphDeduplicator();
+		HashSet<String> all = new HashSet<String>();
+		HashSet<String> passed = new HashSet<String>();
+		long found = new EnumerateSubgraphNeighbourhood(g).enumerateSubgraphs(3, 5, 10, dedup.filter(view -> {
+			int[] nodes = view.copyNodes();
+			Arrays.sort(nodes);
+			assertTrue(passed.add(Arrays.toString(nodes)));
+		}));
+		new EnumerateSubgraphNeighbourhood(g).enumerateSubgraphs(3, 5, 10, view -> {
+			int[] nodes = view.copyNodes();
+			Arrays.sort(nodes);
+			all.add(Arrays.toString(nodes));
+		});
+		assertEquals(all, passed);
+		assertEquals(found, dedup.getUnique()+dedup.getDuplicates());
+		assertTrue(dedup.getDuplicates() > 0);
+	}
+
+}
@@ -0,0 +1,85 @@
+package test.uk.ac.kent.dover.fastGraph;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import uk.ac.kent.dover.fastGraph.EnumerateSubgraphNeighbourhood;
+import uk.ac.kent.dover.fastGraph.EnumerateSubgraphRandom;
+import uk.ac.kent.dover.fastGraph.FastGraph;
+import uk.ac.kent.dover.fastGraph.SubgraphPipeline;
+
+public class SubgraphPipelineTest {
+
+	@Test
+	public void test001() throws Exception {
+		// the consumer gets the same subgraphs in the same order as a direct callback
+		FastGraph g = FastGraph.randomGraphFactory(500, 1500, 4, false);
+		ArrayList<String> direct = new ArrayList<String>();
+		long found = new EnumerateSubgraphNeighbourhood(g).enumerateSubgraphs(4, 3, 10, view -> {
+			direct.add(Arrays.toString(view.copyNodes())+view.getNumberOfEdges());
+		});
+		assertEquals(direct.size(), found);
+		assertEquals(found, new EnumerateSubgraphNeighbourhood(g).enumerateSubgraphs(4, 3, 10).size());
+
+		ArrayList<String> piped = new ArrayList<String>();
+		try(SubgraphPipeline pipeline = new SubgraphPipeline(g, 4, 8, view -> {
+			piped.add(Arrays.toString(view.copyNodes())+view.getNumberOfEdges());
+		})) {
+			new EnumerateSubgraphNeighbourhood(g).enumerateSubgraphs(4, 3, 10, pipeline);
+		}
+		assertEquals(direct, piped);
+	}
+
+	@Test
+	public void test002() throws Exception {
+		FastGraph g = FastGraph.randomGraphFactory(100, 400, 5, false);
+		ArrayList<Integer> sizes = new ArrayList<Integer>();
+		new EnumerateSubgraphRandom(g).randomSampleSubgraph(3, 20, view -> sizes.add(view.getNumberOfNodes()));
+		assertEquals(20, sizes.size());
+		assertEquals(20, new EnumerateSubgraphRandom(g).randomSampleSubgraph(3, 20).size());
+	}
+
+	@Rule
+	public ExpectedException thrown1 = ExpectedException.none();
+	@Test
+	public void test003() throws Exception {
+		// a failure of the consumer stops the enumerator
+		FastGraph g = FastGraph.randomGraphFactory(500, 1500, 4, false);
+		thrown1.expect(ArithmeticException.class);
+		try(SubgraphPipeline pipeline = new SubgraphPipeline(g, 3, 2, view -> {
+			throw new ArithmeticException("consumer failed");
+		})) {
+			new EnumerateSubgraphNeighbourhood(g).enumerateSubgraphs(3, 5, 10, pipeline);
+		}
+	}
+
+	@Rule
+	public ExpectedException thrown2 = ExpectedException.none();
+	@Test
+	public void test004() throws Exception {
+		// without edge indexes the views give the same nodes and codes, but FastGraphs cannot be built
+		FastGraph withEdges = FastGraph.randomGraphFactory(500, 1500, 4, true, false);
+		withEdges.compressConnections(true);
+		FastGraph g = FastGraph.randomGraphFactory(500, 1500, 4, true, false);
+		g.compressConnections(false);
+		ArrayList<String> expected = new ArrayList<String>();
+		new EnumerateSubgraphNeighbourhood(withEdges).enumerateSubgraphs(4, 3, 10, view -> {
+			expected.add(Arrays.toString(view.copyNodes())+view.getCode());
+		});
+		ArrayList<String> found = new ArrayList<String>();
+		new EnumerateSubgraphNeighbourhood(g).enumerateSubgraphs(4, 3, 10, view -> {
+			found.add(Arrays.toString(view.copyNodes())+view.getCode());
+		});
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, found);
+		thrown2.expect(UnsupportedOperationException.class);
+		new EnumerateSubgraphNeighbourhood(g).enumerateSubgraphs(4, 3, 10);
+	}
+
+}
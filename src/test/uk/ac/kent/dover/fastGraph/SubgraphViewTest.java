@@ -0,0 +1,104 @@
+package test.uk.ac.kent.dover.fastGraph;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import test.uk.ac.kent.dover.TestRunner;
+import uk.ac.kent.dover.fastGraph.Connected;
+import uk.ac.kent.dover.fastGraph.EnumerateSubgraphNeighbourhood;
+import uk.ac.kent.dover.fastGraph.FastGraph;
+import uk.ac.kent.dover.fastGraph.SubgraphView;
+import uk.ac.kent.dover.fastGraph.isomorphism.CanonicalForm;
+
+public class SubgraphViewTest {
+
+	@Test
+	public void test001() {
+		FastGraph g = FastGraph.jsonStringGraphFactory(TestRunner.get5Node7EdgeA(), false);
+		SubgraphView view = new SubgraphView(g, 3);
+		assertTrue(view.addNode(1));
+		assertTrue(view.addNode(2));
+		assertFalse(view.addNode(1));
+		assertTrue(view.addNode(3));
+		view.induce();
+		assertEquals(3, view.getNumberOfNodes());
+		assertEquals(3, view.getNumberOfEdges());
+		assertEquals(7, view.getMask());
+		assertEquals(1, view.getMultiplicity(0, 2));
+		assertTrue(view.isConnected());
+
+		FastGraph sub = view.toFastGraph();
+		assertEquals(3, sub.getNumberOfNodes());
+		assertEquals(3, sub.getNumberOfEdges());
+		assertEquals("node label 2", sub.getNodeLabel(1));
+		assertEquals(new CanonicalForm(sub).getCode(), view.getCode());
+
+		// the view is reused for the next subgraph
+		view.clear();
+		view.addNode(0);
+		view.addNode(3);
+		view.addNode(4);
+		view.induce();
+		assertEquals(1, view.getNumberOfEdges());
+		assertEquals(6, view.getEdge(0));
+		assertEquals(4, view.getMask());
+		assertFalse(view.isConnected());
+		assertEquals(new CanonicalForm(view.toFastGraph()).getCode(), view.getCode());
+	}
+
+	@Rule
+	public ExpectedException thrown1 = ExpectedException.none();
+	@Test
+	public void test002() {
+		FastGraph g = FastGraph.jsonStringGraphFactory(TestRunner.get5Node7EdgeA(), false);
+		SubgraphView view = new SubgraphView(g, 2);
+		view.addNode(0);
+		view.addNode(1);
+		thrown1.expect(IllegalStateException.class);
+		view.addNode(2);
+	}
+
+	@Rule
+	public ExpectedException thrown2 = ExpectedException.none();
+	@Test
+	public void test003() {
+		FastGraph g = FastGraph.jsonStringGraphFactory(TestRunner.get5Node7EdgeA(), false);
+		SubgraphView view = new SubgraphView(g, 2);
+		view.addNode(0);
+		thrown2.expect(IllegalStateException.class);
+		view.getCode();
+	}
+
+	@Test
+	public void test004() throws Exception {
+		// sampled views give the same codes and connectivity as the subgraphs built from them,
+		// including parallel and self sourcing edges, and subgraphs too big for the table
+		for(int seed = 0; seed < 4; seed++) {
+			FastGraph g = FastGraph.randomGraphFactory(30, 120, seed, false, false);
+			Random r = new Random(seed);
+			for(int n = 0; n < g.getNumberOfNodes(); n++) {
+				g.setNodeAge(n, (byte)r.nextInt(2));
+			}
+			EnumerateSubgraphNeighbourhood enumerator = new EnumerateSubgraphNeighbourhood(g);
+			for(int k = 2; k <= 7; k++) {
+				SubgraphView view = new SubgraphView(g, k);
+				for(int n = 0; n < g.getNumberOfNodes(); n++) {
+					if(!enumerator.sampleNeighbourhood(k, 10, n, r, view)) {
+						continue;
+					}
+					FastGraph sub = view.toFastGraph();
+					assertEquals(k, sub.getNumberOfNodes());
+					assertTrue(view.isConnected());
+					assertTrue(Connected.connected(sub));
+					assertEquals(new CanonicalForm(sub).getCode(), view.getCode());
+				}
+			}
+		}
+	}
+
+}
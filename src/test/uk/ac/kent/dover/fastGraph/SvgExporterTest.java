@@ -0,0 +1,96 @@
+package test.uk.ac.kent.dover.fastGraph;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import uk.ac.kent.dover.fastGraph.FastGraph;
+import uk.ac.kent.dover.fastGraph.FastGraphEdgeType;
+import uk.ac.kent.dover.fastGraph.SvgExporter;
+
+public class SvgExporterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void test001() throws Exception {
+		// graphs are saved with and without layout, without a display
+		FastGraph g = FastGraph.randomGraphFactory(6, 8, 1, false);
+		File laidOut = new File(folder.getRoot(), "a"+File.separatorChar+"motif.svg");
+		File random = new File(folder.getRoot(), "b"+File.separatorChar+"motif.svg");
+		SvgExporter.saveSVG(g, "laid out", laidOut, true);
+		SvgExporter.saveSVG(g, "random", random, false);
+		assertTrue(new String(Files.readAllBytes(laidOut.toPath())).startsWith("<svg"));
+		assertTrue(new String(Files.readAllBytes(random.toPath())).startsWith("<svg"));
+	}
+
+	@Test
+	public void test002() throws Exception {
+		// every queued graph is saved by close, with more graphs than fit in the queue
+		FastGraph g = FastGraph.randomGraphFactory(5, 6, 2, false);
+		SvgExporter exporter = new SvgExporter(3, 2, false);
+		for(int i = 0; i < 40; i++) {
+			exporter.export(g, "graph "+i, new File(folder.getRoot(), i+File.separatorChar+"subgraph.svg"));
+		}
+		exporter.close();
+		assertEquals(40, exporter.getExported());
+		for(int i = 0; i < 40; i++) {
+			assertTrue(new File(folder.getRoot(), i+File.separatorChar+"subgraph.svg").exists());
+		}
+	}
+
+	@Rule
+	public ExpectedException thrown1 = ExpectedException.none();
+	@Test
+	public void test003() throws Exception {
+		// a file that cannot be written is reported by close
+		FastGraph g = FastGraph.randomGraphFactory(5, 6, 3, false);
+		File notADirectory = folder.newFile("file");
+		thrown1.expect(IOException.class);
+		try(SvgExporter exporter = new SvgExporter(false)) {
+			exporter.export(g, "graph", new File(notADirectory, "motif.svg"));
+		}
+	}
+
+	@Test
+	public void test004() throws Exception {
+		// several threads export graphs with time edges through one exporter
+		SvgExporter exporter = new SvgExporter(4, 2, false);
+		Thread[] threads = new Thread[4];
+		Exception[] failures = new Exception[threads.length];
+		for(int t = 0; t < threads.length; t++) {
+			final int thread = t;
+			threads[t] = new Thread(() -> {
+				try {
+					for(int i = 0; i < 10; i++) {
+						FastGraph g = FastGraph.randomGraphFactory(6, 8, thread*10+i, false);
+						g.setEdgeType(0, FastGraphEdgeType.TIME.getValue());
+						g.setNodeAge(0, (byte)i);
+						exporter.export(g, "graph", new File(folder.getRoot(), thread+"-"+i+File.separatorChar+"motif.svg"));
+					}
+				} catch(Exception e) {
+					failures[thread] = e;
+				}
+			});
+			threads[t].start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		exporter.close();
+		for(Exception e : failures) {
+			assertNull(e);
+		}
+		assertEquals(40, exporter.getExported());
+		assertSame(FastGraph.getTimeEdgeType(), FastGraph.getTimeEdgeType());
+	}
+
+}
@@ -14,6 +14,7 @@ import Jama.Matrix;
 public class AdjacencyMatrix {
 	
 	FastGraph g; //the FastGraph
+	private NeighbourCursor cursor; //reused for every node
 	
 	/**
 	 * Constructor.
@@ -22,6 +23,7 @@ public class AdjacencyMatrix {
 	 */
 	public AdjacencyMatrix(FastGraph g) {
 		this.g = g;
+		cursor = new NeighbourCursor(g);
 	}
 
 	
@@ -61,8 +63,9 @@ public class AdjacencyMatrix {
 		int[][] matrix = new int[g.getNumberOfNodes()][g.getNumberOfNodes()]; //create an 2D array that has the dimensions of the current graph 
 		
 		for (int n = 0; n < g.getNumberOfNodes(); n++) {
-			int[] connectingNodeIndexes = g.getNodeConnectingOutNodes(n);
-			for (int i : connectingNodeIndexes) {
+			cursor.setOut(n);
+			while (cursor.next()) {
+				int i = cursor.getNode();
 				matrix[n][i]++;
 				matrix[i][n]++;
 			}			
@@ -82,8 +85,9 @@ public class AdjacencyMatrix {
 		
 		boolean[][] matrix = new boolean[g.getNumberOfNodes()][g.getNumberOfNodes()]; //create an 2D array that has the dimensions of the current graph 
 		for (int n = 0; n < g.getNumberOfNodes(); n++) {
-			int[] connectingNodeIndexes = g.getNodeConnectingOutNodes(n);
-			for (int i : connectingNodeIndexes) {
+			cursor.setOut(n);
+			while (cursor.next()) {
+				int i = cursor.getNode();
 				matrix[n][i] = true;
 				matrix[i][n] = true;
 			}			
@@ -104,8 +108,9 @@ public class AdjacencyMatrix {
 		int[][] matrix = new int[g.getNumberOfNodes()][g.getNumberOfNodes()]; //create an 2D array that has the dimensions of the current graph 
 		
 		for (int n = 0; n < g.getNumberOfNodes(); n++) {
-			int[] connectingNodeIndexes = g.getNodeConnectingOutNodes(n);
-			for (int i : connectingNodeIndexes) {
+			cursor.setOut(n);
+			while (cursor.next()) {
+				int i = cursor.getNode();
 				matrix[n][i]++;
 			}			
 		}		
@@ -125,8 +130,9 @@ public class AdjacencyMatrix {
 		boolean[][] matrix = new boolean[g.getNumberOfNodes()][g.getNumberOfNodes()]; //create an 2D array that has the dimensions of the current graph 
 		
 		for (int n = 0; n < g.getNumberOfNodes(); n++) {
-			int[] connectingNodeIndexes = g.getNodeConnectingOutNodes(n);
-			for (int i : connectingNodeIndexes) {
+			cursor.setOut(n);
+			while (cursor.next()) {
+				int i = cursor.getNode();
 				matrix[n][i] = true;
 			}			
 		}		
@@ -3,8 +3,8 @@ package uk.ac.kent.dover.fastGraph;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Random;
 
@@ -24,8 +24,11 @@ import uk.ac.kent.dover.fastGraph.comparators.SimpleNodeLabelComparator;
  */
 public class ApproximateSubgraphIsomorphism extends SubgraphIsomorphism {
 
+	public static final int PIPELINE_QUEUE_SIZE = 1024; // subgraphs waiting to be tested before the enumerator blocks
+
 	private FastGraph target, pattern;
 	private int patternNodes, subgraphsPerNode;
+	private int count; // the number of matches found, only changed by the thread testing subgraphs
 	private HashMap<String,Integer> uniqueSubgraphs = new HashMap<String,Integer>();
 	private EdgeComparator ec;
 	private NodeComparator nc;
@@ -82,25 +85,33 @@ public class ApproximateSubgraphIsomorphism extends SubgraphIsomorphism {
 		mainDir.mkdirs(); //make directories if needed
 		
 		Random r = new Random(target.getNodeBuf().getLong(0));
-		int count = 0;
+		count = 0;
 		long time = Debugger.createTime();
 		
-		for (int i = 0; i < target.getNumberOfNodes(); i++) {
-			if(i % 5000 == 0) {
-				Debugger.outputTime("Completed node: " + i + " Found subs: "+count+" Unique subs: " + uniqueSubgraphs.size(),time);
+		//subgraphs are tested on another thread as they are generated, in the order generated,
+		//and the matches are drawn on other threads again
+		EnumerateSubgraphNeighbourhood esn = new EnumerateSubgraphNeighbourhood(target);
+		try(SvgExporter exporter = new SvgExporter(exportLayout)) {
+			SubgraphCallback tester = view -> {
+				try {
+					testSubgraph(view.toFastGraph(), mainDir, exporter);
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			};
+			//the pipeline is closed first, so every subgraph is tested before the exporter finishes
+			try(SubgraphPipeline pipeline = new SubgraphPipeline(target, patternNodes, PIPELINE_QUEUE_SIZE, tester)) {
+				for (int i = 0; i < target.getNumberOfNodes(); i++) {
+					if(i % 5000 == 0) {
+						Debugger.outputTime("Completed node: " + i + " Generated subs: "+subgraphsTested,time);
+					}
+					
+					//generate subgraphs
+					subgraphsTested += esn.enumerateSubgraphsFromNode(patternNodes, subgraphsPerNode, 100, i, r, pipeline);
+				}
 			}
-			
-			//generate set of subgraphs
-			EnumerateSubgraphNeighbourhood esn = new EnumerateSubgraphNeighbourhood(target);
-			HashSet<FastGraph> subs = new HashSet<FastGraph>();
-			esn.enumerateSubgraphsFromNode(patternNodes, subgraphsPerNode, 100, i, r, subs);
-			
-			subgraphsTested += subs.size();
-			
-			count = testSubgraphs(subs, count, mainDir);
-			
-			//Debugger.log("number of generated subs: " + subs.size());
-
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
 		}
 		
 		Debugger.log("number of tested subs: " + subgraphsTested);
@@ -111,47 +122,41 @@ public class ApproximateSubgraphIsomorphism extends SubgraphIsomorphism {
 	}
 	
 	/**
-	 * Tests the list of subgraphs
+	 * Tests a subgraph, saving each match found
 	 * 
-	 * @param subs The potential subgraphs
-	 * @param count The number of subgraphs that match so far
+	 * @param sub The potential subgraph
 	 * @param mainDir The parent directory to save to
-	 * @return The number of subgraphs that match
+	 * @param exporter Saves the SVGs of the matches
 	 * @throws IOException If a subgraph cannot be saved
 	 */
-	private int testSubgraphs(HashSet<FastGraph> subs, int count, File mainDir) throws IOException {
-		//for each generated subgraph
-		for(FastGraph sub : subs) {
-			
-			//check isomorphism
-			ExactSubgraphIsomorphism esi = new ExactSubgraphIsomorphism(sub,pattern,nc,ec);
-			boolean result = esi.subgraphIsomorphismFinder();
+	private void testSubgraph(FastGraph sub, File mainDir, SvgExporter exporter) throws IOException {
+		//check isomorphism
+		ExactSubgraphIsomorphism esi = new ExactSubgraphIsomorphism(sub,pattern,nc,ec);
+		boolean result = esi.subgraphIsomorphismFinder();
 
-			if(result) {
-				LinkedList<SubgraphMapping> submaps = esi.getFoundMappings();
+		if(result) {
+			LinkedList<SubgraphMapping> submaps = esi.getFoundMappings();
+			
+			for(SubgraphMapping map : submaps) {
 				
-				for(SubgraphMapping map : submaps) {
-					
-					//Debugger.log(map.toString());						
-					int[] nodeMapping = map.getNodeMapping();
-					int[] edgeMapping = map.getEdgeMapping();
-					FastGraph newSub = sub.generateGraphFromSubgraph(nodeMapping, edgeMapping);
-					
-					saveSubgraph(target, newSub, count, mainDir);
-					count++;
+				//Debugger.log(map.toString());						
+				int[] nodeMapping = map.getNodeMapping();
+				int[] edgeMapping = map.getEdgeMapping();
+				FastGraph newSub = sub.generateGraphFromSubgraph(nodeMapping, edgeMapping);
+				
+				saveSubgraph(target, newSub, count, mainDir, exporter);
+				count++;
 
-					//add to unique list
-					String key = newSub.getNodeLabelString() + newSub.getEdgeLabelString();
-					if(uniqueSubgraphs.containsKey(key)) {
-						uniqueSubgraphs.put(key, uniqueSubgraphs.get(key)+1);
-					} else {
-						uniqueSubgraphs.put(key,1);
-					}
-					
+				//add to unique list
+				String key = newSub.getNodeLabelString() + newSub.getEdgeLabelString();
+				if(uniqueSubgraphs.containsKey(key)) {
+					uniqueSubgraphs.put(key, uniqueSubgraphs.get(key)+1);
+				} else {
+					uniqueSubgraphs.put(key,1);
 				}
+				
 			}
 		}
-		return count;
 	}
 	
 
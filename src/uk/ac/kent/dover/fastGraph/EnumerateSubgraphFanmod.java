@@ -1,189 +1,243 @@
 package uk.ac.kent.dover.fastGraph;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Random;
 
 /**
  * Algorithm to generate subgraphs for motif detection, based on: A Faster Algorithm for Detecting Network Motifs, Sebastian Wernicke (2005)
  * Variable names in this class are an attempt to match those in the algorithm in the paper
- *  
+ * <p>
+ * ESU finds each connected induced subgraph of size k exactly once, from its lowest numbered
+ * node v. The subgraph and extension sets are held as int array stacks, with the extension
+ * of each depth stored above the one it was made from. A marker array records the depth at
+ * which each node joined the subgraph or its neighbourhood, so the exclusive neighbourhood of
+ * a new node is just its unmarked neighbours. RAND-ESU explores each child at depth d with
+ * probability probabilities[d-1], which samples each subgraph with the product of the probabilities.
+ * </p>
+ * <p>
+ * Subgraphs are passed to a SubgraphCallback in a reused SubgraphView, so nothing is kept.
+ * The marker array has an entry for every node, so use one enumerator for each thread.
+ * </p>
+ *
  * @author Rob Baker
  *
  */
 public class EnumerateSubgraphFanmod {
-	
+
 	private FastGraph g;
+	private NeighbourCursor cursor;
+	private int[] mark; // depth at which the node joined vSubgraph or its neighbourhood, 0 if neither
+	private int[] vSubgraph; // stack of the nodes in the subgraph
+	private int[] vExtension; // stack of extensions, the extension of each depth above the one before
+	private SubgraphView view;
+	private int k;
+	private double[] probabilities;
 	private Random r;
-	private double q;
-	
+	private SubgraphCallback callback;
+	private long found;
+
 	public EnumerateSubgraphFanmod(FastGraph g) {
 		this.g = g;
+		cursor = new NeighbourCursor(g);
+		mark = new int[g.getNumberOfNodes()];
+		vExtension = new int[64];
 	}
-	
+
 	/**
 	 * ESU - Returns all size-k subgraphs in the FastGraph.
-	 * 
+	 *
 	 * @param k The size of subgraph to find
-	 * @param q The percentage of nodes to sample, i.e. 50% = 0.5
+	 * @param q The fraction of starting nodes to sample, i.e. 50% = 0.5, deeper levels are not sampled
 	 * @return All size-k subgraphs in the FastGraph
 	 */
 	public HashSet<FastGraph> enumerateSubgraphs(int k, double q) {
-		this.q = q;
-		r = new Random(g.getNodeBuf().getLong(0));
-		Debugger.log("testing enumerateSubgraph");
-		Debugger.log("k " + k);
-		Debugger.resetTime();
-		long time = Debugger.createTime();
-		
+		Random r = new Random(g.getNodeBuf().getLong(0));
+		double[] probabilities = new double[k];
+		Arrays.fill(probabilities, 1.0);
+		probabilities[0] = q;
 		HashSet<FastGraph> subs = new HashSet<FastGraph>();
-		
-		for (int v = 0; v < g.getNumberOfNodes(); v++) {
-			
-			HashSet<Integer> extension = new HashSet<Integer>();
-			
-			//ad all nodes connection to v that have a bigger index
-			HashSet<Integer> vSet = new HashSet<Integer>();
-			vSet.add(v);
-			int[] connections = Util.convertHashSet(neighbourhood(vSet));
-			//Debugger.log("connections " + Arrays.toString(connections));
-			for(int u : connections) {
-				if (u > v) {
-					extension.add(u);
+		enumerate(k, probabilities, r, view -> subs.add(view.toFastGraph()));
+		return subs;
+	}
+
+	/**
+	 * ESU - Passes every connected induced subgraph of size k to the callback.
+	 *
+	 * @param k The size of subgraph to find
+	 * @param callback Receives each subgraph
+	 * @return the number of subgraphs found
+	 */
+	public long enumerate(int k, SubgraphCallback callback) {
+		double[] probabilities = new double[k];
+		Arrays.fill(probabilities, 1.0);
+		return enumerate(k, probabilities, null, callback);
+	}
+
+	/**
+	 * RAND-ESU - Passes a sample of the connected induced subgraphs of size k to the callback.
+	 *
+	 * @param k The size of subgraph to find
+	 * @param probabilities The probability of exploring a node at each depth, from the starting node at depth 1 to the last node at depth k
+	 * @param r The random number generator, can be null if all the probabilities are 1
+	 * @param callback Receives each subgraph
+	 * @return the number of subgraphs found
+	 */
+	public long enumerate(int k, double[] probabilities, Random r, SubgraphCallback callback) {
+		long total = 0;
+		for(int v = 0; v < g.getNumberOfNodes(); v++) {
+			total += enumerateFromNode(v, k, probabilities, r, callback);
+		}
+		return total;
+	}
+
+	/**
+	 * RAND-ESU from one node - Passes a sample of the subgraphs whose lowest numbered node is v
+	 * to the callback. Calling this for every node is the same as enumerate, so the nodes can be
+	 * split between threads, each with its own enumerator.
+	 *
+	 * @param v The starting node
+	 * @param k The size of subgraph to find
+	 * @param probabilities The probability of exploring a node at each depth, from the starting node at depth 1 to the last node at depth k
+	 * @param r The random number generator, can be null if all the probabilities are 1
+	 * @param callback Receives each subgraph
+	 * @return the number of subgraphs found
+	 */
+	public long enumerateFromNode(int v, int k, double[] probabilities, Random r, SubgraphCallback callback) {
+		if(probabilities.length < k) {
+			throw new IllegalArgumentException("Need a probability for each of the "+k+" depths, only "+probabilities.length+" given");
+		}
+		if(k < 1 || !sample(probabilities[0], r)) {
+			return 0;
+		}
+		this.k = k;
+		this.probabilities = probabilities;
+		this.r = r;
+		this.callback = callback;
+		found = 0;
+		if(vSubgraph == null || vSubgraph.length < k) {
+			vSubgraph = new int[k];
+			view = new SubgraphView(g, k);
+		}
+
+		//add all nodes connecting to v that have a bigger index
+		vSubgraph[0] = v;
+		mark[v] = 1;
+		int extensionEnd = 0;
+		cursor.setAll(v);
+		while(cursor.next()) {
+			int u = cursor.getNode();
+			if(mark[u] == 0) {
+				mark[u] = 1;
+				if(u > v) {
+					extensionEnd = push(extensionEnd, u);
 				}
 			}
-			HashSet<Integer> vSubgraph = new HashSet<Integer>();
-			vSubgraph.add(v);
-			
-			//Debugger.log("extension " + extension);
-			//Debugger.log("vSubgraph " + vSubgraph);
-			
-			//extend Subgraph
-			if(r.nextDouble() > q) {
-				extendSubgraph(vSubgraph,extension,v,k, subs, 1);
-			}
-			
-			if(v % 1000 == 0) {
-				Debugger.log("v " + v);
-				Debugger.log("subgraphs found " + subs.size());
-				Debugger.outputTime("Taken for this step:", time);
-				Debugger.outputTime("Taken so far:");
-				Debugger.log();
-				time = Debugger.createTime();
-			}
-			
 		}
-		
-		//convert HashMap to array
-		//FastGraph[] arr = new FastGraph[subs.size()];
-		//Util.convertLinkedListObject(subs, arr);
-		
-		Debugger.outputTime("finishing enumerate Subgraphs");
-		
-		return subs;
+
+		extendSubgraph(1, 0, extensionEnd, v);
+
+		unmarkNeighbours(v, 1);
+		mark[v] = 0;
+		return found;
 	}
-	
+
 	/**
-	 * Extends a subgraph. Returns a set of nodes, from which edges must be added
-	 * 
-	 * @param vSubgraph The current Subgraph
-	 * @param vExtension The extension to the subgraph
+	 * Extends a subgraph, passing it to the callback when it has k nodes.
+	 *
+	 * @param size The number of nodes in vSubgraph
+	 * @param extensionStart The start of the extension of this depth in vExtension
+	 * @param extensionEnd One after the end of the extension of this depth in vExtension
 	 * @param v The starting node
-	 * @param k The size of subgraph to be found
-	 * @param subs The list of subgraphs found
-	 * @return The extended subgraph (in the form of a set of nodes)
 	 */
-	private void extendSubgraph(HashSet<Integer> vSubgraph, HashSet<Integer> vExtension, int v, int k, HashSet<FastGraph> subs, int depth) {
-		//Debugger.log();
-		//Debugger.log("extend k " + k + " v" + v);
-		//Debugger.log("extend vExtension " + vExtension);
-		//Debugger.log("extend vSubgraph " + vSubgraph);
-		//Debugger.log("depth " + depth);
-		
+	private void extendSubgraph(int size, int extensionStart, int extensionEnd, int v) {
 		//if the correct size already exists
-		if(vSubgraph.size() == k) {
-		//	Debugger.log("### extend vSubgraph size match");
-			addFoundSubgraph(subs, vSubgraph);
+		if(size == k) {
+			addFoundSubgraph();
 			return;
 		}
-		
-		if(vSubgraph.size() > k) {
-			return;
-		}
-		
-		while(vExtension.size() != 0) {
-			
-			//remove an arbitrary element, w (in this case, the first)
-			int w = 0;
-			for(int i : vExtension) {
-				w = i;
-				vExtension.remove(i);
-				break;
-			}
+
+		while(extensionEnd > extensionStart) {
+			//remove an arbitrary element, w (in this case, the last)
+			extensionEnd--;
+			int w = vExtension[extensionEnd];
 
 			//sampling
-			//double prob = Math.pow(q,1/depth);
-			double prob = (q / depth);
-			if(r.nextDouble() > prob) {
-				HashSet<Integer> wSet = new HashSet<Integer>();			
-				HashSet<Integer> neighboursToW = neighbourhood(wSet);			
-				HashSet<Integer> neighboursToVsub = neighbourhood(vSubgraph);
-				neighboursToW.removeAll(neighboursToVsub);
-				
-				HashSet<Integer> vDashExtension = new HashSet<Integer>(vExtension);
-				for (int u : neighboursToW) {
-					if (u > v) {
-						vDashExtension.add(u);
+			if(!sample(probabilities[size], r)) {
+				continue;
+			}
+
+			// vDashExtension is the rest of this extension, copied above it, and the exclusive neighbours of w
+			int depth = size+1;
+			int dashStart = extensionEnd;
+			int dashEnd = dashStart;
+			for(int i = extensionStart; i < extensionEnd; i++) {
+				dashEnd = push(dashEnd, vExtension[i]);
+			}
+			cursor.setAll(w);
+			while(cursor.next()) {
+				int u = cursor.getNode();
+				if(mark[u] == 0) {
+					mark[u] = depth;
+					if(u > v) {
+						dashEnd = push(dashEnd, u);
 					}
 				}
-				
-				vSubgraph.add(w);
-				
-				//create new HashSets as the previous ones shouldn't be modified
-				extendSubgraph(new HashSet<Integer>(vSubgraph), new HashSet<Integer>(vDashExtension), v, k, subs, depth+1);
-			}			
+			}
+
+			vSubgraph[size] = w;
+			extendSubgraph(depth, dashStart, dashEnd, v);
+			unmarkNeighbours(w, depth);
+		}
+	}
+
+	/**
+	 * Clear the marks made when the node was added at the depth.
+	 */
+	private void unmarkNeighbours(int w, int depth) {
+		cursor.setAll(w);
+		while(cursor.next()) {
+			int u = cursor.getNode();
+			if(mark[u] == depth) {
+				mark[u] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Put a node on the extension stack, growing it if needed.
+	 *
+	 * @return the new top of the stack
+	 */
+	private int push(int top, int node) {
+		if(top == vExtension.length) {
+			vExtension = Arrays.copyOf(vExtension, vExtension.length*2);
 		}
-		
-		
-		return;
+		vExtension[top] = node;
+		return top+1;
 	}
-	
-	
+
 	/**
-	 * Creates a set of all nodes connecting to all those in v, but not those in v.
-	 * 
-	 * @param v The set to build the neighbourhood from
-	 * @return A set of connecting nodes (but not the starting nodes themselves)
+	 * @return true if the branch should be explored
 	 */
-	private HashSet<Integer> neighbourhood(HashSet<Integer> v) {
-		HashSet<Integer> set = new HashSet<Integer>();
-		for(int i : v) {
-			set.addAll(Util.convertArray(g.getNodeConnectingNodes(i)));
+	private static boolean sample(double probability, Random r) {
+		if(probability >= 1.0) {
+			return true;
 		}
-		set.removeAll(v);
-		return set;
+		return r.nextDouble() < probability;
 	}
-	
+
 	/**
-	 * Saves a subgraph. Builds the edges between the nodes given
-	 * 
-	 * @param subs The list of subgraphs
-	 * @param nodes The set of nodes in a new subgraph
+	 * Passes the subgraph in vSubgraph to the callback. Builds the edges between the nodes.
 	 */
-	private void addFoundSubgraph(HashSet<FastGraph> subs, HashSet<Integer> nodes) {
-	//	Debugger.log("adding subgraph nodes " + nodes);
-		HashSet<Integer> edges = new HashSet<Integer>();
-		
-		//add all edges connecting to only the nodes in the subgraph. Might be slow
-		for(int n : nodes) {
-			for (int edge : g.getNodeConnectingEdges(n)) {
-				if (nodes.contains(g.oppositeEnd(edge,n))) {
-					edges.add(edge);
-				}
-			}
+	private void addFoundSubgraph() {
+		view.clear();
+		for(int i = 0; i < k; i++) {
+			view.addNode(vSubgraph[i]);
 		}
-		//Debugger.log("adding subgraph " + (subs.size()+1));
-		//convert and add FastGraph
-		subs.add(g.generateGraphFromSubgraph(Util.convertHashSet(nodes), Util.convertHashSet(edges)));
+		view.induce();
+		found++;
+		callback.subgraphFound(view);
 	}
 
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package uk.ac.kent.dover.fastGraph;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Random;
 
@@ -12,6 +13,8 @@ import java.util.Random;
 public class EnumerateSubgraphNeighbourhood {
 	
 	private FastGraph g;
+	private NeighbourCursor cursor; //reused for every node visited
+	private SubgraphView view; //reused for every subgraph sampled
 	
 	/**
 	 * Trivial constructor
@@ -19,6 +22,7 @@ public class EnumerateSubgraphNeighbourhood {
 	 */
 	public EnumerateSubgraphNeighbourhood(FastGraph g) {
 		this.g = g;
+		cursor = new NeighbourCursor(g);
 	}
 	
 	/**
@@ -35,15 +39,29 @@ public class EnumerateSubgraphNeighbourhood {
 	 * @return A set of FastGraphs
 	 */
 	public HashSet<FastGraph> enumerateSubgraphs(int subgraphSize, int subgraphsPerNode, int attemptsToFindSubgraph) {
-		Random r = new Random(g.getNodeBuf().getLong(0));
 		HashSet<FastGraph> subgraphs = new HashSet<FastGraph>();
-		
+		enumerateSubgraphs(subgraphSize, subgraphsPerNode, attemptsToFindSubgraph, view -> subgraphs.add(view.toFastGraph()));
+		return subgraphs;
+	}
+	
+	/**
+	 * Generates subgraphs based on neighbourhoods, as enumerateSubgraphs, passing each to the
+	 * callback as it is found rather than keeping them.
+	 * 
+	 * @param subgraphSize The number of nodes in each subgraph
+	 * @param subgraphsPerNode The number of subgraphs per node
+	 * @param attemptsToFindSubgraph The number of attempts to find a connected subgraph.
+	 * @param callback Receives each subgraph
+	 * @return The number of subgraphs found
+	 */
+	public long enumerateSubgraphs(int subgraphSize, int subgraphsPerNode, int attemptsToFindSubgraph, SubgraphCallback callback) {
+		Random r = new Random(g.getNodeBuf().getLong(0));
+		long found = 0;
 		//for each node
 		for(int n = 0; n < g.getNumberOfNodes(); n++) {
-			enumerateSubgraphsFromNode(subgraphSize, subgraphsPerNode, attemptsToFindSubgraph, n, r, subgraphs);
-		}	
-
-		return subgraphs;
+			found += enumerateSubgraphsFromNode(subgraphSize, subgraphsPerNode, attemptsToFindSubgraph, n, r, callback);
+		}
+		return found;
 	}
 	
 	/**
@@ -57,71 +75,143 @@ public class EnumerateSubgraphNeighbourhood {
 	 * @param subgraphs A set of FastGraphs to populate
 	 */
 	public void enumerateSubgraphsFromNode(int subgraphSize, int subgraphsPerNode, int attemptsToFindSubgraph, int n, Random r, HashSet<FastGraph> subgraphs) {
-		//skip if the node has no connections
-		if(g.getNodeDegree(n) == 0) {
-			return;
-		}
-		
+		enumerateSubgraphsFromNode(subgraphSize, subgraphsPerNode, attemptsToFindSubgraph, n, r, view -> subgraphs.add(view.toFastGraph()));
+	}
+	
+	/**
+	 * Generates subgraphs from a given node, passing each to the callback
+	 * 
+	 * @param subgraphSize The number of nodes in each subgraph
+	 * @param subgraphsPerNode The number of subgraphs per node
+	 * @param attemptsToFindSubgraph The number of attempts to find a connected subgraph.
+	 * @param n The id of the node to build from
+	 * @param r A random number generator
+	 * @param callback Receives each subgraph
+	 * @return The number of subgraphs found
+	 */
+	public int enumerateSubgraphsFromNode(int subgraphSize, int subgraphsPerNode, int attemptsToFindSubgraph, int n, Random r, SubgraphCallback callback) {
+		SubgraphView view = getView(subgraphSize);
 		//for each subgraph at this neighbourhood
 		int foundSubgraphs = 0;
 		while(foundSubgraphs < subgraphsPerNode) {
-			//build neighbourhood
-			HashSet<Integer> nodes = new HashSet<Integer>();
-			nodes.add(n);
-			int attempts = 0; //in case we happen to pick one already in the list, but also to stop when there are no more to pick
-			while(nodes.size() < subgraphSize && attempts < attemptsToFindSubgraph) {
-				int nextNode = Util.getFromHashSet(nodes,r.nextInt(nodes.size()));
-				int[] cn = g.getNodeConnectingNodes(nextNode);
-				int nextToAdd = cn[r.nextInt(cn.length)];
-				int nSize = nodes.size();
-				nodes.add(nextToAdd);
-				if(nSize == nodes.size()) {
-					//no nodes added
-					attempts++;
-				}
-			}
-
-			//Are there enough nodes found?
-			if(nodes.size() < subgraphSize) {
-			//	failuresNeighbourhoodTooSmall++;
-				//Debugger.log("neighbourhood too small: " + nodes.size());
+			if(!sampleNeighbourhood(subgraphSize, attemptsToFindSubgraph, n, r, view)) {
 				break; //don't check this node again
-			} else {
-				//add subgraph
-				HashSet<Integer> edges = new HashSet<Integer>();
-				addMissingEdges(nodes, edges);
-				FastGraph subgraph = g.generateGraphFromSubgraph(Util.convertHashSet(nodes), Util.convertHashSet(edges));
-				foundSubgraphs++;
-				subgraph.setName("subgraph");
-				subgraphs.add(subgraph);
 			}
+			foundSubgraphs++;
+			callback.subgraphFound(view);
 		}
+		return foundSubgraphs;
 	}
 	
+	/**
+	 * Generates the node sets of subgraphs from a given node, without building the subgraphs.
+	 * Uses the same random numbers as enumerateSubgraphsFromNode, so gives the same subgraphs.
+	 * 
+	 * @param subgraphSize The number of nodes in each subgraph
+	 * @param subgraphsPerNode The number of subgraphs per node
+	 * @param attemptsToFindSubgraph The number of attempts to find a connected subgraph.
+	 * @param n The id of the node to build from
+	 * @param r A random number generator
+	 * @param nodeSets A list of node arrays to populate
+	 */
+	public void enumerateNodeSetsFromNode(int subgraphSize, int subgraphsPerNode, int attemptsToFindSubgraph, int n, Random r, ArrayList<int[]> nodeSets) {
+		enumerateSubgraphsFromNode(subgraphSize, subgraphsPerNode, attemptsToFindSubgraph, n, r, view -> nodeSets.add(view.copyNodes()));
+	}
 	
 	/**
-	 * When given an HashSet of nodes will induce any edges that connect between any two of the given nodes.
+	 * Samples one subgraph from the neighbourhood of a node into a view, which is cleared first
+	 * and induced if the sample succeeds. Nothing is allocated, so this can be called for every
+	 * sample of a large run, building a FastGraph only for the subgraphs that are kept.
+	 * Each step picks a node already in the subgraph and adds a random neighbour of it.
 	 * 
-	 * @param nodes The HashSet of nodes in the graph
-	 * @param edges The HashSet of edges in the graph - to be expanded with the newly induced edges.
+	 * @param subgraphSize The number of nodes in the subgraph
+	 * @param attemptsToFindSubgraph The number of times a neighbour already in the subgraph can be picked before giving up
+	 * @param n The id of the node to build from
+	 * @param r A random number generator
+	 * @param view The view to fill, with a capacity of at least subgraphSize
+	 * @return true if a subgraph of subgraphSize nodes was found, false if the neighbourhood is too small
 	 */
-	private void addMissingEdges(HashSet<Integer> nodes, HashSet<Integer> edges) {
+	public boolean sampleNeighbourhood(int subgraphSize, int attemptsToFindSubgraph, int n, Random r, SubgraphView view) {
+		view.clear();
+		//skip if the node has no connections
+		if(g.getNodeDegree(n) == 0) {
+			return false;
+		}
+		
+		//build neighbourhood
+		view.addNode(n);
+		int attempts = 0; //in case we happen to pick one already in the list, but also to stop when there are no more to pick
+		while(view.getNumberOfNodes() < subgraphSize && attempts < attemptsToFindSubgraph) {
+			int nextNode = nodeInHashOrder(view, r.nextInt(view.getNumberOfNodes()));
+			cursor.setAll(nextNode);
+			cursor.skip(r.nextInt(cursor.getRemaining()));
+			cursor.next();
+			if(!view.addNode(cursor.getNode())) {
+				//no nodes added
+				attempts++;
+			}
+		}
+		
+		//Are there enough nodes found?
+		if(view.getNumberOfNodes() < subgraphSize) {
+			//Debugger.log("neighbourhood too small: " + view.getNumberOfNodes());
+			return false;
+		}
+		view.induce();
+		return true;
+	}
 	
-		//for every node in the graph
-		for(int n : nodes) {
-			//find what edges it connects to
-			int[] edgeConnections = g.getNodeConnectingEdges(n);
-			//for each of these connecting edges
-			for (int ce : edgeConnections) {
-				//find the other node
-				int cn = g.oppositeEnd(ce,n);
-				//if that node is also in the graph, then add the edge
-				if (nodes.contains(cn)) {
-					edges.add(ce);
+	
+	/**
+	 * The nodes used to be held in a HashSet&lt;Integer&gt; and picked by their position in its
+	 * iteration order. This finds the same node without the set, so a seed gives the same
+	 * subgraphs as before. A HashSet iterates by bucket, the node index mixed as HashMap.hash and
+	 * masked by the table size, and in the order added within a bucket.
+	 * 
+	 * @param view The nodes picked so far
+	 * @param position The position in the iteration order of a HashSet holding the nodes
+	 * @return the node at the position
+	 */
+	private static int nodeInHashOrder(SubgraphView view, int position) {
+		int count = view.getNumberOfNodes();
+		// the default table starts at 16 buckets and doubles when more than three quarters full
+		int tableSize = 16;
+		while(count > tableSize*3/4) {
+			tableSize *= 2;
+		}
+		for(int i = 0; i < count; i++) {
+			int bucket = hashBucket(view.getNode(i), tableSize);
+			int before = 0;
+			for(int j = 0; j < count; j++) {
+				int other = hashBucket(view.getNode(j), tableSize);
+				if(other < bucket || (other == bucket && j < i)) {
+					before++;
 				}
 			}
-			
+			if(before == position) {
+				return view.getNode(i);
+			}
+		}
+		throw new IndexOutOfBoundsException("Position "+position+" is not in the "+count+" nodes");
+	}
+	
+	
+	/**
+	 * @return the bucket of a HashSet table of tableSize buckets holding the node
+	 */
+	private static int hashBucket(int node, int tableSize) {
+		return (node^(node>>>16))&(tableSize-1);
+	}
+	
+	
+	/**
+	 * @return the view used by the enumerate methods, with room for at least subgraphSize nodes
+	 */
+	private SubgraphView getView(int subgraphSize) {
+		if(view == null || view.getCapacity() < subgraphSize) {
+			view = new SubgraphView(g, subgraphSize);
 		}
+		return view;
 	}
 
 }
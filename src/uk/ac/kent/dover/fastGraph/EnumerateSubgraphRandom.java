@@ -1,7 +1,6 @@
 package uk.ac.kent.dover.fastGraph;
 
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.Random;
 
 /**
@@ -23,38 +22,46 @@ public class EnumerateSubgraphRandom {
 	}
 	
 	public HashSet<FastGraph> randomSampleSubgraph(int numOfNodes, int subgraphsWanted) {
+		HashSet<FastGraph> ret = new HashSet<FastGraph>(subgraphsWanted*3);
+		randomSampleSubgraph(numOfNodes, subgraphsWanted, view -> ret.add(view.toFastGraph()));
+		return ret;
+	}
+	
+	/**
+	 * Samples connected subgraphs by picking nodes at random, passing each to the callback.
+	 * 
+	 * @param numOfNodes The number of nodes in each subgraph
+	 * @param subgraphsWanted The number of connected subgraphs to find
+	 * @param callback Receives each subgraph
+	 * @return The number of sets of nodes discarded because they were not connected
+	 */
+	public int randomSampleSubgraph(int numOfNodes, int subgraphsWanted, SubgraphCallback callback) {
 
 		int discards = 0;
 		int maxNodes = g.getNumberOfNodes();
-		HashSet<FastGraph> ret = new HashSet<FastGraph>(subgraphsWanted*3);
 		
 		Random r = new Random(1);
 		
+		SubgraphView view = new SubgraphView(g, numOfNodes); // reused, so only the kept subgraphs are built
 		int subgraphsFound = 0;
 		while(subgraphsFound < subgraphsWanted) {
-			LinkedList<Integer> nodes = new LinkedList<Integer>();
+			view.clear();
+			boolean distinct = true;
 			for(int nextNode = 0; nextNode < numOfNodes; nextNode++) {
-				Integer node = r.nextInt(maxNodes);
-				nodes.add(node);
+				int node = r.nextInt(maxNodes);
+				if(!view.addNode(node)) {
+					distinct = false; // a repeated node cannot give a connected subgraph of numOfNodes nodes
+				}
 			}
 			
-			
-			HashSet<Integer> edges = new HashSet<Integer>();
-			
-			//add all edges connecting to only the nodes in the subgraph. Might be slow
-			for(int n : nodes) {
-				for (int edge : g.getNodeConnectingEdges(n)) {
-					if (nodes.contains(g.oppositeEnd(edge,n))) {
-						edges.add(edge);
-					}
-				}
+			//add all edges connecting to only the nodes in the subgraph
+			if(distinct) {
+				view.induce();
 			}
-			//Debugger.log("adding subgraph " + (subs.size()+1));
-			//convert and add FastGraph
-			FastGraph sub = g.generateGraphFromSubgraph(Util.convertLinkedList(nodes), Util.convertHashSet(edges));
 			
-			if(Connected.connected(sub)) {
-				ret.add(sub);
+			if(distinct && view.isConnected()) {
+				//Debugger.log("adding subgraph " + (subs.size()+1));
+				callback.subgraphFound(view);
 				subgraphsFound++;
 			} else {
 				discards++;
@@ -67,7 +74,7 @@ Debugger.log("wanted "+subgraphsWanted+" found "+subgraphsFound+" discards "+dis
 		}
 		
 		
-		return ret;
+		return discards;
 		
 	}
 }
@@ -7,6 +7,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Random;
 
+import uk.ac.kent.dover.fastGraph.IsomorphismStatistics.Outcome;
+
 import uk.ac.kent.displayGraph.Graph;
 
 /**
@@ -19,14 +21,24 @@ public class ExactIsomorphism {
 
 	private int DECIMAL_PLACES = 6; // number of decimal places to round to
 	
+	public static final int DEFAULT_WEISFEILER_LEHMAN_ROUNDS = 3;
+
 	private FastGraph fastGraph;
-	private AdjacencyMatrix am1;
-	private AdjacencyMatrix am2;
-	private int[][] matrix1;
-	private int[][] matrix2;
-	private double[] eigenvalues1;
+	private double[] eigenvalues1; // null until first needed
 	private double[] eigenvalues2;
 
+	private int[] selfLoops1; // number of self sourcing edges at each node
+	private int[] selfLoops2;
+
+	private boolean neighbourDegreeFilter = true;
+	private boolean triangleFilter = true;
+	private int weisfeilerLehmanRounds = DEFAULT_WEISFEILER_LEHMAN_ROUNDS;
+	private boolean eigenvalueFilter = true;
+
+	private long[] neighbourDegrees1; // sorted, null until first needed
+	private int[] triangles1; // sorted, null until first needed
+	private long[] colours1; // sorted, null until first needed
+
 	
 	private int[] matches1;
 	private int[] matches2;
@@ -40,27 +52,17 @@ public class ExactIsomorphism {
 	private int maxDegree1;
 	private int maxDegree2;
 
-	private ArrayList<HashSet<Integer>> neighbours1;  // Non self-sourcing neighbour nodes for each node
-	private ArrayList<HashSet<Integer>> neighbours2;  // Non self-sourcing neighbour nodes for each node
+	private ArrayList<HashSet<Integer>> neighbours1;  // Non self-sourcing neighbour nodes for each node, only used without bitsets
+	private ArrayList<HashSet<Integer>> neighbours2;  // Non self-sourcing neighbour nodes for each node, only used without bitsets
 
-	private static int numberOfIsomorphismTests = 0;
-	private static int numberOfOldIsomorphismTests = 0;
-	private static int numberOfEigenvalueTests = 0;
-	
-	private static long timeForIsomorphismTests = 0;
-	private static long timeForBruteForceTests = 0;
-	private static long timeForOldIsomorphismTests = 0;
-	private static long timeForEigenvalueTests = 0;
-	private static long isomorphismStartTime = -1;
-	private static long bruteForceStartTime = -1;
-	
-	private static int failOnNodeCount = 0;
-	private static int failOnEdgeCount = 0;
-	private static int failOnEigenvalues = 0;
-	private static int failOnDegreeComparison = 0;
-	private static int failOnNodeMatches = 0;
-	private static int failOnBruteForce = 0;
-	private static int succeed = 0;
+	private boolean bitsetAdjacency = true;
+	private int words; // number of longs in the bitset of each node
+	private long[] neighbourBits1; // Non self-sourcing neighbours, words longs for each node in turn
+	private long[] neighbourBits2;
+	private long[] matchedBits1; // nodes currently matched in the search
+	private long[] matchedBits2;
+
+	private IsomorphismStatistics statistics = IsomorphismStatistics.getShared();
 	
 	/**
 	 * Call this after getting true from a call to isomorphism().
@@ -76,6 +78,14 @@ public class ExactIsomorphism {
 	 * Create an ExactIsomorphism before running isomorphic. This makes multiple tests against
 	 * one graph to be more efficient as data for that graph does not need to be recreated. The
 	 * graph must be connected.
+	 * <p>
+	 * isomorphic first compares invariants of the graphs, cheapest first: the numbers of nodes
+	 * and edges, the degree sequences, the degrees of the neighbours of each node, the number of
+	 * triangles at each node, Weisfeiler-Lehman colour histograms and the eigenvalues of the
+	 * adjacency matrix. The backtracking search is only run if they are all equal. Each of the
+	 * stages after the degree sequence can be turned off, and the number of graphs rejected by
+	 * each stage is given by reportFailRatios.
+	 * </p>
 	 * 
 	 * @param fastGraph one graph to be tested.
 	 * @throws FastGraphException if the graph is not connected
@@ -88,16 +98,6 @@ public class ExactIsomorphism {
 		if(!Connected.connected(fastGraph)) {
 			throw new FastGraphException("Graphs must be connected to test for isomorphism.");
 		}
-		am1 = new AdjacencyMatrix(fastGraph);
-		if(fastGraph.getNumberOfNodes() == 0) {
-			matrix1 = new int[0][0];
-			eigenvalues1 = new double[0];
-		} else {
-			matrix1 = am1.buildIntAdjacencyMatrix();
-			eigenvalues1 = am1.findEigenvalues(matrix1);
-			eigenvalues1 = Util.roundArray(eigenvalues1,DECIMAL_PLACES);
-		}
-		
 		matches1 = new int[fastGraph.getNumberOfNodes()];
 		matches2 = new int[fastGraph.getNumberOfNodes()];
 		
@@ -108,7 +108,139 @@ public class ExactIsomorphism {
 		degreeBuckets1 = new int[maxDegree1+1];
 		fastGraph.findDegreeBuckets(degreeBuckets1,degrees1);
 		
-		neighbours1 = findNeighbours(fastGraph,maxDegree1);
+		selfLoops1 = findSelfLoops(fastGraph);
+		
+		words = (fastGraph.getNumberOfNodes()+63)>>>6;
+		neighbourBits1 = findNeighbourBits(fastGraph,words);
+		matchedBits1 = new long[words];
+		matchedBits2 = new long[words];
+	}
+
+
+	/**
+	 * @return true if the degrees of the neighbours of each node are compared before the search
+	 */
+	public boolean isNeighbourDegreeFilter() {
+		return neighbourDegreeFilter;
+	}
+
+
+	/**
+	 * @param neighbourDegreeFilter true to compare the degrees of the neighbours of each node before the search
+	 */
+	public void setNeighbourDegreeFilter(boolean neighbourDegreeFilter) {
+		this.neighbourDegreeFilter = neighbourDegreeFilter;
+	}
+
+
+	/**
+	 * @return true if the number of triangles at each node is compared before the search
+	 */
+	public boolean isTriangleFilter() {
+		return triangleFilter;
+	}
+
+
+	/**
+	 * @param triangleFilter true to compare the number of triangles at each node before the search
+	 */
+	public void setTriangleFilter(boolean triangleFilter) {
+		this.triangleFilter = triangleFilter;
+	}
+
+
+	/**
+	 * @return the number of rounds of Weisfeiler-Lehman colour refinement made before the search, 0 if the colours are not compared
+	 */
+	public int getWeisfeilerLehmanRounds() {
+		return weisfeilerLehmanRounds;
+	}
+
+
+	/**
+	 * Each round colours a node by its colour and the colours of its neighbours in the round
+	 * before, starting from the degrees. The numbers of nodes of each colour are compared.
+	 *
+	 * @param weisfeilerLehmanRounds the number of rounds of colour refinement, 0 to not compare colours
+	 */
+	public void setWeisfeilerLehmanRounds(int weisfeilerLehmanRounds) {
+		if(weisfeilerLehmanRounds < 0) {
+			throw new IllegalArgumentException("Weisfeiler-Lehman rounds must not be negative: "+weisfeilerLehmanRounds);
+		}
+		if(weisfeilerLehmanRounds != this.weisfeilerLehmanRounds) {
+			colours1 = null;
+		}
+		this.weisfeilerLehmanRounds = weisfeilerLehmanRounds;
+	}
+
+
+	/**
+	 * @return true if the eigenvalues are compared before the search
+	 */
+	public boolean isEigenvalueFilter() {
+		return eigenvalueFilter;
+	}
+
+
+	/**
+	 * The eigenvalues are the most expensive invariant, O(n^3) in the number of nodes, and are
+	 * compared last. They rarely reject graphs that pass the other invariants, apart from regular
+	 * graphs, which have the same colours.
+	 *
+	 * @param eigenvalueFilter true to compare the eigenvalues before the search
+	 */
+	public void setEigenvalueFilter(boolean eigenvalueFilter) {
+		this.eigenvalueFilter = eigenvalueFilter;
+	}
+
+
+	/**
+	 * @return the rounded eigenvalues of fastGraph, found the first time they are needed
+	 */
+	private double[] getEigenvalues1() {
+		if(eigenvalues1 == null) {
+			eigenvalues1 = findRoundedEigenvalues(fastGraph);
+		}
+		return eigenvalues1;
+	}
+
+
+	/**
+	 * The eigenvalues of the adjacency matrix of a graph, rounded so that they can be compared.
+	 * 
+	 * @param g the graph
+	 * @return the eigenvalues
+	 */
+	private double[] findRoundedEigenvalues(FastGraph g) {
+		if(g.getNumberOfNodes() == 0) {
+			return new double[0];
+		}
+		AdjacencyMatrix am = new AdjacencyMatrix(g);
+		int[][] matrix = am.buildIntAdjacencyMatrix();
+		double[] eigenvalues = am.findEigenvalues(matrix);
+		return Util.roundArray(eigenvalues,DECIMAL_PLACES);
+	}
+
+
+	/**
+	 * @return true if the search uses bitsets of neighbours, false if it uses sets of Integers
+	 */
+	public boolean isBitsetAdjacency() {
+		return bitsetAdjacency;
+	}
+
+
+	/**
+	 * The search compares neighbours with bitsets by default. The sets of Integers used before
+	 * give the same results more slowly, and are kept for comparison.
+	 *
+	 * @param bitsetAdjacency true to use bitsets of neighbours, false to use sets of Integers
+	 */
+	public void setBitsetAdjacency(boolean bitsetAdjacency) {
+		this.bitsetAdjacency = bitsetAdjacency;
+		if(!bitsetAdjacency && neighbours1 == null) {
+			neighbours1 = findNeighbours(fastGraph,maxDegree1);
+		}
 	}
 
 	/**
@@ -123,7 +255,7 @@ public class ExactIsomorphism {
 		sb.append(",");
 		sb.append(Integer.toString(fastGraph.getNumberOfEdges()));
 		sb.append(Arrays.toString(degreeBuckets1));
-		sb.append(Arrays.toString(eigenvalues1));
+		sb.append(Arrays.toString(getEigenvalues1()));
 		sb.append(generateTimeString());
 		return sb.toString();
 
@@ -177,6 +309,158 @@ public class ExactIsomorphism {
 		return ret;
 	}
 
+
+	/**
+	 * gives the neighbours of nodes in g as bitsets, without self sourcing. The bits for node n
+	 * are in the words longs starting at n*words, node m is bit m%64 of the long m/64.
+	 * 
+	 * @param g the graph
+	 * @param words the number of longs for each node, at least (number of nodes+63)/64
+	 * @return the neighbours for each node in the graph
+	 */
+	public static long[] findNeighbourBits(FastGraph g, int words) {
+		
+		long[] ret = new long[g.getNumberOfNodes()*words];
+		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+			int[] connections = g.getNodeConnectingNodesOfSameAge(n);
+			for(int i = 0; i < connections.length; i++) {
+				int connectingNode = connections[i];
+				if(n == connectingNode) {
+					continue;
+				}
+				ret[n*words+(connectingNode>>>6)] |= 1L<<connectingNode;
+			}
+		}
+		return ret;
+	}
+
+
+	/**
+	 * gives the number of self sourcing edges at each node.
+	 * 
+	 * @param g the graph
+	 * @return the number of self sourcing edges for each node in the graph
+	 */
+	public static int[] findSelfLoops(FastGraph g) {
+		
+		int[] ret = new int[g.getNumberOfNodes()];
+		for(int e = 0; e < g.getNumberOfEdges(); e++) {
+			int n = g.getEdgeNode1(e);
+			if(n == g.getEdgeNode2(e)) {
+				ret[n]++;
+			}
+		}
+		return ret;
+	}
+
+
+	/**
+	 * For each node, a hash of its degree and the multiset of the degrees of its neighbours.
+	 * 
+	 * @param neighbourBits the neighbours of each node, from findNeighbourBits
+	 * @param words the number of longs for each node
+	 * @param degrees the degree of each node
+	 * @return the hash for each node, sorted
+	 */
+	public static long[] findNeighbourDegrees(long[] neighbourBits, int words, int[] degrees) {
+		
+		long[] ret = new long[degrees.length];
+		for(int n = 0; n < degrees.length; n++) {
+			long sum = 0; // adding the hashes makes the result independent of the order of the neighbours
+			for(int w = 0; w < words; w++) {
+				long bits = neighbourBits[n*words+w];
+				while(bits != 0) {
+					int m = (w<<6)+Long.numberOfTrailingZeros(bits);
+					bits &= bits-1;
+					sum += mix(degrees[m]);
+				}
+			}
+			ret[n] = mix(degrees[n]*0x9E3779B97F4A7C15L+sum);
+		}
+		Arrays.sort(ret);
+		return ret;
+	}
+
+
+	/**
+	 * The number of triangles each node is part of.
+	 * 
+	 * @param neighbourBits the neighbours of each node, from findNeighbourBits
+	 * @param words the number of longs for each node
+	 * @param numberOfNodes the number of nodes
+	 * @return the number of triangles for each node, sorted
+	 */
+	public static int[] findTriangles(long[] neighbourBits, int words, int numberOfNodes) {
+		
+		int[] ret = new int[numberOfNodes];
+		for(int n = 0; n < numberOfNodes; n++) {
+			int count = 0; // each triangle is found from both of the other nodes
+			for(int w = 0; w < words; w++) {
+				long bits = neighbourBits[n*words+w];
+				while(bits != 0) {
+					int m = (w<<6)+Long.numberOfTrailingZeros(bits);
+					bits &= bits-1;
+					for(int v = 0; v < words; v++) {
+						count += Long.bitCount(neighbourBits[n*words+v] & neighbourBits[m*words+v]);
+					}
+				}
+			}
+			ret[n] = count/2;
+		}
+		Arrays.sort(ret);
+		return ret;
+	}
+
+
+	/**
+	 * Weisfeiler-Lehman colour refinement. The colours start as hashes of the degrees, and in
+	 * each round a node is given a hash of its colour and the multiset of its neighbours' colours.
+	 * The colours are hashes rather than numbered classes so that different graphs can be compared.
+	 * 
+	 * @param neighbourBits the neighbours of each node, from findNeighbourBits
+	 * @param words the number of longs for each node
+	 * @param degrees the degree of each node
+	 * @param rounds the number of rounds of refinement
+	 * @return the colour of each node, sorted
+	 */
+	public static long[] findWeisfeilerLehmanColours(long[] neighbourBits, int words, int[] degrees, int rounds) {
+		
+		long[] colours = new long[degrees.length];
+		for(int n = 0; n < degrees.length; n++) {
+			colours[n] = mix(degrees[n]);
+		}
+		long[] next = new long[degrees.length];
+		for(int round = 0; round < rounds; round++) {
+			for(int n = 0; n < degrees.length; n++) {
+				long sum = 0;
+				for(int w = 0; w < words; w++) {
+					long bits = neighbourBits[n*words+w];
+					while(bits != 0) {
+						int m = (w<<6)+Long.numberOfTrailingZeros(bits);
+						bits &= bits-1;
+						sum += mix(colours[m]);
+					}
+				}
+				next[n] = mix(colours[n]*0x9E3779B97F4A7C15L+sum+round);
+			}
+			long[] swap = colours;
+			colours = next;
+			next = swap;
+		}
+		Arrays.sort(colours);
+		return colours;
+	}
+
+
+	/**
+	 * The splitmix64 finaliser, so every bit of the input affects every bit of the output.
+	 */
+	private static long mix(long h) {
+		h = (h ^ (h>>>30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h>>>27)) * 0x94D049BB133111EBL;
+		return h ^ (h>>>31);
+	}
+
 	/**
 	 * Equality of graphs. Returns a mapping if this graph is equal
 	 * to the given graph. Graphs must be connected.
@@ -186,8 +470,7 @@ public class ExactIsomorphism {
 	 * @throws FastGraphException if the graph is disconnected
 	 */
 	public boolean isomorphic(FastGraph g) throws FastGraphException {
-numberOfIsomorphismTests++;
-isomorphismStartTime = System.currentTimeMillis();
+long startTime = System.nanoTime();
 
 		FastGraph g1 = fastGraph;
 		FastGraph g2 = g;
@@ -200,14 +483,13 @@ isomorphismStartTime = System.currentTimeMillis();
 
 		// ensure that the same graph returns true
 		if(g1 == g2) {
+statistics.record(Outcome.SUCCEED, System.nanoTime()-startTime);
 			return(true);
 		}
 		
 		if(numberOfNodes1 == 0 && numberOfNodes2 == 0) {
 //System.out.println("Isomorphic: empty graphs");
-succeed++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
+statistics.record(Outcome.SUCCEED, System.nanoTime()-startTime);
 			return true;
 		}
 
@@ -225,17 +507,13 @@ isomorphismStartTime = -1;
 				
 		if(numberOfNodes1 != numberOfNodes2) {
 //System.out.println("Not isomorphic: different number of edges");
-failOnNodeCount++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
+statistics.record(Outcome.NODE_COUNT, System.nanoTime()-startTime);
 			return false;
 		}
 				
 		if(numberOfEdges1 != numberOfEdges2) {
 //System.out.println("Not isomorphic: different number of nodes");
-failOnEdgeCount++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
+statistics.record(Outcome.EDGE_COUNT, System.nanoTime()-startTime);
 			return false;
 		}
 		
@@ -248,66 +526,98 @@ isomorphismStartTime = -1;
 		g.findDegreeBuckets(degreeBuckets2,degrees2);
 		if(!Arrays.equals(degreeBuckets1, degreeBuckets2)) {
 //System.out.println("Not isomorphic: different quantities of nodes with the same degree");
-failOnDegreeComparison++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
+statistics.record(Outcome.DEGREE_COMPARISON, System.nanoTime()-startTime);
 			return false;
 		}
 
+
+		neighbourBits2 = findNeighbourBits(g,words);
 		
+		if(neighbourDegreeFilter) {
+			if(neighbourDegrees1 == null) {
+				neighbourDegrees1 = findNeighbourDegrees(neighbourBits1,words,degrees1);
+			}
+			if(!Arrays.equals(neighbourDegrees1, findNeighbourDegrees(neighbourBits2,words,degrees2))) {
+//System.out.println("Not isomorphic: different degrees of neighbours");
+statistics.record(Outcome.NEIGHBOUR_DEGREES, System.nanoTime()-startTime);
+				return false;
+			}
+		}
 		
-		am2 = new AdjacencyMatrix(g);
-		matrix2 = am2.buildIntAdjacencyMatrix();
-		eigenvalues2 = am2.findEigenvalues(matrix2);
-		eigenvalues2 = Util.roundArray(eigenvalues2, DECIMAL_PLACES);
-//System.out.println(Arrays.toString(eigenvalues1));
-//System.out.println(Arrays.toString(eigenvalues2));
-		if(!compareEigenValues(eigenvalues2)) {
-//System.out.println("Not isomorphic: eigenvalues are different");
-failOnEigenvalues++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-			return false;
+		if(triangleFilter) {
+			if(triangles1 == null) {
+				triangles1 = findTriangles(neighbourBits1,words,numberOfNodes1);
+			}
+			if(!Arrays.equals(triangles1, findTriangles(neighbourBits2,words,numberOfNodes2))) {
+//System.out.println("Not isomorphic: different numbers of triangles");
+statistics.record(Outcome.TRIANGLES, System.nanoTime()-startTime);
+				return false;
+			}
 		}
 		
-if(isomorphismStartTime == -1) {
-	isomorphismStartTime = System.currentTimeMillis();
-}
+		if(weisfeilerLehmanRounds > 0) {
+			if(colours1 == null) {
+				colours1 = findWeisfeilerLehmanColours(neighbourBits1,words,degrees1,weisfeilerLehmanRounds);
+			}
+			if(!Arrays.equals(colours1, findWeisfeilerLehmanColours(neighbourBits2,words,degrees2,weisfeilerLehmanRounds))) {
+//System.out.println("Not isomorphic: different Weisfeiler-Lehman colours");
+statistics.record(Outcome.WEISFEILER_LEHMAN, System.nanoTime()-startTime);
+				return false;
+			}
+		}
 		
-		neighbours2 = findNeighbours(g,maxDegree2);
+		if(eigenvalueFilter) {
+			eigenvalues2 = findRoundedEigenvalues(g);
+//System.out.println(Arrays.toString(getEigenvalues1()));
+//System.out.println(Arrays.toString(eigenvalues2));
+			if(!compareEigenValues(eigenvalues2)) {
+//System.out.println("Not isomorphic: eigenvalues are different");
+statistics.record(Outcome.EIGENVALUES, System.nanoTime()-startTime);
+				return false;
+			}
+		}
 		
-		int[] numberOfMatches = new int[numberOfNodes1]; // gives the number of relevant elements in the second array of possibleMatches 
-		int[][] possibleMatches = new int[numberOfNodes1][numberOfNodes1]; // first element is the node, second is a list of potential matches
+		selfLoops2 = findSelfLoops(g);
+		if(!bitsetAdjacency) {
+			neighbours2 = findNeighbours(g,maxDegree2);
+		}
 		
+		int[] numberOfMatches = new int[numberOfNodes1]; // gives the number of relevant elements of possibleMatches for each node
+		int[] matchesStart = new int[numberOfNodes1]; // the first element of possibleMatches for each node
+		int[] possibleMatches = new int[numberOfNodes1*2]; // the potential matches of each node in turn, grown when needed
+		int i = 0;
 		for(int n1 = 0; n1 < numberOfNodes1; n1++) {
-			int i = 0;
+			matchesStart[n1] = i;
 			for(int n2 = 0; n2 < numberOfNodes2; n2++) {
-				if(matrix1[n1][n1] != matrix2[n2][n2]) { // check that they have the same number of self sourcing edges
+				if(selfLoops1[n1] != selfLoops2[n2]) { // check that they have the same number of self sourcing edges
 					continue;
 				}
 				if(degrees1[n1] != degrees2[n2]) { // make sure the number of connecting edges is equal
 					continue;
 				}
-				possibleMatches[n1][i] = n2;
+				if(i == possibleMatches.length) {
+					possibleMatches = Arrays.copyOf(possibleMatches, Math.min(i*2,numberOfNodes1*numberOfNodes1));
+				}
+				possibleMatches[i] = n2;
 				i++;
 			}
-			if(i == 0) {
+			if(i == matchesStart[n1]) {
 //System.out.println("Not isomorphic: no possible match for a node");
-failOnNodeMatches++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
+statistics.record(Outcome.NODE_MATCHES, System.nanoTime()-startTime);
 				return false;
 			}
-			numberOfMatches[n1] = i;
-//System.out.println("node "+n1+" number of matches "+numberOfMatches[n1]+" possibleMatches "+Arrays.toString(possibleMatches[n1]));
+			numberOfMatches[n1] = i-matchesStart[n1];
+//System.out.println("node "+n1+" number of matches "+numberOfMatches[n1]);
 		}
 
-		bruteForceStartTime = System.currentTimeMillis();
+		long bruteForceStartTime = System.nanoTime();
 		
 		int[] matchesIndex = new int[numberOfNodes1]; // current indexes for the search
 		Arrays.fill(matchesIndex,-1);
 		Arrays.fill(matches1,-1);
 		Arrays.fill(matches2,-1);
+		Arrays.fill(matchedBits1,0);
+		Arrays.fill(matchedBits2,0);
 
 		// backtracking search here
 		int currentNode = 0;
@@ -318,44 +628,40 @@ isomorphismStartTime = -1;
 
 			if(matchesIndex[currentNode] == numberOfMatches[currentNode]) { // backtrack here to previous node if all nodes have been tried
 //System.out.println("Backtracking from node "+ currentNode+ " matched node "+matches1[currentNode]);
-				if(matches1[currentNode] != -1) {
-					matches2[matches1[currentNode]] = -1;
-				}
-				matches1[currentNode] = -1;
+				unmatch(currentNode);
 				matchesIndex[currentNode] = -1;
 				matchesIndex[currentNode]= 0;
 				currentNode--;
 				if(currentNode == -1) {
 //System.out.println("Not isomorphic: brute force");
-failOnBruteForce++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-timeForBruteForceTests += System.currentTimeMillis()-bruteForceStartTime;
-bruteForceStartTime = -1;		
+statistics.recordBruteForce(System.nanoTime()-bruteForceStartTime);
+statistics.record(Outcome.BRUTE_FORCE, System.nanoTime()-startTime);
 					return false;
 				}
-				if(matches1[currentNode] != -1) { // reset the previous match
-					matches2[matches1[currentNode]] = -1;
-				}
-				matches1[currentNode] = -1; // reset the previous match
+				unmatch(currentNode); // reset the previous match
 				matchesIndex[currentNode]++; // increment to the next node of the previous
 				continue; // might have to happen multiple times
 			}
 
 			
-			int possibleMatch = possibleMatches[currentNode][matchesIndex[currentNode]];
-			if(isAMatch(currentNode,possibleMatch)) { // successful match, try the next node
+			int possibleMatch = possibleMatches[matchesStart[currentNode]+matchesIndex[currentNode]];
+			boolean match;
+			if(bitsetAdjacency) {
+				match = isAMatch(currentNode,possibleMatch);
+			} else {
+				match = isAMatchHashSet(currentNode,possibleMatch);
+			}
+			if(match) { // successful match, try the next node
 //System.out.println("SUCCESSFUL match node "+ currentNode+" with node "+possibleMatch);
 				matches1[currentNode] = possibleMatch;
 				matches2[possibleMatch] = currentNode;
+				matchedBits1[currentNode>>>6] |= 1L<<currentNode;
+				matchedBits2[possibleMatch>>>6] |= 1L<<possibleMatch;
 				currentNode++;
 				if(currentNode == numberOfNodes1) {
 //System.out.println("Isomorphic");
-succeed++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-timeForBruteForceTests += System.currentTimeMillis()-bruteForceStartTime;
-bruteForceStartTime = -1;		
+statistics.recordBruteForce(System.nanoTime()-bruteForceStartTime);
+statistics.record(Outcome.SUCCEED, System.nanoTime()-startTime);
 					return true;
 				}
 				matchesIndex[currentNode] = 0;
@@ -368,11 +674,8 @@ bruteForceStartTime = -1;
 
 // Never gets to here
 System.out.println("Isomorphic - Should never get to here");
-succeed++;
-timeForIsomorphismTests += System.currentTimeMillis()-isomorphismStartTime;
-isomorphismStartTime = -1;		
-timeForBruteForceTests += System.currentTimeMillis()-bruteForceStartTime;
-bruteForceStartTime = -1;		
+statistics.recordBruteForce(System.nanoTime()-bruteForceStartTime);
+statistics.record(Outcome.SUCCEED, System.nanoTime()-startTime);
 		return true;
 		
 	}
@@ -380,8 +683,25 @@ bruteForceStartTime = -1;
 	
 
 	/**
-	 * Check to see if the matched neighbours of n1 are neighbours of n2.
-	 * Checks number of connecting edges, assumes checks on number of neighbours for each node has been performed.
+	 * Remove the match of a node in fastGraph, if it has one.
+	 * 
+	 * @param n1 node in fastGraph
+	 */
+	private void unmatch(int n1) {
+		int n2 = matches1[n1];
+		if(n2 != -1) {
+			matches2[n2] = -1;
+			matchedBits2[n2>>>6] &= ~(1L<<n2);
+		}
+		matches1[n1] = -1;
+		matchedBits1[n1>>>6] &= ~(1L<<n1);
+	}
+
+
+	/**
+	 * Check to see if the matched neighbours of n1 are neighbours of n2, using the bitsets.
+	 * The matched neighbours of n1 and of n2 are counted with bitCount, and if the counts are
+	 * the same it is enough to check that the matches of the neighbours of n1 are neighbours of n2.
 	 * 
 	 * @param n1 node in fastGraph
 	 * @param n2 node in g
@@ -389,6 +709,51 @@ bruteForceStartTime = -1;
 	 */
 	private boolean isAMatch(int n1, int n2) {
 		
+		if(matches1[n1] != -1) {
+			return false;
+		}
+		if(matches2[n2] != -1) {
+			return false;
+		}
+		
+		int start1 = n1*words;
+		int start2 = n2*words;
+		int numberOfn1NeigboursMatched = 0;
+		int numberOfn2NeigboursMatched = 0;
+		for(int w = 0; w < words; w++) {
+			numberOfn1NeigboursMatched += Long.bitCount(neighbourBits1[start1+w] & matchedBits1[w]);
+			numberOfn2NeigboursMatched += Long.bitCount(neighbourBits2[start2+w] & matchedBits2[w]);
+		}
+		if(numberOfn1NeigboursMatched != numberOfn2NeigboursMatched) {
+			return false;
+		}
+		
+		for(int w = 0; w < words; w++) {
+			long bits = neighbourBits1[start1+w] & matchedBits1[w];
+			while(bits != 0) {
+				int node = (w<<6)+Long.numberOfTrailingZeros(bits);
+				bits &= bits-1;
+				int matchNode = matches1[node];
+				if((neighbourBits2[start2+(matchNode>>>6)] & (1L<<matchNode)) == 0) { // a neighbour of n1 has a matched node that is not a neigbour of n2
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Check to see if the matched neighbours of n1 are neighbours of n2, using the sets of Integers.
+	 * Checks number of connecting edges, assumes checks on number of neighbours for each node has been performed.
+	 * 
+	 * @param n1 node in fastGraph
+	 * @param n2 node in g
+	 * @return true if the neighbours match, false otherwise
+	 */
+	private boolean isAMatchHashSet(int n1, int n2) {
+		
 		
 //if(n1 == 2 && n2 == 1) {
 //System.out.println("AAA");
@@ -525,7 +890,7 @@ bruteForceStartTime = -1;
 	 * @return true if the eigenvalues are equal, false otherwise
 	 */
 	public boolean compareEigenValues(double[] values) {
-		boolean ret = Arrays.equals(eigenvalues1,values);
+		boolean ret = Arrays.equals(getEigenvalues1(),values);
 
 		return ret;
 	}
@@ -597,69 +962,68 @@ bruteForceStartTime = -1;
 	
 
 	/**
-	 * Output timing
+	 * @return the statistics the tests are recorded in
+	 */
+	public IsomorphismStatistics getStatistics() {
+		return statistics;
+	}
+
+
+	/**
+	 * By default the tests of all ExactIsomorphisms are recorded in IsomorphismStatistics.getShared().
+	 * An ExactIsomorphism can only be used by one thread at a time, but any number of them can
+	 * record to the same statistics.
+	 * 
+	 * @param statistics the statistics to record tests in
+	 */
+	public void setStatistics(IsomorphismStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+
+	/**
+	 * Output timing of the shared statistics
 	 */
 	public static void reportTimes() {
-		if(numberOfIsomorphismTests > 0) {
-			System.out.println("Isomorphism test average "+(timeForIsomorphismTests/(1000.0*numberOfIsomorphismTests))+" seconds total tests "+numberOfIsomorphismTests+" total time "+(timeForIsomorphismTests/1000.0)+" seconds");
-		} else {
-			System.out.println("Isomorphism total tests "+numberOfIsomorphismTests);
-		}
-/*		if(numberOfOldIsomorphismTests > 0) {
-			System.out.println("Old Isomorphism test average "+(timeForOldIsomorphismTests/(1000.0*numberOfOldIsomorphismTests))+" seconds total tests "+numberOfOldIsomorphismTests+" total time "+(timeForOldIsomorphismTests/1000.0)+" seconds");
-		}
-		if(numberOfEigenvalueTests > 0) {
-			System.out.println("Eigenvalue test average "+(timeForEigenvalueTests/(1000.0*numberOfEigenvalueTests))+" total tests "+numberOfEigenvalueTests+" total time "+(timeForEigenvalueTests/1000.0)+" seconds");
+		IsomorphismStatistics.Snapshot snapshot = IsomorphismStatistics.getShared().snapshot();
+		long tests = snapshot.getTests();
+		if(tests > 0) {
+			System.out.println("Isomorphism test average "+(snapshot.getTotalNanos()/(1000000000.0*tests))+" seconds total tests "+tests+" total time "+(snapshot.getTotalNanos()/1000000000.0)+" seconds");
+			System.out.println("Isomorphism test median under "+(snapshot.getPercentile(0.5)/1000000000.0)+" seconds 99th percentile under "+(snapshot.getPercentile(0.99)/1000000000.0)+" seconds");
 		} else {
-			System.out.println("Eigenvalue total tests "+numberOfEigenvalueTests);
+			System.out.println("Isomorphism total tests "+tests);
 		}
-		if(numberOfSubgraphsGenerated > 0) {
-			System.out.println("Subgraph generation average "+(timeForSubgraphsGenerated/(1000.0*numberOfSubgraphsGenerated))+" seconds total generated "+numberOfSubgraphsGenerated+" total time "+(timeForSubgraphsGenerated/1000.0)+" seconds");
+		if(snapshot.getBruteForceTests() > 0) {
+			System.out.println("Brute force average "+(snapshot.getBruteForceNanos()/(1000000000.0*snapshot.getBruteForceTests()))+" seconds total searches "+snapshot.getBruteForceTests()+" total time "+(snapshot.getBruteForceNanos()/1000000000.0)+" seconds");
 		}
-*/	}
+	}
 
 	
 	/**
-	 * Output counts
+	 * Output counts of the shared statistics
 	 */
 	public static void reportFailRatios() {
 		
-		double total = failOnNodeCount+failOnEdgeCount+failOnEigenvalues+failOnDegreeComparison+failOnNodeMatches+failOnBruteForce+succeed;
+		IsomorphismStatistics.Snapshot snapshot = IsomorphismStatistics.getShared().snapshot();
+		double total = snapshot.getTests();
 		
-		System.out.println("fail on Node Count "+failOnNodeCount+" "+(100.0*failOnNodeCount/total)+" % of calls");
-		System.out.println("fail on Edge Count "+failOnEdgeCount+" "+(100.0*failOnEdgeCount/total)+" % of calls");
-		System.out.println("fail on Degree Comparison "+failOnDegreeComparison+" "+(100.0*failOnDegreeComparison/total)+" % of calls");
-		System.out.println("fail on Eigenvalues "+failOnEigenvalues+" "+(100.0*failOnEigenvalues/total)+" % of calls");
-		System.out.println("fail on Node Matches "+failOnNodeMatches+" "+(100.0*failOnNodeMatches/total)+" % of calls");
-		System.out.println("fail on Brute Force "+failOnBruteForce+" "+(100.0*failOnBruteForce/total)+" % of calls");
-		System.out.println("succeed "+succeed+" "+(100.0*succeed/total)+" "+" % of calls");
+		for(Outcome outcome : Outcome.values()) {
+			long count = snapshot.getCount(outcome);
+			if(outcome == Outcome.SUCCEED) {
+				System.out.println("succeed "+count+" "+(100.0*count/total)+" "+" % of calls");
+			} else {
+				System.out.println("fail on "+outcome.getDescription()+" "+count+" "+(100.0*count/total)+" % of calls");
+			}
+		}
 
 	}
 
 
 	/**
-	 * sets all the profiling counts and timing to zero
+	 * sets all the profiling counts and timing of the shared statistics to zero
 	 */
 	public static void resetProfiling() {
-		numberOfIsomorphismTests = 0;
-		numberOfOldIsomorphismTests = 0;
-		numberOfEigenvalueTests = 0;
-		
-		timeForIsomorphismTests = 0;
-		timeForBruteForceTests = 0;
-		timeForOldIsomorphismTests = 0;
-		timeForEigenvalueTests = 0;
-		isomorphismStartTime = -1;
-		bruteForceStartTime = -1;
-		
-		failOnNodeCount = 0;
-		failOnEdgeCount = 0;
-		failOnEigenvalues = 0;
-		failOnDegreeComparison = 0;
-		failOnNodeMatches = 0;
-		failOnBruteForce = 0;
-		succeed = 0;
-	
+		IsomorphismStatistics.getShared().reset();
 	}
 
 }
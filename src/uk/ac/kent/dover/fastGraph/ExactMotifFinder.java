@@ -1,13 +1,16 @@
 package uk.ac.kent.dover.fastGraph;
 
-import java.awt.Point;
-import java.awt.event.KeyEvent;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -16,16 +19,23 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 
-import uk.ac.kent.displayGraph.drawers.GraphDrawerSpringEmbedder;
 import uk.ac.kent.dover.fastGraph.Gui.MotifTask;
+import uk.ac.kent.dover.fastGraph.isomorphism.CanonicalForm;
 
 public class ExactMotifFinder {
 	
+	public static final int MOTIF_CHUNK_SIZE = 1024; // nodes enumerated by each parallel task in findMotifs
+	public static final int DEFAULT_MAX_CLASS_GRAPHS_IN_MEMORY = 1<<16; // class graphs kept in memory before the oldest are spilled to disk
+	public static final long DEFAULT_CHECKPOINT_INTERVAL = 10*60*1000; // milliseconds between checkpoints within a graph
+	
 	/**
 	 *  string is the hash value of the fastGraph, first list is the
 	 *  list of FastGraphs with the same hash value, second linked list is the list
@@ -41,6 +51,18 @@ public class ExactMotifFinder {
 	private boolean saveAll = false;
 	private int numOfResults = 0;
 	private FastGraph referenceGraph = null;
+	private int maxClassGraphsInMemory = DEFAULT_MAX_CLASS_GRAPHS_IN_MEMORY;
+	private ArrayDeque<IsoHolder> classGraphsInMemory = new ArrayDeque<IsoHolder>(); // oldest first, for spilling, shared with the finders of each graph in a run
+	private double[] esuProbabilities = null; // null for neighbourhood sampling
+	private ConcurrentLinkedQueue<EnumerateSubgraphFanmod> esuEnumerators = new ConcurrentLinkedQueue<EnumerateSubgraphFanmod>();
+	private boolean deduplicate = false;
+	private long duplicatesSkipped = 0; // in the last run of findMotifs
+	private boolean parallelRewires = false;
+	private long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+	private long lastCheckpoint = 0; // time the last checkpoint was saved
+	private boolean resume = false;
+	private int exportTopN = 0; // 0 to export an SVG of every class
+	private boolean exportLayout = true;
 	
 	/**
 	 * Trivial contructor
@@ -107,6 +129,157 @@ public class ExactMotifFinder {
 		this.saveAll = saveAll;
 	}
 
+	/**
+	 * @return the RAND-ESU probability for each depth, or null if subgraphs are found by neighbourhood sampling
+	 */
+	public double[] getEsuProbabilities() {
+		return esuProbabilities;
+	}
+
+	/**
+	 * Sets how subgraphs are found. By default a few subgraphs are sampled from the neighbourhood
+	 * of each node. With probabilities, EnumerateSubgraphFanmod finds subgraphs with RAND-ESU, and
+	 * with all probabilities 1 every connected subgraph is found exactly once.
+	 * @param esuProbabilities the probability of exploring a node at each depth, at least one for each node of the motifs, or null for neighbourhood sampling
+	 */
+	public void setEsuProbabilities(double[] esuProbabilities) {
+		this.esuProbabilities = esuProbabilities;
+	}
+
+	/**
+	 * @return true if a subgraph is only counted the first time its node set is sampled
+	 */
+	public boolean isDeduplicate() {
+		return deduplicate;
+	}
+
+	/**
+	 * Sets if repeated samples of the same node set are skipped. Neighbourhood sampling often
+	 * finds the same node set from several start nodes, which biases the frequencies towards
+	 * dense motifs. With deduplication each node set is counted once, see SubgraphDeduplicator.
+	 * @param deduplicate to skip repeated node sets?
+	 */
+	public void setDeduplicate(boolean deduplicate) {
+		this.deduplicate = deduplicate;
+	}
+
+	/**
+	 * @return the number of repeated subgraphs skipped in the last run of findMotifs, 0 if deduplication is off
+	 */
+	public long getDuplicatesSkipped() {
+		return duplicatesSkipped;
+	}
+
+	/**
+	 * @return true if the reference set is built from independent rewires, searched in parallel
+	 */
+	public boolean isParallelRewires() {
+		return parallelRewires;
+	}
+
+	/**
+	 * Sets how the reference set is built. By default each rewired graph is made from the one
+	 * before, saved, and loaded again to be searched, one after another. In parallel, each rewired
+	 * graph is made from the original graph with its own seed, the rewires are built and searched
+	 * at the same time, and those that fit in memory are not saved, see buildIndependentRewires.
+	 * @param parallelRewires to build and search the rewires in parallel?
+	 */
+	public void setParallelRewires(boolean parallelRewires) {
+		this.parallelRewires = parallelRewires;
+	}
+
+	/**
+	 * @return the milliseconds between checkpoints within a graph, 0 if no checkpoints are saved
+	 */
+	public long getCheckpointInterval() {
+		return checkpointInterval;
+	}
+
+	/**
+	 * Sets how often the progress of findMotifsReferenceSet and findMotifsRealSet is saved. A
+	 * checkpoint is saved after each graph of the reference set, and within a graph when the
+	 * interval has passed. Each holds the class counts found so far and the rewire and chunk of
+	 * nodes reached, see saveCheckpoint. The checkpoint of a size is deleted once its results are exported.
+	 * @param checkpointInterval the milliseconds between checkpoints, 0 for no checkpoints
+	 */
+	public void setCheckpointInterval(long checkpointInterval) {
+		this.checkpointInterval = Math.max(0, checkpointInterval);
+	}
+
+	/**
+	 * @return true if motif finding carries on from the last checkpoint
+	 */
+	public boolean isResume() {
+		return resume;
+	}
+
+	/**
+	 * Sets if motif finding carries on from the last checkpoint of each size, rather than starting
+	 * again. As each chunk of nodes has its own seed, a resumed run gives the same results as one
+	 * that was not stopped, except with deduplication, where node sets found before the checkpoint
+	 * are not known. The run should use the same options as the one that was stopped.
+	 * @param resume to carry on from the last checkpoint?
+	 */
+	public void setResume(boolean resume) {
+		this.resume = resume;
+	}
+
+	/**
+	 * @return the number of classes of each size with an SVG, by significance, 0 if every class has one
+	 */
+	public int getExportTopN() {
+		return exportTopN;
+	}
+
+	/**
+	 * Sets how many classes of each size are exported as SVG. By default an SVG is saved for
+	 * every class found. Otherwise SVGs are only saved when comparing the results, for the most
+	 * significant classes, and the others are listed in the results without a picture.
+	 * @param exportTopN the number of classes to export, 0 for all of them
+	 */
+	public void setExportTopN(int exportTopN) {
+		this.exportTopN = Math.max(0, exportTopN);
+	}
+
+	/**
+	 * @return true if the exported graphs are laid out with a spring embedder
+	 */
+	public boolean isExportLayout() {
+		return exportLayout;
+	}
+
+	/**
+	 * Sets if the exported graphs are laid out with a spring embedder, or left with the nodes at
+	 * random positions, which is much faster, see SvgExporter.
+	 * @param exportLayout to lay out the exported graphs?
+	 */
+	public void setExportLayout(boolean exportLayout) {
+		this.exportLayout = exportLayout;
+	}
+
+	/**
+	 * @return the number of motif class graphs kept in memory before the oldest are saved and dropped
+	 */
+	public int getMaxClassGraphsInMemory() {
+		return maxClassGraphsInMemory;
+	}
+
+	/**
+	 * Sets the number of motif class graphs kept in memory. When more classes are found the
+	 * graphs of the oldest are saved to disk and loaded again when they are needed.
+	 * @param maxClassGraphsInMemory the number of graphs, at least 1
+	 */
+	public void setMaxClassGraphsInMemory(int maxClassGraphsInMemory) {
+		this.maxClassGraphsInMemory = Math.max(1, maxClassGraphsInMemory);
+	}
+
+	/**
+	 * @return the number of motif class graphs held in memory, across all the graphs searched by this finder
+	 */
+	public int getClassGraphsInMemory() {
+		return classGraphsInMemory.size();
+	}
+
 	/**
 	 * Runs the comparison of motif data for each size given
 	 * @param minSize The minimum size of motifs found
@@ -178,9 +351,14 @@ public class ExactMotifFinder {
 		}		
 		
 		//rewire graph
+		FastGraph[] rewires = null; // independent rewires, null if not in memory
 		if(referenceSet && referenceGraph==null) {
 			//reference set
-			buildRewires(rewiresNeeded);
+			if(parallelRewires) {
+				rewires = buildIndependentRewires(rewiresNeeded);
+			} else {
+				buildRewires(rewiresNeeded);
+			}
 		}
 
 		//for each size of motif
@@ -195,34 +373,77 @@ public class ExactMotifFinder {
 			HashMap<String,IsoHolder> isoLists = new HashMap<>();	
 			HashMap<String,LinkedList<IsoHolder>> hashBuckets = new HashMap<String,LinkedList<IsoHolder>>();
 			
+			//carry on from the checkpoint, if there is one
+			File checkpointFile = new File(Launcher.startingWorkingDirectory+File.separatorChar+"motifs"+File.separatorChar+graphName+File.separatorChar+"checkpoint_size"+size+nameString+".txt");
+			int startRewire = 0;
+			int startChunk = 0;
+			if(resume && checkpointFile.exists()) {
+				int[] position = loadCheckpoint(checkpointFile, hashBuckets);
+				startRewire = position[0];
+				startChunk = position[1];
+				Debugger.log("    resuming size "+size+" from rewire "+startRewire+" chunk "+startChunk);
+			}
+			MotifCheckpointer checkpointer = null;
+			if(checkpointInterval > 0) {
+				lastCheckpoint = System.currentTimeMillis();
+				checkpointer = (rewire, chunk) -> {
+					// always at the start of a graph, within a graph only when the interval has passed
+					if(chunk == 0 || System.currentTimeMillis()-lastCheckpoint >= checkpointInterval) {
+						saveCheckpoint(checkpointFile, rewire, chunk, hashBuckets);
+						lastCheckpoint = System.currentTimeMillis();
+					}
+				};
+			}
+			
 			if(referenceSet) {
 				mt.publish((int) (step*((minSize-size)+1))+2, "Finding motifs sized " + size, true);
 
-				if(referenceGraph == null) {
+				if(rewires != null) {
+					findMotifsInRewires(size, rewires, hashBuckets, startRewire, checkpointer);
+					isoLists = mergeIsoLists(isoLists, extractGraphLists(hashBuckets));
+				} else if(referenceGraph == null) {
 					//for each rewired graph
-					for(int i = 0; i < rewiresNeeded; i++) {
+					for(int i = startRewire; i < rewiresNeeded; i++) {
 						FastGraph graph = FastGraph.loadBuffersGraphFactory("motifs"+File.separatorChar+graphName+File.separatorChar+"-rewire-"+i,
 								"-rewire-"+i);
 						
 						mt.publish((int) ((((double) i)/rewiresNeeded)*100), "From rewire " + (i+1) + " of " + rewiresNeeded, false);	
 						//find motifs
-						findMotifsInGraph(isoLists, hashBuckets, size, graph, referenceSet);
+						findMotifsInGraph(isoLists, hashBuckets, size, graph, referenceSet, i, i == startRewire ? startChunk : 0, checkpointer);
 					}
-				} else {
-					findMotifsInGraph(isoLists, hashBuckets, size, referenceGraph, referenceSet);
+				} else if(startRewire == 0) {
+					findMotifsInGraph(isoLists, hashBuckets, size, referenceGraph, referenceSet, 0, startChunk, checkpointer);
 				}
 				mt.publish((int) (step*((minSize-size)+1))+2, "Saving motifs sized " + size, true);
-			} else {
-				findMotifsInGraph(isoLists, hashBuckets, size, g, referenceSet);
+			} else if(startRewire == 0) {
+				findMotifsInGraph(isoLists, hashBuckets, size, g, referenceSet, 0, startChunk, checkpointer);
 			}
 			
 			//export results for this size
 			exportMotifData(isoLists, referenceSet, size, graphName, output, hashBuckets);
+			checkpointFile.delete();
 			
 		}
 				
 	}
 	
+	/**
+	 * Create the finder for one graph of a run. It has the settings of this finder and shares
+	 * its class graphs in memory, so maxClassGraphsInMemory bounds the whole run rather than each graph.
+	 * 
+	 * @param graph The graph to search
+	 * @param saveAllExamples If every example is exported
+	 * @return the finder for the graph
+	 */
+	private ExactMotifFinder graphFinder(FastGraph graph, boolean saveAllExamples) {
+		ExactMotifFinder emf = new ExactMotifFinder(graph, saveAllExamples);
+		emf.setMaxClassGraphsInMemory(maxClassGraphsInMemory);
+		emf.setEsuProbabilities(esuProbabilities);
+		emf.setDeduplicate(deduplicate);
+		emf.classGraphsInMemory = classGraphsInMemory;
+		return emf;
+	}
+	
 	/**
 	 * Finds all motifs in a given graph
 	 * 
@@ -231,15 +452,21 @@ public class ExactMotifFinder {
 	 * @param size The size of motif to find
 	 * @param graph The graph to find motifs in
 	 * @param referenceSet If the graph is the referenceSet
+	 * @param rewire The number of the graph in the set, for checkpoints
+	 * @param startChunk The first chunk of nodes to search, those before are in the buckets already
+	 * @param checkpointer Saves the progress, null for no checkpoints
 	 * @throws IOException If the graph cannot be loaded
 	 * @throws FastGraphException 
 	 */
 	private void findMotifsInGraph(HashMap<String,IsoHolder> isoLists, HashMap<String,LinkedList<IsoHolder>> hashBuckets, 
-			int size, FastGraph graph, boolean referenceSet) throws IOException, FastGraphException {
+			int size, FastGraph graph, boolean referenceSet, int rewire, int startChunk, MotifCheckpointer checkpointer) throws IOException, FastGraphException {
 	
-		ExactMotifFinder emf = new ExactMotifFinder(graph,saveAll && !referenceSet);
+		ExactMotifFinder emf = graphFinder(graph,saveAll && !referenceSet);
 		Debugger.log("    finding motifs");
-		emf.findMotifs(size, 0, hashBuckets);
+		emf.findMotifs(size, hashBuckets, graph.getNodeBuf().getLong(0), startChunk, rewire, checkpointer);
+		if(checkpointer != null) {
+			checkpointer.reached(rewire+1, 0);
+		}
 		HashMap<String,IsoHolder> newIsoLists = emf.extractGraphLists(hashBuckets);
 		Debugger.log("    merging lists");
 		isoLists = mergeIsoLists(isoLists, newIsoLists);
@@ -279,34 +506,39 @@ public class ExactMotifFinder {
 		StringBuilder sb = new StringBuilder();
 		int outputCounter = 0;
 		long outputTime = Debugger.createTime();
-		for(String key : hashBuckets.keySet()) {
-			LinkedList<IsoHolder> holders = hashBuckets.get(key);
-			int count = 1;
-			outputCounter++;
-			
-			int outputPercentage = (int) ( ((double) outputCounter/hashBuckets.size())*100);
-			mt.publish(outputPercentage, "Saving motif " + outputCounter + " of " + hashBuckets.size(),false);
-			
-			for (IsoHolder holder : holders) {
-		//		Debugger.log("    "+holder.getKey() + " num: " + holder.getNumber() + " total: " + totalSize);
-				double percentage = ((double) holder.getNumber()/totalSize)*100;
-				sb.append(key+"-"+count+"\t"+holder.getNumber() + "\t" + String.format( "%.10f", percentage ) +"\n");
+		// with a top N, only the most significant are exported when comparing the results
+		try(SvgExporter exporter = exportTopN == 0 ? new SvgExporter(exportLayout) : null) {
+			for(String key : hashBuckets.keySet()) {
+				LinkedList<IsoHolder> holders = hashBuckets.get(key);
+				int count = 1;
+				outputCounter++;
+				
+				int outputPercentage = (int) ( ((double) outputCounter/hashBuckets.size())*100);
+				mt.publish(outputPercentage, "Saving motif " + outputCounter + " of " + hashBuckets.size(),false);
 				
-				//save buffer
-				//if(referenceSet) {
-				//	FastGraph gOut = holder.getGraph();
-				//	gOut.setName(key+"-"+count);
-				//	gOut.saveBuffers("motifs"+File.separatorChar+graphName+File.separatorChar+key+"-"+count, key+"-"+count);
+				for (IsoHolder holder : holders) {
+			//		Debugger.log("    "+holder.getKey() + " num: " + holder.getNumber() + " total: " + totalSize);
+					double percentage = ((double) holder.getNumber()/totalSize)*100;
+					sb.append(key+"-"+count+"\t"+holder.getNumber() + "\t" + String.format( "%.10f", percentage ) +"\n");
 					
-					//save SVG
-					exportSVG(key, holder.getGraph(), count, false);
-				//}
+					//save buffer
+					//if(referenceSet) {
+					//	FastGraph gOut = holder.getGraph();
+					//	gOut.setName(key+"-"+count);
+					//	gOut.saveBuffers("motifs"+File.separatorChar+graphName+File.separatorChar+key+"-"+count, key+"-"+count);
+						
+						//save SVG
+						if(exporter != null) {
+							exportSVG(exporter, key, holder.getGraph(), count, false);
+						}
+					//}
 
-				count++;
-			}
-			
-			if(outputCounter % 1000 == 0) {
-				Debugger.outputTime("Saved "+outputCounter+" so far, out of " + hashBuckets.size() + " in ", outputTime);
+					count++;
+				}
+				
+				if(outputCounter % 1000 == 0) {
+					Debugger.outputTime("Saved "+outputCounter+" so far, out of " + hashBuckets.size() + " in ", outputTime);
+				}
 			}
 		}
 
@@ -327,39 +559,244 @@ public class ExactMotifFinder {
 	public void buildRewires(int numOfRewires) throws IOException  {
 		String graphName = g.getName();
 		FastGraph last = g;
-		for(int i = 0; i < numOfRewires; i++) {
-			
-			File output = new File(Launcher.startingWorkingDirectory+File.separatorChar+"motifs"+File.separatorChar+graphName+File.separatorChar+"-rewire-"+i);
-			//if output exists, do nothing
-			if(output.exists()) {
-				continue;
+		try(SvgExporter exporter = new SvgExporter(exportLayout)) {
+			for(int i = 0; i < numOfRewires; i++) {
+				
+				File output = new File(Launcher.startingWorkingDirectory+File.separatorChar+"motifs"+File.separatorChar+graphName+File.separatorChar+"-rewire-"+i);
+				//if output exists, do nothing
+				if(output.exists()) {
+					continue;
+				}
+				
+				int rewirePercentage = (int) (((double) (i+1) / numOfRewires)*100);
+				mt.publish(rewirePercentage, "Rewiring "+(i+1)+" out of "+numOfRewires+" times",false);	
+				Debugger.log("    rewiring for the "+i+" time");
+				
+				
+				//int iterations, long seed,double deleteNodeProbability, double deleteEdgeProbability, int nodesToAdd, int edgesToAdd, 
+				//boolean sensibleLabels, boolean direct
+				FastGraph newG = null;
+				try{
+				newG = last.generateRewiredBehaviourGraphWithRandomGenerations(
+						1, last.getNodeBuf().getLong(0), 0.1, 0.1, last.getNumberOfNodes()/10, last.getNumberOfEdges()/10, 
+						true, false);
+				} catch(Exception e) {
+					e.printStackTrace();
+				}
+				
+				newG.setName(graphName);
+				mt.publish(rewirePercentage, "Saving Rewire "+(i+1),false);	
+				newG.saveBuffers("motifs"+File.separatorChar+graphName+File.separatorChar+"-rewire-"+i, "-rewire-"+i);
+				exportSVG(exporter, Launcher.startingWorkingDirectory+File.separatorChar+"motifs"+File.separatorChar+graphName+File.separatorChar+"-rewire-"+i, newG, 0, true);
+				
+				
+				last = newG;
 			}
-			
-			int rewirePercentage = (int) (((double) (i+1) / numOfRewires)*100);
-			mt.publish(rewirePercentage, "Rewiring "+(i+1)+" out of "+numOfRewires+" times",false);	
-			Debugger.log("    rewiring for the "+i+" time");
-			
-			
-			//int iterations, long seed,double deleteNodeProbability, double deleteEdgeProbability, int nodesToAdd, int edgesToAdd, 
-			//boolean sensibleLabels, boolean direct
-			FastGraph newG = null;
-			try{
-			newG = last.generateRewiredBehaviourGraphWithRandomGenerations(
-					1, last.getNodeBuf().getLong(0), 0.1, 0.1, last.getNumberOfNodes()/10, last.getNumberOfEdges()/10, 
-					true, false);
-			} catch(Exception e) {
-				e.printStackTrace();
+		}
+	}	
+	
+	/**
+	 * Builds rewired graphs in parallel, each one built from the original graph with its own seed,
+	 * so they do not depend on each other. As many as fit in about half the free memory are kept
+	 * and returned, the rest are saved to disk as with buildRewires, without an SVG, and are null
+	 * in the returned array. Rewires already on disk are not built again.
+	 * @param numOfRewires The number of rewires to perform
+	 * @return the rewired graphs, null for those on disk
+	 * @throws IOException If a rewired graph cannot be built or saved
+	 */
+	public FastGraph[] buildIndependentRewires(int numOfRewires) throws IOException {
+		String graphName = g.getName();
+		long seed = g.getNodeBuf().getLong(0);
+		int inMemory = rewiresFittingInMemory(numOfRewires);
+		Debugger.log("    building "+numOfRewires+" independent rewires, keeping up to "+inMemory+" in memory");
+		FastGraph[] rewires = new FastGraph[numOfRewires];
+		AtomicInteger built = new AtomicInteger();
+		try {
+			IntStream.range(0, numOfRewires).parallel().forEach(i -> {
+				String directory = "motifs"+File.separatorChar+graphName+File.separatorChar+"-rewire-"+i;
+				if(new File(Launcher.startingWorkingDirectory+File.separatorChar+directory).exists()) {
+					return;
+				}
+				try {
+					FastGraph newG = g.generateRewiredBehaviourGraphWithRandomGenerations(
+							1, seed ^ ((i+1)*0x9E3779B97F4A7C15L), 0.1, 0.1, g.getNumberOfNodes()/10, g.getNumberOfEdges()/10, 
+							true, false);
+					newG.setName(graphName);
+					if(i < inMemory) {
+						rewires[i] = newG;
+					} else {
+						newG.saveBuffers(directory, "-rewire-"+i);
+					}
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				int done = built.incrementAndGet();
+				if(mt != null) {
+					mt.publish((int) (((double) done / numOfRewires)*100), "Rewired "+done+" out of "+numOfRewires+" times",false);
+				}
+			});
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return rewires;
+	}
+	
+	/**
+	 * Estimates how many rewired graphs can be kept in memory, from the size of the buffers of the graph.
+	 * Each rewire is taken to need twice the original, for the nodes and edges added and the copies
+	 * made while building it.
+	 * @param numOfRewires The number of rewires needed
+	 * @return the number of rewires to keep in memory, at most numOfRewires
+	 */
+	private int rewiresFittingInMemory(int numOfRewires) {
+		long graphBytes = g.getSegmentedNodeBuf().capacity()+g.getSegmentedEdgeBuf().capacity()+g.getSegmentedConnectionBuf().capacity()
+				+g.getSegmentedNodeLabelBuf().capacity()+g.getSegmentedEdgeLabelBuf().capacity();
+		Runtime runtime = Runtime.getRuntime();
+		long free = runtime.maxMemory()-(runtime.totalMemory()-runtime.freeMemory());
+		long fitting = (free/2)/Math.max(1, graphBytes*2);
+		return (int) Math.min(numOfRewires, fitting);
+	}
+	
+	/**
+	 * Finds the motifs in several graphs at the same time, adding them to the buckets. The classes
+	 * found in each graph are merged in the order of the graphs, so the results are the same as
+	 * finding the motifs in each graph in turn with findMotifs.
+	 * @param k the size of motifs in terms of number of nodes.
+	 * @param rewires the graphs, null for a rewire to be loaded from disk
+	 * @param hashBuckets The buckets to store the results in
+	 * @throws IOException If a rewire cannot be loaded or the output files cannot be written
+	 */
+	public void findMotifsInRewires(int k, FastGraph[] rewires, HashMap<String,LinkedList<IsoHolder>> hashBuckets) throws IOException {
+		findMotifsInRewires(k, rewires, hashBuckets, 0, null);
+	}
+	
+	/**
+	 * Finds the motifs in several graphs at the same time, from a given graph, saving a checkpoint after each batch.
+	 * @param k the size of motifs in terms of number of nodes.
+	 * @param rewires the graphs, null for a rewire to be loaded from disk
+	 * @param hashBuckets The buckets to store the results in
+	 * @param startRewire the first graph to search, those before are in the buckets already
+	 * @param checkpointer saves the progress, null for no checkpoints
+	 * @throws IOException If a rewire cannot be loaded or the output files cannot be written
+	 */
+	private void findMotifsInRewires(int k, FastGraph[] rewires, HashMap<String,LinkedList<IsoHolder>> hashBuckets, 
+			int startRewire, MotifCheckpointer checkpointer) throws IOException {
+		long time = Debugger.createTime();
+		String graphName = g.getName();
+		// in batches so that only a few rewires are loaded from disk at once
+		int batchSize = Runtime.getRuntime().availableProcessors();
+		for(int batchStart = startRewire; batchStart < rewires.length; batchStart += batchSize) {
+			int batchEnd = Math.min(rewires.length, batchStart+batchSize);
+			ExactMotifFinder[] finders = new ExactMotifFinder[batchEnd-batchStart];
+			ChunkResult[] results = new ChunkResult[batchEnd-batchStart];
+			int firstRewire = batchStart;
+			try {
+				IntStream.range(firstRewire, batchEnd).parallel().forEach(i -> {
+					FastGraph graph = rewires[i];
+					try {
+						if(graph == null) {
+							graph = FastGraph.loadBuffersGraphFactory("motifs"+File.separatorChar+graphName+File.separatorChar+"-rewire-"+i, "-rewire-"+i);
+						}
+						ExactMotifFinder emf = graphFinder(graph, false);
+						results[i-firstRewire] = emf.findMotifClasses(k, graph.getNodeBuf().getLong(0));
+						finders[i-firstRewire] = emf;
+					} catch(IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			} catch(UncheckedIOException e) {
+				throw e.getCause();
 			}
 			
-			newG.setName(graphName);
-			mt.publish(rewirePercentage, "Saving Rewire "+(i+1),false);	
-			newG.saveBuffers("motifs"+File.separatorChar+graphName+File.separatorChar+"-rewire-"+i, "-rewire-"+i);
-			exportSVG(Launcher.startingWorkingDirectory+File.separatorChar+"motifs"+File.separatorChar+graphName+File.separatorChar+"-rewire-"+i, newG, 0, true);
-			
+			for(int i = 0; i < results.length; i++) {
+				for(LocalMotifClass localClass : results[i].classes) {
+					finders[i].mergeMotifClass(localClass, hashBuckets, null);
+				}
+			}
 			
-			last = newG;
+			if(checkpointer != null) {
+				checkpointer.reached(batchEnd, 0);
+			}
+			if(mt != null) {
+				mt.publish((int) ((((double) batchEnd)/rewires.length)*100), "Searched rewire " + batchEnd + " of " + rewires.length, false);
+			}
+			Debugger.outputTime("done rewire " + batchEnd, time);
 		}
-	}	
+		
+		saveMotifClasses(hashBuckets);
+	}
+	
+	/**
+	 * Saves the progress of a motif search, so it can be carried on with loadCheckpoint. The graphs
+	 * of the classes are saved first, then the file is written next to its final place and moved
+	 * over it, so a run stopped at any time leaves either the old or the new checkpoint.<br>
+	 * The file has the rewire and chunk to carry on from, then a line for each class with its
+	 * bucket, key and number, separated by tabs.
+	 * 
+	 * @param file The checkpoint file
+	 * @param rewire The graph of the set to carry on from
+	 * @param chunk The chunk of nodes of that graph to carry on from
+	 * @param hashBuckets The classes found so far
+	 * @throws IOException If the checkpoint or the class graphs cannot be saved
+	 */
+	public void saveCheckpoint(File file, int rewire, int chunk, HashMap<String,LinkedList<IsoHolder>> hashBuckets) throws IOException {
+		long time = Debugger.createTime();
+		saveMotifClasses(hashBuckets);
+		file.getAbsoluteFile().getParentFile().mkdirs();
+		File temp = new File(file.getPath()+".tmp");
+		try(PrintWriter out = new PrintWriter(temp)) {
+			out.println("rewire\t"+rewire);
+			out.println("chunk\t"+chunk);
+			for(String key : hashBuckets.keySet()) {
+				for(IsoHolder holder : hashBuckets.get(key)) {
+					out.println(key+"\t"+holder.getKey()+"\t"+holder.getNumber());
+				}
+			}
+		}
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch(AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		Debugger.outputTime("saved checkpoint at rewire "+rewire+" chunk "+chunk, time);
+	}
+	
+	/**
+	 * Loads a checkpoint saved by saveCheckpoint. The graphs of the classes are loaded from disk when needed.
+	 * 
+	 * @param file The checkpoint file
+	 * @param hashBuckets The buckets to add the classes to
+	 * @return the rewire and the chunk to carry on from
+	 * @throws IOException If the checkpoint cannot be read or is not complete
+	 */
+	public int[] loadCheckpoint(File file, HashMap<String,LinkedList<IsoHolder>> hashBuckets) throws IOException {
+		int[] position = new int[2];
+		try(BufferedReader br = new BufferedReader(new FileReader(file))) {
+			for(int i = 0; i < position.length; i++) {
+				String line = br.readLine();
+				if(line == null) {
+					throw new IOException("Checkpoint "+file+" is not complete");
+				}
+				position[i] = Integer.parseInt(line.split("\t")[1]);
+			}
+			String line;
+			while((line = br.readLine()) != null) {
+				String[] splitLine = line.split("\t");
+				if(splitLine.length != 3) {
+					continue;
+				}
+				LinkedList<IsoHolder> sameHashList = hashBuckets.get(splitLine[0]);
+				if(sameHashList == null) {
+					sameHashList = new LinkedList<IsoHolder>();
+					hashBuckets.put(splitLine[0], sameHashList);
+				}
+				sameHashList.add(new IsoHolder(splitLine[1], Integer.parseInt(splitLine[2])));
+			}
+		} catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Checkpoint "+file+" is not valid", e);
+		}
+		return position;
+	}
 	
 	/**
 	 * Outputs a given map hashBuckets to the screen. Note: Not to a file!
@@ -455,7 +892,7 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 
 	
 	/**
-	 * Run the motif finder.
+	 * Run the motif finder, with the random seed taken from the graph.
 	 * 
 	 * @param k the size of motifs in terms of number of nodes.
 	 * @param q the fraction of nodes to sample.
@@ -464,102 +901,326 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 	 * @throws FastGraphException 
 	 */
 	public void findMotifs(int k, double q, HashMap<String,LinkedList<IsoHolder>> hashBuckets) throws IOException, FastGraphException {
+		findMotifs(k, q, hashBuckets, g.getNodeBuf().getLong(0));
+	}
+	
+	
+	/**
+	 * Run the motif finder.<br>
+	 * The nodes are split into chunks of MOTIF_CHUNK_SIZE, and the subgraphs of each chunk are
+	 * enumerated and sorted into isomorphic classes in parallel, each chunk with its own Random
+	 * seeded from the seed and the chunk number. The classes of each chunk are then merged into
+	 * hashBuckets in chunk order, so the results are the same for a given seed however many
+	 * processors are used. Chunks are processed in batches to limit the memory used.<br>
+	 * Subgraphs are sampled from node neighbourhoods, or found with RAND-ESU if setEsuProbabilities
+	 * has been given probabilities, in which case each chunk enumerates the subgraphs whose
+	 * lowest node is in the chunk.<br>
+	 * Each subgraph is classified by its CanonicalForm code, so isomorphic subgraphs have the same
+	 * key and no pairwise isomorphism tests are needed. Each bucket holds a single class.<br>
+	 * The graph of each class is kept in memory, up to getMaxClassGraphsInMemory, and the graphs
+	 * of all the classes are saved to disk together at the end.
+	 * 
+	 * @param k the size of motifs in terms of number of nodes.
+	 * @param q the fraction of nodes to sample.
+	 * @param hashBuckets The buckets to store the results in
+	 * @param seed the random seed for the subgraph sampling
+	 * @throws IOException If the output files cannot be written
+	 * @throws FastGraphException 
+	 */
+	public void findMotifs(int k, double q, HashMap<String,LinkedList<IsoHolder>> hashBuckets, long seed) throws IOException, FastGraphException {
+		findMotifs(k, hashBuckets, seed, 0, 0, null);
+	}
+	
+	
+	/**
+	 * Run the motif finder from a chunk of nodes, carrying on from a checkpoint. The buckets
+	 * should hold the classes found in the chunks before, as given by loadCheckpoint.
+	 * 
+	 * @param k the size of motifs in terms of number of nodes.
+	 * @param q the fraction of nodes to sample.
+	 * @param hashBuckets The buckets to store the results in
+	 * @param seed the random seed for the subgraph sampling, the same as the run that saved the checkpoint
+	 * @param startChunk the first chunk of MOTIF_CHUNK_SIZE nodes to search
+	 * @throws IOException If the output files cannot be written
+	 * @throws FastGraphException 
+	 */
+	public void findMotifs(int k, double q, HashMap<String,LinkedList<IsoHolder>> hashBuckets, long seed, int startChunk) throws IOException, FastGraphException {
+		findMotifs(k, hashBuckets, seed, startChunk, 0, null);
+	}
+	
+	
+	/**
+	 * Run the motif finder from a chunk of nodes, saving checkpoints as it goes.
+	 * 
+	 * @param k the size of motifs in terms of number of nodes.
+	 * @param hashBuckets The buckets to store the results in
+	 * @param seed the random seed for the subgraph sampling
+	 * @param startChunk the first chunk of nodes to search
+	 * @param rewire the number of the graph in the set, for checkpoints
+	 * @param checkpointer saves the progress after each batch of chunks, null for no checkpoints
+	 * @throws IOException If the output files cannot be written
+	 */
+	private void findMotifs(int k, HashMap<String,LinkedList<IsoHolder>> hashBuckets, long seed, int startChunk, int rewire, MotifCheckpointer checkpointer) throws IOException {
+		
+		// every example is exported when saving all, off the search thread
+		try(SvgExporter exporter = saveAll ? new SvgExporter(exportLayout) : null) {
+			findChunkResults(k, seed, startChunk, result -> {
+				for(LocalMotifClass localClass : result.classes) {
+					mergeMotifClass(localClass, hashBuckets, exporter);
+				}
+			}, checkpointer == null ? null : chunk -> checkpointer.reached(rewire, chunk));
+		}
 		
-		//hashBuckets = new HashMap<String,LinkedList<LinkedList<FastGraph>>> (g.getNumberOfNodes());
-		Random r = new Random(g.getNodeBuf().getLong(0));
+		saveMotifClasses(hashBuckets);
+	}
+	
+	
+	/**
+	 * Find the classes of the subgraphs of the whole graph, without adding them to buckets.
+	 * The classes are combined in chunk order, so merging them gives the same as findMotifs.
+	 * 
+	 * @param k the size of motifs in terms of number of nodes.
+	 * @param seed the random seed for the subgraph sampling
+	 * @return the classes found, in the order they were first found
+	 */
+	private ChunkResult findMotifClasses(int k, long seed) {
+		ChunkResult ret = new ChunkResult();
+		HashMap<String,LocalMotifClass> classes = new HashMap<String,LocalMotifClass>();
+		try {
+			findChunkResults(k, seed, 0, result -> {
+				for(LocalMotifClass localClass : result.classes) {
+					LocalMotifClass found = classes.get(localClass.hashString);
+					if(found == null) {
+						classes.put(localClass.hashString, localClass);
+						ret.classes.add(localClass);
+					} else {
+						found.number += localClass.number;
+						found.examples.addAll(localClass.examples);
+					}
+				}
+			}, null);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e); // not thrown, as the classes are only kept in memory
+		}
+		return ret;
+	}
+	
+	
+	/**
+	 * Enumerate the chunks of nodes in parallel, in batches to limit the memory used, passing the
+	 * result of each chunk to the handler in chunk order.
+	 * 
+	 * @param k the size of motifs in terms of number of nodes.
+	 * @param seed the random seed for the subgraph sampling
+	 * @param startChunk the first chunk to enumerate
+	 * @param handler receives the result of each chunk, on the calling thread
+	 * @param batchDone is given the next chunk after each batch has been handled, can be null
+	 * @throws IOException If the handler cannot write its output
+	 */
+	private void findChunkResults(int k, long seed, int startChunk, ChunkResultHandler handler, ChunkProgress batchDone) throws IOException {
 		long time = Debugger.createTime();
+		int numberOfNodes = g.getNumberOfNodes();
+		int chunks = (numberOfNodes+MOTIF_CHUNK_SIZE-1)/MOTIF_CHUNK_SIZE;
+		int batchSize = Runtime.getRuntime().availableProcessors()*4;
+		SubgraphDeduplicator dedup = deduplicate ? new SubgraphDeduplicator() : null; // shared by all the chunks
+		duplicatesSkipped = 0;
 		
-		for(int n = 0; n < g.getNumberOfNodes(); n++) {
+		for(int batchStart = startChunk; batchStart < chunks; batchStart += batchSize) {
+			int batchEnd = Math.min(chunks, batchStart+batchSize);
+			ChunkResult[] results = new ChunkResult[batchEnd-batchStart];
+			int firstChunk = batchStart;
+			IntStream.range(firstChunk, batchEnd).parallel().forEach(chunk -> {
+				results[chunk-firstChunk] = findMotifsInChunk(k, chunk, seed, dedup);
+			});
 			
-			if(n%100000 ==0) {
-				Debugger.outputTime("done node" + n, time);
+			for(ChunkResult result : results) {
+				handler.chunkDone(result);
+			}
+			if(batchDone != null) {
+				batchDone.reached(batchEnd);
 			}
 			
-			HashSet<FastGraph> subgraphs = new HashSet<FastGraph>();
-			enumerator.enumerateSubgraphsFromNode(k, 5, 10, n, r, subgraphs);
-			
-			for(FastGraph subgraph : subgraphs) {
-				ExactIsomorphism ei = new ExactIsomorphism(subgraph);
-				String hashString = ei.generateStringForHash();
-	//Debugger.log("new subgraph, hash value "+hashString);			
-				if(hashBuckets.containsKey(hashString)) {
-					LinkedList<IsoHolder> sameHashList = hashBuckets.get(hashString); // all of the FastGraphs with the given hash value
-					boolean found = false;
-					for(IsoHolder isoList : sameHashList) { // now need to test all the same hash value buckets for isomorphism
-						// only need to test the first Graph in an isomorphic list!
-						FastGraph comparisonGraph = isoList.getGraph();
-
-						if(ei.isomorphic(comparisonGraph)) {
-							isoList.incrementNumber();
-							found = true;
-							
-							if(saveAll) {
-								//Debugger.log("saving all");
-								subgraph.setName(hashString);
-								File saveFolder = new File("motifs"+File.separatorChar+g.getName()+File.separatorChar+hashString+"-"+
-										sameHashList.size()+File.separatorChar+isoList.getNumber());
-								saveFolder.mkdirs();
-								subgraph.saveBuffers(saveFolder.getAbsolutePath(),hashString+"-"+sameHashList.size());
-								exportSVG(saveFolder.getAbsolutePath(), subgraph, 0, true);
-							}
-							
-							break;
-						}
-					}
-					
-					if(!found) { // no isomorphic graphs found, so need to create a new list
-						IsoHolder newIsoList = new IsoHolder(hashString+"-"+(sameHashList.size()+1), 1);
-						
-						subgraph.setName(hashString);
-						subgraph.saveBuffers("motifs"+File.separatorChar+g.getName()+File.separatorChar+hashString+"-"+(sameHashList.size()+1), hashString+"-"+(sameHashList.size()+1));
-						
-						//newIsoList.setGraph(subgraph);
-						sameHashList.add(newIsoList);
-					}
-				} else {
-					LinkedList<IsoHolder> newHashList = new LinkedList<IsoHolder>();
-					hashBuckets.put(hashString, newHashList);
-					
-					subgraph.setName(hashString);
-					subgraph.saveBuffers("motifs"+File.separatorChar+g.getName()+File.separatorChar+hashString+"-1", hashString+"-1");
-					
-					IsoHolder newIsoList = new IsoHolder(hashString+"-1", 1);
-					//newIsoList.add(subgraph);
-					newHashList.add(newIsoList);
+			Debugger.outputTime("done node " + Math.min(numberOfNodes, batchEnd*MOTIF_CHUNK_SIZE), time);
+		}
+		
+		if(dedup != null) {
+			duplicatesSkipped = dedup.getDuplicates();
+			Debugger.log("skipped "+duplicatesSkipped+" repeated subgraphs, "+dedup.getUnique()+" distinct");
+		}
+	}
+	
+	
+	/**
+	 * Save the graphs of all the classes that have not been saved yet. The graphs stay in memory for the export.
+	 * 
+	 * @param hashBuckets The buckets holding the classes
+	 * @throws IOException If the graphs cannot be saved
+	 */
+	private void saveMotifClasses(HashMap<String,LinkedList<IsoHolder>> hashBuckets) throws IOException {
+		long time = Debugger.createTime();
+		int count = 0;
+		for(LinkedList<IsoHolder> sameHashList : hashBuckets.values()) {
+			for(IsoHolder holder : sameHashList) {
+				if(holder.saveGraph()) {
+					count++;
 				}
-
-				ei = null; //GC
-				//System.gc();
 			}
-			
 		}
+		Debugger.outputTime("saved "+count+" motif classes", time);
+	}
+	
+	
+	/**
+	 * Keep the graph of a new class in memory, saving and dropping the oldest graphs if
+	 * there are more than maxClassGraphsInMemory.
+	 * 
+	 * @param holder the new class, with its graph set
+	 * @throws IOException If the graphs cannot be saved
+	 */
+	private void addClassGraphInMemory(IsoHolder holder) throws IOException {
+		classGraphsInMemory.addLast(holder);
+		while(classGraphsInMemory.size() > maxClassGraphsInMemory) {
+			IsoHolder oldest = classGraphsInMemory.removeFirst();
+			oldest.saveGraph();
+			oldest.dropGraph();
+		}
+	}
+	
+	
+	/**
+	 * Enumerate the subgraphs of a chunk of nodes and sort them into isomorphic classes.
+	 * Called in parallel, so it only reads the graph and shared state.
+	 * 
+	 * @param k the size of motifs in terms of number of nodes.
+	 * @param chunk the chunk of nodes
+	 * @param seed the random seed for the whole run
+	 * @param dedup skips subgraphs already found in any chunk, null to count every sample
+	 * @return the classes found, in the order they were first found
+	 */
+	private ChunkResult findMotifsInChunk(int k, int chunk, long seed, SubgraphDeduplicator dedup) {
+		ChunkResult result = new ChunkResult();
+		// each chunk has its own enumerator, as they are not thread safe
+		EnumerateSubgraphNeighbourhood chunkEnumerator = new EnumerateSubgraphNeighbourhood(g);
+		Random r = new Random(seed ^ (chunk*0x9E3779B97F4A7C15L));
+		HashMap<String,LocalMotifClass> chunkClasses = new HashMap<String,LocalMotifClass>();
+		int end = Math.min(g.getNumberOfNodes(), (chunk+1)*MOTIF_CHUNK_SIZE);
+		SubgraphCallback classifier = subgraphView -> classifySubgraph(subgraphView, chunkClasses, result);
+		if(dedup != null) {
+			classifier = dedup.filter(classifier);
+		}
+		if(esuProbabilities != null) {
+			// ESU enumerators have a marker for every node, so they are reused rather than made for each chunk
+			EnumerateSubgraphFanmod esu = esuEnumerators.poll();
+			if(esu == null) {
+				esu = new EnumerateSubgraphFanmod(g);
+			}
+			for(int n = chunk*MOTIF_CHUNK_SIZE; n < end; n++) {
+				esu.enumerateFromNode(n, k, esuProbabilities, r, classifier);
+			}
+			esuEnumerators.add(esu);
+			return result;
+		}
+		for(int n = chunk*MOTIF_CHUNK_SIZE; n < end; n++) {
+			chunkEnumerator.enumerateSubgraphsFromNode(k, 5, 10, n, r, classifier);
+		}
+		return result;
+	}
+	
+	
+	/**
+	 * Add a subgraph to the class with its code, creating the class if it is the first in the chunk.
+	 * 
+	 * @param view the subgraph, induced
+	 * @param chunkClasses the classes found in the chunk, by code
+	 * @param result the result to add new classes to
+	 */
+	private void classifySubgraph(SubgraphView view, HashMap<String,LocalMotifClass> chunkClasses, ChunkResult result) {
+		// small subgraphs are looked up in SmallMotifTable, a FastGraph is only built when one is kept
+		String hashString = view.getCode();
+		FastGraph subgraph = null;
+		LocalMotifClass found = chunkClasses.get(hashString);
+		if(found == null) {
+			subgraph = view.toFastGraph();
+			found = new LocalMotifClass(hashString, subgraph);
+			chunkClasses.put(hashString, found);
+			result.classes.add(found);
+		}
+		found.number++;
+		if(saveAll) {
+			if(subgraph == null) {
+				subgraph = view.toFastGraph();
+			}
+			found.examples.add(subgraph);
+		}
+	}
+	
 	
+	/**
+	 * Add the count of a class found in a chunk to the class with the same canonical code in
+	 * the buckets, creating the class if it has not been seen before.
+	 * 
+	 * @param localClass the class found in a chunk
+	 * @param hashBuckets The buckets to store the results in
+	 * @param exporter Exports the examples when saving all, can be null otherwise
+	 * @throws IOException If the output files cannot be written
+	 */
+	private void mergeMotifClass(LocalMotifClass localClass, HashMap<String,LinkedList<IsoHolder>> hashBuckets, SvgExporter exporter) throws IOException {
+		String hashString = localClass.hashString;
+		LinkedList<IsoHolder> sameHashList = hashBuckets.get(hashString); // all of the FastGraphs with the given hash value
+		if(sameHashList == null) {
+			sameHashList = new LinkedList<IsoHolder>();
+			hashBuckets.put(hashString, sameHashList);
+		}
+		
+		IsoHolder isoList = null;
+		if(!sameHashList.isEmpty()) {
+			// canonical codes are equal only for isomorphic graphs, so there is one class per code
+			isoList = sameHashList.getFirst();
+		}
+		
+		int firstExample = 0;
+		if(isoList == null) { // no isomorphic graphs found, so need to create a new list
+			String key = hashString+"-"+(sameHashList.size()+1);
+			isoList = new IsoHolder(key, 0);
+			FastGraph subgraph = localClass.graph;
+			subgraph.setName(hashString);
+			isoList.setGraph(subgraph); // saved with the other classes at the end
+			addClassGraphInMemory(isoList);
+			sameHashList.add(isoList);
+			firstExample = 1; // the graph of the class is not saved again
+			isoList.incrementNumber();
+		}
+		
+		if(saveAll) {
+			for(int i = firstExample; i < localClass.examples.size(); i++) {
+				isoList.incrementNumber();
+				FastGraph subgraph = localClass.examples.get(i);
+				subgraph.setName(hashString);
+				File saveFolder = new File("motifs"+File.separatorChar+g.getName()+File.separatorChar+isoList.getKey()+File.separatorChar+isoList.getNumber());
+				saveFolder.mkdirs();
+				subgraph.saveBuffers(saveFolder.getAbsolutePath(),isoList.getKey());
+				exportSVG(exporter, saveFolder.getAbsolutePath(), subgraph, 0, true);
+			}
+		} else {
+			isoList.setNumber(isoList.getNumber()+localClass.number-firstExample);
+		}
 	}
 	
 	
 	/**
 	 * Exports the given IsoHolder (and isomorphic count) to SVG.<br>
-	 * Saves as motifs/[graph name]/[iso key]-count/motif.svg
+	 * Saves as motifs/[graph name]/[iso key]-count/motif.svg<br>
+	 * The graph is laid out and saved by the exporter on another thread.
 	 * 
+	 * @param exporter The exporter to queue the graph with
 	 * @param key The hashkey for this graph
 	 * @param graph The graph to be exported
 	 * @param count The isomorphic count
 	 * @param saveAll If this is for saving every motif found
-	 * @throws IOException 
+	 * @throws IOException If an earlier graph could not be exported
 	 */
-	private void exportSVG(String key, FastGraph graph, int count, boolean saveAll) throws IOException {
+	private void exportSVG(SvgExporter exporter, String key, FastGraph graph, int count, boolean saveAll) throws IOException {
 		//int count = isoList.getNumber();
-		uk.ac.kent.displayGraph.Graph dg = graph.generateDisplayGraph();
-		dg.randomizeNodePoints(new Point(20,20),300,300);
-		dg.setLabel(key);
-		uk.ac.kent.displayGraph.display.GraphWindow gw = new uk.ac.kent.displayGraph.display.GraphWindow(dg, false);
-		uk.ac.kent.displayGraph.drawers.BasicSpringEmbedder bse = new uk.ac.kent.displayGraph.drawers.BasicSpringEmbedder();
-		GraphDrawerSpringEmbedder se = new GraphDrawerSpringEmbedder(KeyEvent.VK_Q,"Spring Embedder - randomize, no animation",true);
-		se.setAnimateFlag(false);
-		se.setIterations(100);
-		se.setTimeLimit(200);
-		se.setGraphPanel(gw.getGraphPanel());
-		se.layout();
 		File saveLocation = null;
 		if (saveAll) {
 			saveLocation = new File(key+File.separatorChar+"motif.svg");
@@ -567,8 +1228,7 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 			saveLocation = new File(Launcher.startingWorkingDirectory+File.separatorChar+"motifs"+File.separatorChar+g.getName()+File.separatorChar+key+"-"+count+File.separatorChar+"motif.svg");
 		}
 		//Debugger.log("exporting SVG to: " + saveLocation.getAbsolutePath() + " (count: " + count + ")");
-		uk.ac.kent.displayGraph.ExportSVG exSVG = new uk.ac.kent.displayGraph.ExportSVG(dg);
-		exSVG.saveGraph(saveLocation);
+		exporter.export(graph, key, saveLocation);
 		
 	}
 	
@@ -618,6 +1278,10 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 		motifResults.sort(Comparator.comparing(MotifResultHolder::generateSignificance).thenComparing(MotifResultHolder::getRealPercentage).reversed());
 		
 		Debugger.log("length of motifResults" + motifResults.size());
+		
+		if(exportTopN > 0) {
+			exportTopResults(motifResults);
+		}
 				
 		mt.publish(83, "Exporting Results", 0, "");
 		buildHomePage(minSize,maxSize);
@@ -627,7 +1291,7 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 			int pagePercentage = (int) (((double) i/numberOfPages)*100);
 			mt.publish(pagePercentage, "Exporting page "+i+" of "+numberOfPages, false);
 			
-			buildPage(i,numberOfPages,Util.subList(motifResults,i*sample, (i*sample)+sample), size, minSize, maxSize, saveAll);
+			buildPage(i,numberOfPages,Util.subList(motifResults,i*sample, (i*sample)+sample), i*sample, size, minSize, maxSize, saveAll);
 		}	
 		
 		Debugger.log("number of pages required: " + numberOfPages);
@@ -635,6 +1299,29 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 		return motifResults;
 	}
 
+	/**
+	 * Exports an SVG of the graph of each of the most significant results, the number given by setExportTopN.
+	 * 
+	 * @param motifResults The results, most significant first
+	 * @throws IOException If a graph cannot be loaded or exported
+	 */
+	private void exportTopResults(ArrayList<MotifResultHolder> motifResults) throws IOException {
+		long time = Debugger.createTime();
+		try(SvgExporter exporter = new SvgExporter(exportLayout)) {
+			for(MotifResultHolder result : Util.subList(motifResults, 0, exportTopN)) {
+				String key = result.getKey();
+				File directory = new File("motifs"+File.separatorChar+g.getName()+File.separatorChar+key);
+				if(!directory.exists()) {
+					continue; // no graph saved for this class
+				}
+				FastGraph graph = FastGraph.loadBuffersGraphFactory(directory.getPath(), key);
+				File saveLocation = new File(Launcher.startingWorkingDirectory+File.separatorChar+"motifs"+File.separatorChar+g.getName()+File.separatorChar+key+File.separatorChar+"motif.svg");
+				exporter.export(graph, key, saveLocation);
+			}
+		}
+		Debugger.outputTime("exported the top "+exportTopN+" results", time);
+	}
+	
 	/**
 	 * Builds a list of results from the specified file
 	 * 
@@ -717,13 +1404,14 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 	 * @param pageNumber This page number
 	 * @param totalPages The total number of pages
 	 * @param results The list of results to output
+	 * @param firstRank The position of the first result on this page in all the results
 	 * @param motifSize The size of motifs this file is for
 	 * @param minSize The minimum size of motifs found
 	 * @param maxSize The maximum size of motifs found
 	 * @param saveAll If the user has been svaing every motif
 	 * @throws FileNotFoundException If the output file cannot be written to
 	 */
-	private void buildPage(int pageNumber, int totalPages, List<MotifResultHolder> results, int motifSize, 
+	private void buildPage(int pageNumber, int totalPages, List<MotifResultHolder> results, int firstRank, int motifSize, 
 			int minSize, int maxSize, boolean saveAll) throws FileNotFoundException {
 
 		Debugger.log("length of output results" + results.size());
@@ -764,11 +1452,15 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 			headerRow.appendElement("th").text("All examples").attr("style", "border: 1px solid;");
 		}
 		
+		int rank = firstRank;
 		for(MotifResultHolder result : results) {
 			
 			Element row = table.appendElement("tr");
 			Element imageCell = row.appendElement("td").attr("style", "border: 1px solid;");
-			imageCell.appendElement("img").attr("src",result.getKey()+"/motif.svg");
+			if(exportTopN == 0 || rank < exportTopN) {
+				imageCell.appendElement("img").attr("src",result.getKey()+"/motif.svg");
+			}
+			rank++;
 			row.appendElement("td").text(result.getKey()).attr("style", "border: 1px solid;");
 			row.appendElement("td").text(String.format( "%.4f", result.generateSignificance())).attr("style", "border: 1px solid;");
 			row.appendElement("td").text(String.format( "%.4f", result.generateDifference())).attr("style", "border: 1px solid;");
@@ -967,9 +1659,57 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 	}
 	
 	
+	/**
+	 * The subgraphs of one isomorphic class found in a chunk of nodes by findMotifsInChunk.
+	 */
+	private static class LocalMotifClass {
+		private String hashString; // the canonical code
+		private FastGraph graph; // the first subgraph found
+		private int number = 0; // the number of subgraphs found
+		private ArrayList<FastGraph> examples = new ArrayList<FastGraph>(); // every subgraph, only kept if saving all
+		
+		private LocalMotifClass(String hashString, FastGraph graph) {
+			this.hashString = hashString;
+			this.graph = graph;
+		}
+	}
+	
+	
+	/**
+	 * The result of findMotifsInChunk, the classes in the order they were found.
+	 */
+	private static class ChunkResult {
+		private ArrayList<LocalMotifClass> classes = new ArrayList<LocalMotifClass>();
+	}
+	
+	
+	/**
+	 * Receives the results of findChunkResults.
+	 */
+	private interface ChunkResultHandler {
+		void chunkDone(ChunkResult result) throws IOException;
+	}
+	
+	
+	/**
+	 * Told the next chunk to search by findChunkResults.
+	 */
+	private interface ChunkProgress {
+		void reached(int chunk) throws IOException;
+	}
+	
+	
+	/**
+	 * Saves the progress of findAllMotifs, the graph of the set and the chunk of nodes to carry on from.
+	 */
+	private interface MotifCheckpointer {
+		void reached(int rewire, int chunk) throws IOException;
+	}
+	
+	
 	/**
 	 * Class to hold a FastGraph key and the number of instances of that FastGraph for a particular key.<br>
-	 * Graphs are loaded from disk. 
+	 * The graph is held in memory when the class is found in this run, otherwise it is loaded from disk.
 	 * Saves keeping big lists and lists of lists.
 	 * 
 	 * @author Rob Baker
@@ -979,6 +1719,8 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 		
 		private String key; //The key
 		private int number; //The number of graphs
+		private FastGraph graph = null; //The graph, if held in memory
+		private boolean saved = true; //If the graph is on disk
 		
 		/**
 		 * Trivial constructor
@@ -1031,13 +1773,48 @@ Debugger.log("hash string \t"+key+"\tnum of diff isom groups\t"+sameHashList.siz
 		}
 		
 		/**
-		 * Loads the graph from disk
+		 * Gets the graph, from memory if held, otherwise loaded from disk
 		 * @return the graph
 		 * @throws IOException If the buffers cannot be loaded
 		 */
 		public FastGraph getGraph() throws IOException {
+			if(graph != null) {
+				return graph;
+			}
 			return FastGraph.loadBuffersGraphFactory("motifs"+File.separatorChar+g.getName()+File.separatorChar+key, key);
 		}
+		
+		/**
+		 * Holds the graph in memory, it is not on disk until saveGraph is called
+		 * @param graph the graph of this class
+		 */
+		public void setGraph(FastGraph graph) {
+			this.graph = graph;
+			saved = false;
+		}
+		
+		/**
+		 * Saves the graph to disk if it is held in memory and has not been saved
+		 * @return true if the graph was saved by this call
+		 * @throws IOException If the buffers cannot be saved
+		 */
+		public boolean saveGraph() throws IOException {
+			if(saved || graph == null) {
+				return false;
+			}
+			graph.saveBuffers("motifs"+File.separatorChar+g.getName()+File.separatorChar+key, key);
+			saved = true;
+			return true;
+		}
+		
+		/**
+		 * Drops the graph from memory, so it will be loaded from disk. Call saveGraph first.
+		 */
+		public void dropGraph() {
+			if(saved) {
+				graph = null;
+			}
+		}
 
 		
 		public String toString() {
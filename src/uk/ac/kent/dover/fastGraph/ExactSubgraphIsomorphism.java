@@ -6,7 +6,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.LinkedList;
 
 import uk.ac.kent.dover.fastGraph.comparators.AlwaysTrueEdgeComparator;
@@ -15,6 +14,7 @@ import uk.ac.kent.dover.fastGraph.comparators.EdgeComparator;
 import uk.ac.kent.dover.fastGraph.comparators.NodeComparator;
 import uk.ac.kent.dover.fastGraph.comparators.SimpleEdgeLabelComparator;
 import uk.ac.kent.dover.fastGraph.comparators.SimpleNodeLabelComparator;
+import uk.ac.kent.dover.fastGraph.isomorphism.AutomorphismGroup;
 
 /**
  * Testing the containment of a FastGraph inside another FastGraph. Assumes a single edge between each node.
@@ -44,6 +44,16 @@ public class ExactSubgraphIsomorphism extends SubgraphIsomorphism {
 	
 	private boolean resultPossible; // set to false if a pattern node has no possible mappings in the target graph
 
+	private NeighbourCursor targetCursor;
+	private NeighbourCursor patternCursor;
+	private int[] targetNeighbourStamp; // equal to neighbourStamp if the target node is a neighbour of the node tested in isAMatch
+	private int[] targetNeighbourEdge; // an edge to each target neighbour marked in targetNeighbourStamp
+	private int[] patternNeighbourStamp; // equal to neighbourStamp if the pattern node has been tested in isAMatch
+	private int neighbourStamp = 0;
+
+	private int[][] matchBelow = null; // symmetry breaking, pattern nodes that must match larger target nodes than each pattern node, null for all mappings
+	private int[][] matchAbove = null; // symmetry breaking, pattern nodes that must match smaller target nodes than each pattern node
+
 	/**
 	 * Create an ExactSubgraphIsomorphism before running {@link #getFoundMappings() getFoundMappings}.
 	 * 
@@ -51,9 +61,12 @@ public class ExactSubgraphIsomorphism extends SubgraphIsomorphism {
 	 * @param targetGraph the larger target graph in which to find the pattern
 	 * @param nodeComparator a comparator to tell when two nodes match, if null then all nodes potentially match all other nodes
 	 * @param edgeComparator a comparator to tell when two edges match, if null then all edges with two matching ends will match
+	 * @throws UnsupportedOperationException if either graph has connections compressed without edge indexes, as the mappings include edges
 	 */
 	public ExactSubgraphIsomorphism(FastGraph targetGraph, FastGraph patternGraph, NodeComparator nodeComparator, EdgeComparator edgeComparator) {
 
+		targetGraph.checkCompressedEdgeIndexes();
+		patternGraph.checkCompressedEdgeIndexes();
 		this.targetGraph = targetGraph;
 		this.patternGraph = patternGraph;
 		
@@ -75,6 +88,12 @@ public class ExactSubgraphIsomorphism extends SubgraphIsomorphism {
 		
 		patternToTargetEdgeMatches = new int[patternGraph.getNumberOfEdges()];
 		
+		targetCursor = new NeighbourCursor(targetGraph);
+		patternCursor = new NeighbourCursor(patternGraph);
+		targetNeighbourStamp = new int[targetGraph.getNumberOfNodes()];
+		targetNeighbourEdge = new int[targetGraph.getNumberOfNodes()];
+		patternNeighbourStamp = new int[patternGraph.getNumberOfNodes()];
+		
 		resultPossible = findPossibleNodeMappings();
 		
 		foundMappings = new LinkedList<SubgraphMapping>();
@@ -89,6 +108,61 @@ public class ExactSubgraphIsomorphism extends SubgraphIsomorphism {
 	public LinkedList<SubgraphMapping> getFoundMappings () {return foundMappings;}
 	
 
+	/**
+	 * Find one mapping for each match, rather than a mapping for each automorphism of the pattern,
+	 * using the structure of the pattern only. This is only correct if the comparators do not tell
+	 * apart pattern nodes or edges that the automorphisms swap, as with the default comparators.
+	 * Call before subgraphIsomorphismFinder.
+	 *
+	 * @param breakSymmetry true to find one mapping for each match, false to find all mappings
+	 */
+	public void setSymmetryBreaking(boolean breakSymmetry) {
+		if(breakSymmetry) {
+			setSymmetryBreaking(new AutomorphismGroup(patternGraph, new int[patternGraph.getNumberOfNodes()]));
+		} else {
+			matchBelow = null;
+			matchAbove = null;
+		}
+	}
+
+
+	/**
+	 * Find one mapping for each match under a group of automorphisms of the pattern. Mappings
+	 * that differ by an automorphism are found once, by requiring, for each level of the stabiliser
+	 * chain, the base point to match a smaller target node than the rest of its basic orbit.
+	 * The automorphisms must preserve the node and edge comparisons. Call before subgraphIsomorphismFinder.
+	 *
+	 * @param patternGroup automorphisms of the pattern graph
+	 */
+	public void setSymmetryBreaking(AutomorphismGroup patternGroup) {
+		int n = patternGraph.getNumberOfNodes();
+		if(patternGroup.getSize() != n) {
+			throw new IllegalArgumentException("Group acts on "+patternGroup.getSize()+" nodes, the pattern has "+n);
+		}
+		ArrayList<ArrayList<Integer>> below = new ArrayList<ArrayList<Integer>>(n);
+		ArrayList<ArrayList<Integer>> above = new ArrayList<ArrayList<Integer>>(n);
+		for(int i = 0; i < n; i++) {
+			below.add(new ArrayList<Integer>());
+			above.add(new ArrayList<Integer>());
+		}
+		int[] base = patternGroup.getBase();
+		for(int level = 0; level < base.length; level++) {
+			for(int p : patternGroup.getBasicOrbit(level)) {
+				if(p != base[level]) {
+					below.get(base[level]).add(p);
+					above.get(p).add(base[level]);
+				}
+			}
+		}
+		matchBelow = new int[n][];
+		matchAbove = new int[n][];
+		for(int i = 0; i < n; i++) {
+			matchBelow[i] = Util.convertArrayList(below.get(i));
+			matchAbove[i] = Util.convertArrayList(above.get(i));
+		}
+	}
+
+
 	/**
 	 * Find the pattern graph in the target graph. Returns all possible mappings. Assumes single edge between nodes.
 	 *
@@ -217,29 +291,54 @@ public class ExactSubgraphIsomorphism extends SubgraphIsomorphism {
 //Debugger.log("isAMatch fail on target already matched");
 			return false;
 		}
+
+		// with symmetry breaking, check the order of target nodes matched to pattern nodes in the same basic orbit
+		if(matchBelow != null) {
+			for(int p : matchBelow[patternNode]) {
+				int t = patternToTargetNodeMatches[p];
+				if(t != -1 && t < targetNode) {
+					return false;
+				}
+			}
+			for(int p : matchAbove[patternNode]) {
+				int t = patternToTargetNodeMatches[p];
+				if(t != -1 && t > targetNode) {
+					return false;
+				}
+			}
+		}
 		
-		int[] patternConnectingEdges = patternGraph.getNodeConnectingEdges(patternNode);
-		int[] targetConnectingEdges = targetGraph.getNodeConnectingEdges(targetNode);
-		
-		int[] targetConnectingNodes = targetGraph.getNodeConnectingNodes(targetNode);
+		// a new stamp clears the neighbour marks from the previous call without touching the arrays
+		if(neighbourStamp == Integer.MAX_VALUE) {
+			Arrays.fill(targetNeighbourStamp, 0);
+			Arrays.fill(patternNeighbourStamp, 0);
+			neighbourStamp = 0;
+		}
+		neighbourStamp++;
 
-		// this used for efficient containment test
-		HashSet<Integer> targetConnectingNodeSet = new HashSet<Integer>(targetConnectingEdges.length*2);
-		for(int i : targetConnectingNodes) {
-			targetConnectingNodeSet.add(i);
+		// mark the target neighbours for efficient containment test, keeping the first edge to each
+		// not needed if the target connections are sorted, as edges can then be found by binary search
+		boolean searchTarget = targetGraph.getConnectionsSortedByNode();
+		if(!searchTarget) {
+			targetCursor.setAll(targetNode);
+			while(targetCursor.next()) {
+				int targetNeighbour = targetCursor.getNode();
+				if(targetNeighbourStamp[targetNeighbour] != neighbourStamp) {
+					targetNeighbourStamp[targetNeighbour] = neighbourStamp;
+					targetNeighbourEdge[targetNeighbour] = targetCursor.getEdge();
+				}
+			}
 		}
-				
-		// this allows duplicates to be discarded
-		HashSet<Integer> testedPatternNodeNeighbours = new HashSet<Integer>(patternConnectingEdges.length*2);
 		
 		// for each pattern neighbour check that it matches to an equivalent neighbour of the target node
-		for(int i = 0; i < patternConnectingEdges.length; i++) {
-			int patternEdge = patternConnectingEdges[i];
-			int patternNeighbour = patternGraph.oppositeEnd(patternEdge, patternNode);
-			if(testedPatternNodeNeighbours.contains(patternNeighbour)) { // this is a test for duplicate connecting nodes (parallel edges), we don't test node more than once
+		patternCursor.setAll(patternNode);
+		while(patternCursor.next()) {
+			int patternEdge = patternCursor.getEdge();
+			int patternNeighbour = patternCursor.getNode();
+			if(patternNeighbourStamp[patternNeighbour] == neighbourStamp) { // this is a test for duplicate connecting nodes (parallel edges), we don't test node more than once
 				continue;
 			}
-			testedPatternNodeNeighbours.add(patternNeighbour);
+			patternNeighbourStamp[patternNeighbour] = neighbourStamp;
 			
 			int targetMatch = patternToTargetNodeMatches[patternNeighbour];
 //Debugger.log("pattern neighbour "+patternNeighbour+" matches with target "+targetMatch);
@@ -247,15 +346,21 @@ public class ExactSubgraphIsomorphism extends SubgraphIsomorphism {
 				// pattern neighbouring node is not matched with anything, so can continue
 				continue;
 			}
-			if(!targetConnectingNodeSet.contains(targetMatch)) {
+			// get the edge between the target and target neighbour
+			int targetEdge;
+			if(searchTarget) {
+				targetEdge = targetGraph.firstEdgeBetween(targetNode,targetMatch);
+			} else if(targetNeighbourStamp[targetMatch] == neighbourStamp) {
+				targetEdge = targetNeighbourEdge[targetMatch];
+			} else {
+				targetEdge = -1;
+			}
+			if(targetEdge == -1) {
 //Debugger.log("isAMatch fail on target neigbour already matched with non-neighbour");
 				// pattern neighbour has a match that is not a neighbour of target node, so the patternNode and targetNode cannot match
 				return false;
 			}
 
-			// get the edge between the target and target neighbour
-			int targetEdge = targetGraph.edgesBetween(targetNode,targetMatch).get(0);
-			
 			if(edgeComparator.compare(targetEdge,patternEdge) != 0) {
 //Debugger.log("isAMatch fail on edge comparator between the target nodes");
 				// edge between pattern node and pattern neighbour does not match the edge between pattern node and pattern neighbour
@@ -325,7 +430,7 @@ public class ExactSubgraphIsomorphism extends SubgraphIsomorphism {
 			 
 			// there will be at least one of these, as the target nodes cannot have mappings
 			// in isAMatch without a connecting edge
-			int targetEdge = targetGraph.edgesBetween(targetNode1, targetNode2).get(0);
+			int targetEdge = targetGraph.firstEdgeBetween(targetNode1, targetNode2);
 			edgeMatches[patternEdge] = targetEdge;
 		}
 		
@@ -343,15 +448,17 @@ public class ExactSubgraphIsomorphism extends SubgraphIsomorphism {
 			);
 		mainDir.mkdirs(); //make directory
 		int count = 0;
-		for(SubgraphMapping map : foundMappings) {
-			
-			//Debugger.log(map.toString());						
-			int[] nodeMapping = map.getNodeMapping();
-			int[] edgeMapping = map.getEdgeMapping();
-			FastGraph newSub = targetGraph.generateGraphFromSubgraph(nodeMapping, edgeMapping);
-			saveSubgraph(targetGraph, newSub, count, mainDir);
-			
-			count++;
+		try(SvgExporter exporter = new SvgExporter(exportLayout)) {
+			for(SubgraphMapping map : foundMappings) {
+				
+				//Debugger.log(map.toString());						
+				int[] nodeMapping = map.getNodeMapping();
+				int[] edgeMapping = map.getEdgeMapping();
+				FastGraph newSub = targetGraph.generateGraphFromSubgraph(nodeMapping, edgeMapping);
+				saveSubgraph(targetGraph, newSub, count, mainDir, exporter);
+				
+				count++;
+			}
 		}
 		buildHtmlOutput(targetGraph, mainDir, count, "Exact");
 	}
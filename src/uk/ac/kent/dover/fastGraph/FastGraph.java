@@ -12,8 +12,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
 import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -25,6 +28,9 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -56,13 +62,21 @@ import uk.ac.kent.dover.fastGraph.comparators.SimpleNodeLabelComparator;
  * similarly edge with edgeIndex e starts in edgeBuf at e*edgeByteSize.
  * </p>
  * <ul>
- * <li>nodeBuf stores offset of label start in nodeLabelBuf and size (in chars) of labels.</li>
+ * <li>nodeBuf stores offset of label start in nodeLabelBuf and size (in chars, or bytes for compact labels) of labels.</li>
  * <li>nodeBuf stores in and out offset and in and out number (degree) of connecting nodes and edges start
  * which link to connectionBuf and size (in chars) of in or out edges.</li>
- * <li>edgeBuf stores offset of label start in edgeLabelBuf and size (in chars) of labels.</li>
+ * <li>edgeBuf stores offset of label start in edgeLabelBuf and size (in chars, or bytes for compact labels) of labels.</li>
  * <li>connectionBuf stores pairs of edgeIndex-nodeIndex (both are stored for fastest access) which form a
  * list of connecting items, with the in edge-nodes first, then out edge-nodes</li>
  * </ul>
+ * By default each label is stored as UTF-16 chars, one copy per node or edge. With compact labels
+ * (see setCompactLabels) each distinct label is stored once, UTF-8 encoded, and nodes or edges
+ * with the same label share it.
+ * Each buffer is a SegmentedByteBuffer, so graphs are not limited by the 2GB size of a single ByteBuffer.
+ * When connectionBuf or a label buffer is larger than MAX_BYTE_BUFFER_SIZE the offsets into it are stored
+ * as unsigned counts of connection pairs or chars rather than bytes.
+ * Graphs used only for analysis can have their connections compressed, see compressConnections, then
+ * connectionBuf holds variable length gaps between node indexes rather than fixed size pairs.
  * json from <a href="https://github.com/stleary/JSON-java"> json library </a>
  * 
  * @author Peter Rodgers
@@ -99,13 +113,40 @@ public class FastGraph {
 	
 	public static final String INFO_SPLIT_STRING = "~";
 	
+	public static final long CONTAINER_MAGIC = 0x444F564552464731L; // "DOVERFG1" at the start of every graph container file
+	public static final int CONTAINER_VERSION = 1; // increase when the container layout changes, older versions must stay readable
+	public static final int CONTAINER_PAGE_SIZE = 4096; // size of the header, sections start on multiples of this
+	public static final int CONTAINER_VERSION_OFFSET = 8; // int
+	public static final int CONTAINER_FLAGS_OFFSET = 12; // int
+	public static final int CONTAINER_NODES_OFFSET = 16; // int
+	public static final int CONTAINER_EDGES_OFFSET = 20; // int
+	public static final int CONTAINER_SECTION_COUNT_OFFSET = 24; // int
+	public static final int CONTAINER_HEADER_CHECKSUM_OFFSET = 28; // int, CRC32 of the header with this field set to 0
+	public static final int CONTAINER_SECTIONS_OFFSET = 32; // start of the section table
+	public static final int CONTAINER_SECTION_ENTRY_SIZE = 24; // type int, checksum int, offset long, length long
+	public static final int CONTAINER_FLAG_DIRECT = 1;
+	public static final int CONTAINER_FLAG_COMPACT_LABELS = 2;
+	public static final int CONTAINER_FLAG_CONNECTIONS_SORTED_BY_NODE = 4;
+	public static final int CONTAINER_FLAG_CONNECTIONS_COMPRESSED = 8;
+	public static final int CONTAINER_FLAG_COMPRESSED_EDGE_INDEXES = 16;
+	public static final int CONTAINER_SECTION_NODES = 1;
+	public static final int CONTAINER_SECTION_EDGES = 2;
+	public static final int CONTAINER_SECTION_CONNECTIONS = 3;
+	public static final int CONTAINER_SECTION_NODE_LABELS = 4;
+	public static final int CONTAINER_SECTION_EDGE_LABELS = 5;
+	public static final int CONTAINER_SECTION_NAME = 6;
+	
 	public static final int MAX_BYTE_BUFFER_SIZE = Integer.MAX_VALUE-5000;
+	public static final int MIN_TASK_SIZE = 1<<16; // the smallest number of items given to a parallel task
+	public static final long MAX_LONG_OFFSET = 0xFFFFFFFFL; // largest unsigned int, the limit on pair and char counts in large graphs
+
+	private static EdgeType timeEdgeType = null; // see getTimeEdgeType
 
-	private ByteBuffer nodeBuf;
-	private ByteBuffer edgeBuf;
-	private ByteBuffer connectionBuf;
-	private ByteBuffer nodeLabelBuf;
-	private ByteBuffer edgeLabelBuf;
+	private SegmentedByteBuffer nodeBuf;
+	private SegmentedByteBuffer edgeBuf;
+	private SegmentedByteBuffer connectionBuf;
+	private SegmentedByteBuffer nodeLabelBuf;
+	private SegmentedByteBuffer edgeLabelBuf;
 
 	private int numberOfNodes;
 	private int numberOfEdges;
@@ -113,6 +154,11 @@ public class FastGraph {
 	
 	private String name = "";
 	private boolean direct; // true if off heap storage for byte buffers, false if on heap
+	private boolean mapped = false; // true if the byte buffers are read only memory mapped views of saved files
+	private boolean compactLabels = false; // true if each distinct label is stored once in UTF-8, false for a UTF-16 copy per item
+	private boolean connectionsSortedByNode = false; // true if the in and out connections of each node are in node index order, false for edge index order
+	private boolean connectionsCompressed = false; // true if connectionBuf holds varint gaps, see compressConnections
+	private boolean compressedEdgeIndexes = false; // true if compressed connections include the edge indexes
 	
 	private byte generation = 0; // the oldest generation time slice
 	
@@ -125,12 +171,28 @@ public class FastGraph {
 	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
 	 */
 	private FastGraph(int nodeTotal, int edgeTotal, boolean direct) {
+		this(nodeTotal, edgeTotal, direct, true);
+	}
+
+	
+	/**
+	 * No direct access to constructor, as a number of data structures need to be created when
+	 * graph nodes and edges are added.
+	 * 
+	 * @param nodeTotal the number of nodes in the graph
+	 * @param edgeTotal the number of edges in the graph
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @param allocate if false the ByteBuffers are not created, and must be set by the caller
+	 */
+	private FastGraph(int nodeTotal, int edgeTotal, boolean direct, boolean allocate) {
 		
 		this.numberOfNodes = nodeTotal;
 		this.numberOfEdges = edgeTotal;
 		this.direct = direct;
 		
-		init();
+		if(allocate) {
+			init();
+		}
 	}
 
 	
@@ -534,47 +596,174 @@ public class FastGraph {
 		return direct;
 	}
 	
+	
+	/**
+	 * @return the mapped flag, true if the ByteBuffers are read only views of saved files
+	 */
+	public boolean getMapped() {
+		return mapped;
+	}
+	
+	
+	/**
+	 * @return the compact labels flag, true if each distinct label is stored once in UTF-8
+	 */
+	public boolean getCompactLabels() {
+		return compactLabels;
+	}
+	
+	
+	/**
+	 * @return true if the connections of each node are sorted by node index, see sortConnectionsByNode
+	 */
+	public boolean getConnectionsSortedByNode() {
+		return connectionsSortedByNode;
+	}
+	
+	
+	/**
+	 * @return true if the connections are stored compressed, see compressConnections
+	 */
+	public boolean getConnectionsCompressed() {
+		return connectionsCompressed;
+	}
+	
+	
+	/**
+	 * @return true if the compressed connections keep the edge indexes, false if only the nodes can be found
+	 */
+	public boolean getCompressedEdgeIndexes() {
+		return compressedEdgeIndexes;
+	}
+	
+	
+	/**
+	 * Change how the node and edge labels are stored, rebuilding the label buffers if the
+	 * mode changes. With compact labels each distinct label is stored once, UTF-8 encoded,
+	 * and the label start in nodeBuf or edgeBuf is the position of the label in the dictionary,
+	 * so items with the same label have the same label id. This saves space when labels repeat
+	 * or are mostly ASCII. The mode is kept when the graph is saved and loaded.
+	 * 
+	 * @param compact true to store labels in a UTF-8 dictionary, false for a UTF-16 copy per item
+	 * @throws ReadOnlyBufferException if the graph is memory mapped, checked before anything is changed
+	 */
+	public void setCompactLabels(boolean compact) {
+		if(compact == compactLabels) {
+			return;
+		}
+		// the label pointers are rewritten in place, so a failure part way would leave labels unreadable
+		if(mapped || nodeBuf.isReadOnly() || edgeBuf.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		String[] nodeLabels = new String[numberOfNodes];
+		for(int i = 0; i < numberOfNodes; i++) {
+			nodeLabels[i] = getNodeLabel(i);
+		}
+		String[] edgeLabels = new String[numberOfEdges];
+		for(int i = 0; i < numberOfEdges; i++) {
+			edgeLabels[i] = getEdgeLabel(i);
+		}
+		compactLabels = compact;
+		setAllNodeLabels(nodeLabels);
+		setAllEdgeLabels(edgeLabels);
+	}
+	
 	/**
+	 * For graphs too large for a single ByteBuffer this is only the first segment of the storage,
+	 * see getSegmentedNodeBuf.
 	 * 
 	 * @return the node ByteBuffer
 	 */
 	public ByteBuffer getNodeBuf() {
+		return nodeBuf.getSegment(0);
+	}
+	
+	
+	/**
+	 * 
+	 * @return the node storage, which may be made up of several ByteBuffers
+	 */
+	public SegmentedByteBuffer getSegmentedNodeBuf() {
 		return nodeBuf;
 	}
 
 
 	/**
+	 * For graphs too large for a single ByteBuffer this is only the first segment of the storage,
+	 * see getSegmentedEdgeBuf.
 	 * 
 	 * @return the edge ByteBuffer
 	 */
 	public ByteBuffer getEdgeBuf() {
+		return edgeBuf.getSegment(0);
+	}
+	
+	
+	/**
+	 * 
+	 * @return the edge storage, which may be made up of several ByteBuffers
+	 */
+	public SegmentedByteBuffer getSegmentedEdgeBuf() {
 		return edgeBuf;
 	}
 
 
 	/**
+	 * For graphs too large for a single ByteBuffer this is only the first segment of the storage,
+	 * see getSegmentedNodeLabelBuf.
 	 * 
 	 * @return the node label ByteBuffer
 	 */
 	public ByteBuffer getNodeLabelBuf() {
+		return nodeLabelBuf.getSegment(0);
+	}
+	
+	
+	/**
+	 * 
+	 * @return the node label storage, which may be made up of several ByteBuffers
+	 */
+	public SegmentedByteBuffer getSegmentedNodeLabelBuf() {
 		return nodeLabelBuf;
 	}
 
 
 	/**
+	 * For graphs too large for a single ByteBuffer this is only the first segment of the storage,
+	 * see getSegmentedEdgeLabelBuf.
 	 * 
 	 * @return the edge label ByteBuffer
 	 */
 	public ByteBuffer getEdgeLabelBuf() {
+		return edgeLabelBuf.getSegment(0);
+	}
+	
+	
+	/**
+	 * 
+	 * @return the edge label storage, which may be made up of several ByteBuffers
+	 */
+	public SegmentedByteBuffer getSegmentedEdgeLabelBuf() {
 		return edgeLabelBuf;
 	}
 
 
 	/**
+	 * For graphs too large for a single ByteBuffer this is only the first segment of the storage,
+	 * see getSegmentedConnectionBuf.
 	 * 
 	 * @return the connections ByteBuffer
 	 */
 	public ByteBuffer getConnectionBuf() {
+		return connectionBuf.getSegment(0);
+	}
+	
+	
+	/**
+	 * 
+	 * @return the connections storage, which may be made up of several ByteBuffers
+	 */
+	public SegmentedByteBuffer getSegmentedConnectionBuf() {
 		return connectionBuf;
 	}
 
@@ -586,12 +775,15 @@ public class FastGraph {
 	 */
 	public String getNodeLabel(int nodeIndex) {
 		
-		int labelStart = nodeBuf.getInt(NODE_LABEL_START_OFFSET+nodeIndex*NODE_BYTE_SIZE);
-		int labelLength = nodeBuf.getShort(NODE_LABEL_LENGTH_OFFSET+nodeIndex*NODE_BYTE_SIZE);
+		long labelStart = labelOffset(nodeBuf, nodeLabelBuf, NODE_LABEL_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
+		int labelLength = nodeBuf.getShort(NODE_LABEL_LENGTH_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
+		if(compactLabels) {
+			return decodeLabel(nodeLabelBuf, labelStart, labelLength);
+		}
 		
 		char[] label = new char[labelLength];
 		for(int i = 0; i < labelLength; i++) {
-			int offset = labelStart+i*2;
+			long offset = labelStart+i*2;
 			char c = nodeLabelBuf.getChar(offset);
 			label[i] = c;
 		}
@@ -605,7 +797,7 @@ public class FastGraph {
 	 * @return the node weight
 	 */
 	public int getNodeWeight(int nodeIndex) {
-		int weight = nodeBuf.getInt(NODE_WEIGHT_OFFSET+nodeIndex*NODE_BYTE_SIZE);
+		int weight = nodeBuf.getInt(NODE_WEIGHT_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
 		return weight;
 	}
 	
@@ -615,7 +807,7 @@ public class FastGraph {
 	 * @return the node type
 	 */
 	public byte getNodeType(int nodeIndex) {
-		byte type = nodeBuf.get(NODE_TYPE_OFFSET+nodeIndex*NODE_BYTE_SIZE);
+		byte type = nodeBuf.get(NODE_TYPE_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
 		return type;
 	}
 	
@@ -625,7 +817,7 @@ public class FastGraph {
 	 * @return the node age
 	 */
 	public byte getNodeAge(int nodeIndex) {
-		byte age = nodeBuf.get(NODE_AGE_OFFSET+nodeIndex*NODE_BYTE_SIZE);
+		byte age = nodeBuf.get(NODE_AGE_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
 		return age;
 	}
 	
@@ -645,7 +837,7 @@ public class FastGraph {
 	 * @return the node in-degree (number of edges entering the node)
 	 */
 	public int getNodeInDegree(int nodeIndex) {
-		int degree = nodeBuf.getInt(NODE_IN_DEGREE_OFFSET+nodeIndex*NODE_BYTE_SIZE);
+		int degree = nodeBuf.getInt(NODE_IN_DEGREE_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
 		return degree;
 	}
 
@@ -655,7 +847,7 @@ public class FastGraph {
 	 * @return the node out-degree (number of edges leaving the node)
 	 */
 	public int getNodeOutDegree(int nodeIndex) {
-		int degree = nodeBuf.getInt(NODE_OUT_DEGREE_OFFSET+nodeIndex*NODE_BYTE_SIZE);
+		int degree = nodeBuf.getInt(NODE_OUT_DEGREE_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
 		return degree;
 	}
 	
@@ -665,19 +857,8 @@ public class FastGraph {
 	 * @return all connecting edges
 	 */
 	public int[] getNodeConnectingEdges(int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
-		int degree = getNodeDegree(nodeIndex);
-		
-		int[] ret = new int[degree];
-		
-		for(int i = 0; i < degree; i++) {
-			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
-			int node = connectionBuf.getInt(nodeOffset);
-			ret[i] = node;
-		}
-		
+		int[] ret = new int[getNodeDegree(nodeIndex)];
+		getNodeConnectingEdges(ret, nodeIndex);
 		return ret;
 	}
 	
@@ -691,16 +872,7 @@ public class FastGraph {
 	 * @param nodeIndex the node
 	 */
 	public void getNodeConnectingEdges(int[] ret, int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
-		int degree = getNodeDegree(nodeIndex);
-		
-		for(int i = 0; i < degree; i++) {
-			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
-			int node = connectionBuf.getInt(nodeOffset);
-			ret[i] = node;
-		}
+		readConnections(ret, nodeIndex, NODE_IN_CONNECTION_START_OFFSET, getNodeDegree(nodeIndex), CONNECTION_EDGE_OFFSET);
 	}
 	
 
@@ -709,15 +881,11 @@ public class FastGraph {
 	 * @return all node neighbours. 
 	 */
 	public int[] getNodeConnectingNodesOfSameAge(int nodeIndex) {
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
-		int degree = getNodeDegree(nodeIndex);
-		ArrayList<Integer> ret = new ArrayList<Integer>(degree);
+		int[] nodes = getNodeConnectingNodes(nodeIndex);
+		ArrayList<Integer> ret = new ArrayList<Integer>(nodes.length);
 		int age = this.getNodeAge(nodeIndex);
 		
-		for(int i = 0; i < degree; i++) {
-			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
-			int node = connectionBuf.getInt(nodeOffset);
+		for(int node : nodes) {
 			if(age == this.getNodeAge(node)) {
 				ret.add(node);
 			}
@@ -731,17 +899,8 @@ public class FastGraph {
 	 * @return all node neighbours. 
 	 */
 	public int[] getNodeConnectingNodes(int nodeIndex) {
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
-		int degree = getNodeDegree(nodeIndex);
-		int[] ret = new int[degree];
-		
-		for(int i = 0; i < degree; i++) {
-			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
-			int node = connectionBuf.getInt(nodeOffset);
-			ret[i] = node;
-		}
-		
+		int[] ret = new int[getNodeDegree(nodeIndex)];
+		getNodeConnectingNodes(ret, nodeIndex);
 		return ret;
 	}
 	
@@ -755,16 +914,7 @@ public class FastGraph {
 	 * @param nodeIndex the node
 	 */
 	public void getNodeConnectingNodes(int[] ret, int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
-		int degree = getNodeDegree(nodeIndex);
-		
-		for(int i = 0; i < degree; i++) {
-			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
-			int node = connectionBuf.getInt(nodeOffset);
-			ret[i] = node;
-		}
+		readConnections(ret, nodeIndex, NODE_IN_CONNECTION_START_OFFSET, getNodeDegree(nodeIndex), CONNECTION_NODE_OFFSET);
 	}
 	
 
@@ -775,19 +925,8 @@ public class FastGraph {
 	 * @return all connecting edges for the node
 	 */
 	public int[] getNodeConnectingInEdges(int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
-		int degree = getNodeInDegree(nodeIndex);
-		
-		int[] ret = new int[degree];
-		
-		for(int i = 0; i < degree; i++) {
-			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
-			int node = connectionBuf.getInt(nodeOffset);
-			ret[i] = node;
-		}
-		
+		int[] ret = new int[getNodeInDegree(nodeIndex)];
+		getNodeConnectingInEdges(ret, nodeIndex);
 		return ret;
 	}
 	
@@ -802,16 +941,7 @@ public class FastGraph {
 	 * @param nodeIndex the node
 	 */
 	public void getNodeConnectingInEdges(int[] ret, int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
-		int degree = getNodeInDegree(nodeIndex);
-		
-		for(int i = 0; i < degree; i++) {
-			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
-			int node = connectionBuf.getInt(nodeOffset);
-			ret[i] = node;
-		}
+		readConnections(ret, nodeIndex, NODE_IN_CONNECTION_START_OFFSET, getNodeInDegree(nodeIndex), CONNECTION_EDGE_OFFSET);
 	}
 
 
@@ -822,19 +952,8 @@ public class FastGraph {
 	 * @return all node neighbours that are on the end of edges that enter the node. 
 	 */
 	public int[] getNodeConnectingInNodes(int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
-		int degree = getNodeInDegree(nodeIndex);
-		
-		int[] ret = new int[degree];
-		
-		for(int i = 0; i < degree; i++) {
-			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
-			int node = connectionBuf.getInt(nodeOffset);
-			ret[i] = node;
-		}
-		
+		int[] ret = new int[getNodeInDegree(nodeIndex)];
+		getNodeConnectingInNodes(ret, nodeIndex);
 		return ret;
 	}
 
@@ -848,16 +967,7 @@ public class FastGraph {
 	 * @param nodeIndex the node
 	 */
 	public void getNodeConnectingInNodes(int[] ret, int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_IN_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
-		int degree = getNodeInDegree(nodeIndex);
-		
-		for(int i = 0; i < degree; i++) {
-			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
-			int node = connectionBuf.getInt(nodeOffset);
-			ret[i] = node;
-		}
+		readConnections(ret, nodeIndex, NODE_IN_CONNECTION_START_OFFSET, getNodeInDegree(nodeIndex), CONNECTION_NODE_OFFSET);
 	}
 
 	/**
@@ -867,18 +977,8 @@ public class FastGraph {
 	 * @return all edges that leave the node. 
 	 */
 	public int[] getNodeConnectingOutEdges(int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_OUT_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
-		int degree = getNodeOutDegree(nodeIndex);
-		int[] ret = new int[degree];
-		
-		for(int i = 0; i < degree; i++) {
-			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
-			int node = connectionBuf.getInt(nodeOffset);
-			ret[i] = node;
-		}
-		
+		int[] ret = new int[getNodeOutDegree(nodeIndex)];
+		getNodeConnectingOutEdges(ret, nodeIndex);
 		return ret;
 	}
 	
@@ -892,16 +992,7 @@ public class FastGraph {
 	 * @param nodeIndex the node
 	 */
 	public void getNodeConnectingOutEdges(int[] ret, int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_OUT_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
-		int degree = getNodeOutDegree(nodeIndex);
-		
-		for(int i = 0; i < degree; i++) {
-			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_EDGE_OFFSET;
-			int node = connectionBuf.getInt(nodeOffset);
-			ret[i] = node;
-		}
+		readConnections(ret, nodeIndex, NODE_OUT_CONNECTION_START_OFFSET, getNodeOutDegree(nodeIndex), CONNECTION_EDGE_OFFSET);
 	}
 
 
@@ -912,19 +1003,8 @@ public class FastGraph {
  	 * @return all node neighbours that are on the end of edges that leave the passed node. 
 	 */
 	public int[] getNodeConnectingOutNodes(int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_OUT_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
-		int degree = getNodeOutDegree(nodeIndex);
-		
-		int[] ret = new int[degree];
-		
-		for(int i = 0; i < degree; i++) {
-			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
-			int node = connectionBuf.getInt(nodeOffset);
-			ret[i] = node;
-		}
-		
+		int[] ret = new int[getNodeOutDegree(nodeIndex)];
+		getNodeConnectingOutNodes(ret, nodeIndex);
 		return ret;
 	}
 	
@@ -939,16 +1019,7 @@ public class FastGraph {
 	 * @param nodeIndex the node
 	 */
 	public void getNodeConnectingOutNodes(int[] ret, int nodeIndex) {
-		
-		int connectionOffset = nodeBuf.getInt(NODE_OUT_CONNECTION_START_OFFSET+nodeIndex*NODE_BYTE_SIZE); // in offset is the first one
-		int degree = getNodeOutDegree(nodeIndex);
-		
-		for(int i = 0; i < degree; i++) {
-			// don't need the edge, so step over edge/node pairs and the ege
-			int nodeOffset = connectionOffset+(i*CONNECTION_PAIR_SIZE)+CONNECTION_NODE_OFFSET;
-			int node = connectionBuf.getInt(nodeOffset);
-			ret[i] = node;
-		}
+		readConnections(ret, nodeIndex, NODE_OUT_CONNECTION_START_OFFSET, getNodeOutDegree(nodeIndex), CONNECTION_NODE_OFFSET);
 	}
 
 
@@ -957,11 +1028,14 @@ public class FastGraph {
 	 * @return the edge label
 	 */
 	public String getEdgeLabel(int edgeIndex) {
-		int labelStart = edgeBuf.getInt(EDGE_LABEL_START_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-		int labelLength = edgeBuf.getShort(EDGE_LABEL_LENGTH_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+		long labelStart = labelOffset(edgeBuf, edgeLabelBuf, EDGE_LABEL_START_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
+		int labelLength = edgeBuf.getShort(EDGE_LABEL_LENGTH_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
+		if(compactLabels) {
+			return decodeLabel(edgeLabelBuf, labelStart, labelLength);
+		}
 		char[] label = new char[labelLength];
 		for(int i = 0; i < labelLength; i++) {
-			int offset = labelStart+i*2;
+			long offset = labelStart+i*2;
 			char c = edgeLabelBuf.getChar(offset);
 			label[i] = c;
 		}
@@ -975,7 +1049,7 @@ public class FastGraph {
 	 * @return the first connecting node (the node the edge leaves for directed graphs).
 	 */
 	public int getEdgeNode1(int edgeIndex) {
-		int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+		int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 		return n1;
 	}
 	
@@ -985,7 +1059,7 @@ public class FastGraph {
 	 * @return the second connecting node (the node the edge enters for directed graphs).
 	 */
 	public int getEdgeNode2(int edgeIndex) {
-		int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+		int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 		return n2;
 	}
 	
@@ -995,7 +1069,7 @@ public class FastGraph {
 	 * @return the edge weight
 	 */
 	public int getEdgeWeight(int edgeIndex) {
-		int type = edgeBuf.getInt(EDGE_WEIGHT_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+		int type = edgeBuf.getInt(EDGE_WEIGHT_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 		return type;
 	}
 	
@@ -1005,7 +1079,7 @@ public class FastGraph {
 	 * @return the edge type
 	 */
 	public byte getEdgeType(int edgeIndex) {
-		byte type= edgeBuf.get(EDGE_TYPE_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+		byte type= edgeBuf.get(EDGE_TYPE_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 		return type;
 	}
 	
@@ -1015,7 +1089,7 @@ public class FastGraph {
 	 * @return the edge age
 	 */
 	public byte getEdgeAge(int edgeIndex) {
-		byte age = edgeBuf.get(EDGE_AGE_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
+		byte age = edgeBuf.get(EDGE_AGE_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
 		return age;
 	}
 	
@@ -1034,7 +1108,7 @@ public class FastGraph {
 	 * @param weight the new node weight
 	 */
 	public void setNodeWeight(int nodeIndex, int weight) {
-		nodeBuf.putInt(NODE_WEIGHT_OFFSET+nodeIndex*NODE_BYTE_SIZE, weight);
+		nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE, weight);
 	}
 	
 	
@@ -1043,7 +1117,7 @@ public class FastGraph {
 	 * @param type the new node type
 	 */
 	public void setNodeType(int nodeIndex, byte type) {
-		nodeBuf.put(NODE_TYPE_OFFSET+nodeIndex*NODE_BYTE_SIZE, type);
+		nodeBuf.put(NODE_TYPE_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE, type);
 	}
 	
 	
@@ -1052,7 +1126,7 @@ public class FastGraph {
 	 * @param age The new age of the node
 	 */
 	public void setNodeAge(int nodeIndex, byte age) {
-		nodeBuf.put(NODE_AGE_OFFSET+nodeIndex*NODE_BYTE_SIZE, age);
+		nodeBuf.put(NODE_AGE_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE, age);
 	}
 	
 
@@ -1062,7 +1136,7 @@ public class FastGraph {
 	 * @param weight the new edge weight
 	 */
 	public void setEdgeWeight(int edgeIndex, int weight) {
-		edgeBuf.putInt(EDGE_WEIGHT_OFFSET+edgeIndex*EDGE_BYTE_SIZE, weight);
+		edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE, weight);
 	}
 	
 	
@@ -1071,7 +1145,7 @@ public class FastGraph {
 	 * @param type the new edge type
 	 */
 	public void setEdgeType(int edgeIndex, byte type) {
-		edgeBuf.put(EDGE_TYPE_OFFSET+edgeIndex*EDGE_BYTE_SIZE, type);
+		edgeBuf.put(EDGE_TYPE_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE, type);
 	}
 	
 	
@@ -1080,7 +1154,7 @@ public class FastGraph {
 	 * @param age the new edge age
 	 */
 	public void setEdgeAge(int edgeIndex, byte age) {
-		edgeBuf.put(EDGE_AGE_OFFSET+edgeIndex*EDGE_BYTE_SIZE, age);
+		edgeBuf.put(EDGE_AGE_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE, age);
 	}
 	
 
@@ -1091,31 +1165,30 @@ public class FastGraph {
 	 */
 	public void setAllNodeLabels(String[] labels) {
 		
+		if(compactLabels) {
+			nodeLabelBuf = buildLabelDictionary(labels, numberOfNodes, nodeBuf, NODE_BYTE_SIZE, NODE_LABEL_START_OFFSET, NODE_LABEL_LENGTH_OFFSET);
+			return;
+		}
+		
 		long totalLabelLength = 0;
 		
 		for(int i = 0; i < numberOfNodes; i++) {
 			totalLabelLength += labels[i].length();
 		}
 		
-		if(totalLabelLength*2 > MAX_BYTE_BUFFER_SIZE) {
+		if(totalLabelLength > MAX_LONG_OFFSET) {
 			throw new OutOfMemoryError("Tried to create a nodeLabelBuf with too many chars");
 		}
-		int bufSize = (int)(totalLabelLength*2); // this cast is safe because of the previous test
 		
-		if(!direct) {
-			nodeLabelBuf = ByteBuffer.allocate(bufSize);
-		} else {
-			nodeLabelBuf = ByteBuffer.allocateDirect(bufSize);
-		}
-		nodeLabelBuf.clear();
-		int labelOffset = 0;
+		nodeLabelBuf = SegmentedByteBuffer.allocate(totalLabelLength*2, 2, direct);
+		long labelOffset = 0;
 		for(int i = 0; i < numberOfNodes; i++) {
 			String label = labels[i];
 			char[] labelArray = label.toCharArray();
 			short labelLength = (short)(labelArray.length);
 	
-			nodeBuf.putInt(NODE_LABEL_START_OFFSET+i*NODE_BYTE_SIZE,labelOffset); // label start
-			nodeBuf.putShort(NODE_LABEL_LENGTH_OFFSET+i*NODE_BYTE_SIZE,labelLength); // label size
+			setLabelOffset(nodeBuf, nodeLabelBuf, NODE_LABEL_START_OFFSET+(long)i*NODE_BYTE_SIZE,labelOffset); // label start
+			nodeBuf.putShort(NODE_LABEL_LENGTH_OFFSET+(long)i*NODE_BYTE_SIZE,labelLength); // label size
 	
 			for(int j = 0; j < labelArray.length; j++) {
 				char c = labelArray[j];
@@ -1134,32 +1207,31 @@ public class FastGraph {
 	 */
 	public void setAllEdgeLabels(String[] labels)  {
 		
+		if(compactLabels) {
+			edgeLabelBuf = buildLabelDictionary(labels, numberOfEdges, edgeBuf, EDGE_BYTE_SIZE, EDGE_LABEL_START_OFFSET, EDGE_LABEL_LENGTH_OFFSET);
+			return;
+		}
+		
 		long totalLabelLength = 0;
 		
 		for(int i = 0; i < numberOfEdges; i++) {
 			totalLabelLength += labels[i].length();
 		}
 		
-		if(totalLabelLength*2 > MAX_BYTE_BUFFER_SIZE) {
+		if(totalLabelLength > MAX_LONG_OFFSET) {
 			throw new OutOfMemoryError("Tried to create a edgeLabelBuf with too many chars");
 		}
-		int bufSize = (int)(totalLabelLength*2); // this cast is safe because of the previous test
 		
-		if(!direct) {
-			edgeLabelBuf = ByteBuffer.allocate(bufSize);
-		} else {
-			edgeLabelBuf = ByteBuffer.allocateDirect(bufSize);
-		}
-		edgeLabelBuf.clear();
+		edgeLabelBuf = SegmentedByteBuffer.allocate(totalLabelLength*2, 2, direct);
 
-		int labelOffset = 0;
+		long labelOffset = 0;
 		for(int i = 0; i < numberOfEdges; i++) {
 			String label = labels[i];
 			char[] labelArray = label.toCharArray();
 			short labelLength = (short)(labelArray.length);
 	
-			edgeBuf.putInt(EDGE_LABEL_START_OFFSET+i*EDGE_BYTE_SIZE,labelOffset); // label start
-			edgeBuf.putShort(EDGE_LABEL_LENGTH_OFFSET+i*EDGE_BYTE_SIZE,labelLength); // label size
+			setLabelOffset(edgeBuf, edgeLabelBuf, EDGE_LABEL_START_OFFSET+(long)i*EDGE_BYTE_SIZE,labelOffset); // label start
+			edgeBuf.putShort(EDGE_LABEL_LENGTH_OFFSET+(long)i*EDGE_BYTE_SIZE,labelLength); // label size
 	
 			for(int j = 0; j < labelArray.length; j++) {
 				char c = labelArray[j];
@@ -1202,135 +1274,991 @@ public class FastGraph {
 		
 		ArrayList<Integer> ret = new ArrayList<Integer>();
 		
-		int[] n1Edges = getNodeConnectingEdges(n1); 
-		for(int i = 0; i < n1Edges.length; i++) {
-			int edge = n1Edges[i];
-			if(oppositeEnd(edge, n1) == n2) {
-				ret.add(edge);
-			}
-		}
+		addEdgesBetween(ret, nodeConnectionOffset(n1,NODE_IN_CONNECTION_START_OFFSET), getNodeInDegree(n1), n2);
+		addEdgesBetween(ret, nodeConnectionOffset(n1,NODE_OUT_CONNECTION_START_OFFSET), getNodeOutDegree(n1), n2);
 
 		return ret;
 	}
-		
-
 	
 	
 	/**
-	 * Allocates space for the node, edge and connection ByteBuffers. The label ByteBuffers
-	 * are created later
-	 */
-	private void init() {
-
-		if(!direct) {
-			nodeBuf = ByteBuffer.allocate(numberOfNodes*NODE_BYTE_SIZE);
-			edgeBuf = ByteBuffer.allocate(numberOfEdges*EDGE_BYTE_SIZE);
-			connectionBuf = ByteBuffer.allocate(numberOfEdges*2*CONNECTION_PAIR_SIZE);
-			// nodeLabelBuf and edgeLabelBuf now created in Factories by setAllNodeLabels
-		} else {
-			nodeBuf = ByteBuffer.allocateDirect(numberOfNodes*NODE_BYTE_SIZE);
-			edgeBuf = ByteBuffer.allocateDirect(numberOfEdges*EDGE_BYTE_SIZE);
-			connectionBuf = ByteBuffer.allocateDirect(numberOfEdges*2*CONNECTION_PAIR_SIZE);
-			// nodeLabelBuf and edgeLabelBuf now created in Factories by setAllNodeLabels
-		}
-		
-		nodeBuf.clear();
-		edgeBuf.clear();
-		connectionBuf.clear();
-		
-	}
-
-
-	/**
-	 * Create a FastGraph from a json string.
-	 *
-	 * @param json the json as a string
-	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
-	 * @return the created FastGraph.
+	 * Find an edge between two nodes without creating any objects. If the connections are
+	 * sorted by node, see sortConnectionsByNode, this is a binary search of the connections
+	 * of n1, otherwise it is a linear scan.
+	 * 
+	 * @param n1 a node in the graph
+	 * @param n2 a node in the graph
+	 * @return the first edge that edgesBetween(n1,n2) would return, or -1 if the nodes are not adjacent
 	 */
-	public static FastGraph jsonStringGraphFactory(String json, boolean direct) {
-		
-		int nodeCount = 0;
-		int edgeCount = 0;
-		
-		JSONObject jsonObj = new JSONObject(json);
-		
-		String graphName = jsonObj.getString("name");
+	public int firstEdgeBetween(int n1, int n2) {
 		
-		JSONArray nodes = jsonObj.getJSONArray("nodes");
-		Iterator<Object> itNodes = nodes.iterator();
-		while(itNodes.hasNext()) {
-			JSONObject node = (JSONObject)(itNodes.next());
-			int index = node.getInt("nodeIndex");
-			if(index+1 > nodeCount) {
-				nodeCount = index+1;
+		if(connectionsCompressed) {
+			checkCompressedEdgeIndexes();
+			int edge = findCompressedEdge(nodeConnectionOffset(n1,NODE_IN_CONNECTION_START_OFFSET), getNodeInDegree(n1), n2, null);
+			if(edge == -1) {
+				edge = findCompressedEdge(nodeConnectionOffset(n1,NODE_OUT_CONNECTION_START_OFFSET), getNodeOutDegree(n1), n2, null);
 			}
+			return edge;
 		}
-		
-		JSONArray edges = jsonObj.getJSONArray("edges");
-		Iterator<Object> itEdges = edges.iterator();
-		while(itEdges.hasNext()) {
-			JSONObject edge = (JSONObject)(itEdges.next());
-			int index = edge.getInt("edgeIndex");
-			if(index+1 > edgeCount) {
-				edgeCount = index+1;
-			}
+		long offset = nodeConnectionOffset(n1,NODE_IN_CONNECTION_START_OFFSET);
+		int position = findConnection(offset, getNodeInDegree(n1), n2);
+		if(position != -1) {
+			return connectionBuf.getInt(CONNECTION_EDGE_OFFSET+offset+(long)position*CONNECTION_PAIR_SIZE);
 		}
-
-		FastGraph g = new FastGraph(nodeCount,edgeCount,direct);
-		g.populateFromJsonString(jsonObj);
-		g.setName(graphName);
-		
-		return g;
+		offset = nodeConnectionOffset(n1,NODE_OUT_CONNECTION_START_OFFSET);
+		position = findConnection(offset, getNodeOutDegree(n1), n2);
+		if(position != -1) {
+			return connectionBuf.getInt(CONNECTION_EDGE_OFFSET+offset+(long)position*CONNECTION_PAIR_SIZE);
+		}
+		return -1;
 	}
 	
-
+	
 	/**
-	 * Generate a random graph of the desired size. Self sourcing edges and parallel edges may exist.
+	 * Test for an edge in either direction between two nodes, see firstEdgeBetween.
 	 * 
-	 * @param numberOfNodes the number of nodes in the graph
-	 * @param numberOfEdges the number of edges in the graph
-	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
-	 * @return the created FastGraph
-	 * @throws Exception If the file cannot be saved, or other FastGraph Exception
+	 * @param n1 a node in the graph
+	 * @param n2 a node in the graph
+	 * @return true if there is at least one edge between n1 and n2
 	 */
-	public static FastGraph randomGraphFactory(int numberOfNodes, int numberOfEdges, boolean direct) throws Exception {
-		FastGraph graph = randomGraphFactory(numberOfNodes, numberOfEdges, -1, false, direct);
-		return graph;
+	public boolean hasEdge(int n1, int n2) {
+		if(connectionsCompressed) {
+			// works without the edge indexes
+			return findCompressedEdge(nodeConnectionOffset(n1,NODE_IN_CONNECTION_START_OFFSET), getNodeInDegree(n1), n2, null) != -1
+					|| findCompressedEdge(nodeConnectionOffset(n1,NODE_OUT_CONNECTION_START_OFFSET), getNodeOutDegree(n1), n2, null) != -1;
+		}
+		return firstEdgeBetween(n1, n2) != -1;
 	}
 	
+	
 	/**
-	 * Generate a random graph of the desired size. Self sourcing edges and parallel edges may exist.
+	 * Find the first connection to a node in a list of connection pairs.
 	 * 
-	 * @param numberOfNodes the number of nodes in the graph
-	 * @param numberOfEdges the number of edges in the graph
-	 * @param seed random number seed, -1 for current time
-	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
-	 * @return the created FastGraph
-	 * @throws Exception If the file cannot be saved, or other FastGraph Exception
+	 * @param offset the start of the list in connectionBuf
+	 * @param degree the number of pairs in the list
+	 * @param node the node to find
+	 * @return the position of the pair in the list, or -1 if the node is not in the list
 	 */
-	public static FastGraph randomGraphFactory(int numberOfNodes, int numberOfEdges, long seed, boolean direct) throws Exception {
-		FastGraph graph = randomGraphFactory(numberOfNodes, numberOfEdges, seed, false, direct);
-		return graph;
+	private int findConnection(long offset, int degree, int node) {
+		if(!connectionsSortedByNode) {
+			for(int j = 0; j < degree; j++) {
+				if(connectionBuf.getInt(CONNECTION_NODE_OFFSET+offset+(long)j*CONNECTION_PAIR_SIZE) == node) {
+					return j;
+				}
+			}
+			return -1;
+		}
+		// lower bound binary search, so the first of any parallel edges is found
+		int low = 0;
+		int high = degree;
+		while(low < high) {
+			int mid = (low+high)>>>1;
+			if(connectionBuf.getInt(CONNECTION_NODE_OFFSET+offset+(long)mid*CONNECTION_PAIR_SIZE) < node) {
+				low = mid+1;
+			} else {
+				high = mid;
+			}
+		}
+		if(low < degree && connectionBuf.getInt(CONNECTION_NODE_OFFSET+offset+(long)low*CONNECTION_PAIR_SIZE) == node) {
+			return low;
+		}
+		return -1;
 	}
 	
 	
 	/**
-	 * Generate a random graph of the desired size. Self sourcing edges and parallel edges may exist, if simple is false
+	 * Add the edges to a node from a list of connection pairs, in list order.
 	 * 
-	 * @param numberOfNodes the number of nodes in the graph
-	 * @param numberOfEdges the number of edges in the graph
-	 * @param seed random number seed, -1 for current time
-	 * @param simple If the new graph is a simple graph.
-	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
-	 * @return the created FastGraph
-	 * @throws Exception If the file cannot be saved, or other FastGraph Exception
+	 * @param ret the list to add the edges to
+	 * @param offset the start of the list in connectionBuf
+	 * @param degree the number of pairs in the list
+	 * @param node the node at the other end of the edges
 	 */
-	public static FastGraph randomGraphFactory(int numberOfNodes, int numberOfEdges, long seed, boolean simple, boolean direct) throws Exception {
-		FastGraph g = new FastGraph(numberOfNodes,numberOfEdges,direct);
-		g.setName("random-n-"+numberOfNodes+"-e-"+numberOfEdges);
-		g.populateRandomGraph(simple, seed);
-		return g;
+	private void addEdgesBetween(ArrayList<Integer> ret, long offset, int degree, int node) {
+		if(connectionsCompressed) {
+			checkCompressedEdgeIndexes();
+			findCompressedEdge(offset, degree, node, ret);
+			return;
+		}
+		int start = findConnection(offset, degree, node);
+		if(start == -1) {
+			return;
+		}
+		for(int j = start; j < degree; j++) {
+			long position = offset+(long)j*CONNECTION_PAIR_SIZE;
+			if(connectionBuf.getInt(CONNECTION_NODE_OFFSET+position) == node) {
+				ret.add(connectionBuf.getInt(CONNECTION_EDGE_OFFSET+position));
+			} else if(connectionsSortedByNode) {
+				return;
+			}
+		}
+	}
+	
+	
+	/**
+	 * Sort the in connections and the out connections of every node by the index of the node at
+	 * the other end, then by edge index. This changes the order of the results of the
+	 * getNodeConnecting methods and lets firstEdgeBetween, hasEdge and edgesBetween use a binary
+	 * search, which is much faster for high degree nodes. Graph creation methods always produce
+	 * connections in edge index order, so this is called after the graph is built. The order is
+	 * kept when the graph is saved and loaded.
+	 */
+	public void sortConnectionsByNode() {
+		if(connectionsSortedByNode) {
+			return;
+		}
+		int nodeTasks = taskCount(numberOfNodes);
+		IntStream.range(0, nodeTasks).parallel().forEach(t -> {
+			int end = taskEnd(t, nodeTasks, numberOfNodes);
+			long[] pairs = new long[16];
+			for(int i = taskEnd(t-1, nodeTasks, numberOfNodes); i < end; i++) {
+				pairs = sortConnections(nodeConnectionOffset(i,NODE_IN_CONNECTION_START_OFFSET), getNodeInDegree(i), true, pairs);
+				pairs = sortConnections(nodeConnectionOffset(i,NODE_OUT_CONNECTION_START_OFFSET), getNodeOutDegree(i), true, pairs);
+			}
+		});
+		connectionsSortedByNode = true;
+	}
+	
+	
+	/**
+	 * Compress the connections for graphs that are only read, such as large graphs loaded for
+	 * analysis. The connections of each node are sorted by node index, as sortConnectionsByNode,
+	 * and each in or out list is stored as varint gaps between successive node indexes, each
+	 * followed by the zigzag varint difference from the previous edge index if keepEdges is true.
+	 * A varint uses seven bits of each byte, with the top bit set if more bytes follow, so neighbouring
+	 * node indexes usually take one or two bytes rather than eight per pair.
+	 * <br>
+	 * The getNodeConnecting methods, NeighbourCursor, edgesBetween and firstEdgeBetween decode the
+	 * lists as they read them. If keepEdges is false, methods that return edges throw an
+	 * UnsupportedOperationException. Graphs generated from a compressed graph are not compressed.
+	 * The compression is kept when the graph is saved and loaded.
+	 * <br>
+	 * Edges can only be dropped from simple graphs, where the two nodes identify the edge.
+	 * 
+	 * @param keepEdges true to store the edge indexes, false to store only the nodes, which saves more space
+	 * @throws IllegalArgumentException if keepEdges is false and the graph is not simple
+	 */
+	public void compressConnections(boolean keepEdges) {
+		if(connectionsCompressed) {
+			return;
+		}
+		if(!keepEdges && !isSimple()) {
+			throw new IllegalArgumentException("Edge indexes can only be dropped from a simple graph, this graph has self loops or parallel edges");
+		}
+		if(mapped) {
+			nodeBuf = nodeBuf.copy();
+		}
+		
+		int nodeTasks = taskCount(numberOfNodes);
+		// the compressed size of each chunk of nodes, then a prefix sum gives the chunk starts
+		long[] chunkStart = new long[nodeTasks+1];
+		IntStream.range(0, nodeTasks).parallel().forEach(t -> {
+			int end = taskEnd(t, nodeTasks, numberOfNodes);
+			long[] pairs = new long[16];
+			long size = 0;
+			for(int i = taskEnd(t-1, nodeTasks, numberOfNodes); i < end; i++) {
+				pairs = sortedConnectionKeys(nodeConnectionOffset(i,NODE_IN_CONNECTION_START_OFFSET), getNodeInDegree(i), pairs);
+				size += compressedSize(pairs, getNodeInDegree(i), keepEdges);
+				pairs = sortedConnectionKeys(nodeConnectionOffset(i,NODE_OUT_CONNECTION_START_OFFSET), getNodeOutDegree(i), pairs);
+				size += compressedSize(pairs, getNodeOutDegree(i), keepEdges);
+			}
+			chunkStart[t+1] = size;
+		});
+		for(int t = 0; t < nodeTasks; t++) {
+			chunkStart[t+1] += chunkStart[t];
+		}
+		if(chunkStart[nodeTasks] > MAX_LONG_OFFSET) {
+			throw new OutOfMemoryError("Compressed connections of "+chunkStart[nodeTasks]+" bytes are too large, maximum is "+MAX_LONG_OFFSET);
+		}
+		
+		SegmentedByteBuffer compressedBuf = SegmentedByteBuffer.allocate(chunkStart[nodeTasks], 1, direct);
+		IntStream.range(0, nodeTasks).parallel().forEach(t -> {
+			int end = taskEnd(t, nodeTasks, numberOfNodes);
+			long[] pairs = new long[16];
+			long offset = chunkStart[t];
+			for(int i = taskEnd(t-1, nodeTasks, numberOfNodes); i < end; i++) {
+				long inOffset = nodeConnectionOffset(i,NODE_IN_CONNECTION_START_OFFSET);
+				long outOffset = nodeConnectionOffset(i,NODE_OUT_CONNECTION_START_OFFSET);
+				// compressed offsets are always unsigned byte offsets
+				nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,(int)offset);
+				pairs = sortedConnectionKeys(inOffset, getNodeInDegree(i), pairs);
+				offset = writeCompressed(compressedBuf, offset, pairs, getNodeInDegree(i), keepEdges);
+				nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,(int)offset);
+				pairs = sortedConnectionKeys(outOffset, getNodeOutDegree(i), pairs);
+				offset = writeCompressed(compressedBuf, offset, pairs, getNodeOutDegree(i), keepEdges);
+			}
+		});
+		
+		connectionBuf = compressedBuf;
+		connectionsSortedByNode = true;
+		connectionsCompressed = true;
+		compressedEdgeIndexes = keepEdges;
+	}
+	
+	
+	/**
+	 * Read a list of connections into an array, decoding compressed connections. When reading all
+	 * connections from the start of the in list, the out list follows straight after.
+	 * 
+	 * @param ret the array to fill, must be at least degree long
+	 * @param nodeIndex the node
+	 * @param field either NODE_IN_CONNECTION_START_OFFSET or NODE_OUT_CONNECTION_START_OFFSET
+	 * @param degree the number of connections to read
+	 * @param pairField CONNECTION_EDGE_OFFSET to read edges, CONNECTION_NODE_OFFSET to read nodes
+	 */
+	private void readConnections(int[] ret, int nodeIndex, int field, int degree, int pairField) {
+		long offset = nodeConnectionOffset(nodeIndex,field);
+		if(!connectionsCompressed) {
+			for(int i = 0; i < degree; i++) {
+				ret[i] = connectionBuf.getInt(pairField+offset+(long)i*CONNECTION_PAIR_SIZE);
+			}
+			return;
+		}
+		boolean edges = pairField == CONNECTION_EDGE_OFFSET;
+		if(edges) {
+			checkCompressedEdgeIndexes();
+		}
+		// the gaps start again at the out list
+		int listEnd = degree;
+		if(field == NODE_IN_CONNECTION_START_OFFSET) {
+			listEnd = getNodeInDegree(nodeIndex);
+		}
+		int node = 0;
+		int edge = 0;
+		for(int i = 0; i < degree; i++) {
+			if(i == listEnd) {
+				node = 0;
+				edge = 0;
+			}
+			long read = readVarint(connectionBuf, offset);
+			offset += read>>>32;
+			node += (int)read;
+			if(compressedEdgeIndexes) {
+				read = readVarint(connectionBuf, offset);
+				offset += read>>>32;
+				edge += unzigzag((int)read);
+			}
+			if(edges) {
+				ret[i] = edge;
+			} else {
+				ret[i] = node;
+			}
+		}
+	}
+	
+	
+	/**
+	 * Decode a compressed list of connections looking for a node, stopping once the node indexes are larger.
+	 * 
+	 * @param offset the start of the list in connectionBuf
+	 * @param degree the number of connections in the list
+	 * @param node the node to find
+	 * @param ret if not null, every edge to the node is added to this
+	 * @return the first edge to the node, 0 if found without edge indexes, or -1 if the node is not in the list
+	 */
+	private int findCompressedEdge(long offset, int degree, int node, ArrayList<Integer> ret) {
+		int first = -1;
+		int current = 0;
+		int edge = 0;
+		for(int i = 0; i < degree; i++) {
+			long read = readVarint(connectionBuf, offset);
+			offset += read>>>32;
+			current += (int)read;
+			if(current > node) {
+				break;
+			}
+			if(compressedEdgeIndexes) {
+				read = readVarint(connectionBuf, offset);
+				offset += read>>>32;
+				edge += unzigzag((int)read);
+			}
+			if(current == node) {
+				if(ret == null) {
+					return edge;
+				}
+				if(first == -1) {
+					first = edge;
+				}
+				ret.add(edge);
+			}
+		}
+		return first;
+	}
+	
+	
+	/**
+	 * A simple graph has no self loops and at most one edge between any two nodes, in either direction.
+	 * 
+	 * @return true if the graph is simple
+	 */
+	public boolean isSimple() {
+		int nodeTasks = taskCount(numberOfNodes);
+		return IntStream.range(0, nodeTasks).parallel().allMatch(t -> {
+			int end = taskEnd(t, nodeTasks, numberOfNodes);
+			int[] neighbours = new int[16];
+			for(int i = taskEnd(t-1, nodeTasks, numberOfNodes); i < end; i++) {
+				int degree = getNodeDegree(i);
+				if(neighbours.length < degree) {
+					neighbours = new int[degree];
+				}
+				getNodeConnectingNodes(neighbours, i);
+				Arrays.sort(neighbours, 0, degree);
+				for(int j = 0; j < degree; j++) {
+					if(neighbours[j] == i || (j > 0 && neighbours[j] == neighbours[j-1])) {
+						return false;
+					}
+				}
+			}
+			return true;
+		});
+	}
+	
+	
+	/**
+	 * @throws UnsupportedOperationException if the connections were compressed without the edge indexes
+	 */
+	public void checkCompressedEdgeIndexes() {
+		if(connectionsCompressed && !compressedEdgeIndexes) {
+			throw new UnsupportedOperationException("Edges are not available, the connections were compressed without edge indexes");
+		}
+	}
+	
+	
+	/**
+	 * @param offset the start of the list of connection pairs in connectionBuf
+	 * @param degree the number of pairs in the list
+	 * @param pairs working space, replaced if too small
+	 * @return the keys of the pairs ordered by node then edge, in the working space
+	 */
+	private long[] sortedConnectionKeys(long offset, int degree, long[] pairs) {
+		if(pairs.length < degree) {
+			pairs = new long[degree];
+		}
+		for(int j = 0; j < degree; j++) {
+			pairs[j] = connectionKey(offset+(long)j*CONNECTION_PAIR_SIZE, true);
+		}
+		if(!connectionsSortedByNode) {
+			Arrays.sort(pairs, 0, degree);
+		}
+		return pairs;
+	}
+	
+	
+	/**
+	 * @param pairs connection keys ordered by node then edge
+	 * @param degree the number of keys
+	 * @param keepEdges true if the edge indexes are stored
+	 * @return the number of bytes the list takes when compressed
+	 */
+	private static long compressedSize(long[] pairs, int degree, boolean keepEdges) {
+		long size = 0;
+		int node = 0;
+		int edge = 0;
+		for(int j = 0; j < degree; j++) {
+			int n = (int)(pairs[j]>>>32);
+			int e = (int)pairs[j];
+			size += varintSize(n-node);
+			if(keepEdges) {
+				size += varintSize(zigzag(e-edge));
+			}
+			node = n;
+			edge = e;
+		}
+		return size;
+	}
+	
+	
+	/**
+	 * @param buf the buffer to write to
+	 * @param offset the position to start writing
+	 * @param pairs connection keys ordered by node then edge
+	 * @param degree the number of keys
+	 * @param keepEdges true if the edge indexes are stored
+	 * @return the position after the list
+	 */
+	private static long writeCompressed(SegmentedByteBuffer buf, long offset, long[] pairs, int degree, boolean keepEdges) {
+		int node = 0;
+		int edge = 0;
+		for(int j = 0; j < degree; j++) {
+			int n = (int)(pairs[j]>>>32);
+			int e = (int)pairs[j];
+			offset = writeVarint(buf, offset, n-node);
+			if(keepEdges) {
+				offset = writeVarint(buf, offset, zigzag(e-edge));
+			}
+			node = n;
+			edge = e;
+		}
+		return offset;
+	}
+	
+	
+	/**
+	 * Read an unsigned varint without creating objects.
+	 * 
+	 * @param buf the buffer to read from
+	 * @param offset the position of the first byte
+	 * @return the value in the low 32 bits and the number of bytes read in the high 32 bits
+	 */
+	static long readVarint(SegmentedByteBuffer buf, long offset) {
+		int value = 0;
+		int shift = 0;
+		long length = 0;
+		byte b;
+		do {
+			b = buf.get(offset+length);
+			value |= (b & 0x7F)<<shift;
+			shift += 7;
+			length++;
+		} while(b < 0);
+		return (length<<32) | Integer.toUnsignedLong(value);
+	}
+	
+	
+	/**
+	 * @param buf the buffer to write to
+	 * @param offset the position of the first byte
+	 * @param value the value, treated as unsigned
+	 * @return the position after the varint
+	 */
+	private static long writeVarint(SegmentedByteBuffer buf, long offset, int value) {
+		while((value & ~0x7F) != 0) {
+			buf.put(offset, (byte)((value & 0x7F) | 0x80));
+			value >>>= 7;
+			offset++;
+		}
+		buf.put(offset, (byte)value);
+		return offset+1;
+	}
+	
+	
+	/**
+	 * @param value the value, treated as unsigned
+	 * @return the number of bytes in the varint of the value
+	 */
+	private static int varintSize(int value) {
+		int size = 1;
+		while((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+	
+	
+	/**
+	 * @param value a signed value
+	 * @return the value with the sign in the lowest bit, so small negative values give small varints
+	 */
+	private static int zigzag(int value) {
+		return (value<<1) ^ (value>>31);
+	}
+	
+	
+	/**
+	 * @param value a value from zigzag
+	 * @return the original signed value
+	 */
+	static int unzigzag(int value) {
+		return (value>>>1) ^ -(value & 1);
+	}
+		
+
+	
+	
+	/**
+	 * Allocates space for the node, edge and connection ByteBuffers. The label ByteBuffers
+	 * are created later
+	 */
+	private void init() {
+
+		nodeBuf = SegmentedByteBuffer.allocate((long)numberOfNodes*NODE_BYTE_SIZE, NODE_BYTE_SIZE, direct);
+		edgeBuf = SegmentedByteBuffer.allocate((long)numberOfEdges*EDGE_BYTE_SIZE, EDGE_BYTE_SIZE, direct);
+		connectionBuf = SegmentedByteBuffer.allocate((long)numberOfEdges*2*CONNECTION_PAIR_SIZE, CONNECTION_PAIR_SIZE, direct);
+		// nodeLabelBuf and edgeLabelBuf now created in Factories by setAllNodeLabels
+		
+	}
+	
+	
+	/**
+	 * The start of the node connection list as a byte offset in connectionBuf. When connectionBuf
+	 * is larger than MAX_BYTE_BUFFER_SIZE the value stored in nodeBuf is an unsigned count of
+	 * connection pairs rather than a byte offset. Compressed connections always store an
+	 * unsigned byte offset.
+	 * 
+	 * @param nodeIndex the node
+	 * @param field either NODE_IN_CONNECTION_START_OFFSET or NODE_OUT_CONNECTION_START_OFFSET
+	 * @return the byte offset of the first connection pair
+	 */
+	private long nodeConnectionOffset(int nodeIndex, int field) {
+		int stored = nodeBuf.getInt(field+(long)nodeIndex*NODE_BYTE_SIZE);
+		if(connectionsCompressed) {
+			return Integer.toUnsignedLong(stored);
+		}
+		if(connectionBuf.capacity() <= MAX_BYTE_BUFFER_SIZE) {
+			return stored;
+		}
+		return Integer.toUnsignedLong(stored)*CONNECTION_PAIR_SIZE;
+	}
+	
+	
+	/**
+	 * Set the start of the node connection list, see nodeConnectionOffset.
+	 * 
+	 * @param nodeIndex the node
+	 * @param field either NODE_IN_CONNECTION_START_OFFSET or NODE_OUT_CONNECTION_START_OFFSET
+	 * @param offset the byte offset of the first connection pair
+	 */
+	private void setNodeConnectionOffset(int nodeIndex, int field, long offset) {
+		int stored = (int)offset;
+		if(!connectionsCompressed && connectionBuf.capacity() > MAX_BYTE_BUFFER_SIZE) {
+			stored = (int)(offset/CONNECTION_PAIR_SIZE);
+		}
+		nodeBuf.putInt(field+(long)nodeIndex*NODE_BYTE_SIZE,stored);
+	}
+	
+	
+	/**
+	 * @param nodeIndex the node
+	 * @return the byte offset in the connection storage of the first in connection pair, out pairs follow the in pairs
+	 */
+	public long getNodeInConnectionOffset(int nodeIndex) {
+		return nodeConnectionOffset(nodeIndex,NODE_IN_CONNECTION_START_OFFSET);
+	}
+	
+	
+	/**
+	 * @param nodeIndex the node
+	 * @return the byte offset in the connection storage of the first out connection pair
+	 */
+	public long getNodeOutConnectionOffset(int nodeIndex) {
+		return nodeConnectionOffset(nodeIndex,NODE_OUT_CONNECTION_START_OFFSET);
+	}
+	
+	
+	/**
+	 * The start of a label as a byte offset in the label buffer. When the label buffer
+	 * is larger than MAX_BYTE_BUFFER_SIZE the value stored is an unsigned count of chars
+	 * rather than a byte offset. Compact labels are always stored as an unsigned byte offset.
+	 * 
+	 * @param itemBuf nodeBuf or edgeBuf
+	 * @param labelBuf the matching label buffer
+	 * @param position the position of the label start in itemBuf
+	 * @return the byte offset of the label in labelBuf
+	 */
+	private long labelOffset(SegmentedByteBuffer itemBuf, SegmentedByteBuffer labelBuf, long position) {
+		int stored = itemBuf.getInt(position);
+		if(compactLabels) {
+			return Integer.toUnsignedLong(stored);
+		}
+		if(labelBuf.capacity() <= MAX_BYTE_BUFFER_SIZE) {
+			return stored;
+		}
+		return Integer.toUnsignedLong(stored)*2;
+	}
+	
+	
+	/**
+	 * Set the start of a label, see labelOffset.
+	 * 
+	 * @param itemBuf nodeBuf or edgeBuf
+	 * @param labelBuf the matching label buffer
+	 * @param position the position of the label start in itemBuf
+	 * @param offset the byte offset of the label in labelBuf
+	 */
+	private void setLabelOffset(SegmentedByteBuffer itemBuf, SegmentedByteBuffer labelBuf, long position, long offset) {
+		int stored = (int)offset;
+		if(!compactLabels && labelBuf.capacity() > MAX_BYTE_BUFFER_SIZE) {
+			stored = (int)(offset/2);
+		}
+		itemBuf.putInt(position,stored);
+	}
+	
+	
+	/**
+	 * Create a compact label buffer. Each distinct label is stored once, UTF-8 encoded,
+	 * and the label start and length of every item is set to point at its label.
+	 * 
+	 * @param labels the labels, one for each item
+	 * @param itemCount the number of nodes or edges
+	 * @param itemBuf nodeBuf or edgeBuf
+	 * @param itemByteSize the size of each record in itemBuf
+	 * @param startOffset the position of the label start in an itemBuf record
+	 * @param lengthOffset the position of the label length in an itemBuf record
+	 * @return the new label buffer
+	 */
+	private SegmentedByteBuffer buildLabelDictionary(String[] labels, int itemCount, SegmentedByteBuffer itemBuf, int itemByteSize, int startOffset, int lengthOffset) {
+		IdIndexMap dictionary = new IdIndexMap(1024);
+		int[] labelIds = new int[itemCount];
+		for(int i = 0; i < itemCount; i++) {
+			byte[] bytes = labels[i].getBytes(StandardCharsets.UTF_8);
+			labelIds[i] = dictionary.getOrAdd(bytes, 0, bytes.length);
+		}
+		
+		long[] labelStarts = new long[dictionary.size()];
+		long totalLabelBytes = 0;
+		for(int id = 0; id < dictionary.size(); id++) {
+			labelStarts[id] = totalLabelBytes;
+			totalLabelBytes += dictionary.getIdLength(id);
+		}
+		if(totalLabelBytes > MAX_LONG_OFFSET) {
+			throw new OutOfMemoryError("Tried to create a label dictionary with too many bytes");
+		}
+		
+		SegmentedByteBuffer labelBuf = SegmentedByteBuffer.allocate(totalLabelBytes, 1, direct);
+		for(int id = 0; id < dictionary.size(); id++) {
+			int length = dictionary.getIdLength(id);
+			for(int j = 0; j < length; j++) {
+				labelBuf.put(labelStarts[id]+j, dictionary.getIdByte(id, j));
+			}
+		}
+		for(int i = 0; i < itemCount; i++) {
+			long position = (long)i*itemByteSize;
+			setLabelOffset(itemBuf, labelBuf, position+startOffset, labelStarts[labelIds[i]]);
+			itemBuf.putShort(position+lengthOffset, (short)dictionary.getIdLength(labelIds[i]));
+		}
+		return labelBuf;
+	}
+	
+	
+	/**
+	 * @param labelBuf a compact label buffer
+	 * @param start the byte offset of the label
+	 * @param length the number of bytes in the label
+	 * @return the label decoded from UTF-8
+	 */
+	private static String decodeLabel(SegmentedByteBuffer labelBuf, long start, int length) {
+		byte[] bytes = new byte[length];
+		for(int i = 0; i < length; i++) {
+			bytes[i] = labelBuf.get(start+i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	
+	/**
+	 * Reads the code point at a position in a label buffer.
+	 * 
+	 * @param labelBuf the label buffer
+	 * @param position the byte offset of the code point
+	 * @param end the byte offset after the end of the label
+	 * @param compact true if labelBuf holds UTF-8, false for UTF-16 chars
+	 * @return the offset of the next code point shifted left by 21 bits, or'ed with the code point
+	 */
+	private static long nextLabelCodePoint(SegmentedByteBuffer labelBuf, long position, long end, boolean compact) {
+		int codePoint;
+		int length;
+		if(!compact) {
+			char c = labelBuf.getChar(position);
+			codePoint = c;
+			length = 2;
+			if(Character.isHighSurrogate(c) && position+2 < end) {
+				char low = labelBuf.getChar(position+2);
+				if(Character.isLowSurrogate(low)) {
+					codePoint = Character.toCodePoint(c, low);
+					length = 4;
+				}
+			}
+		} else {
+			int b = labelBuf.get(position) & 0xFF;
+			if(b < 0x80) {
+				codePoint = b;
+				length = 1;
+			} else if(b < 0xE0) {
+				codePoint = b & 0x1F;
+				length = 2;
+			} else if(b < 0xF0) {
+				codePoint = b & 0x0F;
+				length = 3;
+			} else {
+				codePoint = b & 0x07;
+				length = 4;
+			}
+			for(int i = 1; i < length; i++) {
+				codePoint = (codePoint<<6) | (labelBuf.get(position+i) & 0x3F);
+			}
+		}
+		return ((position+length)<<21) | codePoint;
+	}
+	
+	
+	/**
+	 * Compare two labels without creating Strings. The labels can be in either storage mode.
+	 * 
+	 * @return a value with the same sign as String.compareTo on the two labels
+	 */
+	private static int compareLabels(SegmentedByteBuffer labelBuf1, long start1, int length1, boolean compact1, SegmentedByteBuffer labelBuf2, long start2, int length2, boolean compact2) {
+		if(compact1 && compact2 && labelBuf1 == labelBuf2 && start1 == start2 && length1 == length2) {
+			return 0;
+		}
+		long end1 = start1+(compact1 ? length1 : length1*2L);
+		long end2 = start2+(compact2 ? length2 : length2*2L);
+		long position1 = start1;
+		long position2 = start2;
+		while(position1 < end1 && position2 < end2) {
+			long next1 = nextLabelCodePoint(labelBuf1, position1, end1, compact1);
+			long next2 = nextLabelCodePoint(labelBuf2, position2, end2, compact2);
+			int codePoint1 = (int)(next1 & 0x1FFFFF);
+			int codePoint2 = (int)(next2 & 0x1FFFFF);
+			if(codePoint1 != codePoint2) {
+				// String.compareTo works on chars, so supplementary code points compare by their surrogates
+				char c1 = Character.isBmpCodePoint(codePoint1) ? (char)codePoint1 : Character.highSurrogate(codePoint1);
+				char c2 = Character.isBmpCodePoint(codePoint2) ? (char)codePoint2 : Character.highSurrogate(codePoint2);
+				if(c1 != c2) {
+					return c1-c2;
+				}
+				return Character.lowSurrogate(codePoint1)-Character.lowSurrogate(codePoint2);
+			}
+			position1 = next1>>>21;
+			position2 = next2>>>21;
+		}
+		if(position1 < end1) {
+			return 1;
+		}
+		if(position2 < end2) {
+			return -1;
+		}
+		return 0;
+	}
+	
+	
+	/**
+	 * Test a stored label against a String without creating a String from the stored label.
+	 * 
+	 * @return true if the stored label is the same as label
+	 */
+	private static boolean labelEquals(SegmentedByteBuffer labelBuf, long start, int length, boolean compact, String label) {
+		if(!compact) {
+			if(length != label.length()) {
+				return false;
+			}
+			for(int i = 0; i < length; i++) {
+				if(labelBuf.getChar(start+i*2) != label.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		long end = start+length;
+		long position = start;
+		int i = 0;
+		while(position < end) {
+			if(i >= label.length()) {
+				return false;
+			}
+			long next = nextLabelCodePoint(labelBuf, position, end, true);
+			int codePoint = label.codePointAt(i);
+			if((int)(next & 0x1FFFFF) != codePoint) {
+				return false;
+			}
+			i += Character.charCount(codePoint);
+			position = next>>>21;
+		}
+		return i == label.length();
+	}
+	
+	
+	/**
+	 * The label id of a node. With compact labels two nodes in this graph have the same
+	 * label exactly when they have the same label id. Without compact labels the id is
+	 * just the position of the label and should not be used to compare labels.
+	 * 
+	 * @param nodeIndex the node
+	 * @return the byte offset of the node label in nodeLabelBuf
+	 */
+	public long getNodeLabelId(int nodeIndex) {
+		return labelOffset(nodeBuf, nodeLabelBuf, NODE_LABEL_START_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE);
+	}
+	
+	
+	/**
+	 * The label id of an edge, see getNodeLabelId.
+	 * 
+	 * @param edgeIndex the edge
+	 * @return the byte offset of the edge label in edgeLabelBuf
+	 */
+	public long getEdgeLabelId(int edgeIndex) {
+		return labelOffset(edgeBuf, edgeLabelBuf, EDGE_LABEL_START_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE);
+	}
+	
+	
+	/**
+	 * @param nodeIndex the node
+	 * @return true if the node label is the empty string
+	 */
+	public boolean isNodeLabelEmpty(int nodeIndex) {
+		return nodeBuf.getShort(NODE_LABEL_LENGTH_OFFSET+(long)nodeIndex*NODE_BYTE_SIZE) == 0;
+	}
+	
+	
+	/**
+	 * @param edgeIndex the edge
+	 * @return true if the edge label is the empty string
+	 */
+	public boolean isEdgeLabelEmpty(int edgeIndex) {
+		return edgeBuf.getShort(EDGE_LABEL_LENGTH_OFFSET+(long)edgeIndex*EDGE_BYTE_SIZE) == 0;
+	}
+	
+	
+	/**
+	 * Test the label of a node without creating a String.
+	 * 
+	 * @param nodeIndex the node
+	 * @param label the label to test against
+	 * @return true if the node label is equal to label
+	 */
+	public boolean nodeLabelEquals(int nodeIndex, String label) {
+		long position = (long)nodeIndex*NODE_BYTE_SIZE;
+		long start = labelOffset(nodeBuf, nodeLabelBuf, position+NODE_LABEL_START_OFFSET);
+		int length = nodeBuf.getShort(position+NODE_LABEL_LENGTH_OFFSET);
+		return labelEquals(nodeLabelBuf, start, length, compactLabels, label);
+	}
+	
+	
+	/**
+	 * Test the label of an edge without creating a String.
+	 * 
+	 * @param edgeIndex the edge
+	 * @param label the label to test against
+	 * @return true if the edge label is equal to label
+	 */
+	public boolean edgeLabelEquals(int edgeIndex, String label) {
+		long position = (long)edgeIndex*EDGE_BYTE_SIZE;
+		long start = labelOffset(edgeBuf, edgeLabelBuf, position+EDGE_LABEL_START_OFFSET);
+		int length = edgeBuf.getShort(position+EDGE_LABEL_LENGTH_OFFSET);
+		return labelEquals(edgeLabelBuf, start, length, compactLabels, label);
+	}
+	
+	
+	/**
+	 * Compare the label of a node with the label of a node in another graph, or this graph,
+	 * without creating Strings. The graphs may use different label storage modes.
+	 * 
+	 * @param nodeIndex the node in this graph
+	 * @param other the graph containing the other node
+	 * @param otherNodeIndex the node in other
+	 * @return a value with the same sign as getNodeLabel(nodeIndex).compareTo(other.getNodeLabel(otherNodeIndex))
+	 */
+	public int compareNodeLabels(int nodeIndex, FastGraph other, int otherNodeIndex) {
+		long position = (long)nodeIndex*NODE_BYTE_SIZE;
+		long otherPosition = (long)otherNodeIndex*NODE_BYTE_SIZE;
+		long start = labelOffset(nodeBuf, nodeLabelBuf, position+NODE_LABEL_START_OFFSET);
+		long otherStart = other.labelOffset(other.nodeBuf, other.nodeLabelBuf, otherPosition+NODE_LABEL_START_OFFSET);
+		int length = nodeBuf.getShort(position+NODE_LABEL_LENGTH_OFFSET);
+		int otherLength = other.nodeBuf.getShort(otherPosition+NODE_LABEL_LENGTH_OFFSET);
+		return compareLabels(nodeLabelBuf, start, length, compactLabels, other.nodeLabelBuf, otherStart, otherLength, other.compactLabels);
+	}
+	
+	
+	/**
+	 * Compare the label of an edge with the label of an edge in another graph, see compareNodeLabels.
+	 * 
+	 * @param edgeIndex the edge in this graph
+	 * @param other the graph containing the other edge
+	 * @param otherEdgeIndex the edge in other
+	 * @return a value with the same sign as getEdgeLabel(edgeIndex).compareTo(other.getEdgeLabel(otherEdgeIndex))
+	 */
+	public int compareEdgeLabels(int edgeIndex, FastGraph other, int otherEdgeIndex) {
+		long position = (long)edgeIndex*EDGE_BYTE_SIZE;
+		long otherPosition = (long)otherEdgeIndex*EDGE_BYTE_SIZE;
+		long start = labelOffset(edgeBuf, edgeLabelBuf, position+EDGE_LABEL_START_OFFSET);
+		long otherStart = other.labelOffset(other.edgeBuf, other.edgeLabelBuf, otherPosition+EDGE_LABEL_START_OFFSET);
+		int length = edgeBuf.getShort(position+EDGE_LABEL_LENGTH_OFFSET);
+		int otherLength = other.edgeBuf.getShort(otherPosition+EDGE_LABEL_LENGTH_OFFSET);
+		return compareLabels(edgeLabelBuf, start, length, compactLabels, other.edgeLabelBuf, otherStart, otherLength, other.compactLabels);
+	}
+
+
+	/**
+	 * Create a FastGraph from a json string.
+	 *
+	 * @param json the json as a string
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the created FastGraph.
+	 */
+	public static FastGraph jsonStringGraphFactory(String json, boolean direct) {
+		
+		int nodeCount = 0;
+		int edgeCount = 0;
+		
+		JSONObject jsonObj = new JSONObject(json);
+		
+		String graphName = jsonObj.getString("name");
+		
+		JSONArray nodes = jsonObj.getJSONArray("nodes");
+		Iterator<Object> itNodes = nodes.iterator();
+		while(itNodes.hasNext()) {
+			JSONObject node = (JSONObject)(itNodes.next());
+			int index = node.getInt("nodeIndex");
+			if(index+1 > nodeCount) {
+				nodeCount = index+1;
+			}
+		}
+		
+		JSONArray edges = jsonObj.getJSONArray("edges");
+		Iterator<Object> itEdges = edges.iterator();
+		while(itEdges.hasNext()) {
+			JSONObject edge = (JSONObject)(itEdges.next());
+			int index = edge.getInt("edgeIndex");
+			if(index+1 > edgeCount) {
+				edgeCount = index+1;
+			}
+		}
+
+		FastGraph g = new FastGraph(nodeCount,edgeCount,direct);
+		g.populateFromJsonString(jsonObj);
+		g.setName(graphName);
+		
+		return g;
+	}
+	
+
+	/**
+	 * Generate a random graph of the desired size. Self sourcing edges and parallel edges may exist.
+	 * 
+	 * @param numberOfNodes the number of nodes in the graph
+	 * @param numberOfEdges the number of edges in the graph
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the created FastGraph
+	 * @throws Exception If the file cannot be saved, or other FastGraph Exception
+	 */
+	public static FastGraph randomGraphFactory(int numberOfNodes, int numberOfEdges, boolean direct) throws Exception {
+		FastGraph graph = randomGraphFactory(numberOfNodes, numberOfEdges, -1, false, direct);
+		return graph;
+	}
+	
+	/**
+	 * Generate a random graph of the desired size. Self sourcing edges and parallel edges may exist.
+	 * 
+	 * @param numberOfNodes the number of nodes in the graph
+	 * @param numberOfEdges the number of edges in the graph
+	 * @param seed random number seed, -1 for current time
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the created FastGraph
+	 * @throws Exception If the file cannot be saved, or other FastGraph Exception
+	 */
+	public static FastGraph randomGraphFactory(int numberOfNodes, int numberOfEdges, long seed, boolean direct) throws Exception {
+		FastGraph graph = randomGraphFactory(numberOfNodes, numberOfEdges, seed, false, direct);
+		return graph;
+	}
+	
+	
+	/**
+	 * Generate a random graph of the desired size. Self sourcing edges and parallel edges may exist, if simple is false
+	 * 
+	 * @param numberOfNodes the number of nodes in the graph
+	 * @param numberOfEdges the number of edges in the graph
+	 * @param seed random number seed, -1 for current time
+	 * @param simple If the new graph is a simple graph.
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the created FastGraph
+	 * @throws Exception If the file cannot be saved, or other FastGraph Exception
+	 */
+	public static FastGraph randomGraphFactory(int numberOfNodes, int numberOfEdges, long seed, boolean simple, boolean direct) throws Exception {
+		FastGraph g = new FastGraph(numberOfNodes,numberOfEdges,direct);
+		g.setName("random-n-"+numberOfNodes+"-e-"+numberOfEdges);
+		g.populateRandomGraph(simple, seed);
+		return g;
 	}
 	
 
@@ -1345,7 +2273,29 @@ public class FastGraph {
 	 * @see loadBuffers
 	 */
 	public static FastGraph loadBuffersGraphFactory(String directory, String fileBaseName) throws IOException {
-		FastGraph g = loadBuffers(directory,fileBaseName);
+		FastGraph g = loadBuffers(directory,fileBaseName,false);
+		return g;
+	}
+
+	
+	/**
+	 * creates a FastGraph by loading in various files from the given directory, or data under
+	 * current working directory if directory is null. If mapped is true the ByteBuffers are
+	 * read only memory mapped views of the files, so nothing is copied on load and the operating
+	 * system page cache is shared with any other process using the same files. Methods that change
+	 * the graph in place, such as setNodeWeight, will then throw a ReadOnlyBufferException. Methods
+	 * that generate new graphs copy the data as normal. A mapped graph should not be saved over the
+	 * files it was loaded from.
+	 * 
+	 * @param directory where the files are held, or if null fileBaseName under data under the current working directory
+	 * @param fileBaseName the name of the files, to which extensions are added
+	 * @param mapped if true the ByteBuffers are memory mapped read only, if false they are read into memory
+	 * @return the created FastGraph
+	 * @throws IOException If the buffers cannot be loaded
+	 * @see loadBuffers
+	 */
+	public static FastGraph loadBuffersGraphFactory(String directory, String fileBaseName, boolean mapped) throws IOException {
+		FastGraph g = loadBuffers(directory,fileBaseName,mapped);
 		return g;
 	}
 
@@ -1383,13 +2333,13 @@ public class FastGraph {
 			age = (byte)(node.getInt("nodeAge"));
 			label = node.getString("nodeLabel");
 			
-			nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+index*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
-			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+index*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+index*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+index*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
-			nodeBuf.putInt(NODE_WEIGHT_OFFSET+index*NODE_BYTE_SIZE,weight); // weight
-			nodeBuf.put(NODE_TYPE_OFFSET+index*NODE_BYTE_SIZE,type); // type
-			nodeBuf.put(NODE_AGE_OFFSET+index*NODE_BYTE_SIZE,age); // age
+			nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+(long)index*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
+			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+(long)index*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
+			nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+(long)index*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
+			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+(long)index*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
+			nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)index*NODE_BYTE_SIZE,weight); // weight
+			nodeBuf.put(NODE_TYPE_OFFSET+(long)index*NODE_BYTE_SIZE,type); // type
+			nodeBuf.put(NODE_AGE_OFFSET+(long)index*NODE_BYTE_SIZE,age); // age
 			
 			// save labels for later
 			nodeLabels[index] = label;
@@ -1398,20 +2348,9 @@ public class FastGraph {
 
 		setAllNodeLabels(nodeLabels);
 
-		ArrayList<ArrayList<Integer>> nodeIn = new ArrayList<ArrayList<Integer>>(numberOfNodes); // temporary store of inward edges
-		for(int i = 0; i < numberOfNodes; i++) {
-			ArrayList<Integer> edges = new ArrayList<Integer>(100);
-			nodeIn.add(i,edges);
-		}
-		
-		ArrayList<ArrayList<Integer>> nodeOut = new ArrayList<ArrayList<Integer>>(numberOfNodes); // temporary store of outward edges
-		for(int i = 0; i < numberOfNodes; i++) {
-			ArrayList<Integer> edges = new ArrayList<Integer>(100);
-			nodeOut.add(i,edges);
-		}
+		int[] edgeNode1 = new int[numberOfEdges]; // temporary store of the edge ends
+		int[] edgeNode2 = new int[numberOfEdges];
 		
-		ArrayList<Integer> inEdgeList;	
-		ArrayList<Integer> outEdgeList;	
 		int node1;
 		int node2;
 		index = -1;
@@ -1434,20 +2373,18 @@ public class FastGraph {
 			age = (byte)(edge.getInt("edgeAge"));
 			label = edge.getString("edgeLabel");
 			
-			edgeBuf.putInt(EDGE_NODE1_OFFSET+index*EDGE_BYTE_SIZE,node1); // one end of edge
-			edgeBuf.putInt(EDGE_NODE2_OFFSET+index*EDGE_BYTE_SIZE,node2); // other end of edge
-			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+index*EDGE_BYTE_SIZE,weight); // weight
-			edgeBuf.put(EDGE_TYPE_OFFSET+index*EDGE_BYTE_SIZE,type); // type
-			edgeBuf.put(EDGE_AGE_OFFSET+index*EDGE_BYTE_SIZE,age); // age
+			edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)index*EDGE_BYTE_SIZE,node1); // one end of edge
+			edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)index*EDGE_BYTE_SIZE,node2); // other end of edge
+			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)index*EDGE_BYTE_SIZE,weight); // weight
+			edgeBuf.put(EDGE_TYPE_OFFSET+(long)index*EDGE_BYTE_SIZE,type); // type
+			edgeBuf.put(EDGE_AGE_OFFSET+(long)index*EDGE_BYTE_SIZE,age); // age
 			
 			// save labels for later
 			edgeLabels[index] = label;
 			
-			// store connecting nodes
-			inEdgeList = nodeIn.get(node2);
-			inEdgeList.add(index);
-			outEdgeList = nodeOut.get(node1);
-			outEdgeList.add(index);
+			// store edge ends for the connection buffer
+			edgeNode1[index] = node1;
+			edgeNode2[index] = node2;
 			
 
 		}
@@ -1455,53 +2392,7 @@ public class FastGraph {
 		setAllEdgeLabels(edgeLabels);
 	
 		// Initialise the connection buffer, modifying the node buffer connection data
-		int offset = 0;
-		for(int i = 0; i < numberOfNodes; i++) {
-			// setting the in connection offset and length
-			ArrayList<Integer> inEdges = nodeIn.get(i);
-			int inEdgeLength = inEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
-			// now put the in edge/node pairs
-			for(int edgeIndex : inEdges) {
-				int n = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				if(n1 == i) {
-					n = n2;
-				} else if(n2 == i) {
-					n = n1;
-				} else {
-					Debugger.log("ERROR When finding connections for node "+i+" connecting edge "+edgeIndex+ " has connecting nodes "+n1+" "+n2);
-				}
-				connectionBuf.putInt(CONNECTION_EDGE_OFFSET+offset,edgeIndex);
-				connectionBuf.putInt(CONNECTION_NODE_OFFSET+offset,n);
-				offset += CONNECTION_PAIR_SIZE;
-			}
-			
-			// setting the out connection offset and length
-			ArrayList<Integer> outEdges = nodeOut.get(i);
-			int outEdgeLength = outEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
-
-			// now put the out edge/node pairs
-			for(int edgeIndex : outEdges) {
-				int n = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				if(n1 == i) {
-					n = n2;
-				} else if(n2 == i) {
-					n = n1;
-				} else {
-					Debugger.log("ERROR When finding connections for node "+i+" connecting edge "+edgeIndex+ " has connecting nodes "+n1+" "+n2);
-				}
-				connectionBuf.putInt(CONNECTION_EDGE_OFFSET+offset,edgeIndex);
-				connectionBuf.putInt(CONNECTION_NODE_OFFSET+offset,n);
-				offset += CONNECTION_PAIR_SIZE;
-			}
-		}
+		buildConnections(edgeNode1,edgeNode2);
 
 	}
 
@@ -1554,6 +2445,26 @@ public class FastGraph {
 				directValue = "true";
 			}
 			writer.write("direct"+INFO_SPLIT_STRING+directValue+"\n");
+			String compactLabelsValue = "false";
+			if(compactLabels) {
+				compactLabelsValue = "true";
+			}
+			writer.write("compactLabels"+INFO_SPLIT_STRING+compactLabelsValue+"\n");
+			String connectionsSortedByNodeValue = "false";
+			if(connectionsSortedByNode) {
+				connectionsSortedByNodeValue = "true";
+			}
+			writer.write("connectionsSortedByNode"+INFO_SPLIT_STRING+connectionsSortedByNodeValue+"\n");
+			String connectionsCompressedValue = "false";
+			if(connectionsCompressed) {
+				connectionsCompressedValue = "true";
+			}
+			writer.write("connectionsCompressed"+INFO_SPLIT_STRING+connectionsCompressedValue+"\n");
+			String compressedEdgeIndexesValue = "false";
+			if(compressedEdgeIndexes) {
+				compressedEdgeIndexesValue = "true";
+			}
+			writer.write("compressedEdgeIndexes"+INFO_SPLIT_STRING+compressedEdgeIndexesValue+"\n");
 
 			writer.close();
 			fos.close();
@@ -1577,19 +2488,103 @@ public class FastGraph {
 	
 
 	/**
-	 * Save a ByteBuffer to a file.
+	 * Saves the graph to a single container file. The file starts with a header page holding
+	 * a magic number, the format version, the graph flags and counts, and a table of sections.
+	 * Each section is one buffer of the graph, or the graph name in UTF-8, starts on a
+	 * CONTAINER_PAGE_SIZE boundary so that it can be memory mapped, and has a CRC32 in the
+	 * table. The file is written with a single gathering write of the buffer segments.
+	 * Graphs saved with saveBuffers can be converted by loading them with loadBuffersGraphFactory
+	 * and saving them with this method.
+	 * 
+	 * @param fileName the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void saveContainer(String fileName) throws IOException {
+		
+		String graphName = name;
+		if(graphName == null) {
+			graphName = "";
+		}
+		SegmentedByteBuffer nameBuf = SegmentedByteBuffer.wrap(ByteBuffer.wrap(graphName.getBytes(StandardCharsets.UTF_8)));
+		int[] types = {CONTAINER_SECTION_NODES, CONTAINER_SECTION_EDGES, CONTAINER_SECTION_CONNECTIONS, CONTAINER_SECTION_NODE_LABELS, CONTAINER_SECTION_EDGE_LABELS, CONTAINER_SECTION_NAME};
+		SegmentedByteBuffer[] sections = {nodeBuf, edgeBuf, connectionBuf, nodeLabelBuf, edgeLabelBuf, nameBuf};
+		
+		int flags = 0;
+		if(direct) {
+			flags |= CONTAINER_FLAG_DIRECT;
+		}
+		if(compactLabels) {
+			flags |= CONTAINER_FLAG_COMPACT_LABELS;
+		}
+		if(connectionsSortedByNode) {
+			flags |= CONTAINER_FLAG_CONNECTIONS_SORTED_BY_NODE;
+		}
+		if(connectionsCompressed) {
+			flags |= CONTAINER_FLAG_CONNECTIONS_COMPRESSED;
+		}
+		if(compressedEdgeIndexes) {
+			flags |= CONTAINER_FLAG_COMPRESSED_EDGE_INDEXES;
+		}
+		
+		ByteBuffer header = ByteBuffer.allocate(CONTAINER_PAGE_SIZE);
+		header.putLong(0, CONTAINER_MAGIC);
+		header.putInt(CONTAINER_VERSION_OFFSET, CONTAINER_VERSION);
+		header.putInt(CONTAINER_FLAGS_OFFSET, flags);
+		header.putInt(CONTAINER_NODES_OFFSET, numberOfNodes);
+		header.putInt(CONTAINER_EDGES_OFFSET, numberOfEdges);
+		header.putInt(CONTAINER_SECTION_COUNT_OFFSET, sections.length);
+		
+		ArrayList<ByteBuffer> writes = new ArrayList<ByteBuffer>();
+		writes.add(header);
+		long offset = CONTAINER_PAGE_SIZE;
+		for(int i = 0; i < sections.length; i++) {
+			long length = sections[i].capacity();
+			int entry = CONTAINER_SECTIONS_OFFSET+i*CONTAINER_SECTION_ENTRY_SIZE;
+			header.putInt(entry, types[i]);
+			header.putInt(entry+4, sections[i].checksum());
+			header.putLong(entry+8, offset);
+			header.putLong(entry+16, length);
+			for(ByteBuffer view : sections[i].getSegmentViews()) {
+				writes.add(view);
+			}
+			int padding = (int)((CONTAINER_PAGE_SIZE-length%CONTAINER_PAGE_SIZE)%CONTAINER_PAGE_SIZE);
+			if(padding > 0) {
+				writes.add(ByteBuffer.allocate(padding));
+			}
+			offset += length+padding;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(header.array());
+		header.putInt(CONTAINER_HEADER_CHECKSUM_OFFSET, (int)crc.getValue());
+		
+		ByteBuffer[] buffers = writes.toArray(new ByteBuffer[writes.size()]);
+		FileOutputStream fos = new FileOutputStream(fileName, false);
+		FileChannel wChannel = fos.getChannel();
+		try {
+			long remaining = offset;
+			while(remaining > 0) {
+				remaining -= wChannel.write(buffers);
+			}
+		} finally {
+			wChannel.close();
+			fos.close();
+		}
+	}
+	
+
+	/**
+	 * Save a buffer to a file.
 	 * 
 	 * @param file name to write to
 	 * @param buf buffer to be written
 	 * @throws Exception if file save fails
 	 */
-	private void writeBuf(String fileName, ByteBuffer buf) throws IOException {
+	private void writeBuf(String fileName, SegmentedByteBuffer buf) throws IOException {
 		
-		buf.rewind();
 		File file = new File(fileName);
 		FileOutputStream fos = new FileOutputStream(file, false);
 		FileChannel wChannel = fos.getChannel();
-		wChannel.write(buf);
+		buf.write(wChannel);
 		fos.flush();
 		wChannel.close();
 		fos.close();
@@ -1626,11 +2621,15 @@ public class FastGraph {
      * tabs or spaces, ignores lines starting with # and any line without a tab.
 	 * Looks for the file in given directory. If directory is null, then to a
 	 * directory named /data/snap under current working directory.
+	 * <br>
+	 * The file is streamed as bytes in one pass, ids are mapped to node indexes with an IdIndexMap and
+	 * the edge ends kept in int arrays. A second pass over the arrays builds the connection buffer,
+	 * so memory use is close to the size of the final buffers.
 	 * 
 	 * @param dir the directory for the file, if null then a directory called data/ under the current working directory
 	 * @param fileName the fileName for the file
 	 * 
-	 * @throws IOException If the buffers cannot be loaded
+	 * @throws IOException If the buffers cannot be loaded, or the file does not match the number of nodes and edges
 	 */
 	private void loadAdjacencyListGraph(String dir, String fileName) throws Exception {
 	
@@ -1645,188 +2644,417 @@ public class FastGraph {
 			path = directory+File.separatorChar+fileName;
 		}
 		
+		File f = new File(path);
+		if(!f.exists()) {
+			throw new IOException("Problem loading file "+path+". If you expect to access a SNAP file try downloading the file from:\nhttps://snap.stanford.edu/data/\nthen unzipping it and placing it in the directory "+directory);
+			//System.exit(1);
+		}
+		
+		// first pass, stream the file mapping ids to node indexes and storing the edge ends
+		IdIndexMap nodeIds = new IdIndexMap(numberOfNodes);
+		int[] edgeNode1 = new int[numberOfEdges];
+		int[] edgeNode2 = new int[numberOfEdges];
 		int edgeIndex = 0;
-		int nodeIndex = 0;
-		HashMap<String,Integer> nodeSnapIdToIndexMap = new HashMap<String,Integer>(numberOfNodes*4);
-		HashMap<Integer,String> nodeIndexToSnapIdMap = new HashMap<Integer,String>(numberOfNodes*4);
-		HashMap<Integer,Integer> edgeNode1Map = new HashMap<Integer,Integer>(numberOfEdges*4);
-		HashMap<Integer,Integer> edgeNode2Map = new HashMap<Integer,Integer>(numberOfEdges*4);
 		
-		File f = new File(path);
-		if(!f.exists()) {
-			throw new IOException("Problem loading file "+path+". If you expect to access a SNAP file try downloading the file from:\nhttps://snap.stanford.edu/data/\nthen unzipping it and placing it in the directory "+directory);
-			//System.exit(1);
+		FileInputStream is = new FileInputStream(path);
+		byte[] readBuf = new byte[1<<16];
+		byte[] line = new byte[256];
+		int lineLength = 0;
+long time = Debugger.createTime();
+		int read = is.read(readBuf);
+		while(read >= 0) {
+			for(int i = 0; i < read; i++) {
+				byte b = readBuf[i];
+				if(b != '\n') {
+					if(lineLength == line.length) {
+						line = Arrays.copyOf(line, line.length*2);
+					}
+					line[lineLength] = b;
+					lineLength++;
+					continue;
+				}
+				if(parseAdjacencyLine(line, lineLength, nodeIds, edgeNode1, edgeNode2, edgeIndex, path)) {
+					edgeIndex++;
+if(edgeIndex%1000000==0 ) {
+	Debugger.outputTime("edgesLoaded "+edgeIndex+" time ");
+}
+				}
+				lineLength = 0;
+			}
+			read = is.read(readBuf);
+		}
+		// last line may not end with a newline
+		if(parseAdjacencyLine(line, lineLength, nodeIds, edgeNode1, edgeNode2, edgeIndex, path)) {
+			edgeIndex++;
+		}
+		is.close();
+		
+		if(edgeIndex < numberOfEdges) {
+			throw new IOException("File "+path+" has "+edgeIndex+" edges, expected "+numberOfEdges);
+		}
+		
+		int inStart = -88;
+		int inLength = -33;
+		int outStart = -77;
+		int outLength = -22;
+		int weight = -55;
+		byte type = -77;
+		byte age = 0;
+		boolean asciiIds = nodeIds.isAscii();
+		long totalLabelLength = 0;
+		for(int i = 0; i < numberOfNodes; i++) {
+			nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
+			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
+			nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
+			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
+			nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)i*NODE_BYTE_SIZE,weight); // weight
+			nodeBuf.put(NODE_TYPE_OFFSET+(long)i*NODE_BYTE_SIZE,type); // type
+			nodeBuf.put(NODE_AGE_OFFSET+(long)i*NODE_BYTE_SIZE,age); // age
+			if(i < nodeIds.size()) {
+				totalLabelLength += asciiIds ? nodeIds.getIdLength(i) : nodeIds.getId(i).length();
+			}
+		}
+		
+		// node labels are the SNAP ids, copied straight from the id map unless an id has to be decoded from UTF-8
+		if(totalLabelLength > MAX_LONG_OFFSET) {
+			throw new OutOfMemoryError("Tried to create a nodeLabelBuf with too many chars");
+		}
+		nodeLabelBuf = SegmentedByteBuffer.allocate(totalLabelLength*2, 2, direct);
+		long labelOffset = 0;
+		for(int i = 0; i < numberOfNodes; i++) {
+			int labelLength = 0;
+			String id = null;
+			if(i < nodeIds.size()) {
+				if(asciiIds) {
+					labelLength = nodeIds.getIdLength(i);
+				} else {
+					id = nodeIds.getId(i);
+					labelLength = id.length();
+				}
+			}
+			setLabelOffset(nodeBuf, nodeLabelBuf, NODE_LABEL_START_OFFSET+(long)i*NODE_BYTE_SIZE,labelOffset); // label start
+			nodeBuf.putShort(NODE_LABEL_LENGTH_OFFSET+(long)i*NODE_BYTE_SIZE,(short)labelLength); // label size
+			for(int j = 0; j < labelLength; j++) {
+				char c = id == null ? (char)nodeIds.getIdByte(i,j) : id.charAt(j);
+				nodeLabelBuf.putChar(labelOffset,c);
+				labelOffset += 2;
+			}
+		}
+		
+		weight = -51;
+		type = -53;
+		age = 0;
+		for(int i = 0; i < numberOfEdges; i++) {
+			edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)i*EDGE_BYTE_SIZE,edgeNode1[i]); // one end of edge
+			edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)i*EDGE_BYTE_SIZE,edgeNode2[i]); // other end of edge
+			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)i*EDGE_BYTE_SIZE,weight); // weight
+			edgeBuf.put(EDGE_TYPE_OFFSET+(long)i*EDGE_BYTE_SIZE,type); // type
+			edgeBuf.put(EDGE_AGE_OFFSET+(long)i*EDGE_BYTE_SIZE,age); // age
+		}
+		
+		setIndexEdgeLabels("e");
+
+		// second pass, build the connection buffer from the edge ends
+		buildConnections(edgeNode1,edgeNode2);
+	}
+	
+	
+	/**
+	 * Parse one line of a SNAP adjacency list. Lines starting with # and empty lines are ignored.
+	 * The first two tokens, delimited by spaces or tabs, are the ids of the nodes at each end of the edge.
+	 * Edges beyond the number of edges in the graph are ignored.
+	 * 
+	 * @param line the bytes of the line, without the newline
+	 * @param lineLength the number of bytes in the line
+	 * @param nodeIds the map from SNAP id to node index
+	 * @param edgeNode1 the first node of each edge, set for this edge
+	 * @param edgeNode2 the second node of each edge, set for this edge
+	 * @param edgeIndex the index of the next edge
+	 * @param path the file name, for messages
+	 * @return true if the line is an edge, false if it should be skipped
+	 * @throws IOException if the line has more nodes than the graph
+	 */
+	private boolean parseAdjacencyLine(byte[] line, int lineLength, IdIndexMap nodeIds, int[] edgeNode1, int[] edgeNode2, int edgeIndex, String path) throws IOException {
+		
+		if(lineLength > 0 && line[lineLength-1] == '\r') {
+			lineLength--;
+		}
+		if(lineLength == 0) {
+			return false;
+		}
+		if(line[0] == '#') {
+			return false;
+		}
+		
+		int start1 = nextToken(line, 0, lineLength);
+		int end1 = tokenEnd(line, start1, lineLength);
+		int start2 = nextToken(line, end1, lineLength);
+		int end2 = tokenEnd(line, start2, lineLength);
+		if(start1 == end1 || start2 == end2) {
+			Debugger.log("FAILED TO RECOGNISE LINE:"+new String(line, 0, lineLength)+" in loadAdjacencyListGraph("+path+")");
+			return false;
+		}
+		if(edgeIndex >= numberOfEdges) {
+			return false;
+		}
+		
+		int node1 = nodeIds.getOrAdd(line, start1, end1-start1);
+		int node2 = nodeIds.getOrAdd(line, start2, end2-start2);
+		if(nodeIds.size() > numberOfNodes) {
+			throw new IOException("File "+path+" has more than the expected "+numberOfNodes+" nodes");
+		}
+		edgeNode1[edgeIndex] = node1;
+		edgeNode2[edgeIndex] = node2;
+		return true;
+	}
+	
+	
+	/**
+	 * @return the position of the first byte at or after start that is not a space or tab, or end
+	 */
+	private static int nextToken(byte[] line, int start, int end) {
+		int i = start;
+		while(i < end && (line[i] == ' ' || line[i] == '\t')) {
+			i++;
+		}
+		return i;
+	}
+	
+	
+	/**
+	 * @return the position of the first space or tab at or after start, or end
+	 */
+	private static int tokenEnd(byte[] line, int start, int end) {
+		int i = start;
+		while(i < end && line[i] != ' ' && line[i] != '\t') {
+			i++;
+		}
+		return i;
+	}
+	
+	
+	/**
+	 * Label every edge with the prefix followed by its index, written straight into a new
+	 * edgeLabelBuf without creating a String for each edge.
+	 * 
+	 * @param prefix the start of every label
+	 */
+	private void setIndexEdgeLabels(String prefix) {
+		
+		long totalLabelLength = 0;
+		for(int i = 0; i < numberOfEdges; i++) {
+			totalLabelLength += prefix.length()+digitCount(i);
+		}
+		
+		if(totalLabelLength > MAX_LONG_OFFSET) {
+			throw new OutOfMemoryError("Tried to create a edgeLabelBuf with too many chars");
 		}
 		
-		FileInputStream is = new FileInputStream(path);
-		InputStreamReader isr = new InputStreamReader(is);
-		BufferedReader br = new BufferedReader(isr);
-
-		String[] splitLine;
+		edgeLabelBuf = SegmentedByteBuffer.allocate(totalLabelLength*2, 2, direct);
 		
-		String line = "";
-long time = Debugger.createTime();			
-		while(line != null) {
-			line = br.readLine();
-			if(line == null) {
-				continue;
+		long labelOffset = 0;
+		for(int i = 0; i < numberOfEdges; i++) {
+			int digits = digitCount(i);
+			short labelLength = (short)(prefix.length()+digits);
+			setLabelOffset(edgeBuf, edgeLabelBuf, EDGE_LABEL_START_OFFSET+(long)i*EDGE_BYTE_SIZE,labelOffset); // label start
+			edgeBuf.putShort(EDGE_LABEL_LENGTH_OFFSET+(long)i*EDGE_BYTE_SIZE,labelLength); // label size
+			for(int j = 0; j < prefix.length(); j++) {
+				edgeLabelBuf.putChar(labelOffset,prefix.charAt(j));
+				labelOffset += 2;
 			}
-			if(line.length() == 0) {
-				continue;
+			int value = i;
+			for(int j = digits-1; j >= 0; j--) {
+				edgeLabelBuf.putChar(labelOffset+j*2,(char)('0'+value%10));
+				value /= 10;
 			}
-			if(line.charAt(0) == '#') {
-				continue;
+			labelOffset += digits*2;
+		}
+	}
+	
+	
+	/**
+	 * @param value a non negative number
+	 * @return the number of decimal digits in the value
+	 */
+	private static int digitCount(int value) {
+		int digits = 1;
+		while(value >= 10) {
+			value /= 10;
+			digits++;
+		}
+		return digits;
+	}
+	
+	
+	/**
+	 * Fill the connection buffer and the node connection offsets and degrees from the
+	 * ends of each edge. This is used by all the graph creation methods.
+	 * <br>
+	 * Degrees are counted and the connection pairs scattered in parallel over chunks of edges,
+	 * and the offsets found with a parallel prefix sum over chunks of nodes. When more than one
+	 * chunk of edges is used the connections of each node are then sorted, so that in and out
+	 * connections of each node are always in edge index order.
+	 * 
+	 * @param edgeNode1 the first node of each edge, the node the edge leaves
+	 * @param edgeNode2 the second node of each edge, the node the edge enters
+	 */
+	private void buildConnections(int[] edgeNode1, int[] edgeNode2) {
+		
+		connectionsSortedByNode = false;
+		int edgeTasks = taskCount(numberOfEdges);
+		int nodeTasks = taskCount(numberOfNodes);
+		
+		// count the degrees
+		AtomicIntegerArray inDegree = new AtomicIntegerArray(numberOfNodes);
+		AtomicIntegerArray outDegree = new AtomicIntegerArray(numberOfNodes);
+		IntStream.range(0, edgeTasks).parallel().forEach(t -> {
+			int end = taskEnd(t, edgeTasks, numberOfEdges);
+			for(int e = taskEnd(t-1, edgeTasks, numberOfEdges); e < end; e++) {
+				outDegree.incrementAndGet(edgeNode1[e]);
+				inDegree.incrementAndGet(edgeNode2[e]);
 			}
-			splitLine = line.split(" ");
-			if(splitLine.length < 2) {
-				splitLine = line.split("\t");
-				if(splitLine.length < 2) {
-					Debugger.log("FAILED TO RECOGNISE LINE:"+line+" in loadAdjacencyListGraph("+directory+","+fileName+")");
-					continue;
-				}
+		});
+		
+		// prefix sum, first the total connection size of each chunk of nodes
+		long[] chunkStart = new long[nodeTasks+1];
+		IntStream.range(0, nodeTasks).parallel().forEach(t -> {
+			int end = taskEnd(t, nodeTasks, numberOfNodes);
+			long size = 0;
+			for(int i = taskEnd(t-1, nodeTasks, numberOfNodes); i < end; i++) {
+				size += (long)(inDegree.get(i)+outDegree.get(i))*CONNECTION_PAIR_SIZE;
 			}
-	
-			String node1String = splitLine[0];
-			String node2String = splitLine[1];
-			
-			if(!nodeSnapIdToIndexMap.containsKey(node1String)) {
-				nodeSnapIdToIndexMap.put(node1String,nodeIndex);
-				nodeIndexToSnapIdMap.put(nodeIndex,node1String);
-				nodeIndex++;
-			}
-			if(!nodeSnapIdToIndexMap.containsKey(node2String)) {
-				nodeSnapIdToIndexMap.put(node2String,nodeIndex);
-				nodeIndexToSnapIdMap.put(nodeIndex,node2String);
-				nodeIndex++;
-			}
-			edgeNode1Map.put(edgeIndex, nodeSnapIdToIndexMap.get(node1String));
-			edgeNode2Map.put(edgeIndex, nodeSnapIdToIndexMap.get(node2String));
-				
-			edgeIndex++;
-if(edgeIndex%1000000==0 ) {
-	Debugger.outputTime("edgesLoaded "+edgeIndex+" time ");
-}
+			chunkStart[t+1] = size;
+		});
+		for(int t = 0; t < nodeTasks; t++) {
+			chunkStart[t+1] += chunkStart[t];
+		}
+		IntStream.range(0, nodeTasks).parallel().forEach(t -> {
+			int end = taskEnd(t, nodeTasks, numberOfNodes);
+			long offset = chunkStart[t];
+			for(int i = taskEnd(t-1, nodeTasks, numberOfNodes); i < end; i++) {
+				setNodeConnectionOffset(i,NODE_IN_CONNECTION_START_OFFSET,offset);
+				nodeBuf.putInt((long)i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inDegree.get(i));
+				offset += (long)inDegree.get(i)*CONNECTION_PAIR_SIZE;
+				setNodeConnectionOffset(i,NODE_OUT_CONNECTION_START_OFFSET,offset);
+				nodeBuf.putInt((long)i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outDegree.get(i));
+				offset += (long)outDegree.get(i)*CONNECTION_PAIR_SIZE;
+				// reuse the degree arrays as the count of pairs placed so far
+				inDegree.set(i,0);
+				outDegree.set(i,0);
+			}
+		});
+		
+		// scatter the edge/node pairs
+		IntStream.range(0, edgeTasks).parallel().forEach(t -> {
+			int end = taskEnd(t, edgeTasks, numberOfEdges);
+			for(int e = taskEnd(t-1, edgeTasks, numberOfEdges); e < end; e++) {
+				int n1 = edgeNode1[e];
+				int n2 = edgeNode2[e];
+				long inOffset = nodeConnectionOffset(n2,NODE_IN_CONNECTION_START_OFFSET)+(long)inDegree.getAndIncrement(n2)*CONNECTION_PAIR_SIZE;
+				connectionBuf.putInt(CONNECTION_EDGE_OFFSET+inOffset,e);
+				connectionBuf.putInt(CONNECTION_NODE_OFFSET+inOffset,n1);
+				long outOffset = nodeConnectionOffset(n1,NODE_OUT_CONNECTION_START_OFFSET)+(long)outDegree.getAndIncrement(n1)*CONNECTION_PAIR_SIZE;
+				connectionBuf.putInt(CONNECTION_EDGE_OFFSET+outOffset,e);
+				connectionBuf.putInt(CONNECTION_NODE_OFFSET+outOffset,n2);
+			}
+		});
+		
+		if(edgeTasks == 1) {
+			// a single chunk places the pairs in edge order
+			return;
 		}
-
-		String[] nodeLabels = new String[numberOfNodes];
-		String[] edgeLabels = new String[numberOfEdges];
-		int inStart = -88;
-		int inLength = -33;
-		int outStart = -77;
-		int outLength = -22;
-		int weight = -55;
-		byte type = -77;
-		byte age = 0;
-		for(int i = 0; i < numberOfNodes; i++) {
-			nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+i*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
-			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+i*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+i*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+i*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
-			nodeBuf.putInt(NODE_WEIGHT_OFFSET+i*NODE_BYTE_SIZE,weight); // weight
-			nodeBuf.put(NODE_TYPE_OFFSET+i*NODE_BYTE_SIZE,type); // type
-			nodeBuf.put(NODE_AGE_OFFSET+i*NODE_BYTE_SIZE,age); // age
-
-			// save labels for later
-			String label = nodeIndexToSnapIdMap.get(i);
-			nodeLabels[i] = label;
-
+		
+		IntStream.range(0, nodeTasks).parallel().forEach(t -> {
+			int end = taskEnd(t, nodeTasks, numberOfNodes);
+			long[] pairs = new long[16];
+			for(int i = taskEnd(t-1, nodeTasks, numberOfNodes); i < end; i++) {
+				pairs = sortConnections(nodeConnectionOffset(i,NODE_IN_CONNECTION_START_OFFSET), getNodeInDegree(i), false, pairs);
+				pairs = sortConnections(nodeConnectionOffset(i,NODE_OUT_CONNECTION_START_OFFSET), getNodeOutDegree(i), false, pairs);
+			}
+		});
+	}
+	
+	
+	/**
+	 * Sort a list of connection pairs by edge index, or by node index then edge index, if it is not already in order.
+	 * 
+	 * @param offset the start of the list in connectionBuf
+	 * @param degree the number of pairs in the list
+	 * @param byNode true to sort by node index then edge index, false to sort by edge index
+	 * @param pairs working space, replaced if too small
+	 * @return the working space, to be passed to the next call
+	 */
+	private long[] sortConnections(long offset, int degree, boolean byNode, long[] pairs) {
+		
+		boolean sorted = true;
+		long previous = -1;
+		for(int j = 0; j < degree; j++) {
+			long key = connectionKey(offset+(long)j*CONNECTION_PAIR_SIZE, byNode);
+			if(key < previous) {
+				sorted = false;
+				break;
+			}
+			previous = key;
 		}
-
-		setAllNodeLabels(nodeLabels);
-
-		ArrayList<ArrayList<Integer>> nodeIn = new ArrayList<ArrayList<Integer>>(numberOfNodes); // temporary store of inward edges
-		for(int i = 0; i < numberOfNodes; i++) {
-			ArrayList<Integer> edges = new ArrayList<Integer>(100);
-			nodeIn.add(i,edges);
+		if(sorted) {
+			return pairs;
 		}
 		
-		ArrayList<ArrayList<Integer>> nodeOut = new ArrayList<ArrayList<Integer>>(numberOfNodes); // temporary store of outward edges
-		for(int i = 0; i < numberOfNodes; i++) {
-			ArrayList<Integer> edges = new ArrayList<Integer>(100);
-			nodeOut.add(i,edges);
+		if(pairs.length < degree) {
+			pairs = new long[degree];
 		}
-				
-		ArrayList<Integer> inEdgeList;	
-		ArrayList<Integer> outEdgeList;	
-		int node1;
-		int node2;
-		weight = -51;
-		type = -53;
-		age = 0;
-		for(int i = 0; i < numberOfEdges; i++) {
-			node1 = edgeNode1Map.get(i);
-			node2 = edgeNode2Map.get(i);
-			edgeBuf.putInt(EDGE_NODE1_OFFSET+i*EDGE_BYTE_SIZE,node1); // one end of edge
-			edgeBuf.putInt(EDGE_NODE2_OFFSET+i*EDGE_BYTE_SIZE,node2); // other end of edge
-			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+i*EDGE_BYTE_SIZE,weight); // weight
-			edgeBuf.put(EDGE_TYPE_OFFSET+i*EDGE_BYTE_SIZE,type); // type
-			edgeBuf.put(EDGE_AGE_OFFSET+i*EDGE_BYTE_SIZE,age); // age
-			
-			// store labels for later
-			String label = "e"+i;
-			edgeLabels[i] = label;
-			
-			// store connecting nodes
-			inEdgeList = nodeIn.get(node2);
-			inEdgeList.add(i);
-			outEdgeList = nodeOut.get(node1);
-			outEdgeList.add(i);
-
+		for(int j = 0; j < degree; j++) {
+			pairs[j] = connectionKey(offset+(long)j*CONNECTION_PAIR_SIZE, byNode);
 		}
-		
-		setAllEdgeLabels(edgeLabels);
-
-
-		// Initialise the connection buffer, modifying the node buffer connection data
-		//time = Debugger.createTime();
-		int offset = 0;
-		for(int i = 0; i < numberOfNodes; i++) {
-			// setting the in connection offset and length
-			ArrayList<Integer> inEdges = nodeIn.get(i);
-			int inEdgeLength = inEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
-		
-			// now put the in edge/node pairs
-			for(int e : inEdges) {
-				int n = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
-				if(n1 == i) {
-					n = n2;
-				} else if(n2 == i) {
-					n = n1;
-				} else {
-					Debugger.log("ERROR When finding connections for node "+i+" connecting edge "+e+ " has connecting nodes "+n1+" "+n2);
-				}
-				connectionBuf.putInt(CONNECTION_EDGE_OFFSET+offset,e);
-				connectionBuf.putInt(CONNECTION_NODE_OFFSET+offset,n);
-				offset += CONNECTION_PAIR_SIZE;
-			}
-			
-			// setting the out connection offset and length
-			ArrayList<Integer> outEdges = nodeOut.get(i);
-			int outEdgeLength = outEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
-		
-			// now put the out edge/node pairs
-			for(int e : outEdges) {
-				int n = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
-				if(n1 == i) {
-					n = n2;
-				} else if(n2 == i) {
-					n = n1;
-				} else {
-					Debugger.log("ERROR When finding connections for node "+i+" connecting edge "+e+ " has connecting nodes "+n1+" "+n2);
-				}
-				connectionBuf.putInt(CONNECTION_EDGE_OFFSET+offset,e);
-				connectionBuf.putInt(CONNECTION_NODE_OFFSET+offset,n);
-				offset += CONNECTION_PAIR_SIZE;
-			}
+		Arrays.sort(pairs, 0, degree);
+		int edgeShift = byNode ? 0 : 32;
+		int nodeShift = byNode ? 32 : 0;
+		for(int j = 0; j < degree; j++) {
+			long position = offset+(long)j*CONNECTION_PAIR_SIZE;
+			connectionBuf.putInt(CONNECTION_EDGE_OFFSET+position,(int)(pairs[j]>>>edgeShift));
+			connectionBuf.putInt(CONNECTION_NODE_OFFSET+position,(int)(pairs[j]>>>nodeShift));
+		}
+		return pairs;
+	}
+	
+	
+	/**
+	 * @param position the position of a connection pair in connectionBuf
+	 * @param byNode true for a key ordered by node index then edge index, false for edge index then node index
+	 * @return the pair as a sort key, indexes are never negative so the key is too
+	 */
+	private long connectionKey(long position, boolean byNode) {
+		long e = connectionBuf.getInt(CONNECTION_EDGE_OFFSET+position);
+		long n = connectionBuf.getInt(CONNECTION_NODE_OFFSET+position);
+		if(byNode) {
+			return (n<<32) | e;
+		}
+		return (e<<32) | n;
+	}
+	
+	
+	/**
+	 * @param items the number of items to process
+	 * @return the number of chunks to split the items into for parallel processing
+	 */
+	private static int taskCount(int items) {
+		int processors = Runtime.getRuntime().availableProcessors();
+		if(processors == 1 || items < MIN_TASK_SIZE*2) {
+			return 1;
 		}
+		int tasks = processors*4;
+		return Math.max(1, Math.min(tasks, items/MIN_TASK_SIZE));
+	}
+	
+	
+	/**
+	 * @param task the chunk, -1 gives the start of the first chunk
+	 * @param tasks the number of chunks
+	 * @param items the number of items
+	 * @return the index after the last item in the chunk
+	 */
+	private static int taskEnd(int task, int tasks, int items) {
+		return (int)((long)(task+1)*items/tasks);
 	}
 	
 	
@@ -1974,13 +3202,13 @@ if(edgeIndex%1000000==0 ) {
 				throw new IOException("Problem parsing node age in line "+nodeLine);
 			}
 			
-			nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+index*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
-			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+index*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+index*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+index*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
-			nodeBuf.putInt(NODE_WEIGHT_OFFSET+index*NODE_BYTE_SIZE,weight); // weight
-			nodeBuf.put(NODE_TYPE_OFFSET+index*NODE_BYTE_SIZE,type); // type
-			nodeBuf.put(NODE_AGE_OFFSET+index*NODE_BYTE_SIZE,age); // age
+			nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+(long)index*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
+			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+(long)index*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
+			nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+(long)index*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
+			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+(long)index*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
+			nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)index*NODE_BYTE_SIZE,weight); // weight
+			nodeBuf.put(NODE_TYPE_OFFSET+(long)index*NODE_BYTE_SIZE,type); // type
+			nodeBuf.put(NODE_AGE_OFFSET+(long)index*NODE_BYTE_SIZE,age); // age
 
 			// save labels for later
 			nodeLabels[index] = label;
@@ -2004,20 +3232,9 @@ if(edgeIndex%1000000==0 ) {
 
 
 		// load the Edges
-		ArrayList<ArrayList<Integer>> nodeIn = new ArrayList<ArrayList<Integer>>(numberOfNodes); // temporary store of inward edges
-		for(int i = 0; i < numberOfNodes; i++) {
-			ArrayList<Integer> edges = new ArrayList<Integer>(100);
-			nodeIn.add(i,edges);
-		}
-		
-		ArrayList<ArrayList<Integer>> nodeOut = new ArrayList<ArrayList<Integer>>(numberOfNodes); // temporary store of outward edges
-		for(int i = 0; i < numberOfNodes; i++) {
-			ArrayList<Integer> edges = new ArrayList<Integer>(100);
-			nodeOut.add(i,edges);
-		}
+		int[] edgeNode1 = new int[numberOfEdges]; // temporary store of the edge ends
+		int[] edgeNode2 = new int[numberOfEdges];
 				
-		ArrayList<Integer> inEdgeList;	
-		ArrayList<Integer> outEdgeList;	
 		
 		int node1 = -64;
 		int node2 = -65;
@@ -2083,20 +3300,18 @@ if(edgeIndex%1000000==0 ) {
 				throw new IOException("Problem parsing edge age in line "+edgeLine);
 			}
 
-			edgeBuf.putInt(EDGE_NODE1_OFFSET+index*EDGE_BYTE_SIZE,node1); // one end of edge
-			edgeBuf.putInt(EDGE_NODE2_OFFSET+index*EDGE_BYTE_SIZE,node2); // other end of edge
-			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+index*EDGE_BYTE_SIZE,weight); // weight
-			edgeBuf.put(EDGE_TYPE_OFFSET+index*EDGE_BYTE_SIZE,type); // type
-			edgeBuf.put(EDGE_AGE_OFFSET+index*EDGE_BYTE_SIZE,age); // age
+			edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)index*EDGE_BYTE_SIZE,node1); // one end of edge
+			edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)index*EDGE_BYTE_SIZE,node2); // other end of edge
+			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)index*EDGE_BYTE_SIZE,weight); // weight
+			edgeBuf.put(EDGE_TYPE_OFFSET+(long)index*EDGE_BYTE_SIZE,type); // type
+			edgeBuf.put(EDGE_AGE_OFFSET+(long)index*EDGE_BYTE_SIZE,age); // age
 
 			// save labels for later
 			edgeLabels[index] = label;
 			
-			// store connecting nodes
-			inEdgeList = nodeIn.get(node2);
-			inEdgeList.add(index);
-			outEdgeList = nodeOut.get(node1);
-			outEdgeList.add(index);
+			// store edge ends for the connection buffer
+			edgeNode1[index] = node1;
+			edgeNode2[index] = node2;
 			
 		}
 		br.close();
@@ -2106,55 +3321,7 @@ if(edgeIndex%1000000==0 ) {
 
 
 		// Initialise the connection buffer, modifying the node buffer connection data
-		//time = Debugger.createTime();
-		int offset = 0;
-		for(int i = 0; i < numberOfNodes; i++) {
-			// setting the in connection offset and length
-			ArrayList<Integer> inEdges = nodeIn.get(i);
-			int inEdgeLength = inEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
-		
-			// now put the in edge/node pairs
-			for(int e : inEdges) {
-				int n = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
-				if(n1 == i) {
-					n = n2;
-				} else if(n2 == i) {
-					n = n1;
-				} else {
-					Debugger.log("ERROR When finding connections for node "+i+" connecting edge "+e+ " has connecting nodes "+n1+" "+n2);
-				}
-				connectionBuf.putInt(CONNECTION_EDGE_OFFSET+offset,e);
-				connectionBuf.putInt(CONNECTION_NODE_OFFSET+offset,n);
-				offset += CONNECTION_PAIR_SIZE;
-			}
-			
-			// setting the out connection offset and length
-			ArrayList<Integer> outEdges = nodeOut.get(i);
-			int outEdgeLength = outEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
-		
-			// now put the out edge/node pairs
-			for(int e : outEdges) {
-				int n = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
-				if(n1 == i) {
-					n = n2;
-				} else if(n2 == i) {
-					n = n1;
-				} else {
-					Debugger.log("ERROR When finding connections for node "+i+" connecting edge "+e+ " has connecting nodes "+n1+" "+n2);
-				}
-				connectionBuf.putInt(CONNECTION_EDGE_OFFSET+offset,e);
-				connectionBuf.putInt(CONNECTION_NODE_OFFSET+offset,n);
-				offset += CONNECTION_PAIR_SIZE;
-			}
-		}
+		buildConnections(edgeNode1,edgeNode2);
 	}
 
 
@@ -2166,11 +3333,12 @@ if(edgeIndex%1000000==0 ) {
 	 * 
 	 * @param directory where the files are held, or if null fileBaseName under data under the current working directory
 	 * @param fileBaseName the name of the files, to which extensions are added
+	 * @param mapped if true the ByteBuffers are memory mapped read only, if false they are read into memory
 	 * @return the created FastGraph
 	 * @throws IOException If the buffers cannot be loaded
 	 */
 	@SuppressWarnings("resource")
-	private static FastGraph loadBuffers(String directory, String fileBaseName) throws IOException {
+	private static FastGraph loadBuffers(String directory, String fileBaseName, boolean mapped) throws IOException {
 		String directoryAndBaseName = Launcher.startingWorkingDirectory+File.separatorChar+"data"+File.separatorChar+fileBaseName+File.separatorChar+fileBaseName;
 		if(directory != null) {
 			if(directory.charAt(directory.length()-1)== File.separatorChar) {
@@ -2204,10 +3372,10 @@ if(edgeIndex%1000000==0 ) {
 		int inEdgeTotal = Integer.parseInt(splitLine[1]);
 		line = br.readLine();
 		splitLine = line.split(INFO_SPLIT_STRING);
-		int inNodeLabelSize = Integer.parseInt(splitLine[1]);
+		long inNodeLabelSize = Long.parseLong(splitLine[1]);
 		line = br.readLine();
 		splitLine = line.split(INFO_SPLIT_STRING);
-		int inEdgeLabelSize = Integer.parseInt(splitLine[1]);
+		long inEdgeLabelSize = Long.parseLong(splitLine[1]);
 		line = br.readLine();
 		splitLine = line.split(INFO_SPLIT_STRING);
 		String directValue = splitLine[1];
@@ -2215,46 +3383,237 @@ if(edgeIndex%1000000==0 ) {
 		if(directValue.equals("false")) {
 			inDirect = false;
 		}
+		// later settings are missing from older files, so default to false
+		boolean inCompactLabels = false;
+		boolean inConnectionsSortedByNode = false;
+		boolean inConnectionsCompressed = false;
+		boolean inCompressedEdgeIndexes = false;
+		while((line = br.readLine()) != null) {
+			splitLine = line.split(INFO_SPLIT_STRING);
+			if(splitLine.length != 2) {
+				continue;
+			}
+			if(splitLine[0].equals("compactLabels") && splitLine[1].equals("true")) {
+				inCompactLabels = true;
+			}
+			if(splitLine[0].equals("connectionsSortedByNode") && splitLine[1].equals("true")) {
+				inConnectionsSortedByNode = true;
+			}
+			if(splitLine[0].equals("connectionsCompressed") && splitLine[1].equals("true")) {
+				inConnectionsCompressed = true;
+			}
+			if(splitLine[0].equals("compressedEdgeIndexes") && splitLine[1].equals("true")) {
+				inCompressedEdgeIndexes = true;
+			}
+		}
+		int connectionRecordSize = CONNECTION_PAIR_SIZE;
+		if(inConnectionsCompressed) {
+			connectionRecordSize = 1;
+		}
+		int labelRecordSize = 2;
+		if(inCompactLabels) {
+			labelRecordSize = 1;
+		}
 		br.close();
-		g = new FastGraph(inNodeTotal, inEdgeTotal, inDirect);
-		if(!inDirect) {
-			g.nodeLabelBuf = ByteBuffer.allocate(inNodeLabelSize);
-			g.edgeLabelBuf = ByteBuffer.allocate(inEdgeLabelSize);
-		} else {
-			g.nodeLabelBuf = ByteBuffer.allocateDirect(inNodeLabelSize);
-			g.edgeLabelBuf = ByteBuffer.allocateDirect(inEdgeLabelSize);
+		
+		if(mapped) {
+			g = new FastGraph(inNodeTotal, inEdgeTotal, inDirect, false);
+			g.mapped = true;
+			g.setName(name);
+			g.nodeBuf = mapBuf(directoryAndBaseName+".nodeBuf",NODE_BYTE_SIZE);
+			g.edgeBuf = mapBuf(directoryAndBaseName+".edgeBuf",EDGE_BYTE_SIZE);
+			g.connectionBuf = mapBuf(directoryAndBaseName+".connectionBuf",connectionRecordSize);
+			g.compactLabels = inCompactLabels;
+			g.connectionsSortedByNode = inConnectionsSortedByNode;
+			g.connectionsCompressed = inConnectionsCompressed;
+			g.compressedEdgeIndexes = inCompressedEdgeIndexes;
+			g.nodeLabelBuf = mapBuf(directoryAndBaseName+".nodeLabelBuf",labelRecordSize);
+			g.edgeLabelBuf = mapBuf(directoryAndBaseName+".edgeLabelBuf",labelRecordSize);
+			return g;
 		}
 		
+		g = new FastGraph(inNodeTotal, inEdgeTotal, inDirect);
+		g.compactLabels = inCompactLabels;
+		g.connectionsSortedByNode = inConnectionsSortedByNode;
+		g.connectionsCompressed = inConnectionsCompressed;
+		g.compressedEdgeIndexes = inCompressedEdgeIndexes;
+		g.nodeLabelBuf = SegmentedByteBuffer.allocate(inNodeLabelSize, labelRecordSize, inDirect);
+		g.edgeLabelBuf = SegmentedByteBuffer.allocate(inEdgeLabelSize, labelRecordSize, inDirect);
+		
 		g.setName(name);
 
 		file = new File(directoryAndBaseName+".nodeBuf");
 		rChannel = new FileInputStream(file).getChannel();
-		rChannel.read(g.nodeBuf);
+		g.nodeBuf.read(rChannel);
 		rChannel.close();
 
 		file = new File(directoryAndBaseName+".edgeBuf");
 		rChannel = new FileInputStream(file).getChannel();
-		rChannel.read(g.edgeBuf);
+		g.edgeBuf.read(rChannel);
 		rChannel.close();
 		
 		file = new File(directoryAndBaseName+".connectionBuf");
+		if(inConnectionsCompressed) {
+			g.connectionBuf = SegmentedByteBuffer.allocate(file.length(), connectionRecordSize, inDirect);
+		}
 		rChannel = new FileInputStream(file).getChannel();
-		rChannel.read(g.connectionBuf);
+		g.connectionBuf.read(rChannel);
 		rChannel.close();
 
 		file = new File(directoryAndBaseName+".nodeLabelBuf");
 		rChannel = new FileInputStream(file).getChannel();
-		rChannel.read(g.nodeLabelBuf);
+		g.nodeLabelBuf.read(rChannel);
 		rChannel.close();
 		
 		file = new File(directoryAndBaseName+".edgeLabelBuf");
 		rChannel = new FileInputStream(file).getChannel();
-		rChannel.read(g.edgeLabelBuf);
+		g.edgeLabelBuf.read(rChannel);
 		rChannel.close();
 
 		
 		return g;
 	}
+	
+	
+	/**
+	 * Loads a graph saved with saveContainer. When not mapped, the checksum of every section
+	 * is tested as it is read. Mapped sections are not read at load time, so only the header
+	 * checksum is tested for them. Sections of unknown type are skipped, so later versions can
+	 * add sections that older code ignores.
+	 * 
+	 * @param fileName the container file
+	 * @param mapped if true the buffers are read only memory mapped views of the file
+	 * @return the graph
+	 * @throws IOException if the file cannot be read, is not a graph container, is of a later version or fails a checksum test
+	 */
+	public static FastGraph loadContainerGraphFactory(String fileName, boolean mapped) throws IOException {
+		
+		RandomAccessFile raf = new RandomAccessFile(fileName, "r");
+		FileChannel rChannel = raf.getChannel();
+		try {
+			ByteBuffer header = ByteBuffer.allocate(CONTAINER_PAGE_SIZE);
+			while(header.hasRemaining()) {
+				if(rChannel.read(header) < 0) {
+					throw new IOException("File "+fileName+" is too short to be a graph container");
+				}
+			}
+			if(header.getLong(0) != CONTAINER_MAGIC) {
+				throw new IOException("File "+fileName+" is not a graph container");
+			}
+			int version = header.getInt(CONTAINER_VERSION_OFFSET);
+			if(version > CONTAINER_VERSION) {
+				throw new IOException("Graph container "+fileName+" has version "+version+", only versions up to "+CONTAINER_VERSION+" can be read");
+			}
+			int headerChecksum = header.getInt(CONTAINER_HEADER_CHECKSUM_OFFSET);
+			header.putInt(CONTAINER_HEADER_CHECKSUM_OFFSET, 0);
+			CRC32 crc = new CRC32();
+			crc.update(header.array());
+			if((int)crc.getValue() != headerChecksum) {
+				throw new IOException("Header checksum failed for graph container "+fileName);
+			}
+			
+			int flags = header.getInt(CONTAINER_FLAGS_OFFSET);
+			boolean inDirect = (flags & CONTAINER_FLAG_DIRECT) != 0;
+			FastGraph g = new FastGraph(header.getInt(CONTAINER_NODES_OFFSET), header.getInt(CONTAINER_EDGES_OFFSET), inDirect, false);
+			g.mapped = mapped;
+			g.compactLabels = (flags & CONTAINER_FLAG_COMPACT_LABELS) != 0;
+			g.connectionsSortedByNode = (flags & CONTAINER_FLAG_CONNECTIONS_SORTED_BY_NODE) != 0;
+			g.connectionsCompressed = (flags & CONTAINER_FLAG_CONNECTIONS_COMPRESSED) != 0;
+			g.compressedEdgeIndexes = (flags & CONTAINER_FLAG_COMPRESSED_EDGE_INDEXES) != 0;
+			int labelRecordSize = 2;
+			if(g.compactLabels) {
+				labelRecordSize = 1;
+			}
+			
+			int sectionCount = header.getInt(CONTAINER_SECTION_COUNT_OFFSET);
+			for(int i = 0; i < sectionCount; i++) {
+				int entry = CONTAINER_SECTIONS_OFFSET+i*CONTAINER_SECTION_ENTRY_SIZE;
+				int type = header.getInt(entry);
+				int checksum = header.getInt(entry+4);
+				long offset = header.getLong(entry+8);
+				long length = header.getLong(entry+16);
+				
+				int recordSize;
+				if(type == CONTAINER_SECTION_NODES) {
+					recordSize = NODE_BYTE_SIZE;
+				} else if(type == CONTAINER_SECTION_EDGES) {
+					recordSize = EDGE_BYTE_SIZE;
+				} else if(type == CONTAINER_SECTION_CONNECTIONS) {
+					recordSize = CONNECTION_PAIR_SIZE;
+					if(g.connectionsCompressed) {
+						recordSize = 1;
+					}
+				} else if(type == CONTAINER_SECTION_NODE_LABELS || type == CONTAINER_SECTION_EDGE_LABELS) {
+					recordSize = labelRecordSize;
+				} else if(type == CONTAINER_SECTION_NAME) {
+					recordSize = 1;
+				} else {
+					continue; // a section added by a later version
+				}
+				if(offset < CONTAINER_PAGE_SIZE || length < 0 || offset+length > rChannel.size()) {
+					throw new IOException("Section "+type+" is outside graph container "+fileName);
+				}
+				
+				SegmentedByteBuffer buf;
+				if(mapped && type != CONTAINER_SECTION_NAME) {
+					buf = SegmentedByteBuffer.map(rChannel, offset, length, recordSize);
+				} else {
+					buf = SegmentedByteBuffer.allocate(length, recordSize, inDirect);
+					rChannel.position(offset);
+					buf.read(rChannel);
+					if(buf.checksum() != checksum) {
+						throw new IOException("Checksum failed for section "+type+" of graph container "+fileName);
+					}
+				}
+				
+				if(type == CONTAINER_SECTION_NODES) {
+					g.nodeBuf = buf;
+				} else if(type == CONTAINER_SECTION_EDGES) {
+					g.edgeBuf = buf;
+				} else if(type == CONTAINER_SECTION_CONNECTIONS) {
+					g.connectionBuf = buf;
+				} else if(type == CONTAINER_SECTION_NODE_LABELS) {
+					g.nodeLabelBuf = buf;
+				} else if(type == CONTAINER_SECTION_EDGE_LABELS) {
+					g.edgeLabelBuf = buf;
+				} else {
+					byte[] nameBytes = new byte[(int)length];
+					for(int j = 0; j < nameBytes.length; j++) {
+						nameBytes[j] = buf.get(j);
+					}
+					g.setName(new String(nameBytes, StandardCharsets.UTF_8));
+				}
+			}
+			if(g.nodeBuf == null || g.edgeBuf == null || g.connectionBuf == null || g.nodeLabelBuf == null || g.edgeLabelBuf == null) {
+				throw new IOException("Graph container "+fileName+" is missing a section");
+			}
+			return g;
+		} finally {
+			rChannel.close();
+			raf.close();
+		}
+	}
+	
+	
+	/**
+	 * Memory map a file as a read only buffer. The mapping remains valid after
+	 * the channel is closed.
+	 * 
+	 * @param fileName the file to map
+	 * @param recordSize the size of the items stored in the file
+	 * @return a read only buffer backed by the file
+	 * @throws IOException if the file cannot be opened or mapped
+	 */
+	private static SegmentedByteBuffer mapBuf(String fileName, int recordSize) throws IOException {
+		
+		RandomAccessFile raf = new RandomAccessFile(fileName, "r");
+		FileChannel rChannel = raf.getChannel();
+		SegmentedByteBuffer buf = SegmentedByteBuffer.map(rChannel, rChannel.size(), recordSize);
+		rChannel.close();
+		raf.close();
+		
+		return buf;
+	}
 
 
 	/**
@@ -2291,13 +3650,13 @@ if(edgeIndex%1000000==0 ) {
 		//generate the nodes
 		for(int i = 0; i < numberOfNodes; i++) {
 			weight = r.nextInt(100);
-			nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+i*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
-			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+i*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+i*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+i*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
-			nodeBuf.putInt(NODE_WEIGHT_OFFSET+i*NODE_BYTE_SIZE,weight); // weight
-			nodeBuf.put(NODE_TYPE_OFFSET+i*NODE_BYTE_SIZE,type); // type
-			nodeBuf.put(NODE_AGE_OFFSET+i*NODE_BYTE_SIZE,age); // age
+			nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
+			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
+			nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
+			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
+			nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)i*NODE_BYTE_SIZE,weight); // weight
+			nodeBuf.put(NODE_TYPE_OFFSET+(long)i*NODE_BYTE_SIZE,type); // type
+			nodeBuf.put(NODE_AGE_OFFSET+(long)i*NODE_BYTE_SIZE,age); // age
 			
 			// store labels for later
 			String label = "n"+i;
@@ -2307,20 +3666,9 @@ if(edgeIndex%1000000==0 ) {
 
 		setAllNodeLabels(nodeLabels);
 
-		ArrayList<ArrayList<Integer>> nodeIn = new ArrayList<ArrayList<Integer>>(numberOfNodes); // temporary store of inward edges
-		for(int i = 0; i < numberOfNodes; i++) {
-			ArrayList<Integer> edges = new ArrayList<Integer>(100);
-			nodeIn.add(i,edges);
-		}
-		
-		ArrayList<ArrayList<Integer>> nodeOut = new ArrayList<ArrayList<Integer>>(numberOfNodes); // temporary store of outward edges
-		for(int i = 0; i < numberOfNodes; i++) {
-			ArrayList<Integer> edges = new ArrayList<Integer>(100);
-			nodeOut.add(i,edges);
-		}
+		int[] edgeNode1 = new int[numberOfEdges]; // temporary store of the edge ends
+		int[] edgeNode2 = new int[numberOfEdges];
 
-		ArrayList<Integer> inEdgeList;	
-		ArrayList<Integer> outEdgeList;	
 		int node1;
 		int node2;
 		weight = -101;
@@ -2356,77 +3704,26 @@ if(edgeIndex%1000000==0 ) {
 				nodePairs.add(pairString1);
 			}
 			
-			edgeBuf.putInt(EDGE_NODE1_OFFSET+i*EDGE_BYTE_SIZE,node1); // one end of edge
-			edgeBuf.putInt(EDGE_NODE2_OFFSET+i*EDGE_BYTE_SIZE,node2); // other end of edge
-			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+i*EDGE_BYTE_SIZE,weight); // weight
-			edgeBuf.put(EDGE_TYPE_OFFSET+i*EDGE_BYTE_SIZE,type); // type
-			edgeBuf.put(EDGE_AGE_OFFSET+i*EDGE_BYTE_SIZE,age); // age
+			edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)i*EDGE_BYTE_SIZE,node1); // one end of edge
+			edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)i*EDGE_BYTE_SIZE,node2); // other end of edge
+			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)i*EDGE_BYTE_SIZE,weight); // weight
+			edgeBuf.put(EDGE_TYPE_OFFSET+(long)i*EDGE_BYTE_SIZE,type); // type
+			edgeBuf.put(EDGE_AGE_OFFSET+(long)i*EDGE_BYTE_SIZE,age); // age
 			
 			// label
 			String label = "e"+i;
 			edgeLabels[i] = label;
 			
-			// store connecting nodes
-			inEdgeList = nodeIn.get(node2);
-			inEdgeList.add(i);
-			outEdgeList = nodeOut.get(node1);
-			outEdgeList.add(i);
+			// store edge ends for the connection buffer
+			edgeNode1[i] = node1;
+			edgeNode2[i] = node2;
 			
 		}
 
 		setAllEdgeLabels(edgeLabels);
 		
 		// Initialise the connection buffer, modifying the node buffer connection data
-		int offset = 0;
-		for(int i = 0; i < numberOfNodes; i++) {
-			// setting the in connection offset and length
-			ArrayList<Integer> inEdges = nodeIn.get(i);
-			int inEdgeLength = inEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
-		
-			// now put the in edge/node pairs
-			for(int e : inEdges) {
-				int n = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
-				if(n1 == i) {
-					n = n2;
-				} else if(n2 == i) {
-					n = n1;
-				} else {
-					Debugger.log("ERROR When finding connections for node "+i+" connecting edge "+e+ " has connecting nodes "+n1+" "+n2);
-				}
-				connectionBuf.putInt(CONNECTION_EDGE_OFFSET+offset,e);
-				connectionBuf.putInt(CONNECTION_NODE_OFFSET+offset,n);
-				offset += CONNECTION_PAIR_SIZE;
-			}
-			
-			// setting the out connection offset and length
-			ArrayList<Integer> outEdges = nodeOut.get(i);
-			int outEdgeLength = outEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
-		
-			// now put the out edge/node pairs
-			for(int e : outEdges) {
-				int n = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
-				if(n1 == i) {
-					n = n2;
-				} else if(n2 == i) {
-					n = n1;
-				} else {
-					Debugger.log("ERROR When finding connections for node "+i+" connecting edge "+e+ " has connecting nodes "+n1+" "+n2);
-				}
-				connectionBuf.putInt(CONNECTION_EDGE_OFFSET+offset,e);
-				connectionBuf.putInt(CONNECTION_NODE_OFFSET+offset,n);
-				offset += CONNECTION_PAIR_SIZE;
-			}
-			
-		
-		}
+		buildConnections(edgeNode1,edgeNode2);
 		//Debugger.outputTime("connection put time, direct "+edgeBuf.isDirect());
 
 	}
@@ -2485,13 +3782,13 @@ if(edgeIndex%1000000==0 ) {
 				type = -1;
 			}
 			
-			nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+i*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
-			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+i*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+i*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
-			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+i*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
-			nodeBuf.putInt(NODE_WEIGHT_OFFSET+i*NODE_BYTE_SIZE,weight); // weight
-			nodeBuf.put(NODE_TYPE_OFFSET+i*NODE_BYTE_SIZE,type); // type
-			nodeBuf.put(NODE_AGE_OFFSET+i*NODE_BYTE_SIZE,age); // age
+			nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,inStart); // offset for inward connecting edges/nodes
+			nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE,inLength); // number of inward connecting edges/nodes
+			nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+(long)i*NODE_BYTE_SIZE,outStart); // offset for outward connecting edges/nodes
+			nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE,outLength); // number of outward connecting edges/nodes
+			nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)i*NODE_BYTE_SIZE,weight); // weight
+			nodeBuf.put(NODE_TYPE_OFFSET+(long)i*NODE_BYTE_SIZE,type); // type
+			nodeBuf.put(NODE_AGE_OFFSET+(long)i*NODE_BYTE_SIZE,age); // age
 
 			// store labels for later
 			String label = dgn.getLabel();
@@ -2501,20 +3798,9 @@ if(edgeIndex%1000000==0 ) {
 
 		setAllNodeLabels(nodeLabels);
 
-		ArrayList<ArrayList<Integer>> nodeIn = new ArrayList<ArrayList<Integer>>(numberOfNodes); // temporary store of inward edges
-		for(int i = 0; i < numberOfNodes; i++) {
-			ArrayList<Integer> edges = new ArrayList<Integer>(100);
-			nodeIn.add(i,edges);
-		}
-		
-		ArrayList<ArrayList<Integer>> nodeOut = new ArrayList<ArrayList<Integer>>(numberOfNodes); // temporary store of outward edges
-		for(int i = 0; i < numberOfNodes; i++) {
-			ArrayList<Integer> edges = new ArrayList<Integer>(100);
-			nodeOut.add(i,edges);
-		}
+		int[] edgeNode1 = new int[numberOfEdges]; // temporary store of the edge ends
+		int[] edgeNode2 = new int[numberOfEdges];
 				
-		ArrayList<Integer> inEdgeList;	
-		ArrayList<Integer> outEdgeList;	
 		int node1;
 		int node2;
 		weight = -15;
@@ -2538,76 +3824,26 @@ if(edgeIndex%1000000==0 ) {
 				type = -1;
 			}
 			
-			edgeBuf.putInt(EDGE_NODE1_OFFSET+i*EDGE_BYTE_SIZE,node1); // one end of edge
-			edgeBuf.putInt(EDGE_NODE2_OFFSET+i*EDGE_BYTE_SIZE,node2); // other end of edge
-			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+i*EDGE_BYTE_SIZE,weight); // weight
-			edgeBuf.put(EDGE_TYPE_OFFSET+i*EDGE_BYTE_SIZE,type); // type
-			edgeBuf.put(EDGE_AGE_OFFSET+i*EDGE_BYTE_SIZE,age); // age
+			edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)i*EDGE_BYTE_SIZE,node1); // one end of edge
+			edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)i*EDGE_BYTE_SIZE,node2); // other end of edge
+			edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)i*EDGE_BYTE_SIZE,weight); // weight
+			edgeBuf.put(EDGE_TYPE_OFFSET+(long)i*EDGE_BYTE_SIZE,type); // type
+			edgeBuf.put(EDGE_AGE_OFFSET+(long)i*EDGE_BYTE_SIZE,age); // age
 			
 			// store labels for later
 			String label = dge.getLabel();
 			edgeLabels[i] = label;
 			
-			// store connecting nodes
-			inEdgeList = nodeIn.get(node2);
-			inEdgeList.add(i);
-			outEdgeList = nodeOut.get(node1);
-			outEdgeList.add(i);
+			// store edge ends for the connection buffer
+			edgeNode1[i] = node1;
+			edgeNode2[i] = node2;
 
 		}
 		
 		setAllEdgeLabels(edgeLabels);
 
 		// Initialise the connection buffer, modifying the node buffer connection data
-		//time = Debugger.createTime();
-		int offset = 0;
-		for(int i = 0; i < numberOfNodes; i++) {
-			// setting the in connection offset and length
-			ArrayList<Integer> inEdges = nodeIn.get(i);
-			int inEdgeLength = inEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
-		
-			// now put the in edge/node pairs
-			for(int edgeIndex : inEdges) {
-				int nodeIndex = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				if(n1 == i) {
-					nodeIndex = n2;
-				} else if(n2 == i) {
-					nodeIndex = n1;
-				} else {
-					Debugger.log("ERROR When finding connections for node "+i+" connecting edge "+edgeIndex+ " has connecting nodes "+n1+" "+n2);
-				}
-				connectionBuf.putInt(CONNECTION_EDGE_OFFSET+offset,edgeIndex);
-				connectionBuf.putInt(CONNECTION_NODE_OFFSET+offset,nodeIndex);
-				offset += CONNECTION_PAIR_SIZE;
-			}
-			
-			// setting the out connection offset and length
-			ArrayList<Integer> outEdges = nodeOut.get(i);
-			int outEdgeLength = outEdges.size();
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
-			nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
-		
-			// now put the out edge/node pairs
-			for(int edgeIndex : outEdges) {
-				int nodeIndex = -1;
-				int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				if(n1 == i) {
-					nodeIndex = n2;
-				} else if(n2 == i) {
-					nodeIndex = n1;
-				} else {
-					Debugger.log("ERROR When finding connections for node "+i+" connecting edge "+edgeIndex+ " has connecting nodes "+n1+" "+n2);
-				}
-				connectionBuf.putInt(CONNECTION_EDGE_OFFSET+offset,edgeIndex);
-				connectionBuf.putInt(CONNECTION_NODE_OFFSET+offset,nodeIndex);
-				offset += CONNECTION_PAIR_SIZE;
-			}
-		}
+		buildConnections(edgeNode1,edgeNode2);
 	}
 	
 	
@@ -2701,6 +3937,7 @@ time = Debugger.createTime();
 		long time = Debugger.createTime();
 
 		FastGraph g = new FastGraph(subgraphNodes.length, subgraphEdges.length, getDirect());
+		g.compactLabels = compactLabels;
 		
 		String[] nodeLabels = new String[subgraphNodes.length]; // stores the labels for creating the nodeLabelBuffer
 		HashMap<Integer,Integer> oldNodesToNew = new HashMap<>(subgraphNodes.length*4); // for reference when adding edges, multiplier reduces chances of clashes
@@ -2711,13 +3948,13 @@ time = Debugger.createTime();
 		int index = 0;
 		for(int n : subgraphNodes) {
 
-			weight = nodeBuf.getInt(NODE_WEIGHT_OFFSET+n*NODE_BYTE_SIZE);
-			type = nodeBuf.get(NODE_TYPE_OFFSET+n*NODE_BYTE_SIZE);
-			age = nodeBuf.get(NODE_AGE_OFFSET+n*NODE_BYTE_SIZE);
+			weight = nodeBuf.getInt(NODE_WEIGHT_OFFSET+(long)n*NODE_BYTE_SIZE);
+			type = nodeBuf.get(NODE_TYPE_OFFSET+(long)n*NODE_BYTE_SIZE);
+			age = nodeBuf.get(NODE_AGE_OFFSET+(long)n*NODE_BYTE_SIZE);
 
-			g.nodeBuf.putInt(NODE_WEIGHT_OFFSET+index*NODE_BYTE_SIZE,weight);
-			g.nodeBuf.put(NODE_TYPE_OFFSET+index*NODE_BYTE_SIZE,type);
-			g.nodeBuf.put(NODE_AGE_OFFSET+index*NODE_BYTE_SIZE,age);
+			g.nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)index*NODE_BYTE_SIZE,weight);
+			g.nodeBuf.put(NODE_TYPE_OFFSET+(long)index*NODE_BYTE_SIZE,type);
+			g.nodeBuf.put(NODE_AGE_OFFSET+(long)index*NODE_BYTE_SIZE,age);
 			
 			// store labels for later
 			nodeLabels[index] = getNodeLabel(n);
@@ -2732,17 +3969,8 @@ time = Debugger.createTime();
 //Debugger.outputTime("D popluated the new node list buffer ");
 time = Debugger.createTime();
 		
-		ArrayList<ArrayList<Integer>> nodeIn = new ArrayList<ArrayList<Integer>>(subgraphNodes.length); // temporary store of inward edges
-		for(int nodeIndex = 0; nodeIndex < subgraphNodes.length; nodeIndex++) {
-			ArrayList<Integer> edges = new ArrayList<Integer>(100);
-			nodeIn.add(nodeIndex,edges);
-		}
-		
-		ArrayList<ArrayList<Integer>> nodeOut = new ArrayList<ArrayList<Integer>>(subgraphNodes.length); // temporary store of outward edges
-		for(int nodeIndex = 0; nodeIndex < subgraphNodes.length; nodeIndex++) {
-			ArrayList<Integer> edges = new ArrayList<Integer>(100);
-			nodeOut.add(nodeIndex,edges);
-		}
+		int[] edgeNode1 = new int[subgraphEdges.length]; // temporary store of the edge ends
+		int[] edgeNode2 = new int[subgraphEdges.length];
 //Debugger.outputTime("E created the neighbour store ");
 time = Debugger.createTime();
 		
@@ -2750,40 +3978,34 @@ time = Debugger.createTime();
 
 
 		String[] edgeLabels = new String[subgraphEdges.length]; // stores the labels for creating the edgeLabelBuffer
-		ArrayList<Integer> inEdgeList;	
-		ArrayList<Integer> outEdgeList;	
 		// create the edges
 		index = 0;
-		edgeBuf.position(0);
-		g.edgeBuf.position(0);
 		for(int e : subgraphEdges) {
 			
-			weight = edgeBuf.getInt(EDGE_WEIGHT_OFFSET+e*EDGE_BYTE_SIZE);
-			type = edgeBuf.get(EDGE_TYPE_OFFSET+e*EDGE_BYTE_SIZE);
-			age = edgeBuf.get(EDGE_AGE_OFFSET+e*EDGE_BYTE_SIZE);
+			weight = edgeBuf.getInt(EDGE_WEIGHT_OFFSET+(long)e*EDGE_BYTE_SIZE);
+			type = edgeBuf.get(EDGE_TYPE_OFFSET+(long)e*EDGE_BYTE_SIZE);
+			age = edgeBuf.get(EDGE_AGE_OFFSET+(long)e*EDGE_BYTE_SIZE);
 
-			g.edgeBuf.putInt(EDGE_WEIGHT_OFFSET+index*EDGE_BYTE_SIZE,weight);
-			g.edgeBuf.put(EDGE_TYPE_OFFSET+index*EDGE_BYTE_SIZE,type);
-			g.edgeBuf.put(EDGE_AGE_OFFSET+index*EDGE_BYTE_SIZE,age);
+			g.edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)index*EDGE_BYTE_SIZE,weight);
+			g.edgeBuf.put(EDGE_TYPE_OFFSET+(long)index*EDGE_BYTE_SIZE,type);
+			g.edgeBuf.put(EDGE_AGE_OFFSET+(long)index*EDGE_BYTE_SIZE,age);
 			
-			int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-			int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
+			int n1 = edgeBuf.getInt(EDGE_NODE1_OFFSET+(long)e*EDGE_BYTE_SIZE);
+			int n2 = edgeBuf.getInt(EDGE_NODE2_OFFSET+(long)e*EDGE_BYTE_SIZE);
 			
 			
 			int gn1 = oldNodesToNew.get(n1);
 			int gn2 = oldNodesToNew.get(n2);
 			
-			g.edgeBuf.putInt(EDGE_NODE1_OFFSET+index*EDGE_BYTE_SIZE,gn1); // one end of edge
-			g.edgeBuf.putInt(EDGE_NODE2_OFFSET+index*EDGE_BYTE_SIZE,gn2); // other end of edge
+			g.edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)index*EDGE_BYTE_SIZE,gn1); // one end of edge
+			g.edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)index*EDGE_BYTE_SIZE,gn2); // other end of edge
 			
 			// store labels for later
 			edgeLabels[index] = getEdgeLabel(e);
 			
-			// store connecting edges
-			inEdgeList = nodeIn.get(gn2);
-			inEdgeList.add(index);
-			outEdgeList = nodeOut.get(gn1);
-			outEdgeList.add(index);
+			// store edge ends for the connection buffer
+			edgeNode1[index] = gn1;
+			edgeNode2[index] = gn2;
 			index++;
 		}
 //Debugger.outputTime("F populated the new edge buffer ");
@@ -2794,61 +4016,7 @@ time = Debugger.createTime();
 time = Debugger.createTime();
 		
 		// Initialise the connection buffer, modifying the node buffer connection data
-		//time = Debugger.createTime();
-		int offset = 0;
-		for(int node = 0; node < subgraphNodes.length; node++) {
-if(node%100000 == 0) {
-	//Debugger.outputTime("H populated "+node+" nodes in connection buffer ");
-	time = Debugger.createTime();
-}
-			
-			// setting the in connection offset and length
-			ArrayList<Integer> inEdges = nodeIn.get(node);
-			int inEdgeLength = inEdges.size();
-			g.nodeBuf.putInt(node*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
-			g.nodeBuf.putInt(node*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
-			
-			// now put the in edge/node pairs
-			for(int edgeIndex : inEdges) {
-				int nodeIndex = -1;
-				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				if(n1 == node) {
-					nodeIndex = n2;
-				} else if(n2 == node) {
-					nodeIndex = n1;
-				} else {
-					Debugger.log("ERROR A When finding connections for node "+node+" connecting edge "+edgeIndex+ " has connecting nodes "+n1+" "+n2);
-				}
-				g.connectionBuf.putInt(CONNECTION_EDGE_OFFSET+offset,edgeIndex);
-				g.connectionBuf.putInt(CONNECTION_NODE_OFFSET+offset,nodeIndex);
-				offset += CONNECTION_PAIR_SIZE;
-			}
-			
-			// setting the out connection offset and length
-			ArrayList<Integer> outEdges = nodeOut.get(node);
-			int outEdgeLength = outEdges.size();
-			g.nodeBuf.putInt(node*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
-			g.nodeBuf.putInt(node*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
-			
-			// now put the out edge/node pairs
-			for(int edgeIndex : outEdges) {
-				int nodeIndex = -1;
-				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-
-				if(n1 == node) {
-					nodeIndex = n2;
-				} else if(n2 == node) {
-					nodeIndex = n1;
-				} else {
-					Debugger.log("ERROR B When finding connections for node "+node+" connecting edge "+edgeIndex+ " has connecting nodes "+n1+" "+n2);
-				}
-				g.connectionBuf.putInt(CONNECTION_EDGE_OFFSET+offset,edgeIndex);
-				g.connectionBuf.putInt(CONNECTION_NODE_OFFSET+offset,nodeIndex);
-				offset += CONNECTION_PAIR_SIZE;
-			}
-		}
+		g.buildConnections(edgeNode1,edgeNode2);
 		
 		return g;
 	}
@@ -2866,29 +4034,17 @@ if(node%100000 == 0) {
 
 		FastGraph g = new FastGraph(getNumberOfNodes(), getNumberOfEdges(), getDirect());
 		
-		g.nodeBuf = Util.cloneByteBuffer(nodeBuf);
-		g.nodeLabelBuf = Util.cloneByteBuffer(nodeLabelBuf);
-		g.edgeBuf = Util.cloneByteBuffer(edgeBuf);
-		g.edgeLabelBuf = Util.cloneByteBuffer(edgeLabelBuf);
+		g.compactLabels = compactLabels;
+		g.nodeBuf = nodeBuf.copy();
+		g.nodeLabelBuf = nodeLabelBuf.copy();
+		g.edgeBuf = edgeBuf.copy();
+		g.edgeLabelBuf = edgeLabelBuf.copy();
 
-		ArrayList<ArrayList<Integer>> nodeIn = new ArrayList<ArrayList<Integer>>(g.getNumberOfNodes()); // temporary store of inward edges
-		for(int nodeIndex = 0; nodeIndex < g.getNumberOfNodes(); nodeIndex++) {
-			ArrayList<Integer> edges = new ArrayList<Integer>(100);
-			nodeIn.add(nodeIndex,edges);
-		}
-		
-		ArrayList<ArrayList<Integer>> nodeOut = new ArrayList<ArrayList<Integer>>(g.getNumberOfNodes()); // temporary store of outward edges
-		for(int nodeIndex = 0; nodeIndex < g.getNumberOfNodes(); nodeIndex++) {
-			ArrayList<Integer> edges = new ArrayList<Integer>(100);
-			nodeOut.add(nodeIndex,edges);
-		}
+		int[] edgeNode1 = new int[g.getNumberOfEdges()]; // temporary store of the edge ends
+		int[] edgeNode2 = new int[g.getNumberOfEdges()];
 
-		ArrayList<Integer> inEdgeList;	
-		ArrayList<Integer> outEdgeList;	
 		
 		// create the edges
-		edgeBuf.position(0);
-		g.edgeBuf.position(0);
 
 		for(int[] eArray : rewireEdges) {
 			
@@ -2898,8 +4054,8 @@ if(node%100000 == 0) {
 			int gn2 = eArray[2];
 			
 			
-			g.edgeBuf.putInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE,gn1); // one end of edge
-			g.edgeBuf.putInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE,gn2); // other end of edge
+			g.edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)e*EDGE_BYTE_SIZE,gn1); // one end of edge
+			g.edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)e*EDGE_BYTE_SIZE,gn2); // other end of edge
 		}
 //Debugger.outputTime("A Changed the edge connections");
 			
@@ -2909,63 +4065,13 @@ if(node%100000 == 0) {
 			int gn1 = g.getEdgeNode1(e);
 			int gn2 = g.getEdgeNode2(e);
 			
-			// store connecting edges
-			inEdgeList = nodeIn.get(gn2);
-			inEdgeList.add(e);
-			outEdgeList = nodeOut.get(gn1);
-			outEdgeList.add(e);
+			// store edge ends for the connection buffer
+			edgeNode1[e] = gn1;
+			edgeNode2[e] = gn2;
 		}
 		
 		// Initialise the connection buffer, modifying the node buffer connection data
-		int offset = 0;
-		for(int node = 0; node < g.getNumberOfNodes(); node++) {
-			
-			// setting the in connection offset and length
-			ArrayList<Integer> inEdges = nodeIn.get(node);
-			int inEdgeLength = inEdges.size();
-			g.nodeBuf.putInt(node*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
-			g.nodeBuf.putInt(node*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
-			
-			// now put the in edge/node pairs
-			for(int edgeIndex : inEdges) {
-				int nodeIndex = -1;
-				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				if(n1 == node) {
-					nodeIndex = n2;
-				} else if(n2 == node) {
-					nodeIndex = n1;
-				} else {
-					Debugger.log("ERROR A When finding connections for node "+node+" connecting edge "+edgeIndex+ " has connecting nodes "+n1+" "+n2);
-				}
-				g.connectionBuf.putInt(CONNECTION_EDGE_OFFSET+offset,edgeIndex);
-				g.connectionBuf.putInt(CONNECTION_NODE_OFFSET+offset,nodeIndex);
-				offset += CONNECTION_PAIR_SIZE;
-			}
-			// setting the out connection offset and length
-			ArrayList<Integer> outEdges = nodeOut.get(node);
-			int outEdgeLength = outEdges.size();
-			g.nodeBuf.putInt(node*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
-			g.nodeBuf.putInt(node*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
-			
-			// now put the out edge/node pairs
-			for(int edgeIndex : outEdges) {
-				int nodeIndex = -1;
-				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+edgeIndex*EDGE_BYTE_SIZE);
-
-				if(n1 == node) {
-					nodeIndex = n2;
-				} else if(n2 == node) {
-					nodeIndex = n1;
-				} else {
-					Debugger.log("ERROR B When finding connections for node "+node+" connecting edge "+edgeIndex+ " has connecting nodes "+n1+" "+n2);
-				}
-				g.connectionBuf.putInt(CONNECTION_EDGE_OFFSET+offset,edgeIndex);
-				g.connectionBuf.putInt(CONNECTION_NODE_OFFSET+offset,nodeIndex);
-				offset += CONNECTION_PAIR_SIZE;
-			}
-		}
+		g.buildConnections(edgeNode1,edgeNode2);
 		
 		return g;
 	}
@@ -3052,8 +4158,8 @@ if(node%100000 == 0) {
 		
 		int max = 0;
 		for(int i = 0; i < numberOfNodes; i++) {
-			int inDegree = nodeBuf.getInt(NODE_IN_DEGREE_OFFSET+i*NODE_BYTE_SIZE);
-			int outDegree = nodeBuf.getInt(NODE_OUT_DEGREE_OFFSET+i*NODE_BYTE_SIZE);
+			int inDegree = nodeBuf.getInt(NODE_IN_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE);
+			int outDegree = nodeBuf.getInt(NODE_OUT_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE);
 			int degree = inDegree+outDegree;
 			if(degree > max) {
 				max = degree;
@@ -3070,7 +4176,7 @@ if(node%100000 == 0) {
 		
 		int max = 0;
 		for(int i = 0; i < numberOfNodes; i++) {
-			int inDegree = nodeBuf.getInt(NODE_IN_DEGREE_OFFSET+i*NODE_BYTE_SIZE);
+			int inDegree = nodeBuf.getInt(NODE_IN_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE);
 			if(inDegree > max) {
 				max = inDegree;
 			}
@@ -3086,7 +4192,7 @@ if(node%100000 == 0) {
 		
 		int max = 0;
 		for(int i = 0; i < numberOfNodes; i++) {
-			int outDegree = nodeBuf.getInt(NODE_OUT_DEGREE_OFFSET+i*NODE_BYTE_SIZE);
+			int outDegree = nodeBuf.getInt(NODE_OUT_DEGREE_OFFSET+(long)i*NODE_BYTE_SIZE);
 			if(outDegree > max) {
 				max = outDegree;
 			}
@@ -3552,7 +4658,7 @@ Debugger.outputTime("time for rewiring");
 	 */
 	public boolean isAnyNodeLabelled() {
 		for(int i = 0; i < this.getNumberOfNodes(); i++) {
-			if(!this.getNodeLabel(i).equals("")) {
+			if(!this.isNodeLabelEmpty(i)) {
 				return true;
 			}
 		}
@@ -3565,7 +4671,7 @@ Debugger.outputTime("time for rewiring");
 	 */
 	public boolean isAnyEdgeLabelled() {
 		for(int i = 0; i < this.getNumberOfEdges(); i++) {
-			if(!this.getEdgeLabel(i).equals("")) {
+			if(!this.isEdgeLabelEmpty(i)) {
 				return true;
 			}
 		}
@@ -3907,13 +5013,13 @@ Debugger.outputTime("time for rewiring");
 
 		for(NodeStructure ns : nodes) {
 			int nodeId = ns.getId();
-			g.nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+nodeId*NODE_BYTE_SIZE,-1); // offset for inward connecting edges/nodes
-			g.nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+nodeId*NODE_BYTE_SIZE,-1); // number of inward connecting edges/nodes
-			g.nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+nodeId*NODE_BYTE_SIZE,-1); // offset for outward connecting edges/nodes
-			g.nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+nodeId*NODE_BYTE_SIZE,-1); // number of outward connecting edges/nodes
-			g.nodeBuf.putInt(NODE_WEIGHT_OFFSET+nodeId*NODE_BYTE_SIZE,ns.getWeight()); // weight
-			g.nodeBuf.put(NODE_TYPE_OFFSET+nodeId*NODE_BYTE_SIZE,ns.getType()); // type
-			g.nodeBuf.put(NODE_AGE_OFFSET+nodeId*NODE_BYTE_SIZE,ns.getAge()); // age
+			g.nodeBuf.putInt(NODE_IN_CONNECTION_START_OFFSET+(long)nodeId*NODE_BYTE_SIZE,-1); // offset for inward connecting edges/nodes
+			g.nodeBuf.putInt(NODE_IN_DEGREE_OFFSET+(long)nodeId*NODE_BYTE_SIZE,-1); // number of inward connecting edges/nodes
+			g.nodeBuf.putInt(NODE_OUT_CONNECTION_START_OFFSET+(long)nodeId*NODE_BYTE_SIZE,-1); // offset for outward connecting edges/nodes
+			g.nodeBuf.putInt(NODE_OUT_DEGREE_OFFSET+(long)nodeId*NODE_BYTE_SIZE,-1); // number of outward connecting edges/nodes
+			g.nodeBuf.putInt(NODE_WEIGHT_OFFSET+(long)nodeId*NODE_BYTE_SIZE,ns.getWeight()); // weight
+			g.nodeBuf.put(NODE_TYPE_OFFSET+(long)nodeId*NODE_BYTE_SIZE,ns.getType()); // type
+			g.nodeBuf.put(NODE_AGE_OFFSET+(long)nodeId*NODE_BYTE_SIZE,ns.getAge()); // age
 
 			// save labels for later
 			nodeLabels[nodeId] = ns.getLabel();
@@ -3921,91 +5027,30 @@ Debugger.outputTime("time for rewiring");
 
 		g.setAllNodeLabels(nodeLabels);
 
-		ArrayList<ArrayList<Integer>> nodeIn = new ArrayList<ArrayList<Integer>>(nodeCount); // temporary store of inward edges
-		for(int i = 0; i < nodeCount; i++) {
-			ArrayList<Integer> connectingEdges = new ArrayList<Integer>(100);
-			nodeIn.add(i,connectingEdges);
-		}
-		
-		ArrayList<ArrayList<Integer>> nodeOut = new ArrayList<ArrayList<Integer>>(nodeCount); // temporary store of outward edges
-		for(int i = 0; i < nodeCount; i++) {
-			ArrayList<Integer> connectingEdges = new ArrayList<Integer>(100);
-			nodeOut.add(i,connectingEdges);
-		}
+		int[] edgeNode1 = new int[edgeCount]; // temporary store of the edge ends
+		int[] edgeNode2 = new int[edgeCount];
 		
-		ArrayList<Integer> inEdgeList;	
-		ArrayList<Integer> outEdgeList;	
 		for(EdgeStructure es : edges) {
 			int edgeId = es.getId();
-			g.edgeBuf.putInt(EDGE_NODE1_OFFSET+edgeId*EDGE_BYTE_SIZE,es.getNode1()); // one end of edge
-			g.edgeBuf.putInt(EDGE_NODE2_OFFSET+edgeId*EDGE_BYTE_SIZE,es.getNode2()); // other end of edge
-			g.edgeBuf.putInt(EDGE_WEIGHT_OFFSET+edgeId*EDGE_BYTE_SIZE,es.getWeight()); // weight
-			g.edgeBuf.put(EDGE_TYPE_OFFSET+edgeId*EDGE_BYTE_SIZE,es.getType()); // type
-			g.edgeBuf.put(EDGE_AGE_OFFSET+edgeId*EDGE_BYTE_SIZE,es.getAge()); // age
+			g.edgeBuf.putInt(EDGE_NODE1_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,es.getNode1()); // one end of edge
+			g.edgeBuf.putInt(EDGE_NODE2_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,es.getNode2()); // other end of edge
+			g.edgeBuf.putInt(EDGE_WEIGHT_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,es.getWeight()); // weight
+			g.edgeBuf.put(EDGE_TYPE_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,es.getType()); // type
+			g.edgeBuf.put(EDGE_AGE_OFFSET+(long)edgeId*EDGE_BYTE_SIZE,es.getAge()); // age
 			
 			// store labels for later
 			edgeLabels[edgeId] = es.getLabel();
 			
-			// store connecting nodes
-			inEdgeList = nodeIn.get(es.getNode2());
-			inEdgeList.add(edgeId);
-			outEdgeList = nodeOut.get(es.getNode1());
-			outEdgeList.add(edgeId);
+			// store edge ends for the connection buffer
+			edgeNode1[edgeId] = es.getNode1();
+			edgeNode2[edgeId] = es.getNode2();
 			
 		}
 		
 		g.setAllEdgeLabels(edgeLabels);
 
 		// Initialise the connection buffer, modifying the node buffer connection data
-		//time = Debugger.createTime();
-		int offset = 0;
-		for(int i = 0; i < nodeCount; i++) {
-			// setting the in connection offset and length
-			ArrayList<Integer> inEdges = nodeIn.get(i);
-			int inEdgeLength = inEdges.size();
-			g.nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_CONNECTION_START_OFFSET,offset);
-			g.nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_IN_DEGREE_OFFSET,inEdgeLength);
-		
-			// now put the in edge/node pairs
-			for(int e : inEdges) {
-				int n = -1;
-				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
-				if(n1 == i) {
-					n = n2;
-				} else if(n2 == i) {
-					n = n1;
-				} else {
-					Debugger.log("ERROR When finding connections for node "+i+" connecting edge "+e+ " has connecting nodes "+n1+" "+n2);
-				}
-				g.connectionBuf.putInt(CONNECTION_EDGE_OFFSET+offset,e);
-				g.connectionBuf.putInt(CONNECTION_NODE_OFFSET+offset,n);
-				offset += CONNECTION_PAIR_SIZE;
-			}
-			
-			// setting the out connection offset and length
-			ArrayList<Integer> outEdges = nodeOut.get(i);
-			int outEdgeLength = outEdges.size();
-			g.nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_CONNECTION_START_OFFSET,offset);
-			g.nodeBuf.putInt(i*NODE_BYTE_SIZE+NODE_OUT_DEGREE_OFFSET,outEdgeLength);
-		
-			// now put the out edge/node pairs
-			for(int e : outEdges) {
-				int n = -1;
-				int n1 = g.edgeBuf.getInt(EDGE_NODE1_OFFSET+e*EDGE_BYTE_SIZE);
-				int n2 = g.edgeBuf.getInt(EDGE_NODE2_OFFSET+e*EDGE_BYTE_SIZE);
-				if(n1 == i) {
-					n = n2;
-				} else if(n2 == i) {
-					n = n1;
-				} else {
-					Debugger.log("ERROR When finding connections for node "+i+" connecting edge "+e+ " has connecting nodes "+n1+" "+n2);
-				}
-				g.connectionBuf.putInt(CONNECTION_EDGE_OFFSET+offset,e);
-				g.connectionBuf.putInt(CONNECTION_NODE_OFFSET+offset,n);
-				offset += CONNECTION_PAIR_SIZE;
-			}
-		}
+		g.buildConnections(edgeNode1,edgeNode2);
 		
 		return g;
 		
@@ -4102,14 +5147,18 @@ Debugger.outputTime("time to create new time slice total nodes "+g2.getNumberOfN
 	}
 	
 	/**
-	 * Creates the Display EdgeType for time edges.
+	 * Gets the Display EdgeType for time edges, created the first time it is needed
+	 * and then reused, as each new EdgeType is added to the list of existing types.
 	 * @return The edgeType
 	 */
-	public static EdgeType getTimeEdgeType() {
-		EdgeType time = new EdgeType("timeEdge");
-		time.setLineColor(Color.magenta);
-		time.setSelectedLineColor(Color.gray);
-		return time;
+	public static synchronized EdgeType getTimeEdgeType() {
+		if(timeEdgeType == null) {
+			EdgeType time = new EdgeType("timeEdge");
+			time.setLineColor(Color.magenta);
+			time.setSelectedLineColor(Color.gray);
+			timeEdgeType = time;
+		}
+		return timeEdgeType;
 	}
 	
 	/**
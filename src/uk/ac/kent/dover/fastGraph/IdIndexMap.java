@@ -0,0 +1,241 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Maps ids, given as sequences of bytes, to consecutive int indexes in the order they are first seen.
+ * Used when importing files such as SNAP adjacency lists where the node ids are arbitrary tokens.
+ * <p>
+ * The table uses open addressing with linear probing over primitive arrays, and the id bytes are
+ * kept in fixed size chunks, so no objects are created per id.
+ * </p>
+ *
+ * @author Peter Rodgers
+ */
+public class IdIndexMap {
+
+	public static final int CHUNK_SIZE = 1<<20;
+	public static final int MAX_ID_LENGTH = Short.MAX_VALUE;
+
+	private int[] table; // index+1 of the id in each slot, 0 for empty
+	private int mask;
+	private int size;
+
+	private int[] hashes;
+	private long[] starts; // position of the id bytes in the chunks
+	private short[] lengths;
+
+	private byte[][] chunks;
+	private int chunkCount;
+	private int chunkPosition;
+
+	private boolean ascii = true; // false once an id with a byte over 127 is added
+
+
+	/**
+	 * @param expectedSize the number of ids expected, the map grows if more are added
+	 */
+	public IdIndexMap(int expectedSize) {
+		if(expectedSize < 16) {
+			expectedSize = 16;
+		}
+		int tableSize = Integer.highestOneBit(expectedSize-1)<<2;
+		if(tableSize <= 0) {
+			tableSize = 1<<30;
+		}
+		table = new int[tableSize];
+		mask = tableSize-1;
+		size = 0;
+
+		hashes = new int[expectedSize];
+		starts = new long[expectedSize];
+		lengths = new short[expectedSize];
+
+		chunks = new byte[4][];
+		chunks[0] = new byte[CHUNK_SIZE];
+		chunkCount = 1;
+		chunkPosition = 0;
+	}
+
+
+	/**
+	 * @return the number of ids in the map
+	 */
+	public int size() {
+		return size;
+	}
+
+
+	/**
+	 * Find the index of the id, adding it with the next index if it is not already in the map.
+	 *
+	 * @param bytes the array containing the id
+	 * @param start the position of the first byte of the id
+	 * @param length the number of bytes in the id
+	 * @return the index of the id
+	 */
+	public int getOrAdd(byte[] bytes, int start, int length) {
+		if(length > MAX_ID_LENGTH) {
+			throw new IllegalArgumentException("Id of length "+length+" is longer than "+MAX_ID_LENGTH);
+		}
+		int hash = hash(bytes, start, length);
+		int slot = hash & mask;
+		while(true) {
+			int entry = table[slot];
+			if(entry == 0) {
+				break;
+			}
+			int index = entry-1;
+			if(hashes[index] == hash && equalId(index, bytes, start, length)) {
+				return index;
+			}
+			slot = (slot+1) & mask;
+		}
+
+		int index = add(bytes, start, length, hash);
+		table[slot] = index+1;
+		if(size > table.length/2) {
+			rehash();
+		}
+		return index;
+	}
+
+
+	/**
+	 * @param index the index of the id
+	 * @return the number of bytes in the id
+	 */
+	public int getIdLength(int index) {
+		return lengths[index];
+	}
+
+
+	/**
+	 * @param index the index of the id
+	 * @param position the position in the id
+	 * @return the byte at the position of the id
+	 */
+	public byte getIdByte(int index, int position) {
+		long start = starts[index];
+		return chunks[(int)(start/CHUNK_SIZE)][(int)(start%CHUNK_SIZE)+position];
+	}
+
+
+	/**
+	 * @param index the index of the id
+	 * @return the id as a String, the bytes decoded as UTF-8
+	 */
+	public String getId(int index) {
+		long start = starts[index];
+		return new String(chunks[(int)(start/CHUNK_SIZE)], (int)(start%CHUNK_SIZE), lengths[index], StandardCharsets.UTF_8);
+	}
+
+
+	/**
+	 * @return true if every id is ASCII, so each byte is one char of the decoded id
+	 */
+	public boolean isAscii() {
+		return ascii;
+	}
+
+
+	/**
+	 * Store the id bytes and details, without putting it in the table.
+	 *
+	 * @return the index of the new id
+	 */
+	private int add(byte[] bytes, int start, int length, int hash) {
+		if(chunkPosition+length > CHUNK_SIZE) {
+			if(chunkCount == chunks.length) {
+				byte[][] newChunks = new byte[chunks.length*2][];
+				System.arraycopy(chunks, 0, newChunks, 0, chunkCount);
+				chunks = newChunks;
+			}
+			chunks[chunkCount] = new byte[CHUNK_SIZE];
+			chunkCount++;
+			chunkPosition = 0;
+		}
+		System.arraycopy(bytes, start, chunks[chunkCount-1], chunkPosition, length);
+		for(int i = start; ascii && i < start+length; i++) {
+			if(bytes[i] < 0) {
+				ascii = false;
+			}
+		}
+
+		if(size == hashes.length) {
+			int newLength = hashes.length*2;
+			if(newLength < 0) {
+				newLength = Integer.MAX_VALUE-8;
+			}
+			int[] newHashes = new int[newLength];
+			long[] newStarts = new long[newLength];
+			short[] newLengths = new short[newLength];
+			System.arraycopy(hashes, 0, newHashes, 0, size);
+			System.arraycopy(starts, 0, newStarts, 0, size);
+			System.arraycopy(lengths, 0, newLengths, 0, size);
+			hashes = newHashes;
+			starts = newStarts;
+			lengths = newLengths;
+		}
+
+		int index = size;
+		hashes[index] = hash;
+		starts[index] = (long)(chunkCount-1)*CHUNK_SIZE+chunkPosition;
+		lengths[index] = (short)length;
+		chunkPosition += length;
+		size++;
+		return index;
+	}
+
+
+	/**
+	 * Double the table size and reinsert all the ids.
+	 */
+	private void rehash() {
+		if(table.length == 1<<30) {
+			throw new OutOfMemoryError("Too many ids in IdIndexMap");
+		}
+		table = new int[table.length*2];
+		mask = table.length-1;
+		for(int index = 0; index < size; index++) {
+			int slot = hashes[index] & mask;
+			while(table[slot] != 0) {
+				slot = (slot+1) & mask;
+			}
+			table[slot] = index+1;
+		}
+	}
+
+
+	/**
+	 * @return true if the id stored at index has the same bytes as the argument
+	 */
+	private boolean equalId(int index, byte[] bytes, int start, int length) {
+		if(lengths[index] != length) {
+			return false;
+		}
+		long idStart = starts[index];
+		byte[] chunk = chunks[(int)(idStart/CHUNK_SIZE)];
+		int chunkStart = (int)(idStart%CHUNK_SIZE);
+		for(int i = 0; i < length; i++) {
+			if(chunk[chunkStart+i] != bytes[start+i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * FNV-1a hash of the bytes, with the high bits mixed down as the table uses the low bits.
+	 */
+	private static int hash(byte[] bytes, int start, int length) {
+		int h = 0x811C9DC5;
+		for(int i = start; i < start+length; i++) {
+			h ^= bytes[i];
+			h *= 0x01000193;
+		}
+		return h ^ (h>>>16);
+	}
+
+}
@@ -13,6 +13,7 @@ public class InducedSubgraph {
 
 	FastGraph g; //The FastGraph
 	private Random r; //used to pick random edges;
+	private NeighbourCursor cursor; //reused for every node visited
 	
 	/**
 	 * Constructor.
@@ -22,6 +23,7 @@ public class InducedSubgraph {
 	 */
 	public InducedSubgraph(FastGraph g) {
 		this.g = g;
+		cursor = new NeighbourCursor(g);
 	}
 	
 	/**
@@ -32,8 +34,10 @@ public class InducedSubgraph {
 	 * @param edges The list of edges to populate
 	 * @param numOfNodes The number of nodes in the subgraph
 	 * @throws FastGraphException If there is an unspecified error - usually the number of nodes requested is too low
+	 * @throws UnsupportedOperationException If the connections were compressed without edge indexes
 	 */
 	public void createInducedSubgraph(LinkedList<Integer> nodes, LinkedList<Integer> edges, int numOfNodes) throws FastGraphException {
+		g.checkCompressedEdgeIndexes();
 		if (numOfNodes < 2) {
 			throw new FastGraphException("Can only induce a subgraph with 2 or more nodes");
 		}
@@ -79,11 +83,11 @@ public class InducedSubgraph {
 			//for each of these
 			for(int n : startingNodes) {
 				//find every edge that connects to this node
-				int[] edgeConnections = g.getNodeConnectingEdges(n);
-				for(int fe : edgeConnections) {
-					
-					//find the other end of the node
-					int fn = g.oppositeEnd(fe,n);
+				cursor.setAll(n);
+				while(cursor.next()) {
+					int fe = cursor.getEdge();
+					//the other end of the edge
+					int fn = cursor.getNode();
 					if(!visitedNodes[fn]) { //if it hasn't been visited
 						//then add to the subgraph
 						visitedNodes[fn] = true;
@@ -94,7 +98,7 @@ public class InducedSubgraph {
 					}
 					//if we've found enough nodes, then induce the rest of the graph and quit
 					if (nodes.size() == numOfNodes) {
-						induceGraph(nodes, edges, visitedEdges);
+						induceGraph(nodes, edges, visitedNodes, visitedEdges);
 						return;
 					}
 				}
@@ -104,7 +108,7 @@ public class InducedSubgraph {
 		}	
 		//Induce the graph and quit. This is run when the search runs out of nodes.
 		//This would be when the subgraph here is disconnected and therefore smaller than the target number of nodes
-		induceGraph(nodes, edges, visitedEdges);
+		induceGraph(nodes, edges, visitedNodes, visitedEdges);
 		return;
 	}
 	
@@ -113,20 +117,21 @@ public class InducedSubgraph {
 	 * 
 	 * @param nodes The list of nodes in the graph
 	 * @param edges The list of edges in the graph - to be expanded with the newly induced edges.
+	 * @param visitedNodes Flags the nodes in the list of nodes
 	 * @param visitedEdges The list of edges already visited
 	 */
-	private void induceGraph(LinkedList<Integer> nodes, LinkedList<Integer> edges, boolean[] visitedEdges) {
+	private void induceGraph(LinkedList<Integer> nodes, LinkedList<Integer> edges, boolean[] visitedNodes, boolean[] visitedEdges) {
 	
 		//for every node in the graph
 		for(int n : nodes) {
-			//find what edges it connects to
-			int[] edgeConnections = g.getNodeConnectingEdges(n);
-			//for each of these connecting edges
-			for (int ce : edgeConnections) {
-				//find the other node
-				int cn = g.oppositeEnd(ce,n);
+			//for each edge it connects to
+			cursor.setAll(n);
+			while(cursor.next()) {
+				int ce = cursor.getEdge();
+				//the other node
+				int cn = cursor.getNode();
 				//if that node is also in the graph and this edge hasn't been visited already, then add the edge
-				if (nodes.contains(cn) && !visitedEdges[ce]) {
+				if (visitedNodes[cn] && !visitedEdges[ce]) {
 					edges.add(ce);
 					visitedEdges[ce] = true;
 				}
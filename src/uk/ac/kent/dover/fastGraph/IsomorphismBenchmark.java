@@ -0,0 +1,125 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.ArrayList;
+
+/**
+ * Times the backtracking search of ExactIsomorphism with bitsets of neighbours against the
+ * sets of Integers it used before. Each graph is tested against an isomorphic copy with the
+ * nodes shuffled, so every test gets past the cheap checks and runs the full search.
+ * <p>
+ * The graphs are subgraphs sampled in the same way as the motif finder. The times include the
+ * eigenvalues and the other checks made before the search, which are the same for both. Each
+ * round is run several times before timing, so the JIT has compiled both searches.
+ * </p>
+ * Run with: java uk.ac.kent.dover.fastGraph.IsomorphismBenchmark [rounds]
+ *
+ * @author Peter Rodgers
+ */
+public class IsomorphismBenchmark {
+
+	private static final int WARMUP_ROUNDS = 5;
+
+	private ArrayList<FastGraph> graphs = new ArrayList<FastGraph>();
+	private ArrayList<FastGraph> copies = new ArrayList<FastGraph>();
+
+
+	/**
+	 * @param args optionally the number of timed rounds, default 10
+	 * @throws Exception if the graphs cannot be built
+	 */
+	public static void main(String[] args) throws Exception {
+		Debugger.enabled = false;
+		int rounds = 10;
+		if(args.length > 0) {
+			rounds = Integer.parseInt(args[0]);
+		}
+
+		FastGraph target = FastGraph.randomGraphFactory(2000, 8000, 1, true, false);
+		int[] sizes = {4, 6, 8, 12};
+		for(int size : sizes) {
+			IsomorphismBenchmark b = new IsomorphismBenchmark();
+			b.addSubgraphs(target, size, 2000);
+			b.run("subgraphs of size "+size, rounds);
+		}
+	}
+
+
+	/**
+	 * Add connected subgraphs sampled from a graph, and isomorphic copies of them.
+	 *
+	 * @param target the graph to sample
+	 * @param size the number of nodes in each subgraph
+	 * @param number the number of subgraphs to add
+	 */
+	public void addSubgraphs(FastGraph target, int size, int number) {
+		EnumerateSubgraphNeighbourhood enumerator = new EnumerateSubgraphNeighbourhood(target);
+		for(FastGraph sub : enumerator.enumerateSubgraphs(size, 1, 20)) {
+			if(graphs.size() == number) {
+				break;
+			}
+			addGraph(sub);
+		}
+	}
+
+
+	/**
+	 * Add a graph and an isomorphic copy of it, if it is connected.
+	 *
+	 * @param g the graph
+	 */
+	public void addGraph(FastGraph g) {
+		if(!Connected.connected(g)) {
+			return;
+		}
+		graphs.add(g);
+		copies.add(ExactIsomorphism.generateRandomIsomorphicGraph(g, graphs.size(), false));
+	}
+
+
+	/**
+	 * Time both searches and print the results.
+	 *
+	 * @param name the name of the graphs in the output
+	 * @param rounds the number of timed rounds
+	 * @throws FastGraphException if a graph is not connected
+	 */
+	public void run(String name, int rounds) throws FastGraphException {
+		ExactIsomorphism[] eis = new ExactIsomorphism[graphs.size()];
+		for(int i = 0; i < eis.length; i++) {
+			eis[i] = new ExactIsomorphism(graphs.get(i));
+		}
+		for(int i = 0; i < WARMUP_ROUNDS; i++) {
+			time(eis, false);
+			time(eis, true);
+		}
+		long hashSetTime = 0;
+		long bitsetTime = 0;
+		for(int i = 0; i < rounds; i++) {
+			hashSetTime += time(eis, false);
+			bitsetTime += time(eis, true);
+		}
+		long tests = (long)rounds*eis.length;
+		System.out.println(name+", "+eis.length+" graphs");
+		System.out.println("  sets of Integers "+(hashSetTime/tests)+" ns per test");
+		System.out.println("  bitsets          "+(bitsetTime/tests)+" ns per test");
+		System.out.println("  speed-up         "+String.format("%.2f", (double)hashSetTime/bitsetTime));
+	}
+
+
+	/**
+	 * Test every graph against its copy.
+	 *
+	 * @return the time taken in nanoseconds
+	 */
+	private long time(ExactIsomorphism[] eis, boolean bitsetAdjacency) throws FastGraphException {
+		long start = System.nanoTime();
+		for(int i = 0; i < eis.length; i++) {
+			eis[i].setBitsetAdjacency(bitsetAdjacency);
+			if(!eis[i].isomorphic(copies.get(i))) {
+				throw new IllegalStateException("Copy of graph "+i+" not found to be isomorphic");
+			}
+		}
+		return System.nanoTime()-start;
+	}
+
+}
@@ -0,0 +1,243 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and times the tests made by ExactIsomorphism. The counters are LongAdders, so any number
+ * of threads can record tests at once without locking, and the numbers are not lost or mixed up.
+ * Each ExactIsomorphism records to the shared statistics, getShared(), unless given its own.
+ * <p>
+ * The time of each test is also added to a histogram with a bucket for each power of two
+ * nanoseconds, so the spread of the times can be seen as well as the average.
+ * </p>
+ * <pre>
+ * IsomorphismStatistics stats = new IsomorphismStatistics();
+ * ei.setStatistics(stats);
+ * ...
+ * IsomorphismStatistics.Snapshot s = stats.snapshot();
+ * s.getCount(IsomorphismStatistics.Outcome.EIGENVALUES);
+ * </pre>
+ *
+ * @author Peter Rodgers
+ */
+public class IsomorphismStatistics {
+
+	/**
+	 * How a test ended, either the stage that found the graphs are different, or SUCCEED.
+	 */
+	public enum Outcome {
+		NODE_COUNT("Node Count"),
+		EDGE_COUNT("Edge Count"),
+		DEGREE_COMPARISON("Degree Comparison"),
+		NEIGHBOUR_DEGREES("Neighbour Degrees"),
+		TRIANGLES("Triangles"),
+		WEISFEILER_LEHMAN("Weisfeiler-Lehman"),
+		EIGENVALUES("Eigenvalues"),
+		NODE_MATCHES("Node Matches"),
+		BRUTE_FORCE("Brute Force"),
+		SUCCEED("succeed");
+
+		private String description;
+
+		private Outcome(String description) {
+			this.description = description;
+		}
+
+		/**
+		 * @return the name of the outcome in reports
+		 */
+		public String getDescription() {
+			return description;
+		}
+	}
+
+	public static final int HISTOGRAM_BUCKETS = 64;
+
+	private static final IsomorphismStatistics SHARED = new IsomorphismStatistics();
+
+	private LongAdder[] counts = new LongAdder[Outcome.values().length];
+	private LongAdder totalNanos = new LongAdder();
+	private LongAdder bruteForceTests = new LongAdder();
+	private LongAdder bruteForceNanos = new LongAdder();
+	private LongAdder[] histogram = new LongAdder[HISTOGRAM_BUCKETS];
+
+
+	public IsomorphismStatistics() {
+		for(int i = 0; i < counts.length; i++) {
+			counts[i] = new LongAdder();
+		}
+		for(int i = 0; i < histogram.length; i++) {
+			histogram[i] = new LongAdder();
+		}
+	}
+
+
+	/**
+	 * @return the statistics used by ExactIsomorphism unless it is given others
+	 */
+	public static IsomorphismStatistics getShared() {
+		return SHARED;
+	}
+
+
+	/**
+	 * Record a test.
+	 *
+	 * @param outcome how the test ended
+	 * @param nanos the time taken by the test
+	 */
+	public void record(Outcome outcome, long nanos) {
+		counts[outcome.ordinal()].increment();
+		totalNanos.add(nanos);
+		histogram[bucket(nanos)].increment();
+	}
+
+
+	/**
+	 * Record the time of a backtracking search, as well as the test it is part of.
+	 *
+	 * @param nanos the time taken by the search
+	 */
+	public void recordBruteForce(long nanos) {
+		bruteForceTests.increment();
+		bruteForceNanos.add(nanos);
+	}
+
+
+	/**
+	 * Set all the counts and times to zero. Tests recorded while this runs may be lost.
+	 */
+	public void reset() {
+		for(LongAdder count : counts) {
+			count.reset();
+		}
+		totalNanos.reset();
+		bruteForceTests.reset();
+		bruteForceNanos.reset();
+		for(LongAdder bucket : histogram) {
+			bucket.reset();
+		}
+	}
+
+
+	/**
+	 * Copy the current counts. Tests recorded while the copy is made may be partly included.
+	 *
+	 * @return the counts and times
+	 */
+	public Snapshot snapshot() {
+		long[] countValues = new long[counts.length];
+		for(int i = 0; i < counts.length; i++) {
+			countValues[i] = counts[i].sum();
+		}
+		long[] histogramValues = new long[histogram.length];
+		for(int i = 0; i < histogram.length; i++) {
+			histogramValues[i] = histogram[i].sum();
+		}
+		return new Snapshot(countValues, totalNanos.sum(), bruteForceTests.sum(), bruteForceNanos.sum(), histogramValues);
+	}
+
+
+	/**
+	 * @param nanos a time
+	 * @return the histogram bucket for the time, bucket i holds times from 2^i to 2^(i+1)-1 nanoseconds
+	 */
+	public static int bucket(long nanos) {
+		if(nanos <= 0) {
+			return 0;
+		}
+		return 63-Long.numberOfLeadingZeros(nanos);
+	}
+
+
+	/**
+	 * The counts and times at one moment, which do not change.
+	 */
+	public static class Snapshot {
+
+		private long[] counts;
+		private long totalNanos;
+		private long bruteForceTests;
+		private long bruteForceNanos;
+		private long[] histogram;
+
+		private Snapshot(long[] counts, long totalNanos, long bruteForceTests, long bruteForceNanos, long[] histogram) {
+			this.counts = counts;
+			this.totalNanos = totalNanos;
+			this.bruteForceTests = bruteForceTests;
+			this.bruteForceNanos = bruteForceNanos;
+			this.histogram = histogram;
+		}
+
+		/**
+		 * @param outcome how the tests ended
+		 * @return the number of tests that ended that way
+		 */
+		public long getCount(Outcome outcome) {
+			return counts[outcome.ordinal()];
+		}
+
+		/**
+		 * @return the number of tests
+		 */
+		public long getTests() {
+			long ret = 0;
+			for(long count : counts) {
+				ret += count;
+			}
+			return ret;
+		}
+
+		/**
+		 * @return the total time of the tests, in nanoseconds
+		 */
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		/**
+		 * @return the number of tests that got to the backtracking search
+		 */
+		public long getBruteForceTests() {
+			return bruteForceTests;
+		}
+
+		/**
+		 * @return the total time of the backtracking searches, in nanoseconds
+		 */
+		public long getBruteForceNanos() {
+			return bruteForceNanos;
+		}
+
+		/**
+		 * @return the number of tests in each bucket, bucket i holds times from 2^i to 2^(i+1)-1 nanoseconds
+		 */
+		public long[] getHistogram() {
+			return histogram.clone();
+		}
+
+		/**
+		 * @param fraction between 0 and 1, 0.5 for the median
+		 * @return the upper bound of the histogram bucket holding that fraction of the tests, in nanoseconds, 0 if there are no tests
+		 */
+		public long getPercentile(double fraction) {
+			long total = 0;
+			for(long count : histogram) {
+				total += count;
+			}
+			if(total == 0) {
+				return 0;
+			}
+			long target = (long)Math.ceil(fraction*total);
+			long sum = 0;
+			for(int i = 0; i < histogram.length; i++) {
+				sum += histogram[i];
+				if(sum >= target && sum > 0) {
+					return i >= 62 ? Long.MAX_VALUE : (1L<<(i+1))-1;
+				}
+			}
+			return Long.MAX_VALUE;
+		}
+	}
+
+}
@@ -4,7 +4,6 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
 
 import uk.ac.kent.dover.fastGraph.Gui.LauncherGUI;
 import uk.ac.kent.dover.fastGraph.Gui.MotifTask;
@@ -26,6 +25,9 @@ public class Launcher {
 	public final String DATA_URL = "https://www.cs.kent.ac.uk/projects/dover/"; //the URL for extra data
 	public static final int DEFAULT_SUBGRAPH_ENUMERATION_ATTEMPTS = 20; //the default number of attempts when enumerating a subgraph
 	
+	private int exportTopN = 0; //the number of motifs of each size exported as SVG, 0 for all
+	private boolean exportLayout = true; //if exported graphs are laid out
+	
 	/**
 	 * Main method
 	 * 
@@ -58,6 +60,34 @@ public class Launcher {
 		}
 	}
 	
+	/**
+	 * @return the number of motifs of each size exported as SVG, by significance, 0 for all
+	 */
+	public int getExportTopN() {
+		return exportTopN;
+	}
+	
+	/**
+	 * @param exportTopN the number of motifs of each size to export as SVG, by significance, 0 for all
+	 */
+	public void setExportTopN(int exportTopN) {
+		this.exportTopN = exportTopN;
+	}
+	
+	/**
+	 * @return true if exported motifs and subgraphs are laid out
+	 */
+	public boolean isExportLayout() {
+		return exportLayout;
+	}
+	
+	/**
+	 * @param exportLayout false to leave the nodes of exported motifs and subgraphs at random positions, which is faster
+	 */
+	public void setExportLayout(boolean exportLayout) {
+		this.exportLayout = exportLayout;
+	}
+	
 	/**
 	 * Loads a graph from buffers. Called by both Launcher modes
 	 * 
@@ -101,6 +131,26 @@ public class Launcher {
 	 */
 	public void findMotifs(MotifTask mt, String directory, String fileBaseName, int minNum, int maxNum, 
 			boolean saveAll, File reference) throws IOException, FastGraphException {
+		findMotifs(mt, directory, fileBaseName, minNum, maxNum, saveAll, reference, false);
+	}
+	
+	
+	/**
+	 * Calls the method to find all motifs with the parameters given, optionally carrying on from the last checkpoint
+	 * 
+	 * @param mt The MotifTask to handle GUI updates
+	 * @param directory The directory of the graph to be loaded
+	 * @param fileBaseName The name of the graph to be loaded
+	 * @param minNum The minimum size of motifs
+	 * @param maxNum The maximum size of motifs
+	 * @param saveAll If every example is to be saved
+	 * @param reference The reference graph, if there is one
+	 * @param resume If an earlier run that was stopped is carried on from its checkpoints
+	 * @throws IOException If the files cannot be loaded
+	 * @throws FastGraphException 
+	 */
+	public void findMotifs(MotifTask mt, String directory, String fileBaseName, int minNum, int maxNum, 
+			boolean saveAll, File reference, boolean resume) throws IOException, FastGraphException {
 		
 		long time = Debugger.createTime();
 		
@@ -113,6 +163,9 @@ public class Launcher {
 			
 		mt.setSmallIndeterminate(false);			
 		ExactMotifFinder emf = new ExactMotifFinder(g2, mt, saveAll);
+		emf.setResume(resume);
+		emf.setExportTopN(exportTopN);
+		emf.setExportLayout(exportLayout);
 		
 		if(reference != null) {
 			String name = reference.getName();
@@ -157,6 +210,7 @@ public class Launcher {
 		}
 
 		ExactSubgraphIsomorphism esi = new ExactSubgraphIsomorphism(targetGraph, patternGraph, nc, ec);
+		esi.setExportLayout(exportLayout);
 		boolean result = esi.subgraphIsomorphismFinder();
 		esi.outputResults();
 
@@ -186,6 +240,7 @@ public class Launcher {
 		
 		ApproximateSubgraphIsomorphism isi = new ApproximateSubgraphIsomorphism(targetGraph, patternGraph,
 				patternNodes, subgraphsPerNode, nc, ec);
+		isi.setExportLayout(exportLayout);
 		isi.subgraphIsomorphismFinder();
 		isi = null; //GC
 	}
@@ -227,12 +282,12 @@ public class Launcher {
 		
 		KMedoids km = new KMedoids(targetGraph, numOfClusters, iterations);
 		EnumerateSubgraphNeighbourhood esn = new EnumerateSubgraphNeighbourhood(targetGraph);
-		HashSet<FastGraph> subs = new HashSet<FastGraph>();
+		// streamed straight into the list, rather than collected in a set and copied
+		ArrayList<FastGraph> subgraphs = new ArrayList<FastGraph>();
 		for(int i = minSize; i <= maxSize; i++) {
-			subs.addAll(esn.enumerateSubgraphs(i, subgraphsPerNode, attemptsToFindSubgraph));
+			esn.enumerateSubgraphs(i, subgraphsPerNode, attemptsToFindSubgraph, view -> subgraphs.add(view.toFastGraph()));
 		}
 		
-		ArrayList<FastGraph> subgraphs = new ArrayList<FastGraph>(subs);
 		ArrayList<ArrayList<FastGraph>> clusters = km.cluster(subgraphs);
 
 		km.saveClusters(clusters);		
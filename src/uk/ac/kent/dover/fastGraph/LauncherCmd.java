@@ -63,6 +63,9 @@ public class LauncherCmd {
 		options.addOption(Option.builder().longOpt("minsize").desc("The minimum size of motif to find  (ExactMotif, ApproxMotif)").hasArg().build());
 		options.addOption(Option.builder().longOpt("maxsize").desc("The maximum size of motif to find  (ExactMotif, ApproxMotif)").hasArg().build());
 		options.addOption(Option.builder().longOpt("saveall").desc("Saves every example of motifs. This may take some time.  (ExactMotif)").build());
+		options.addOption(Option.builder().longOpt("resume").desc("Carries on from the last checkpoint of a motif run that was stopped.  (ExactMotif)").build());
+		options.addOption(Option.builder().longOpt("topn").desc("Only exports pictures of this number of the most significant motifs of each size.  (ExactMotif)").hasArg().build());
+		options.addOption(Option.builder().longOpt("nolayout").desc("Exports pictures without laying them out, which is much faster.  (ExactMotif, ExactSubgraph, ApproxSubgraph)").build());
 
 		//add approximate motif options
 		options.addOption("M","approxmotif", true, "Find approximate motifs in this graph. "
@@ -103,6 +106,7 @@ public class LauncherCmd {
 		CommandLineParser parser = new DefaultParser();
 		try {
 			CommandLine cmd = parser.parse(options, args);
+			exportOptions(cmd);
 			
 			//if the user wishes to convert an adjacency List
 			if(cmd.hasOption("c")) { 
@@ -138,6 +142,22 @@ public class LauncherCmd {
 		}
 	}
 	
+	/**
+	 * Passes the options for exporting pictures to the launcher
+	 * @param cmd The CommandLine object that holds the user's input
+	 * @throws ParseException If there is an error with the user's input
+	 */
+	private void exportOptions(CommandLine cmd) throws ParseException {
+		if(cmd.hasOption("topn")) {
+			try {
+				launcher.setExportTopN(Util.checkForPositiveInteger(cmd.getOptionValue("topn")));
+			} catch (NumberFormatException e) {
+				throw new ParseException("The value for topn must be a positive (or 0) integer");
+			}
+		}
+		launcher.setExportLayout(!cmd.hasOption("nolayout"));
+	}
+	
 	/**
 	 * Runs the approx subgraph finding code and checks that parameters are valid
 	 * @param cmd The CommandLine object that holds the user's input
@@ -279,6 +299,7 @@ public class LauncherCmd {
 		Option minFound = null;
 		Option maxFound = null;
 		Option saveAllFound = null;
+		Option resumeFound = null;
 		for(Option o : cmd.getOptions()) {
 			if (o.getLongOpt().toLowerCase().equals("minsize")) {
 				minFound = o;
@@ -289,6 +310,9 @@ public class LauncherCmd {
 			if (o.getLongOpt().toLowerCase().equals("saveall")) {
 				saveAllFound = o;
 			}
+			if (o.getLongOpt().toLowerCase().equals("resume")) {
+				resumeFound = o;
+			}
 		}
 		
 		if(minFound!=null && maxFound!=null) {
@@ -297,6 +321,7 @@ public class LauncherCmd {
 			String maxSizeVal = maxFound.getValues()[0];
 			
 			boolean saveAll = saveAllFound != null; //if saveAll wasn't passed, then false.
+			boolean resume = resumeFound != null;
 			
 			//ensure that the user has specified the arguments for these
 			if (mVal != null && minSizeVal != null && maxSizeVal != null) {
@@ -315,7 +340,7 @@ public class LauncherCmd {
 					String path = f.getParent();							
 					System.out.println("Finding motifs. This may take some time....");
 					try {
-						launcher.findMotifs(new MotifTaskDummy(), path+File.separatorChar+name, name, minSize, maxSize, saveAll, null);
+						launcher.findMotifs(new MotifTaskDummy(), path+File.separatorChar+name, name, minSize, maxSize, saveAll, null, resume);
 					} catch (IOException e) {
 						throw new ParseException("Error occurred: "+e.getMessage());
 					}
@@ -0,0 +1,178 @@
+package uk.ac.kent.dover.fastGraph;
+
+/**
+ * Steps through the connections of a node without creating arrays, for loops that would otherwise
+ * call getNodeConnectingNodes or getNodeConnectingEdges many times. One cursor can be reused for
+ * any number of nodes in its graph.
+ * <pre>
+ * NeighbourCursor cursor = new NeighbourCursor(g);
+ * cursor.setAll(node);
+ * while(cursor.next()) {
+ *     int edge = cursor.getEdge();
+ *     int neighbour = cursor.getNode();
+ * }
+ * </pre>
+ * Connections are visited in the same order as the getNodeConnecting methods of FastGraph return them.
+ * Compressed connections are decoded as the cursor moves, see FastGraph.compressConnections, and
+ * getEdge throws an UnsupportedOperationException if the edge indexes were not kept.
+ * A cursor is not thread safe, use one for each thread.
+ *
+ * @author Peter Rodgers
+ */
+public class NeighbourCursor {
+
+	private FastGraph g;
+	private SegmentedByteBuffer connectionBuf;
+	private long offset; // position of the next edge/node pair in connectionBuf
+	private int remaining;
+	private int edge = -1;
+	private int node = -1;
+	private boolean compressed;
+	private boolean edgesKept;
+	private int resetRemaining; // for compressed connections, the gaps start again when this many connections remain
+
+
+	/**
+	 * @param g the graph to iterate over
+	 */
+	public NeighbourCursor(FastGraph g) {
+		this.g = g;
+	}
+
+
+	/**
+	 * Start iterating over all the connections of the node, in connections then out connections.
+	 *
+	 * @param nodeIndex the node
+	 * @return this cursor
+	 */
+	public NeighbourCursor setAll(int nodeIndex) {
+		reset(g.getNodeInConnectionOffset(nodeIndex), g.getNodeDegree(nodeIndex));
+		resetRemaining = g.getNodeOutDegree(nodeIndex);
+		return this;
+	}
+
+
+	/**
+	 * Start iterating over the connections of edges that enter the node.
+	 *
+	 * @param nodeIndex the node
+	 * @return this cursor
+	 */
+	public NeighbourCursor setIn(int nodeIndex) {
+		return reset(g.getNodeInConnectionOffset(nodeIndex), g.getNodeInDegree(nodeIndex));
+	}
+
+
+	/**
+	 * Start iterating over the connections of edges that leave the node.
+	 *
+	 * @param nodeIndex the node
+	 * @return this cursor
+	 */
+	public NeighbourCursor setOut(int nodeIndex) {
+		return reset(g.getNodeOutConnectionOffset(nodeIndex), g.getNodeOutDegree(nodeIndex));
+	}
+
+
+	/**
+	 * Move to the next connection.
+	 *
+	 * @return true if there was another connection, false if the iteration has finished
+	 */
+	public boolean next() {
+		if(remaining == 0) {
+			return false;
+		}
+		if(compressed) {
+			if(remaining == resetRemaining) {
+				node = 0;
+				edge = 0;
+			}
+			long read = FastGraph.readVarint(connectionBuf, offset);
+			offset += read>>>32;
+			node += (int)read;
+			if(edgesKept) {
+				read = FastGraph.readVarint(connectionBuf, offset);
+				offset += read>>>32;
+				edge += FastGraph.unzigzag((int)read);
+			}
+			remaining--;
+			return true;
+		}
+		edge = connectionBuf.getInt(offset+FastGraph.CONNECTION_EDGE_OFFSET);
+		node = connectionBuf.getInt(offset+FastGraph.CONNECTION_NODE_OFFSET);
+		offset += FastGraph.CONNECTION_PAIR_SIZE;
+		remaining--;
+		return true;
+	}
+
+
+	/**
+	 * Step over connections without reading them.
+	 *
+	 * @param count the number of connections to step over, the cursor stops at the end if this is more than getRemaining()
+	 */
+	public void skip(int count) {
+		if(count > remaining) {
+			count = remaining;
+		}
+		if(compressed) {
+			// the gaps have to be decoded to find the position
+			for(int i = 0; i < count; i++) {
+				next();
+			}
+			return;
+		}
+		offset += (long)count*FastGraph.CONNECTION_PAIR_SIZE;
+		remaining -= count;
+	}
+
+
+	/**
+	 * @return the number of connections not yet visited
+	 */
+	public int getRemaining() {
+		return remaining;
+	}
+
+
+	/**
+	 * @return the edge of the current connection
+	 * @throws UnsupportedOperationException if the connections were compressed without edge indexes
+	 */
+	public int getEdge() {
+		if(compressed && !edgesKept) {
+			g.checkCompressedEdgeIndexes();
+		}
+		return edge;
+	}
+
+
+	/**
+	 * @return the node at the other end of the edge of the current connection
+	 */
+	public int getNode() {
+		return node;
+	}
+
+
+	private NeighbourCursor reset(long connectionOffset, int degree) {
+		connectionBuf = g.getSegmentedConnectionBuf();
+		offset = connectionOffset;
+		remaining = degree;
+		compressed = g.getConnectionsCompressed();
+		edgesKept = g.getCompressedEdgeIndexes();
+		resetRemaining = -1;
+		// compressed lists start from zero, the first gap is the first node
+		if(compressed) {
+			edge = 0;
+			node = 0;
+		} else {
+			edge = -1;
+			node = -1;
+		}
+		return this;
+	}
+
+}
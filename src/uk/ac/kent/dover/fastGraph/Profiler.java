@@ -9,7 +9,6 @@ import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.util.ArrayList;
-import java.util.HashSet;
 
 import uk.ac.kent.dover.fastGraph.Gui.MotifTaskDummy;
 import uk.ac.kent.dover.fastGraph.comparators.*;
@@ -186,14 +185,14 @@ public class Profiler {
 		try{
 			KMedoids km = new KMedoids(targetGraph, numOfClusters, iterations);
 			EnumerateSubgraphNeighbourhood esn = new EnumerateSubgraphNeighbourhood(targetGraph);
-			HashSet<FastGraph> subs = esn.enumerateSubgraphs(size, subsPerNode, attempts);
-			ArrayList<FastGraph> subgraphs = new ArrayList<FastGraph>(subs);
+			ArrayList<FastGraph> subgraphs = new ArrayList<FastGraph>();
+			esn.enumerateSubgraphs(size, subsPerNode, attempts, view -> subgraphs.add(view.toFastGraph()));
 			ArrayList<ArrayList<FastGraph>> clusters = km.cluster(subgraphs);
 			km.saveClusters(clusters);
 			
 			long timeResult = Debugger.createTime()-time;
 			ProfilerResult pr = new ProfilerResult(targetGraph.getNumberOfNodes(), targetGraph.getNumberOfEdges(), targetGraph.getName(),
-					size, -1, "approxmotif", -1, -1, subs.size(), timeResult);
+					size, -1, "approxmotif", -1, -1, subgraphs.size(), timeResult);
 			results.add(pr);
 		} catch(Exception e) {
 			
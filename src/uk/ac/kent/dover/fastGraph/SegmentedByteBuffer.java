@@ -0,0 +1,446 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.zip.CRC32;
+
+/**
+ * A long addressed store made of a sequence of ByteBuffers, so that the storage of a FastGraph
+ * is not limited by the maximum size of a single ByteBuffer.
+ * <p>
+ * Each segment holds a whole number of records, the segment size is the largest multiple of the record
+ * size that fits in MAX_SEGMENT_SIZE. Hence fields of a record never straddle two segments. Graphs small
+ * enough for a single segment have exactly the same storage as a plain ByteBuffer, and access to them
+ * avoids the segment calculation.
+ * </p>
+ *
+ * @author Peter Rodgers
+ */
+public class SegmentedByteBuffer {
+
+	public static final int MAX_SEGMENT_SIZE = 1<<30;
+
+	private ByteBuffer[] segments;
+	private ByteBuffer first; // segment 0, used directly when there is only one segment
+	private boolean single;
+	private long capacity;
+	private int segmentSize;
+	private int recordSize;
+	private boolean direct;
+
+
+	/**
+	 * No direct access to constructor, use the allocate, wrap or map methods.
+	 *
+	 * @param segments the storage
+	 * @param capacity the total number of bytes
+	 * @param segmentSize the number of bytes in every segment except possibly the last
+	 * @param recordSize the size of the items stored, segments always contain a whole number of records
+	 * @param direct if true the segments are off heap
+	 */
+	private SegmentedByteBuffer(ByteBuffer[] segments, long capacity, int segmentSize, int recordSize, boolean direct) {
+		this.segments = segments;
+		this.capacity = capacity;
+		this.segmentSize = segmentSize;
+		this.recordSize = recordSize;
+		this.direct = direct;
+		if(segments.length == 0) {
+			this.segments = new ByteBuffer[1];
+			this.segments[0] = ByteBuffer.allocate(0);
+		}
+		first = this.segments[0];
+		single = this.segments.length == 1;
+	}
+
+
+	/**
+	 * Create a new buffer, with all bytes set to zero.
+	 *
+	 * @param capacity the number of bytes in the buffer
+	 * @param recordSize the size of the items stored, segments will contain a whole number of records
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the new buffer
+	 */
+	public static SegmentedByteBuffer allocate(long capacity, int recordSize, boolean direct) {
+		return allocate(capacity, recordSize, MAX_SEGMENT_SIZE, direct);
+	}
+
+
+	/**
+	 * Create a new buffer, with all bytes set to zero, and a given limit on the segment size.
+	 *
+	 * @param capacity the number of bytes in the buffer
+	 * @param recordSize the size of the items stored, segments will contain a whole number of records
+	 * @param maxSegmentSize the largest number of bytes in a segment
+	 * @param direct if true then off heap ByteBuffers, if false then on heap ByteBuffers
+	 * @return the new buffer
+	 */
+	public static SegmentedByteBuffer allocate(long capacity, int recordSize, int maxSegmentSize, boolean direct) {
+		int segmentSize = findSegmentSize(recordSize, maxSegmentSize);
+		int count = segmentCount(capacity, segmentSize);
+		ByteBuffer[] segments = new ByteBuffer[count];
+		long remaining = capacity;
+		for(int i = 0; i < count; i++) {
+			int size = (int)Math.min(remaining, segmentSize);
+			if(direct) {
+				segments[i] = ByteBuffer.allocateDirect(size);
+			} else {
+				segments[i] = ByteBuffer.allocate(size);
+			}
+			remaining -= size;
+		}
+		return new SegmentedByteBuffer(segments, capacity, segmentSize, recordSize, direct);
+	}
+
+
+	/**
+	 * Use an existing ByteBuffer as a single segment buffer. Changes to one are seen by the other.
+	 *
+	 * @param buf the ByteBuffer to wrap
+	 * @return the new buffer
+	 */
+	public static SegmentedByteBuffer wrap(ByteBuffer buf) {
+		ByteBuffer[] segments = {buf};
+		return new SegmentedByteBuffer(segments, buf.capacity(), buf.capacity(), 1, buf.isDirect());
+	}
+
+
+	/**
+	 * Memory map the start of a file as a read only buffer. Each segment is a separate mapping.
+	 * The mappings remain valid after the channel is closed.
+	 *
+	 * @param channel the open file channel
+	 * @param size the number of bytes to map
+	 * @param recordSize the size of the items stored, segments will contain a whole number of records
+	 * @return the new read only buffer
+	 * @throws IOException if the file cannot be mapped
+	 */
+	public static SegmentedByteBuffer map(FileChannel channel, long size, int recordSize) throws IOException {
+		return map(channel, 0, size, recordSize);
+	}
+
+
+	/**
+	 * Memory map part of a file as a read only buffer. Each segment is a separate mapping.
+	 * The mappings remain valid after the channel is closed.
+	 *
+	 * @param channel the open file channel
+	 * @param start the position in the file of the first byte to map
+	 * @param size the number of bytes to map
+	 * @param recordSize the size of the items stored, segments will contain a whole number of records
+	 * @return the new read only buffer
+	 * @throws IOException if the file cannot be mapped
+	 */
+	public static SegmentedByteBuffer map(FileChannel channel, long start, long size, int recordSize) throws IOException {
+		int segmentSize = findSegmentSize(recordSize, MAX_SEGMENT_SIZE);
+		int count = segmentCount(size, segmentSize);
+		ByteBuffer[] segments = new ByteBuffer[count];
+		long position = 0;
+		for(int i = 0; i < count; i++) {
+			long segmentBytes = Math.min(size-position, segmentSize);
+			segments[i] = channel.map(MapMode.READ_ONLY, start+position, segmentBytes);
+			position += segmentBytes;
+		}
+		return new SegmentedByteBuffer(segments, size, segmentSize, recordSize, true);
+	}
+
+
+	/**
+	 * @param recordSize the size of the items stored
+	 * @param maxSegmentSize the largest number of bytes in a segment
+	 * @return the largest multiple of recordSize no bigger than maxSegmentSize
+	 */
+	private static int findSegmentSize(int recordSize, int maxSegmentSize) {
+		if(recordSize < 1) {
+			recordSize = 1;
+		}
+		if(maxSegmentSize < recordSize) {
+			maxSegmentSize = recordSize;
+		}
+		return (maxSegmentSize/recordSize)*recordSize;
+	}
+
+
+	/**
+	 * @param capacity the number of bytes
+	 * @param segmentSize the number of bytes in a segment
+	 * @return the number of segments needed to hold capacity bytes
+	 */
+	private static int segmentCount(long capacity, int segmentSize) {
+		long count = (capacity+segmentSize-1)/segmentSize;
+		if(count > Integer.MAX_VALUE) {
+			throw new OutOfMemoryError("Tried to create a SegmentedByteBuffer with too many segments");
+		}
+		return (int)count;
+	}
+
+
+	/**
+	 * @return the number of bytes in the buffer
+	 */
+	public long capacity() {
+		return capacity;
+	}
+
+
+	/**
+	 * @return true if the storage is off heap
+	 */
+	public boolean isDirect() {
+		return direct;
+	}
+
+
+	/**
+	 * @return true if the storage cannot be written, such as a read only memory mapped file
+	 */
+	public boolean isReadOnly() {
+		return segments.length > 0 && segments[0].isReadOnly();
+	}
+
+
+	/**
+	 * @return the size of the items stored, segments always contain a whole number of records
+	 */
+	public int getRecordSize() {
+		return recordSize;
+	}
+
+
+	/**
+	 * @return the number of ByteBuffers used for storage
+	 */
+	public int getSegmentCount() {
+		return segments.length;
+	}
+
+
+	/**
+	 * @param segment the segment index
+	 * @return the ByteBuffer used for that part of the storage, changes to it are seen by this buffer
+	 */
+	public ByteBuffer getSegment(int segment) {
+		return segments[segment];
+	}
+
+
+	/**
+	 * @param offset the byte offset
+	 * @return the segment containing the offset
+	 */
+	private ByteBuffer segment(long offset) {
+		return segments[(int)(offset/segmentSize)];
+	}
+
+
+	/**
+	 * @param offset the byte offset
+	 * @return the offset inside the segment containing it
+	 */
+	private int position(long offset) {
+		return (int)(offset%segmentSize);
+	}
+
+
+	/**
+	 * @param offset the byte offset
+	 * @return the byte at the offset
+	 */
+	public byte get(long offset) {
+		if(single) {
+			return first.get((int)offset);
+		}
+		return segment(offset).get(position(offset));
+	}
+
+
+	/**
+	 * @param offset the byte offset
+	 * @param value the new value
+	 */
+	public void put(long offset, byte value) {
+		if(single) {
+			first.put((int)offset, value);
+			return;
+		}
+		segment(offset).put(position(offset), value);
+	}
+
+
+	/**
+	 * @param offset the byte offset
+	 * @return the short at the offset
+	 */
+	public short getShort(long offset) {
+		if(single) {
+			return first.getShort((int)offset);
+		}
+		return segment(offset).getShort(position(offset));
+	}
+
+
+	/**
+	 * @param offset the byte offset
+	 * @param value the new value
+	 */
+	public void putShort(long offset, short value) {
+		if(single) {
+			first.putShort((int)offset, value);
+			return;
+		}
+		segment(offset).putShort(position(offset), value);
+	}
+
+
+	/**
+	 * @param offset the byte offset
+	 * @return the char at the offset
+	 */
+	public char getChar(long offset) {
+		if(single) {
+			return first.getChar((int)offset);
+		}
+		return segment(offset).getChar(position(offset));
+	}
+
+
+	/**
+	 * @param offset the byte offset
+	 * @param value the new value
+	 */
+	public void putChar(long offset, char value) {
+		if(single) {
+			first.putChar((int)offset, value);
+			return;
+		}
+		segment(offset).putChar(position(offset), value);
+	}
+
+
+	/**
+	 * @param offset the byte offset
+	 * @return the int at the offset
+	 */
+	public int getInt(long offset) {
+		if(single) {
+			return first.getInt((int)offset);
+		}
+		return segment(offset).getInt(position(offset));
+	}
+
+
+	/**
+	 * @param offset the byte offset
+	 * @param value the new value
+	 */
+	public void putInt(long offset, int value) {
+		if(single) {
+			first.putInt((int)offset, value);
+			return;
+		}
+		segment(offset).putInt(position(offset), value);
+	}
+
+
+	/**
+	 * The long must not cross the end of a segment.
+	 *
+	 * @param offset the byte offset
+	 * @return the long at the offset
+	 */
+	public long getLong(long offset) {
+		if(single) {
+			return first.getLong((int)offset);
+		}
+		return segment(offset).getLong(position(offset));
+	}
+
+
+	/**
+	 * Deep copy of the buffer, keeping the segment structure and storage type.
+	 *
+	 * @return a new writable buffer with a copy of the content
+	 */
+	public SegmentedByteBuffer copy() {
+		ByteBuffer[] copySegments = new ByteBuffer[segments.length];
+		for(int i = 0; i < segments.length; i++) {
+			ByteBuffer original = segments[i].duplicate();
+			original.clear();
+			if(direct) {
+				copySegments[i] = ByteBuffer.allocateDirect(original.capacity());
+			} else {
+				copySegments[i] = ByteBuffer.allocate(original.capacity());
+			}
+			copySegments[i].put(original);
+			copySegments[i].clear();
+		}
+		return new SegmentedByteBuffer(copySegments, capacity, segmentSize, recordSize, direct);
+	}
+
+
+	/**
+	 * Views of the segments for gathering writes. Each view covers its whole segment
+	 * and has its own position, so writing them does not affect this buffer.
+	 *
+	 * @return a view of each segment, with position 0 and limit at the segment capacity
+	 */
+	public ByteBuffer[] getSegmentViews() {
+		ByteBuffer[] views = new ByteBuffer[segments.length];
+		for(int i = 0; i < segments.length; i++) {
+			views[i] = segments[i].duplicate();
+			views[i].clear();
+		}
+		return views;
+	}
+
+
+	/**
+	 * @return the CRC32 of the content of the buffer
+	 */
+	public int checksum() {
+		CRC32 crc = new CRC32();
+		for(ByteBuffer view : getSegmentViews()) {
+			crc.update(view);
+		}
+		return (int)crc.getValue();
+	}
+
+
+	/**
+	 * Fill the buffer from the channel, starting at the current channel position.
+	 *
+	 * @param channel the channel to read from
+	 * @throws IOException if the read fails or the channel has too few bytes
+	 */
+	public void read(FileChannel channel) throws IOException {
+		for(ByteBuffer segment : segments) {
+			ByteBuffer buf = segment.duplicate();
+			buf.clear();
+			while(buf.hasRemaining()) {
+				if(channel.read(buf) < 0) {
+					throw new IOException("Unexpected end of file when reading buffer");
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Write the whole buffer to the channel, starting at the current channel position.
+	 *
+	 * @param channel the channel to write to
+	 * @throws IOException if the write fails
+	 */
+	public void write(FileChannel channel) throws IOException {
+		for(ByteBuffer segment : segments) {
+			ByteBuffer buf = segment.duplicate();
+			buf.clear();
+			while(buf.hasRemaining()) {
+				channel.write(buf);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,174 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import uk.ac.kent.dover.fastGraph.isomorphism.CanonicalForm;
+
+/**
+ * Lookup tables for the classes of simple undirected graphs of up to MAX_SIZE nodes, so that small
+ * motifs can be classified without building a FastGraph or searching for a canonical labelling.
+ * <p>
+ * A graph of k nodes is given as a bitmask with one bit for each pair of nodes, see pairBit. Every
+ * bitmask for every size is classified with CanonicalForm when the class is loaded, 1024 graphs
+ * for five nodes, and the class id and code of each is kept in arrays. The codes are the same as
+ * CanonicalForm gives for the FastGraph of the subgraph, so both can be used in one run.
+ * Graphs whose nodes have different ages are classified the first time their bitmask and
+ * ages are seen, and the code is cached.
+ * </p>
+ *
+ * @author Peter Rodgers
+ */
+public class SmallMotifTable {
+
+	public static final int MAX_SIZE = 5;
+
+	private static final int[][] CLASS_IDS = new int[MAX_SIZE+1][]; // CLASS_IDS[k][mask] is the class of the graph
+	private static final String[][] CLASS_CODES = new String[MAX_SIZE+1][]; // CLASS_CODES[k][id] is the canonical code of the class
+	private static final ConcurrentHashMap<Long,String> AGED_CODES = new ConcurrentHashMap<Long,String>();
+
+	static {
+		for(int k = 0; k <= MAX_SIZE; k++) {
+			int masks = 1<<(k*(k-1)/2);
+			HashMap<String,Integer> ids = new HashMap<String,Integer>();
+			CLASS_IDS[k] = new int[masks];
+			String[] codes = new String[masks];
+			for(int mask = 0; mask < masks; mask++) {
+				String code = new CanonicalForm(adjacency(k, mask), new int[k]).getCode();
+				Integer id = ids.get(code);
+				if(id == null) {
+					id = ids.size();
+					ids.put(code, id);
+					codes[id] = code;
+				}
+				CLASS_IDS[k][mask] = id;
+			}
+			CLASS_CODES[k] = new String[ids.size()];
+			System.arraycopy(codes, 0, CLASS_CODES[k], 0, ids.size());
+		}
+	}
+
+
+	/**
+	 * The bit for a pair of nodes does not depend on the number of nodes, so the bitmask of
+	 * a subgraph is also the bitmask of any of its first nodes.
+	 *
+	 * @param i one node, between 0 and MAX_SIZE-1
+	 * @param j the other node, not equal to i
+	 * @return the position of the bit for the pair in a bitmask
+	 */
+	public static int pairBit(int i, int j) {
+		if(i > j) {
+			int temp = i;
+			i = j;
+			j = temp;
+		}
+		return j*(j-1)/2+i;
+	}
+
+
+	/**
+	 * @param size the number of nodes, at most MAX_SIZE
+	 * @return the number of classes of simple undirected graphs with size nodes, connected or not
+	 */
+	public static int getNumberOfClasses(int size) {
+		return CLASS_CODES[size].length;
+	}
+
+
+	/**
+	 * @param size the number of nodes, at most MAX_SIZE
+	 * @param mask the bitmask of the graph
+	 * @return the class of the graph, isomorphic graphs have the same class
+	 */
+	public static int getClassId(int size, int mask) {
+		return CLASS_IDS[size][mask];
+	}
+
+
+	/**
+	 * @param size the number of nodes, at most MAX_SIZE
+	 * @param classId the class
+	 * @return the canonical code of the class, as given by CanonicalForm
+	 */
+	public static String getClassCode(int size, int classId) {
+		return CLASS_CODES[size][classId];
+	}
+
+
+	/**
+	 * Find the canonical code of a graph with node ages.
+	 *
+	 * @param size the number of nodes, at most MAX_SIZE
+	 * @param mask the bitmask of the graph
+	 * @param ages the age of each node relative to the youngest, each less than 256
+	 * @return the canonical code, as given by CanonicalForm
+	 */
+	public static String getCode(int size, int mask, int[] ages) {
+		long key = mask;
+		boolean sameAge = true;
+		for(int i = 0; i < size; i++) {
+			if(ages[i] != 0) {
+				sameAge = false;
+			}
+			key = (key<<8) | ages[i];
+		}
+		if(sameAge) {
+			return CLASS_CODES[size][CLASS_IDS[size][mask]];
+		}
+		key = (key<<3) | size;
+		String code = AGED_CODES.get(key);
+		if(code == null) {
+			code = new CanonicalForm(adjacency(size, mask), Arrays.copyOf(ages, size)).getCode();
+			AGED_CODES.put(key, code);
+		}
+		return code;
+	}
+
+
+	/**
+	 * @param size the number of nodes, at most MAX_SIZE
+	 * @param mask the bitmask of the graph
+	 * @return true if the graph is connected
+	 */
+	public static boolean isConnected(int size, int mask) {
+		if(size == 0) {
+			return true;
+		}
+		int reached = 1;
+		int last = 0;
+		while(reached != last) {
+			last = reached;
+			for(int i = 0; i < size; i++) {
+				if((reached & (1<<i)) == 0) {
+					continue;
+				}
+				for(int j = 0; j < size; j++) {
+					if(j != i && (mask & (1<<pairBit(i,j))) != 0) {
+						reached |= 1<<j;
+					}
+				}
+			}
+		}
+		return reached == (1<<size)-1;
+	}
+
+
+	/**
+	 * @return the adjacency matrix of the graph given by the bitmask
+	 */
+	private static int[][] adjacency(int size, int mask) {
+		int[][] adjacency = new int[size][size];
+		for(int j = 1; j < size; j++) {
+			for(int i = 0; i < j; i++) {
+				if((mask & (1<<pairBit(i,j))) != 0) {
+					adjacency[i][j] = 1;
+					adjacency[j][i] = 1;
+				}
+			}
+		}
+		return adjacency;
+	}
+
+}
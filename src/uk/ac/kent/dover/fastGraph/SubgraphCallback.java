@@ -0,0 +1,19 @@
+package uk.ac.kent.dover.fastGraph;
+
+/**
+ * Receives the subgraphs found by an enumerator one at a time, so they can be processed
+ * without collecting them all first.
+ *
+ * @author Peter Rodgers
+ */
+public interface SubgraphCallback {
+
+	/**
+	 * Called for each subgraph found.
+	 *
+	 * @param view the subgraph, induced. The view is reused for the next subgraph, so use
+	 *   toFastGraph() or copyNodes() to keep it
+	 */
+	void subgraphFound(SubgraphView view);
+
+}
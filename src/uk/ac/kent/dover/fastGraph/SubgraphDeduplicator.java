@@ -0,0 +1,181 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Skips subgraphs whose node set has been seen before, so that a node set sampled from several
+ * start nodes is only processed and counted once. Each node set is reduced to a 64 bit
+ * fingerprint of its sorted nodes, kept in a primitive open addressing hash set, so the memory
+ * used is about 16 bytes for each distinct subgraph. Two different node sets can share a
+ * fingerprint, but with 64 bits this is unlikely until there are billions of subgraphs.
+ * <p>
+ * The set is split into segments, each locked separately, so one deduplicator can be shared
+ * by threads. Each thread wraps its callback with filter(), which keeps the space for sorting.
+ * </p>
+ * <pre>
+ * SubgraphDeduplicator dedup = new SubgraphDeduplicator();
+ * enumerator.enumerateSubgraphs(k, 5, 10, dedup.filter(callback));
+ * dedup.getDuplicates();
+ * </pre>
+ *
+ * @author Peter Rodgers
+ */
+public class SubgraphDeduplicator {
+
+	private static final int SEGMENT_BITS = 6;
+	private static final int INITIAL_SEGMENT_SIZE = 1<<10;
+
+	private Segment[] segments = new Segment[1<<SEGMENT_BITS];
+	private LongAdder unique = new LongAdder();
+	private LongAdder duplicates = new LongAdder();
+
+
+	public SubgraphDeduplicator() {
+		for(int i = 0; i < segments.length; i++) {
+			segments[i] = new Segment();
+		}
+	}
+
+
+	/**
+	 * Wrap a callback so it only gets subgraphs with node sets not seen before by this deduplicator.
+	 * The returned callback can only be used by one thread at a time.
+	 *
+	 * @param callback receives the subgraphs that are not duplicates
+	 * @return a callback to give to an enumerator
+	 */
+	public SubgraphCallback filter(SubgraphCallback callback) {
+		return new SubgraphCallback() {
+			private int[] nodes = new int[8]; // sorted to find the fingerprint, so the view is not changed
+
+			@Override
+			public void subgraphFound(SubgraphView view) {
+				int count = view.getNumberOfNodes();
+				if(nodes.length < count) {
+					nodes = new int[count];
+				}
+				for(int i = 0; i < count; i++) {
+					nodes[i] = view.getNode(i);
+				}
+				if(add(fingerprint(nodes, count))) {
+					callback.subgraphFound(view);
+				}
+			}
+		};
+	}
+
+
+	/**
+	 * Record a fingerprint.
+	 *
+	 * @param fingerprint the fingerprint of a node set
+	 * @return true if the fingerprint had not been seen before
+	 */
+	public boolean add(long fingerprint) {
+		if(fingerprint == 0) {
+			fingerprint = 1; // 0 marks empty slots
+		}
+		boolean added = segments[(int)(fingerprint>>>(64-SEGMENT_BITS))].add(fingerprint);
+		if(added) {
+			unique.increment();
+		} else {
+			duplicates.increment();
+		}
+		return added;
+	}
+
+
+	/**
+	 * @return the number of distinct node sets seen
+	 */
+	public long getUnique() {
+		return unique.sum();
+	}
+
+
+	/**
+	 * @return the number of subgraphs skipped because their node set had been seen before
+	 */
+	public long getDuplicates() {
+		return duplicates.sum();
+	}
+
+
+	/**
+	 * Find the fingerprint of a set of nodes, the same whatever order the nodes are in.
+	 *
+	 * @param nodes the nodes, sorted in place
+	 * @param count the number of nodes at the start of the array to use
+	 * @return the fingerprint
+	 */
+	public static long fingerprint(int[] nodes, int count) {
+		// insertion sort, as node sets are small
+		for(int i = 1; i < count; i++) {
+			int node = nodes[i];
+			int j = i-1;
+			while(j >= 0 && nodes[j] > node) {
+				nodes[j+1] = nodes[j];
+				j--;
+			}
+			nodes[j+1] = node;
+		}
+		long h = count;
+		for(int i = 0; i < count; i++) {
+			h = mix((h ^ (nodes[i] & 0xFFFFFFFFL)) + 0x9E3779B97F4A7C15L);
+		}
+		return h;
+	}
+
+
+	/**
+	 * The splitmix64 finaliser, so every bit of the input affects every bit of the output.
+	 */
+	private static long mix(long h) {
+		h = (h ^ (h>>>30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h>>>27)) * 0x94D049BB133111EBL;
+		return h ^ (h>>>31);
+	}
+
+
+	/**
+	 * A part of the set, an open addressing table with linear probing.
+	 */
+	private static class Segment {
+		private long[] table = new long[INITIAL_SEGMENT_SIZE];
+		private int size = 0;
+
+		synchronized boolean add(long fingerprint) {
+			int mask = table.length-1;
+			int slot = (int)fingerprint & mask;
+			while(table[slot] != 0) {
+				if(table[slot] == fingerprint) {
+					return false;
+				}
+				slot = (slot+1) & mask;
+			}
+			table[slot] = fingerprint;
+			size++;
+			if(size > table.length/2) {
+				rehash();
+			}
+			return true;
+		}
+
+		private void rehash() {
+			long[] old = table;
+			table = new long[old.length*2];
+			int mask = table.length-1;
+			for(long fingerprint : old) {
+				if(fingerprint == 0) {
+					continue;
+				}
+				int slot = (int)fingerprint & mask;
+				while(table[slot] != 0) {
+					slot = (slot+1) & mask;
+				}
+				table[slot] = fingerprint;
+			}
+		}
+	}
+
+}
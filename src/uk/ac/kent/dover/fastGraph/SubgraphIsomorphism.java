@@ -1,7 +1,5 @@
 package uk.ac.kent.dover.fastGraph;
 
-import java.awt.Point;
-import java.awt.event.KeyEvent;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -10,20 +8,37 @@ import java.io.PrintWriter;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 
-import uk.ac.kent.displayGraph.drawers.GraphDrawerSpringEmbedder;
-
 public abstract class SubgraphIsomorphism {
 
+	protected boolean exportLayout = true;
+
+	/**
+	 * @return true if the SVGs of the subgraphs found are laid out with a spring embedder
+	 */
+	public boolean isExportLayout() {
+		return exportLayout;
+	}
+
+	/**
+	 * Sets if the SVGs of the subgraphs found are laid out, or left with the nodes at random positions, see SvgExporter.
+	 * @param exportLayout to lay out the subgraphs?
+	 */
+	public void setExportLayout(boolean exportLayout) {
+		this.exportLayout = exportLayout;
+	}
+
 	/**
-	 * Saves the given subgraph into the relevant folder with the key of count
+	 * Saves the given subgraph into the relevant folder with the key of count.
+	 * The SVG is saved by the exporter on another thread.
 	 * 
 	 * @param target The target graph
 	 * @param sub The FastGraph to save
 	 * @param count The number of this FastGraph
 	 * @param mainDir The parent directory to save to
+	 * @param exporter Lays out and saves the SVG
 	 * @throws IOException If the buffers cannot be saved 
 	 */
-	protected void saveSubgraph(FastGraph target, FastGraph sub, int count, File mainDir) throws IOException {
+	protected void saveSubgraph(FastGraph target, FastGraph sub, int count, File mainDir, SvgExporter exporter) throws IOException {
 		//save graph
 		sub.setName(target.getName());
 		File dir = new File(mainDir.getAbsolutePath()+File.separatorChar+count);
@@ -31,20 +46,8 @@ public abstract class SubgraphIsomorphism {
 		sub.saveBuffers(mainDir.getAbsolutePath()+File.separatorChar+count, target.getName());
 		
 		//save SVG
-		uk.ac.kent.displayGraph.Graph dg = sub.generateDisplayGraph();
-		dg.randomizeNodePoints(new Point(20,20),300,300);
-		uk.ac.kent.displayGraph.display.GraphWindow gw = new uk.ac.kent.displayGraph.display.GraphWindow(dg, false);
-		uk.ac.kent.displayGraph.drawers.BasicSpringEmbedder bse = new uk.ac.kent.displayGraph.drawers.BasicSpringEmbedder();
-		GraphDrawerSpringEmbedder se = new GraphDrawerSpringEmbedder(KeyEvent.VK_Q,"Spring Embedder - randomize, no animation",true);
-		se.setAnimateFlag(false);
-		se.setIterations(100);
-		se.setTimeLimit(200);
-		se.setGraphPanel(gw.getGraphPanel());
-		se.layout();
-		File saveLocation = null;
-		saveLocation = new File(mainDir.getAbsolutePath()+File.separatorChar+count+File.separatorChar+"subgraph.svg");
-		uk.ac.kent.displayGraph.ExportSVG exSVG = new uk.ac.kent.displayGraph.ExportSVG(dg);
-		exSVG.saveGraph(saveLocation);
+		File saveLocation = new File(mainDir.getAbsolutePath()+File.separatorChar+count+File.separatorChar+"subgraph.svg");
+		exporter.export(sub, "", saveLocation);
 		
 	}
 	
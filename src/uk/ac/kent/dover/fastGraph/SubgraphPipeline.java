@@ -0,0 +1,138 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Passes subgraphs from an enumerator to a consumer running on its own thread, so that sampling
+ * and processing overlap. The node arrays of the subgraphs wait in a bounded queue, so the memory
+ * used does not depend on the number of subgraphs, and the enumerator waits if the consumer
+ * falls behind. The consumer is given each subgraph in its own SubgraphView, in the order found.
+ * <pre>
+ * try(SubgraphPipeline pipeline = new SubgraphPipeline(g, k, 1024, consumer)) {
+ *     enumerator.enumerateSubgraphs(k, 5, 10, pipeline);
+ * }
+ * </pre>
+ * close() waits for the consumer to finish. An exception thrown by the consumer is thrown
+ * again, once, by the next call of subgraphFound or by close().
+ *
+ * @author Peter Rodgers
+ */
+public class SubgraphPipeline implements SubgraphCallback, AutoCloseable {
+
+	private static final int[] END = new int[0];
+
+	private ArrayBlockingQueue<int[]> queue;
+	private Thread consumerThread;
+	private volatile Throwable failure = null;
+	private boolean closed = false;
+	private boolean failureThrown = false; // so close() does not throw the failure again
+
+
+	/**
+	 * Start the consumer thread.
+	 *
+	 * @param g the graph the subgraphs are taken from
+	 * @param capacity the largest number of nodes in a subgraph
+	 * @param queueSize the number of subgraphs that can wait for the consumer
+	 * @param consumer receives each subgraph, on the consumer thread
+	 */
+	public SubgraphPipeline(FastGraph g, int capacity, int queueSize, SubgraphCallback consumer) {
+		queue = new ArrayBlockingQueue<int[]>(queueSize);
+		SubgraphView view = new SubgraphView(g, capacity);
+		consumerThread = new Thread(() -> consume(view, consumer), "SubgraphPipeline");
+		consumerThread.setDaemon(true);
+		consumerThread.start();
+	}
+
+
+	/**
+	 * Queue the subgraph for the consumer, waiting if the queue is full.
+	 *
+	 * @param view the subgraph, only its nodes are queued so the view can be reused
+	 */
+	@Override
+	public void subgraphFound(SubgraphView view) {
+		if(closed) {
+			throw new IllegalStateException("SubgraphPipeline has been closed");
+		}
+		put(view.copyNodes());
+	}
+
+
+	/**
+	 * Wait for the consumer to process all the queued subgraphs.
+	 */
+	@Override
+	public void close() {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		if(failure == null) {
+			put(END);
+		}
+		try {
+			consumerThread.join();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the subgraph consumer", e);
+		}
+		checkFailure();
+	}
+
+
+	private void put(int[] nodes) {
+		if(failure != null) {
+			checkFailure();
+			throw new IllegalStateException("Subgraph consumer has failed");
+		}
+		try {
+			// the timeout is so a failed consumer does not leave the enumerator waiting forever
+			while(!queue.offer(nodes, 100, TimeUnit.MILLISECONDS)) {
+				checkFailure();
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while passing a subgraph to the consumer", e);
+		}
+		checkFailure();
+	}
+
+
+	private void consume(SubgraphView view, SubgraphCallback consumer) {
+		try {
+			while(true) {
+				int[] nodes = queue.take();
+				if(nodes == END) {
+					return;
+				}
+				view.clear();
+				for(int node : nodes) {
+					view.addNode(node);
+				}
+				view.induce();
+				consumer.subgraphFound(view);
+			}
+		} catch(Throwable t) {
+			failure = t;
+		}
+	}
+
+
+	private void checkFailure() {
+		Throwable t = failure;
+		if(t == null || failureThrown) {
+			return;
+		}
+		failureThrown = true;
+		if(t instanceof RuntimeException) {
+			throw (RuntimeException)t;
+		}
+		if(t instanceof Error) {
+			throw (Error)t;
+		}
+		throw new IllegalStateException("Subgraph consumer failed", t);
+	}
+
+}
@@ -0,0 +1,298 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.util.Arrays;
+
+import uk.ac.kent.dover.fastGraph.isomorphism.CanonicalForm;
+
+/**
+ * A reusable view of a small induced subgraph of a FastGraph, for enumerating and classifying
+ * many subgraphs without building a FastGraph for each. The nodes are held in an int array,
+ * and induce() fills in the edges, a matrix of edge multiplicities between the nodes, a bitmask
+ * of the pairs that are joined, as used by SmallMotifTable, and the relative node ages. All the
+ * arrays are allocated when the view is created and reused for every subgraph.
+ * <pre>
+ * SubgraphView view = new SubgraphView(g, k);
+ * view.clear();
+ * view.addNode(n); ...
+ * view.induce();
+ * String code = view.getCode();
+ * </pre>
+ * toFastGraph() builds the subgraph when it is needed, such as when a motif is exported.
+ * If the connections of the graph are compressed without edge indexes, the codes, masks and node
+ * sets are still available, but getEdge and toFastGraph throw an UnsupportedOperationException.
+ * A view is not thread safe, use one for each thread.
+ *
+ * @author Peter Rodgers
+ */
+public class SubgraphView {
+
+	private FastGraph g;
+	private NeighbourCursor cursor;
+	private int capacity;
+
+	private int[] nodes;
+	private int nodeCount;
+
+	private int[] edges;
+	private int edgeCount;
+	private int[][] multiplicities; // multiplicities[i][j] is the number of edges between nodes i and j, symmetric
+	private int[] ages; // relative to the youngest node
+	private int mask; // pairs that are joined, see SmallMotifTable.pairBit, -1 if not simple
+	private boolean induced;
+
+	private boolean[] reached; // for the search in isConnected
+	private int[] queue;
+
+
+	/**
+	 * @param g the graph the subgraphs are taken from
+	 * @param capacity the largest number of nodes in a subgraph
+	 */
+	public SubgraphView(FastGraph g, int capacity) {
+		this.g = g;
+		this.capacity = capacity;
+		cursor = new NeighbourCursor(g);
+		nodes = new int[capacity];
+		edges = new int[capacity*2];
+		multiplicities = new int[capacity][capacity];
+		ages = new int[capacity];
+		reached = new boolean[capacity];
+		queue = new int[capacity];
+		clear();
+	}
+
+
+	/**
+	 * Remove all the nodes, ready for the next subgraph.
+	 */
+	public void clear() {
+		nodeCount = 0;
+		edgeCount = 0;
+		induced = false;
+	}
+
+
+	/**
+	 * @param node a node of the graph
+	 * @return false if the node is already in the view, true if it has been added
+	 * @throws IllegalStateException if the view already has capacity nodes
+	 */
+	public boolean addNode(int node) {
+		if(indexOf(node) != -1) {
+			return false;
+		}
+		if(nodeCount == capacity) {
+			throw new IllegalStateException("SubgraphView already has "+capacity+" nodes");
+		}
+		nodes[nodeCount] = node;
+		nodeCount++;
+		induced = false;
+		return true;
+	}
+
+
+	/**
+	 * @param node a node of the graph
+	 * @return the position of the node in the view, -1 if it is not in the view
+	 */
+	public int indexOf(int node) {
+		for(int i = 0; i < nodeCount; i++) {
+			if(nodes[i] == node) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Find the edges between the nodes of the view, their multiplicities, the bitmask and the relative ages.
+	 */
+	public void induce() {
+		boolean edgesAvailable = !g.getConnectionsCompressed() || g.getCompressedEdgeIndexes();
+		edgeCount = 0;
+		mask = 0;
+		int minAge = Integer.MAX_VALUE;
+		for(int i = 0; i < nodeCount; i++) {
+			Arrays.fill(multiplicities[i], 0, nodeCount, 0);
+			ages[i] = g.getNodeAge(nodes[i]);
+			minAge = Math.min(minAge, ages[i]);
+		}
+		for(int i = 0; i < nodeCount; i++) {
+			// each edge is found once, from the node it leaves
+			cursor.setOut(nodes[i]);
+			while(cursor.next()) {
+				int j = indexOf(cursor.getNode());
+				if(j == -1) {
+					continue;
+				}
+				if(edgeCount == edges.length) {
+					edges = Arrays.copyOf(edges, edges.length*2);
+				}
+				edges[edgeCount] = edgesAvailable ? cursor.getEdge() : -1;
+				edgeCount++;
+				multiplicities[i][j]++;
+				if(i != j) {
+					multiplicities[j][i]++;
+				}
+				if(i == j || multiplicities[i][j] > 1 || nodeCount > SmallMotifTable.MAX_SIZE) {
+					mask = -1;
+				} else if(mask != -1) {
+					mask |= 1<<SmallMotifTable.pairBit(i,j);
+				}
+			}
+		}
+		for(int i = 0; i < nodeCount; i++) {
+			ages[i] -= minAge;
+		}
+		induced = true;
+	}
+
+
+	/**
+	 * @return the largest number of nodes the view can hold
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+
+	/**
+	 * @return the number of nodes in the view
+	 */
+	public int getNumberOfNodes() {
+		return nodeCount;
+	}
+
+
+	/**
+	 * @param i the position in the view
+	 * @return the node of the graph at the position
+	 */
+	public int getNode(int i) {
+		return nodes[i];
+	}
+
+
+	/**
+	 * @return a copy of the nodes of the view, in the order they were added
+	 */
+	public int[] copyNodes() {
+		return Arrays.copyOf(nodes, nodeCount);
+	}
+
+
+	/**
+	 * @return the number of edges between the nodes, after induce()
+	 */
+	public int getNumberOfEdges() {
+		checkInduced();
+		return edgeCount;
+	}
+
+
+	/**
+	 * @param i the position of the edge in the view
+	 * @return the edge of the graph
+	 * @throws UnsupportedOperationException if the connections were compressed without edge indexes
+	 */
+	public int getEdge(int i) {
+		checkInduced();
+		g.checkCompressedEdgeIndexes();
+		return edges[i];
+	}
+
+
+	/**
+	 * @param i the position of one node in the view
+	 * @param j the position of the other node in the view
+	 * @return the number of edges between the nodes in either direction, after induce()
+	 */
+	public int getMultiplicity(int i, int j) {
+		checkInduced();
+		return multiplicities[i][j];
+	}
+
+
+	/**
+	 * @param i the position of the node in the view
+	 * @return the age of the node less the age of the youngest node in the view, after induce()
+	 */
+	public int getRelativeAge(int i) {
+		checkInduced();
+		return ages[i];
+	}
+
+
+	/**
+	 * @return the bitmask of the joined pairs of nodes, see SmallMotifTable, or -1 if there are
+	 *   parallel or self sourcing edges or more than SmallMotifTable.MAX_SIZE nodes
+	 */
+	public int getMask() {
+		checkInduced();
+		return mask;
+	}
+
+
+	/**
+	 * @return true if the subgraph is connected, ignoring edge direction
+	 */
+	public boolean isConnected() {
+		checkInduced();
+		if(nodeCount == 0) {
+			return true;
+		}
+		Arrays.fill(reached, 0, nodeCount, false);
+		reached[0] = true;
+		queue[0] = 0;
+		int head = 0;
+		int tail = 1;
+		while(head < tail) {
+			int i = queue[head];
+			head++;
+			for(int j = 0; j < nodeCount; j++) {
+				if(!reached[j] && multiplicities[i][j] > 0) {
+					reached[j] = true;
+					queue[tail] = j;
+					tail++;
+				}
+			}
+		}
+		return tail == nodeCount;
+	}
+
+
+	/**
+	 * @return the canonical code of the subgraph, as CanonicalForm gives for toFastGraph()
+	 */
+	public String getCode() {
+		checkInduced();
+		if(mask != -1) {
+			return SmallMotifTable.getCode(nodeCount, mask, ages);
+		}
+		return new CanonicalForm(this).getCode();
+	}
+
+
+	/**
+	 * Build the subgraph as a FastGraph, the nodes in the order of the view.
+	 *
+	 * @return a new FastGraph of the subgraph, named "subgraph"
+	 * @throws UnsupportedOperationException if the connections were compressed without edge indexes
+	 */
+	public FastGraph toFastGraph() {
+		checkInduced();
+		g.checkCompressedEdgeIndexes();
+		FastGraph subgraph = g.generateGraphFromSubgraph(copyNodes(), Arrays.copyOf(edges, edgeCount));
+		subgraph.setName("subgraph");
+		return subgraph;
+	}
+
+
+	private void checkInduced() {
+		if(!induced) {
+			throw new IllegalStateException("induce() has not been called since the nodes changed");
+		}
+	}
+
+}
@@ -0,0 +1,249 @@
+package uk.ac.kent.dover.fastGraph;
+
+import java.awt.Frame;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import uk.ac.kent.displayGraph.ExportSVG;
+import uk.ac.kent.displayGraph.Graph;
+import uk.ac.kent.displayGraph.GraphPanel;
+import uk.ac.kent.displayGraph.drawers.GraphDrawerSpringEmbedder;
+
+/**
+ * Lays out graphs and saves them as SVG on a pool of worker threads, so that exporting results
+ * does not hold up the search. At most a fixed number of graphs wait to be exported, after which
+ * export waits for a worker, so the memory used does not depend on the number of results.
+ * <p>
+ * The spring embedder is run on a GraphPanel that is never shown, so no window is made and
+ * export works without a display. Without layout the nodes are left at random positions,
+ * which is much faster for batch runs where the pictures are rarely looked at.
+ * </p>
+ * <pre>
+ * try(SvgExporter exporter = new SvgExporter(true)) {
+ *     exporter.export(graph, "label", new File("motif.svg"));
+ * }
+ * </pre>
+ * close() waits for all the graphs to be saved. The first failure of a worker is thrown
+ * again, once, by the next call of export or by close().
+ * <p>
+ * Making a display graph adds node and edge types to static lists that are not thread safe, so
+ * the display graph is made by export on the calling thread, one at a time across all exporters,
+ * and the workers only lay it out and write the file.
+ * </p>
+ *
+ * @author Peter Rodgers
+ */
+public class SvgExporter implements AutoCloseable {
+
+	public static final int DEFAULT_QUEUE_SIZE = 256; // graphs waiting to be exported
+
+	private static final Object DISPLAY_GRAPH_LOCK = new Object(); // held while a display graph is made
+
+	private ExecutorService pool;
+	private Semaphore waiting;
+	private boolean layout;
+	private AtomicInteger exported = new AtomicInteger();
+	private volatile Throwable failure = null;
+	private boolean closed = false;
+	private boolean failureThrown = false; // so close() does not throw the failure again
+
+
+	/**
+	 * A worker for each processor.
+	 *
+	 * @param layout true to lay out each graph with a spring embedder, false to leave the nodes at random positions
+	 */
+	public SvgExporter(boolean layout) {
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_SIZE, layout);
+	}
+
+
+	/**
+	 * Start the workers.
+	 *
+	 * @param threads the number of worker threads
+	 * @param queueSize the number of graphs that can wait to be exported
+	 * @param layout true to lay out each graph with a spring embedder, false to leave the nodes at random positions
+	 */
+	public SvgExporter(int threads, int queueSize, boolean layout) {
+		this.layout = layout;
+		waiting = new Semaphore(threads+queueSize);
+		pool = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "SvgExporter");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+
+	/**
+	 * Queue a graph to be saved as SVG, waiting if too many are queued already. The display graph
+	 * is made before this returns, so the graph can be changed straight away.
+	 *
+	 * @param graph the graph to save
+	 * @param label the label of the drawing
+	 * @param saveLocation the SVG file
+	 * @throws IOException if an earlier graph could not be saved
+	 */
+	public void export(FastGraph graph, String label, File saveLocation) throws IOException {
+		if(closed) {
+			throw new IllegalStateException("SvgExporter has been closed");
+		}
+		checkFailure();
+		if(failure != null) {
+			throw new IllegalStateException("SVG export has failed");
+		}
+		try {
+			waiting.acquire();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting to export "+saveLocation, e);
+		}
+		Graph dg;
+		try {
+			dg = displayGraph(graph, label);
+		} catch(RuntimeException e) {
+			waiting.release();
+			throw e;
+		}
+		pool.execute(() -> {
+			try {
+				if(failure == null) {
+					saveSVG(dg, saveLocation, layout);
+					exported.incrementAndGet();
+				}
+			} catch(Throwable t) {
+				if(failure == null) {
+					failure = t;
+				}
+			} finally {
+				waiting.release();
+			}
+		});
+	}
+
+
+	/**
+	 * @return the number of graphs saved so far
+	 */
+	public int getExported() {
+		return exported.get();
+	}
+
+
+	/**
+	 * Wait for all the queued graphs to be saved.
+	 *
+	 * @throws IOException if a graph could not be saved
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		pool.shutdown();
+		try {
+			while(!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+				// keep waiting, layout has a time limit so this finishes
+			}
+		} catch(InterruptedException e) {
+			pool.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for SVG export", e);
+		}
+		checkFailure();
+	}
+
+
+	private void checkFailure() throws IOException {
+		Throwable t = failure;
+		if(t == null || failureThrown) {
+			return;
+		}
+		failureThrown = true;
+		if(t instanceof IOException) {
+			throw (IOException)t;
+		}
+		if(t instanceof RuntimeException) {
+			throw (RuntimeException)t;
+		}
+		if(t instanceof Error) {
+			throw (Error)t;
+		}
+		throw new IOException("SVG export failed", t);
+	}
+
+
+	/**
+	 * Save a graph as SVG on the calling thread.
+	 *
+	 * @param graph the graph to save
+	 * @param label the label of the drawing
+	 * @param saveLocation the SVG file
+	 * @param layout true to lay out the graph with a spring embedder, false to leave the nodes at random positions
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void saveSVG(FastGraph graph, String label, File saveLocation, boolean layout) throws IOException {
+		saveSVG(displayGraph(graph, label), saveLocation, layout);
+	}
+
+
+	/**
+	 * Make the display graph, with the nodes at random positions. Only one is made at a time.
+	 *
+	 * @param graph the graph to draw
+	 * @param label the label of the drawing
+	 * @return the display graph
+	 */
+	private static Graph displayGraph(FastGraph graph, String label) {
+		Graph dg;
+		synchronized(DISPLAY_GRAPH_LOCK) {
+			dg = graph.generateDisplayGraph();
+		}
+		dg.randomizeNodePoints(new Point(20,20),300,300);
+		dg.setLabel(label);
+		return dg;
+	}
+
+
+	/**
+	 * Lay out a display graph and save it, which can be done on any thread.
+	 *
+	 * @param dg the display graph, not shared with other threads
+	 * @param saveLocation the SVG file
+	 * @param layout true to lay out the graph with a spring embedder, false to leave the nodes at random positions
+	 * @throws IOException if the file cannot be written
+	 */
+	private static void saveSVG(Graph dg, File saveLocation, boolean layout) throws IOException {
+		if(layout) {
+			// the panel is never shown, so it does not need redrawing
+			GraphPanel panel = new GraphPanel(dg, (Frame)null) {
+				private static final long serialVersionUID = 1L;
+				@Override
+				public void update(Graphics g) {
+				}
+			};
+			GraphDrawerSpringEmbedder se = new GraphDrawerSpringEmbedder(KeyEvent.VK_Q,"Spring Embedder - randomize, no animation",true);
+			se.setAnimateFlag(false);
+			se.setIterations(100);
+			se.setTimeLimit(200);
+			se.setGraphPanel(panel);
+			se.layout();
+		}
+		saveLocation.getAbsoluteFile().getParentFile().mkdirs();
+		ExportSVG exSVG = new ExportSVG(dg);
+		if(!exSVG.saveGraph(saveLocation)) {
+			throw new IOException("Could not save SVG to "+saveLocation);
+		}
+	}
+
+}
@@ -23,12 +23,10 @@ public class SimpleEdgeLabelComparator extends EdgeComparator {
 	 */
 	@Override
 	public int compare(Integer target, Integer pattern) {
-		String label1 = g1.getEdgeLabel(target);
-		String label2 = g2.getEdgeLabel(pattern);
-		if(label2.equals("")) {
+		if(g2.isEdgeLabelEmpty(pattern)) {
 			return 0;
 		}
-		int ret = label1.compareTo(label2);
+		int ret = g1.compareEdgeLabels(target, g2, pattern);
 		return ret;
 	}
 
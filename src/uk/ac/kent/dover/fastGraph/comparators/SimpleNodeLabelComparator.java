@@ -23,12 +23,10 @@ public class SimpleNodeLabelComparator extends NodeComparator {
 	 */
 	@Override
 	public int compare(Integer target, Integer pattern) {
-		String label1 = g1.getNodeLabel(target);
-		String label2 = g2.getNodeLabel(pattern);
-		if(label2.equals("")) {
+		if(g2.isNodeLabelEmpty(pattern)) {
 			return 0;
 		}
-		int ret = label1.compareTo(label2);
+		int ret = g1.compareNodeLabels(target, g2, pattern);
 		return ret;
 	}
 
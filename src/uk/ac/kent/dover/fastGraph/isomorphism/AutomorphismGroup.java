@@ -0,0 +1,506 @@
+package uk.ac.kent.dover.fastGraph.isomorphism;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import uk.ac.kent.dover.fastGraph.FastGraph;
+
+/**
+ * The automorphism group of a graph, or the group generated by some permutations, held as a
+ * base and strong generating set. The base is a list of points b0, b1, ... such that only the
+ * identity fixes them all. Level i of the stabiliser chain is the subgroup fixing b0 to b(i-1),
+ * and its basic orbit is the orbit of bi under that subgroup. The order of the group is the
+ * product of the basic orbit sizes.
+ * <p>
+ * Each basic orbit is stored as a Schreier vector of int arrays, holding for each point of the
+ * orbit the generator that reaches it from an earlier point, so a coset representative is found
+ * by following the vector back to the base point. Permutations are int arrays where element i
+ * is the image of i.
+ * </p>
+ * <p>
+ * For a graph the generators and base come from CanonicalLabelling, whose automorphisms are
+ * already a strong generating set relative to the first path of its search. For other
+ * generators the strong generating set is made with the Schreier-Sims algorithm.
+ * </p>
+ * <pre>
+ * AutomorphismGroup group = new AutomorphismGroup(g);
+ * BigInteger order = group.getOrder();
+ * ArrayList&lt;int[]&gt; orbits = group.getOrbits();
+ * </pre>
+ *
+ * @author Peter Rodgers
+ */
+public class AutomorphismGroup {
+
+	private int size;
+	private int[] base = new int[0];
+	private int baseLength = 0;
+	private ArrayList<int[]> generators = new ArrayList<int[]>(); // the strong generating set
+	private ArrayList<int[]> inverses = new ArrayList<int[]>();
+	private ArrayList<int[]> supports = new ArrayList<int[]>(); // the points moved by each generator
+	private ArrayList<int[]> levelGenerators = new ArrayList<int[]>(); // for each level, the generators fixing the earlier base points
+	private ArrayList<int[]> schreierVectors = new ArrayList<int[]>(); // for each level, the generator reaching each point of the basic orbit, -1 for the base point, -2 if not in the orbit
+	private ArrayList<int[]> basicOrbits = new ArrayList<int[]>();
+
+
+	/**
+	 * The automorphism group of a graph, preserving node ages.
+	 *
+	 * @param g the graph
+	 */
+	public AutomorphismGroup(FastGraph g) {
+		this(g, null);
+	}
+
+
+	/**
+	 * The automorphism group of a graph, preserving node colours.
+	 *
+	 * @param g the graph
+	 * @param nodeColours a non negative colour for each node, or null to colour the nodes by age
+	 */
+	public AutomorphismGroup(FastGraph g, int[] nodeColours) {
+		this(new CanonicalLabelling(g, nodeColours));
+	}
+
+
+	/**
+	 * The automorphism group found by a canonical labelling.
+	 *
+	 * @param labelling the canonical labelling of a graph
+	 */
+	public AutomorphismGroup(CanonicalLabelling labelling) {
+		size = labelling.getLabelling().length;
+		for(Permutation p : labelling.getAutomorphisms()) {
+			addGenerator(toArray(p));
+		}
+		int[] labellingBase = labelling.getBase();
+		for(int b : labellingBase) {
+			addBasePoint(b);
+		}
+		for(int level = 0; level < baseLength; level++) {
+			findLevelGenerators(level);
+			findBasicOrbit(level);
+		}
+	}
+
+
+	/**
+	 * The group generated by some permutations, found with the Schreier-Sims algorithm.
+	 *
+	 * @param size the number of points the permutations act on
+	 * @param permutations the generators of the group
+	 */
+	public AutomorphismGroup(int size, List<Permutation> permutations) {
+		this.size = size;
+		for(Permutation p : permutations) {
+			if(p.size() != size) {
+				throw new IllegalArgumentException("Permutation of size "+p.size()+" in a group acting on "+size+" points");
+			}
+			if(!p.isIdentity()) {
+				addGenerator(toArray(p));
+			}
+		}
+		schreierSims();
+	}
+
+
+	/**
+	 * @return the number of points the group acts on
+	 */
+	public int getSize() {
+		return size;
+	}
+
+
+	/**
+	 * @return the base, only the identity fixes all of its points
+	 */
+	public int[] getBase() {
+		return Arrays.copyOf(base, baseLength);
+	}
+
+
+	/**
+	 * @return the strong generating set, which generates the group
+	 */
+	public ArrayList<Permutation> getGenerators() {
+		ArrayList<Permutation> ret = new ArrayList<Permutation>(generators.size());
+		for(int[] g : generators) {
+			ret.add(new Permutation(g.clone()));
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @param level a level of the stabiliser chain, less than the length of the base
+	 * @return the orbit of the base point at the level under the subgroup fixing the earlier base points, starting with the base point
+	 */
+	public int[] getBasicOrbit(int level) {
+		return basicOrbits.get(level).clone();
+	}
+
+
+	/**
+	 * @return the number of elements of the group
+	 */
+	public BigInteger getOrder() {
+		BigInteger ret = BigInteger.ONE;
+		for(int[] orbit : basicOrbits) {
+			ret = ret.multiply(BigInteger.valueOf(orbit.length));
+		}
+		return ret;
+	}
+
+
+	/**
+	 * @return for each point, the smallest point in its orbit
+	 */
+	public int[] getOrbitRepresentatives() {
+		int[] parent = new int[size];
+		for(int i = 0; i < size; i++) {
+			parent[i] = i;
+		}
+		for(int[] g : generators) {
+			for(int i = 0; i < size; i++) {
+				int a = find(parent, i);
+				int b = find(parent, g[i]);
+				if(a < b) {
+					parent[b] = a;
+				} else if(b < a) {
+					parent[a] = b;
+				}
+			}
+		}
+		for(int i = 0; i < size; i++) {
+			parent[i] = find(parent, i);
+		}
+		return parent;
+	}
+
+
+	/**
+	 * @return the orbits of the points, each sorted, in order of their smallest point
+	 */
+	public ArrayList<int[]> getOrbits() {
+		int[] representatives = getOrbitRepresentatives();
+		int[] orbitSize = new int[size];
+		for(int r : representatives) {
+			orbitSize[r]++;
+		}
+		int[][] orbitOf = new int[size][];
+		ArrayList<int[]> ret = new ArrayList<int[]>();
+		int[] next = new int[size];
+		for(int i = 0; i < size; i++) {
+			int r = representatives[i];
+			if(r == i) {
+				orbitOf[i] = new int[orbitSize[i]];
+				ret.add(orbitOf[i]);
+			}
+			orbitOf[r][next[r]++] = i;
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Test if a permutation is in the group, by stripping it through the stabiliser chain.
+	 *
+	 * @param p the permutation
+	 * @return true if p is an element of the group
+	 */
+	public boolean contains(Permutation p) {
+		if(p.size() != size) {
+			return false;
+		}
+		int[] residue = toArray(p);
+		return strip(residue, 0) == baseLength && isIdentity(residue);
+	}
+
+
+	/**
+	 * The Schreier-Sims algorithm, from the Handbook of Computational Group Theory by Holt et al.
+	 * Levels are completed from the last up. A level is complete when every Schreier generator,
+	 * an element of the form u s v^-1 with u and v coset representatives and s a generator,
+	 * strips to the identity through the levels below it. A Schreier generator that does not is
+	 * added to the generators of the levels it reached, and work starts again from there.
+	 */
+	private void schreierSims() {
+		for(int i = 0; i < generators.size(); i++) {
+			int[] g = generators.get(i);
+			if(movesNoBasePoint(g)) {
+				addBasePoint(firstMoved(g));
+			}
+		}
+		for(int level = 0; level < baseLength; level++) {
+			findLevelGenerators(level);
+			findBasicOrbit(level);
+		}
+
+		int level = baseLength-1;
+		while(level >= 0) {
+			int reached = -1;
+			int[] residue = null;
+			int[] orbit = basicOrbits.get(level);
+			int[] levelGens = levelGenerators.get(level);
+			search:
+			for(int beta : orbit) {
+				int[] u = representative(level, beta);
+				for(int s : levelGens) {
+					int[] g = generators.get(s);
+					int[] schreier = new int[size];
+					for(int i = 0; i < size; i++) {
+						schreier[i] = g[u[i]];
+					}
+					// stripping at this level applies v^-1
+					int j = strip(schreier, level);
+					if(j < baseLength || !isIdentity(schreier)) {
+						reached = j;
+						residue = schreier;
+						break search;
+					}
+				}
+			}
+			if(residue == null) {
+				level--;
+				continue;
+			}
+			if(reached == baseLength) {
+				addBasePoint(firstMoved(residue));
+			}
+			addGenerator(residue);
+			for(int l = level+1; l <= reached; l++) {
+				addLevelGenerator(l, generators.size()-1);
+				findBasicOrbit(l);
+			}
+			level = reached;
+		}
+	}
+
+
+	/**
+	 * Divide a permutation by coset representatives until it reaches a level whose basic orbit
+	 * does not hold the image of the base point, or the end of the base.
+	 *
+	 * @param g the permutation, changed to the residue
+	 * @param level the first level to strip at
+	 * @return the level reached, the length of the base if stripped through every level
+	 */
+	private int strip(int[] g, int level) {
+		int[] work = new int[size];
+		for(int l = level; l < baseLength; l++) {
+			int[] vector = schreierVectors.get(l);
+			int beta = g[base[l]];
+			if(vector[beta] == -2) {
+				return l;
+			}
+			// follow the Schreier vector back to the base point, applying inverse generators
+			while(vector[beta] != -1) {
+				int[] inverse = inverses.get(vector[beta]);
+				for(int i = 0; i < size; i++) {
+					work[i] = inverse[g[i]];
+				}
+				System.arraycopy(work, 0, g, 0, size);
+				beta = g[base[l]];
+			}
+		}
+		return baseLength;
+	}
+
+
+	/**
+	 * @return the coset representative at a level mapping the base point to beta
+	 */
+	private int[] representative(int level, int beta) {
+		int[] vector = schreierVectors.get(level);
+		int[] ret = new int[size];
+		for(int i = 0; i < size; i++) {
+			ret[i] = i;
+		}
+		int[] work = new int[size];
+		// following the vector back from beta meets the generators of the path last first,
+		// so each is applied before the ones already in ret
+		while(vector[beta] != -1) {
+			int[] g = generators.get(vector[beta]);
+			int[] inverse = inverses.get(vector[beta]);
+			for(int i = 0; i < size; i++) {
+				work[i] = ret[g[i]];
+			}
+			System.arraycopy(work, 0, ret, 0, size);
+			beta = inverse[beta];
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Find the generators that fix the base points before a level. These are the generators of
+	 * the level before that also fix its base point, so levels are found in increasing order.
+	 */
+	private void findLevelGenerators(int level) {
+		int[] found;
+		int count = 0;
+		if(level == 0) {
+			found = new int[generators.size()];
+			for(int i = 0; i < generators.size(); i++) {
+				found[count++] = i;
+			}
+		} else {
+			int[] previous = levelGenerators.get(level-1);
+			int point = base[level-1];
+			found = new int[previous.length];
+			for(int s : previous) {
+				if(generators.get(s)[point] == point) {
+					found[count++] = s;
+				}
+			}
+		}
+		while(levelGenerators.size() <= level) {
+			levelGenerators.add(null);
+		}
+		levelGenerators.set(level, Arrays.copyOf(found, count));
+	}
+
+
+	/**
+	 * Add a generator that fixes the base points before a level to the generators of the level.
+	 */
+	private void addLevelGenerator(int level, int s) {
+		if(level == levelGenerators.size()) {
+			// every other generator moves one of the earlier base points
+			levelGenerators.add(new int[] {s});
+			return;
+		}
+		int[] levelGens = levelGenerators.get(level);
+		levelGens = Arrays.copyOf(levelGens, levelGens.length+1);
+		levelGens[levelGens.length-1] = s;
+		levelGenerators.set(level, levelGens);
+	}
+
+
+	/**
+	 * Find the basic orbit and Schreier vector of a level by a breadth first search from the base point.
+	 */
+	private void findBasicOrbit(int level) {
+		int[] vector = new int[size];
+		Arrays.fill(vector, -2);
+		int[] orbit = new int[size];
+		int orbitLength = 0;
+		vector[base[level]] = -1;
+		orbit[orbitLength++] = base[level];
+		int[] levelGens = levelGenerators.get(level);
+
+		// the generators moving each point, in order, as sparse generators such as twin swaps fix most points
+		int[] movedStart = new int[size+1];
+		for(int s : levelGens) {
+			for(int p : supports.get(s)) {
+				movedStart[p+1]++;
+			}
+		}
+		for(int i = 0; i < size; i++) {
+			movedStart[i+1] += movedStart[i];
+		}
+		int[] movedBy = new int[movedStart[size]];
+		int[] next = Arrays.copyOf(movedStart, size);
+		for(int s : levelGens) {
+			for(int p : supports.get(s)) {
+				movedBy[next[p]++] = s;
+			}
+		}
+
+		for(int i = 0; i < orbitLength; i++) {
+			int point = orbit[i];
+			for(int k = movedStart[point]; k < movedStart[point+1]; k++) {
+				int s = movedBy[k];
+				int image = generators.get(s)[point];
+				if(vector[image] == -2) {
+					vector[image] = s;
+					orbit[orbitLength++] = image;
+				}
+			}
+		}
+		while(schreierVectors.size() <= level) {
+			schreierVectors.add(null);
+			basicOrbits.add(null);
+		}
+		schreierVectors.set(level, vector);
+		basicOrbits.set(level, Arrays.copyOf(orbit, orbitLength));
+	}
+
+
+	private void addGenerator(int[] g) {
+		int[] inverse = new int[size];
+		int moved = 0;
+		for(int i = 0; i < size; i++) {
+			inverse[g[i]] = i;
+			if(g[i] != i) {
+				moved++;
+			}
+		}
+		int[] support = new int[moved];
+		moved = 0;
+		for(int i = 0; i < size; i++) {
+			if(g[i] != i) {
+				support[moved++] = i;
+			}
+		}
+		generators.add(g);
+		inverses.add(inverse);
+		supports.add(support);
+	}
+
+
+	private void addBasePoint(int point) {
+		if(baseLength == base.length) {
+			base = Arrays.copyOf(base, Math.max(4, base.length*2));
+		}
+		base[baseLength++] = point;
+	}
+
+
+	private boolean movesNoBasePoint(int[] g) {
+		for(int l = 0; l < baseLength; l++) {
+			if(g[base[l]] != base[l]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	private int[] toArray(Permutation p) {
+		int[] ret = new int[p.size()];
+		for(int i = 0; i < ret.length; i++) {
+			ret[i] = p.get(i);
+		}
+		return ret;
+	}
+
+
+	private static int firstMoved(int[] g) {
+		for(int i = 0; i < g.length; i++) {
+			if(g[i] != i) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+
+	private static boolean isIdentity(int[] g) {
+		return firstMoved(g) == -1;
+	}
+
+
+	private static int find(int[] parent, int i) {
+		while(parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+}
@@ -0,0 +1,179 @@
+package uk.ac.kent.dover.fastGraph.isomorphism;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import uk.ac.kent.dover.fastGraph.FastGraph;
+import uk.ac.kent.dover.fastGraph.SubgraphView;
+
+/**
+ * Finds a canonical code for a small graph, such as a motif, so that two graphs are isomorphic
+ * exactly when their codes are equal. Graphs can then be classified with a single hash lookup
+ * rather than pairwise isomorphism tests.
+ * <p>
+ * The graph is treated as undirected, with edge multiplicities and self sourcing edges counted,
+ * and each node coloured by its age relative to the youngest node. The canonical labelling is
+ * found by CanonicalLabelling, so both agree on which graphs are equivalent, and this class
+ * writes the adjacency matrix in that order as a short readable code.
+ * </p>
+ *
+ * @author Peter Rodgers
+ */
+public class CanonicalForm {
+
+	private int numberOfNodes;
+	private int[][] adjacency; // edge multiplicities, symmetric, self sourcing edges on the diagonal
+	private int[] colours; // node ages relative to the youngest node
+
+	private int[] best = null; // the canonical labelling, best[i] is the node at position i
+	private ArrayList<int[]> automorphisms = new ArrayList<int[]>(); // automorphisms[k][n] is the image of node n
+	private String code = null;
+
+
+	/**
+	 * Read the structure of the graph. The search for the canonical labelling is done when the
+	 * code or labelling is first asked for.
+	 *
+	 * @param g the graph, usually small
+	 */
+	public CanonicalForm(FastGraph g) {
+		numberOfNodes = g.getNumberOfNodes();
+		adjacency = new int[numberOfNodes][numberOfNodes];
+		for(int e = 0; e < g.getNumberOfEdges(); e++) {
+			int n1 = g.getEdgeNode1(e);
+			int n2 = g.getEdgeNode2(e);
+			adjacency[n1][n2]++;
+			if(n1 != n2) {
+				adjacency[n2][n1]++;
+			}
+		}
+		colours = new int[numberOfNodes];
+		if(numberOfNodes > 0) {
+			int minAge = g.findMinimumNodeAge();
+			for(int n = 0; n < numberOfNodes; n++) {
+				colours[n] = g.getNodeAge(n)-minAge;
+			}
+		}
+	}
+
+
+	/**
+	 * Read the structure of a subgraph view, which should have been induced.
+	 *
+	 * @param view the subgraph, copied so the view can be reused
+	 */
+	public CanonicalForm(SubgraphView view) {
+		numberOfNodes = view.getNumberOfNodes();
+		adjacency = new int[numberOfNodes][numberOfNodes];
+		colours = new int[numberOfNodes];
+		for(int i = 0; i < numberOfNodes; i++) {
+			for(int j = 0; j < numberOfNodes; j++) {
+				adjacency[i][j] = view.getMultiplicity(i, j);
+			}
+			colours[i] = view.getRelativeAge(i);
+		}
+	}
+
+
+	/**
+	 * Use an adjacency matrix directly, for graphs that have not been made into a FastGraph.
+	 *
+	 * @param adjacency the edge multiplicities, symmetric, with self sourcing edges on the diagonal. Not copied.
+	 * @param colours the relative age of each node. Not copied.
+	 */
+	public CanonicalForm(int[][] adjacency, int[] colours) {
+		this.numberOfNodes = colours.length;
+		this.adjacency = adjacency;
+		this.colours = colours;
+	}
+
+
+	/**
+	 * Check if two graphs are isomorphic by comparing their canonical codes.
+	 *
+	 * @param g1 one graph
+	 * @param g2 the other graph
+	 * @return true if the graphs are isomorphic, including node ages
+	 */
+	public static boolean isomorphic(FastGraph g1, FastGraph g2) {
+		if(g1.getNumberOfNodes() != g2.getNumberOfNodes() || g1.getNumberOfEdges() != g2.getNumberOfEdges()) {
+			return false;
+		}
+		return new CanonicalForm(g1).getCode().equals(new CanonicalForm(g2).getCode());
+	}
+
+
+	/**
+	 * The code is made of the number of nodes, the relative node ages in canonical order, and
+	 * the upper triangle of the adjacency matrix in canonical order, one base 36 digit for each
+	 * multiplicity below 36. It only uses letters, digits and dots, so it can be part of a file name.
+	 *
+	 * @return the canonical code, equal for graphs that are isomorphic
+	 */
+	public String getCode() {
+		if(code == null) {
+			search();
+			StringBuilder sb = new StringBuilder();
+			sb.append("n");
+			sb.append(numberOfNodes);
+			sb.append("a");
+			for(int i = 0; i < numberOfNodes; i++) {
+				if(i > 0) {
+					sb.append(".");
+				}
+				sb.append(colours[best[i]]);
+			}
+			sb.append("e");
+			for(int i = 0; i < numberOfNodes; i++) {
+				for(int j = i; j < numberOfNodes; j++) {
+					int multiplicity = adjacency[best[i]][best[j]];
+					if(multiplicity < 36) {
+						sb.append(Character.forDigit(multiplicity, 36));
+					} else {
+						sb.append("."+multiplicity+".");
+					}
+				}
+			}
+			code = sb.toString();
+		}
+		return code;
+	}
+
+
+	/**
+	 * @return the canonical labelling, element i is the node of the graph at position i of the canonical order
+	 */
+	public int[] getLabelling() {
+		search();
+		return Arrays.copyOf(best, best.length);
+	}
+
+
+	/**
+	 * @return automorphisms that generate the automorphism group, element n of each is the image of node n
+	 */
+	public ArrayList<int[]> getAutomorphisms() {
+		search();
+		return new ArrayList<int[]>(automorphisms);
+	}
+
+
+	/**
+	 * Find the canonical labelling, if it has not been found already.
+	 */
+	private void search() {
+		if(best != null) {
+			return;
+		}
+		CanonicalLabelling labelling = new CanonicalLabelling(adjacency, colours);
+		best = labelling.getLabelling();
+		for(Permutation p : labelling.getAutomorphisms()) {
+			int[] automorphism = new int[numberOfNodes];
+			for(int n = 0; n < numberOfNodes; n++) {
+				automorphism[n] = p.get(n);
+			}
+			automorphisms.add(automorphism);
+		}
+	}
+
+}
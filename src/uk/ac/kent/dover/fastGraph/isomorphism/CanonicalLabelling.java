@@ -0,0 +1,1009 @@
+package uk.ac.kent.dover.fastGraph.isomorphism;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import uk.ac.kent.dover.fastGraph.FastGraph;
+
+/**
+ * Finds a canonical labelling and certificate for a graph of any size, so that two graphs are
+ * isomorphic exactly when their certificates are equal. The certificate is a byte array, so a
+ * graph can be hashed and compared with others in one step, without a pairwise search.
+ * <p>
+ * The graph is treated as undirected, with edge multiplicities and self sourcing edges counted,
+ * and each node coloured by its age relative to the youngest node, as in CanonicalForm. The
+ * search is in the style of nauty and Traces. An ordered partition of the nodes is refined until
+ * it is equitable, that is each node in a cell has the same number of connections to each cell.
+ * If it is not discrete, each node of the first non discrete cell is split off in turn and the
+ * result refined again. Each discrete partition at a leaf gives a labelling of the nodes.
+ * </p>
+ * <p>
+ * Refinement records a trace of the splits it makes, which is the same for isomorphic branches.
+ * The canonical leaf is the one with the largest traces along its path, then the largest
+ * certificate, so branches whose trace is smaller than that of the best leaf are cut off early.
+ * A leaf with the same certificate as the first or best leaf gives an automorphism. Branches
+ * equivalent under the automorphisms found so far are skipped, and the search jumps straight
+ * back to where the branch left the first or best path. Swaps of twins, nodes with the same
+ * neighbours, are added as automorphisms before the search, so the many leaves on one node of a
+ * sparse graph do not each need a branch. The automorphisms found generate the automorphism
+ * group of the graph.
+ * </p>
+ * <p>
+ * The partition is held in int arrays, as a node order with the level each cell boundary was
+ * made at, so returning to a level only needs the later boundaries removed. The memory used is
+ * linear in the size of the graph, apart from the automorphisms, which only store moved nodes.
+ * </p>
+ * <pre>
+ * CanonicalLabelling cl = new CanonicalLabelling(g);
+ * byte[] certificate = cl.getCertificate();
+ * </pre>
+ *
+ * @author Peter Rodgers
+ */
+public class CanonicalLabelling {
+
+	private static final int NO_BOUNDARY = Integer.MAX_VALUE;
+
+	private int numberOfNodes;
+
+	// the graph as adjacency lists without self sourcing edges, the distinct neighbours of node n
+	// are adjacentNodes[adjacentStart[n]] to adjacentNodes[adjacentStart[n+1]-1]
+	private int[] adjacentStart;
+	private int[] adjacentNodes;
+	private int[] adjacentCounts; // the multiplicity of each edge in adjacentNodes
+	private int[] selfLoops;
+	private int[] colours; // node ages relative to the youngest node
+
+	// the partition at the current level
+	private int[] lab; // the nodes in partition order
+	private int[] boundaryLevel; // for a position that ends a cell, the level the cell was made at, otherwise NO_BOUNDARY
+	private int[] cellOf; // the start position of the cell of each node
+	private int[] cellEnd; // for a cell start, the position after the end of the cell
+	private int cellCount;
+
+	// refinement workspace
+	private int[] count;
+	private int[] touched;
+	private int[] touchedCells;
+	private boolean[] cellTouched;
+	private int[] queue;
+	private boolean[] inQueue;
+	private long[] sortKeys;
+
+	// the search path, indexed by level
+	private int[] fixed; // the node split off at each level
+	private int[] targetStart; // the start of the cell split at each level
+	private int[] lastChild; // the last node of the target cell tried at each level
+	private int[] traceCells; // the number of cells after refinement at each level
+	private long[] traceHash; // a hash of the splits made by refinement at each level
+	private boolean[] equalToFirst; // the traces so far are the same as those of the first path
+	private int[] compareToBest; // the traces so far compared to those of the best path
+	private int[] levelFixed; // the level each node was split off at on the current path, or NO_BOUNDARY
+
+	private int firstDepth;
+	private int[] firstFixed;
+	private int[] firstTraceCells;
+	private long[] firstTraceHash;
+	private byte[] firstCertificate;
+	private int[] first;
+
+	private int bestDepth;
+	private int[] bestFixed;
+	private int[] bestTraceCells;
+	private long[] bestTraceHash;
+	private byte[] bestCertificate;
+	private int[] best; // the best labelling so far, best[i] is the node at position i
+
+	// automorphisms, only the nodes moved and their images are stored
+	private ArrayList<int[]> generatorPoints = new ArrayList<int[]>();
+	private ArrayList<int[]> generatorImages = new ArrayList<int[]>();
+	private int[] orbitParent;
+
+	private long searchNodes = 0;
+	private byte[] buffer = new byte[64];
+	private int bufferLength;
+
+
+	/**
+	 * Read the structure of the graph. The search for the canonical labelling is done when the
+	 * certificate or labelling is first asked for.
+	 *
+	 * @param g the graph
+	 */
+	public CanonicalLabelling(FastGraph g) {
+		this(g, null);
+	}
+
+
+	/**
+	 * Read the structure of the graph, with the given node colours instead of the node ages.
+	 * Nodes are only mapped to nodes of the same colour.
+	 *
+	 * @param g the graph
+	 * @param nodeColours a non negative colour for each node, or null to colour the nodes by age
+	 */
+	public CanonicalLabelling(FastGraph g, int[] nodeColours) {
+		numberOfNodes = g.getNumberOfNodes();
+		selfLoops = new int[numberOfNodes];
+		if(nodeColours != null) {
+			if(nodeColours.length != numberOfNodes) {
+				throw new IllegalArgumentException("Need a colour for each of the "+numberOfNodes+" nodes, not "+nodeColours.length);
+			}
+			colours = Arrays.copyOf(nodeColours, numberOfNodes);
+		} else {
+			colours = new int[numberOfNodes];
+			if(numberOfNodes > 0) {
+				int minAge = g.findMinimumNodeAge();
+				for(int n = 0; n < numberOfNodes; n++) {
+					colours[n] = g.getNodeAge(n)-minAge;
+				}
+			}
+		}
+
+		int[] degrees = new int[numberOfNodes+1];
+		for(int e = 0; e < g.getNumberOfEdges(); e++) {
+			int n1 = g.getEdgeNode1(e);
+			int n2 = g.getEdgeNode2(e);
+			if(n1 == n2) {
+				selfLoops[n1]++;
+			} else {
+				degrees[n1]++;
+				degrees[n2]++;
+			}
+		}
+		int[] start = new int[numberOfNodes+1];
+		for(int n = 0; n < numberOfNodes; n++) {
+			start[n+1] = start[n]+degrees[n];
+		}
+		int[] all = new int[start[numberOfNodes]];
+		int[] next = Arrays.copyOf(start, numberOfNodes);
+		for(int e = 0; e < g.getNumberOfEdges(); e++) {
+			int n1 = g.getEdgeNode1(e);
+			int n2 = g.getEdgeNode2(e);
+			if(n1 != n2) {
+				all[next[n1]++] = n2;
+				all[next[n2]++] = n1;
+			}
+		}
+
+		// merge parallel edges into one neighbour with a multiplicity
+		adjacentStart = new int[numberOfNodes+1];
+		adjacentNodes = new int[all.length];
+		adjacentCounts = new int[all.length];
+		int k = 0;
+		for(int n = 0; n < numberOfNodes; n++) {
+			adjacentStart[n] = k;
+			Arrays.sort(all, start[n], start[n+1]);
+			for(int i = start[n]; i < start[n+1]; i++) {
+				if(i > start[n] && all[i] == all[i-1]) {
+					adjacentCounts[k-1]++;
+				} else {
+					adjacentNodes[k] = all[i];
+					adjacentCounts[k] = 1;
+					k++;
+				}
+			}
+		}
+		adjacentStart[numberOfNodes] = k;
+	}
+
+
+	/**
+	 * Use an adjacency matrix directly, for small graphs that have not been made into a FastGraph,
+	 * such as those of CanonicalForm.
+	 *
+	 * @param adjacency the edge multiplicities, symmetric, with self sourcing edges on the diagonal
+	 * @param nodeColours a non negative colour for each node, such as the relative node age
+	 */
+	public CanonicalLabelling(int[][] adjacency, int[] nodeColours) {
+		numberOfNodes = nodeColours.length;
+		colours = Arrays.copyOf(nodeColours, numberOfNodes);
+		selfLoops = new int[numberOfNodes];
+		adjacentStart = new int[numberOfNodes+1];
+		int k = 0;
+		for(int n = 0; n < numberOfNodes; n++) {
+			selfLoops[n] = adjacency[n][n];
+			for(int m = 0; m < numberOfNodes; m++) {
+				if(m != n && adjacency[n][m] > 0) {
+					k++;
+				}
+			}
+		}
+		adjacentNodes = new int[k];
+		adjacentCounts = new int[k];
+		k = 0;
+		for(int n = 0; n < numberOfNodes; n++) {
+			adjacentStart[n] = k;
+			for(int m = 0; m < numberOfNodes; m++) {
+				if(m != n && adjacency[n][m] > 0) {
+					adjacentNodes[k] = m;
+					adjacentCounts[k] = adjacency[n][m];
+					k++;
+				}
+			}
+		}
+		adjacentStart[numberOfNodes] = k;
+	}
+
+
+	/**
+	 * Check if two graphs are isomorphic by comparing their certificates.
+	 *
+	 * @param g1 one graph
+	 * @param g2 the other graph
+	 * @return true if the graphs are isomorphic, including node ages
+	 */
+	public static boolean isomorphic(FastGraph g1, FastGraph g2) {
+		if(g1.getNumberOfNodes() != g2.getNumberOfNodes() || g1.getNumberOfEdges() != g2.getNumberOfEdges()) {
+			return false;
+		}
+		return Arrays.equals(new CanonicalLabelling(g1).getCertificate(), new CanonicalLabelling(g2).getCertificate());
+	}
+
+
+	/**
+	 * The certificate holds the number of nodes, then the age and number of self sourcing edges
+	 * of each node in canonical order, then for each node the later nodes it connects to and the
+	 * multiplicity of the edges. The numbers are written as variable length integers.
+	 *
+	 * @return the certificate, equal for graphs that are isomorphic
+	 */
+	public byte[] getCertificate() {
+		search();
+		return Arrays.copyOf(bestCertificate, bestCertificate.length);
+	}
+
+
+	/**
+	 * @return a hash of the certificate, equal for graphs that are isomorphic
+	 */
+	public long getCertificateHash() {
+		search();
+		long h = bestCertificate.length;
+		for(byte b : bestCertificate) {
+			h = mix(h*31+b);
+		}
+		return h;
+	}
+
+
+	/**
+	 * @return the canonical labelling, element i is the node of the graph at position i of the canonical order
+	 */
+	public int[] getLabelling() {
+		search();
+		return Arrays.copyOf(best, best.length);
+	}
+
+
+	/**
+	 * @return automorphisms that generate the automorphism group, element n of each is the image of node n
+	 */
+	public ArrayList<Permutation> getAutomorphisms() {
+		search();
+		ArrayList<Permutation> ret = new ArrayList<Permutation>(generatorPoints.size());
+		for(int i = 0; i < generatorPoints.size(); i++) {
+			int[] points = generatorPoints.get(i);
+			int[] images = generatorImages.get(i);
+			Permutation p = new Permutation(numberOfNodes);
+			for(int j = 0; j < points.length; j++) {
+				p.set(points[j], images[j]);
+			}
+			ret.add(p);
+		}
+		return ret;
+	}
+
+
+	/**
+	 * The nodes split off along the first path of the search. Only the identity fixes all of
+	 * them, and the automorphisms are a strong generating set relative to them, as in nauty, so
+	 * they form the base used by AutomorphismGroup.
+	 *
+	 * @return the nodes in the order they were split off
+	 */
+	public int[] getBase() {
+		search();
+		return Arrays.copyOf(firstFixed, firstFixed.length);
+	}
+
+
+	/**
+	 * @return the number of nodes of the search tree visited
+	 */
+	public long getSearchNodes() {
+		search();
+		return searchNodes;
+	}
+
+
+	/**
+	 * Find the canonical labelling, if it has not been found already.
+	 */
+	private void search() {
+		if(best != null) {
+			return;
+		}
+		int n = numberOfNodes;
+		lab = new int[n];
+		boundaryLevel = new int[n];
+		cellOf = new int[n];
+		cellEnd = new int[n+1];
+		count = new int[n];
+		touched = new int[n];
+		touchedCells = new int[n];
+		cellTouched = new boolean[n];
+		queue = new int[n+1];
+		inQueue = new boolean[n];
+		sortKeys = new long[n];
+		fixed = new int[n+1];
+		targetStart = new int[n+1];
+		lastChild = new int[n+1];
+		traceCells = new int[n+1];
+		traceHash = new long[n+1];
+		equalToFirst = new boolean[n+1];
+		compareToBest = new int[n+1];
+		levelFixed = new int[n];
+		Arrays.fill(levelFixed, NO_BOUNDARY);
+		orbitParent = new int[n];
+		for(int i = 0; i < n; i++) {
+			orbitParent[i] = i;
+		}
+		addTwinAutomorphisms(false);
+		addTwinAutomorphisms(true);
+
+		// the first partition has a cell for each age and number of self sourcing edges
+		int queueLength = initialPartition();
+		traceHash[0] = refine(0, queueLength);
+		traceCells[0] = cellCount;
+		searchNodes++;
+
+		// the first path takes the first node of each target cell
+		int depth = 0;
+		while(cellCount < n) {
+			chooseTarget(depth);
+			int v = smallestInCell(targetStart[depth], -1);
+			lastChild[depth] = v;
+			individualise(depth, v);
+			depth++;
+		}
+		firstDepth = depth;
+		first = Arrays.copyOf(lab, n);
+		firstCertificate = certificate();
+		firstFixed = Arrays.copyOf(fixed, depth);
+		firstTraceCells = Arrays.copyOf(traceCells, depth+1);
+		firstTraceHash = Arrays.copyOf(traceHash, depth+1);
+		for(int i = 0; i <= depth; i++) {
+			equalToFirst[i] = true;
+			compareToBest[i] = 0;
+		}
+		setBest(depth, firstCertificate);
+
+		int level = depth-1;
+		while(level >= 0) {
+			restore(level);
+			int v = nextChild(level);
+			if(v == -1) {
+				level--;
+				continue;
+			}
+			lastChild[level] = v;
+
+			// follow the first node of each target cell down from v, until a leaf or a cut off
+			int current = level;
+			int child = v;
+			int jump = -1;
+			while(true) {
+				individualise(current, child);
+				current++;
+				equalToFirst[current] = equalToFirst[current-1] && current <= firstDepth
+					&& traceCells[current] == firstTraceCells[current] && traceHash[current] == firstTraceHash[current];
+				if(compareToBest[current-1] != 0) {
+					compareToBest[current] = compareToBest[current-1];
+				} else {
+					compareToBest[current] = compareTrace(current);
+				}
+				if(!equalToFirst[current] && compareToBest[current] < 0) {
+					break; // no leaf below can be the best or an automorphism of the first
+				}
+				if(cellCount == n) {
+					jump = leaf(current);
+					break;
+				}
+				chooseTarget(current);
+				child = smallestInCell(targetStart[current], -1);
+				lastChild[current] = child;
+			}
+			if(jump >= 0) {
+				level = jump;
+			} else {
+				level = current-1;
+			}
+		}
+	}
+
+
+	/**
+	 * Sort the nodes by age and self sourcing edges into the first cells, all queued to refine by.
+	 *
+	 * @return the number of cells queued
+	 */
+	private int initialPartition() {
+		int n = numberOfNodes;
+		Integer[] order = new Integer[n];
+		for(int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> colours[a] != colours[b] ? Integer.compare(colours[a], colours[b]) : Integer.compare(selfLoops[a], selfLoops[b]));
+		int queueLength = 0;
+		int start = 0;
+		cellCount = 0;
+		for(int i = 0; i < n; i++) {
+			lab[i] = order[i];
+			boundaryLevel[i] = NO_BOUNDARY;
+			if(i == n-1 || colours[order[i]] != colours[order[i+1]] || selfLoops[order[i]] != selfLoops[order[i+1]]) {
+				boundaryLevel[i] = 0;
+				cellEnd[start] = i+1;
+				for(int j = start; j <= i; j++) {
+					cellOf[lab[j]] = start;
+				}
+				queue[queueLength++] = start;
+				inQueue[start] = true;
+				cellCount++;
+				start = i+1;
+			}
+		}
+		return queueLength;
+	}
+
+
+	/**
+	 * Refine the partition until it is equitable, splitting cells by the number of connections
+	 * of their nodes to each queued cell in turn. The order of the splits depends only on the
+	 * structure, so isomorphic partitions are refined in the same way.
+	 *
+	 * @param level the level the new cells are made at
+	 * @param queueLength the number of cells at the start of queue
+	 * @return a hash of the splits made
+	 */
+	private long refine(int level, int queueLength) {
+		int n = numberOfNodes;
+		int capacity = queue.length;
+		int head = 0;
+		int tail = queueLength % capacity;
+		int size = queueLength;
+		long trace = 0;
+		while(size > 0 && cellCount < n) {
+			int splitter = queue[head];
+			head = (head+1) % capacity;
+			size--;
+			inQueue[splitter] = false;
+
+			// count the connections of each node to the splitter
+			int touchedCount = 0;
+			int splitterEnd = cellEnd[splitter];
+			for(int i = splitter; i < splitterEnd; i++) {
+				int v = lab[i];
+				for(int a = adjacentStart[v]; a < adjacentStart[v+1]; a++) {
+					int u = adjacentNodes[a];
+					if(count[u] == 0) {
+						touched[touchedCount++] = u;
+					}
+					count[u] += adjacentCounts[a];
+				}
+			}
+			int touchedCellCount = 0;
+			for(int i = 0; i < touchedCount; i++) {
+				int cell = cellOf[touched[i]];
+				if(!cellTouched[cell]) {
+					cellTouched[cell] = true;
+					touchedCells[touchedCellCount++] = cell;
+				}
+			}
+			Arrays.sort(touchedCells, 0, touchedCellCount);
+			trace = mix(trace+splitter);
+
+			for(int t = 0; t < touchedCellCount; t++) {
+				int cell = touchedCells[t];
+				cellTouched[cell] = false;
+				int end = cellEnd[cell];
+				if(end-cell == 1) {
+					trace = mix(trace+count[lab[cell]]);
+					continue;
+				}
+				for(int i = cell; i < end; i++) {
+					int v = lab[i];
+					sortKeys[i-cell] = ((long)count[v]<<32) | v;
+				}
+				Arrays.sort(sortKeys, 0, end-cell);
+				boolean split = (sortKeys[0]>>>32) != (sortKeys[end-cell-1]>>>32);
+				if(!split) {
+					trace = mix(trace+(sortKeys[0]>>>32));
+					continue;
+				}
+				for(int i = cell; i < end; i++) {
+					lab[i] = (int)sortKeys[i-cell];
+				}
+
+				// the fragments, in order of connections
+				boolean cellQueued = inQueue[cell];
+				int largestStart = cell;
+				int largestSize = 0;
+				int fragmentStart = cell;
+				for(int i = cell; i < end; i++) {
+					if(i == end-1 || (sortKeys[i-cell]>>>32) != (sortKeys[i+1-cell]>>>32)) {
+						int fragmentSize = i+1-fragmentStart;
+						trace = mix(trace+(sortKeys[i-cell]>>>32)*31+fragmentSize);
+						cellEnd[fragmentStart] = i+1;
+						if(i < end-1) {
+							boundaryLevel[i] = level;
+						}
+						if(fragmentStart != cell) {
+							for(int j = fragmentStart; j <= i; j++) {
+								cellOf[lab[j]] = fragmentStart;
+							}
+							cellCount++;
+						}
+						if(fragmentSize > largestSize) {
+							largestSize = fragmentSize;
+							largestStart = fragmentStart;
+						}
+						fragmentStart = i+1;
+					}
+				}
+
+				// queue the new fragments, all but the largest if the cell was not queued
+				fragmentStart = cell;
+				while(fragmentStart < end) {
+					if(!inQueue[fragmentStart] && (cellQueued || fragmentStart != largestStart)) {
+						queue[tail] = fragmentStart;
+						tail = (tail+1) % capacity;
+						size++;
+						inQueue[fragmentStart] = true;
+					}
+					fragmentStart = cellEnd[fragmentStart];
+				}
+			}
+			for(int i = 0; i < touchedCount; i++) {
+				count[touched[i]] = 0;
+			}
+		}
+		while(size > 0) {
+			inQueue[queue[head]] = false;
+			head = (head+1) % capacity;
+			size--;
+		}
+		return mix(trace+cellCount);
+	}
+
+
+	/**
+	 * Split a node off the target cell at a level, and refine, giving the partition of the next level.
+	 *
+	 * @param level the level of the current partition
+	 * @param v the node to split off
+	 */
+	private void individualise(int level, int v) {
+		int start = targetStart[level];
+		int end = cellEnd[start];
+		for(int i = start; i < end; i++) {
+			if(lab[i] == v) {
+				lab[i] = lab[start];
+				lab[start] = v;
+				break;
+			}
+		}
+		boundaryLevel[start] = level+1;
+		cellEnd[start] = start+1;
+		cellEnd[start+1] = end;
+		for(int i = start+1; i < end; i++) {
+			cellOf[lab[i]] = start+1;
+		}
+		cellCount++;
+		fixed[level] = v;
+		levelFixed[v] = level;
+
+		queue[0] = start;
+		inQueue[start] = true;
+		traceHash[level+1] = refine(level+1, 1);
+		traceCells[level+1] = cellCount;
+		searchNodes++;
+	}
+
+
+	/**
+	 * Go back to the partition at a level, by removing the cell boundaries made later.
+	 *
+	 * @param level the level to return to
+	 */
+	private void restore(int level) {
+		int n = numberOfNodes;
+		cellCount = 0;
+		int start = 0;
+		for(int i = 0; i < n; i++) {
+			if(boundaryLevel[i] > level) {
+				boundaryLevel[i] = NO_BOUNDARY;
+				continue;
+			}
+			cellEnd[start] = i+1;
+			for(int j = start; j <= i; j++) {
+				cellOf[lab[j]] = start;
+			}
+			cellCount++;
+			start = i+1;
+		}
+		for(int l = level; l < fixed.length-1; l++) {
+			int v = fixed[l];
+			if(levelFixed[v] == l) {
+				levelFixed[v] = NO_BOUNDARY;
+			}
+		}
+	}
+
+
+	/**
+	 * The target cell is the first cell with more than one node.
+	 *
+	 * @param level the level of the current partition
+	 */
+	private void chooseTarget(int level) {
+		int start = 0;
+		while(cellEnd[start]-start == 1) {
+			start = cellEnd[start];
+		}
+		targetStart[level] = start;
+	}
+
+
+	/**
+	 * @return the smallest node in a cell that is larger than after, -1 if there is none
+	 */
+	private int smallestInCell(int start, int after) {
+		int ret = -1;
+		for(int i = start; i < cellEnd[start]; i++) {
+			int v = lab[i];
+			if(v > after && (ret == -1 || v < ret)) {
+				ret = v;
+			}
+		}
+		return ret;
+	}
+
+
+	/**
+	 * The next node of the target cell to try at a level. Nodes are tried in increasing order,
+	 * skipping those with a smaller node in their orbit under the automorphisms that fix the nodes
+	 * already split off, as the branch of the smaller node is equivalent.
+	 *
+	 * @param level the level of the current partition
+	 * @return the node, or -1 if all have been tried or skipped
+	 */
+	private int nextChild(int level) {
+		int start = targetStart[level];
+		int[] orbitTouched = new int[16];
+		int orbitTouchedCount = 0;
+		for(int g = 0; g < generatorPoints.size(); g++) {
+			int[] points = generatorPoints.get(g);
+			boolean fixes = true;
+			for(int p : points) {
+				if(levelFixed[p] < level) {
+					fixes = false;
+					break;
+				}
+			}
+			if(!fixes) {
+				continue;
+			}
+			int[] images = generatorImages.get(g);
+			for(int i = 0; i < points.length; i++) {
+				int a = findOrbit(points[i]);
+				int b = findOrbit(images[i]);
+				if(a != b) {
+					// only roots are changed, so resetting them afterwards separates the orbits again
+					if(orbitTouchedCount == orbitTouched.length) {
+						orbitTouched = Arrays.copyOf(orbitTouched, orbitTouched.length*2);
+					}
+					orbitTouched[orbitTouchedCount++] = Math.max(a, b);
+					orbitParent[Math.max(a, b)] = Math.min(a, b);
+				}
+			}
+		}
+
+		int ret = -1;
+		int after = lastChild[level];
+		for(int i = start; i < cellEnd[start]; i++) {
+			int v = lab[i];
+			if(v > after && (ret == -1 || v < ret) && findOrbit(v) == v) {
+				ret = v;
+			}
+		}
+
+		for(int i = 0; i < orbitTouchedCount; i++) {
+			orbitParent[orbitTouched[i]] = orbitTouched[i];
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Twins are nodes of the same colour and self sourcing edges with the same neighbours, or
+	 * with the same neighbours apart from each other when joined by a single edge. Any two twins
+	 * can be swapped, so the transpositions of each set of twins in increasing node order are
+	 * added as automorphisms before the search. Otherwise the search tries each twin in turn
+	 * and goes down to a leaf below each, which is quadratic for the leaves of a star.
+	 *
+	 * @param closed true for twins joined by an edge, false for twins that are not adjacent
+	 */
+	private void addTwinAutomorphisms(boolean closed) {
+		int n = numberOfNodes;
+		long[] hashes = new long[n];
+		Integer[] order = new Integer[n];
+		for(int v = 0; v < n; v++) {
+			long h = mix(mix(colours[v])+selfLoops[v]);
+			for(int a = adjacentStart[v]; a < adjacentStart[v+1]; a++) {
+				h += mix(((long)adjacentNodes[a]<<32) | adjacentCounts[a]);
+			}
+			if(closed) {
+				h += mix(((long)v<<32) | 1);
+			}
+			hashes[v] = h;
+			order[v] = v;
+		}
+		Arrays.sort(order, (a, b) -> hashes[a] != hashes[b] ? Long.compare(hashes[a], hashes[b]) : Integer.compare(a, b));
+
+		// nodes with the same hash are almost always twins, so each is compared with the last node of each set so far
+		ArrayList<Integer> lastTwins = new ArrayList<Integer>();
+		for(int i = 0; i < n; i++) {
+			int v = order[i];
+			if(i > 0 && hashes[v] != hashes[order[i-1]]) {
+				lastTwins.clear();
+			}
+			boolean found = false;
+			for(int t = 0; t < lastTwins.size() && !found; t++) {
+				int u = lastTwins.get(t);
+				if(twins(u, v, closed)) {
+					generatorPoints.add(new int[] {u, v});
+					generatorImages.add(new int[] {v, u});
+					lastTwins.set(t, v);
+					found = true;
+				}
+			}
+			if(!found) {
+				lastTwins.add(v);
+			}
+		}
+	}
+
+
+	/**
+	 * The adjacency lists are sorted, so twins have the same lists, apart from each other if closed.
+	 *
+	 * @return true if u and v can be swapped
+	 */
+	private boolean twins(int u, int v, boolean closed) {
+		if(colours[u] != colours[v] || selfLoops[u] != selfLoops[v]) {
+			return false;
+		}
+		int i = adjacentStart[u];
+		int j = adjacentStart[v];
+		int iEnd = adjacentStart[u+1];
+		int jEnd = adjacentStart[v+1];
+		if(iEnd-i != jEnd-j) {
+			return false;
+		}
+		boolean adjacent = false;
+		while(true) {
+			if(closed && i < iEnd && adjacentNodes[i] == v) {
+				if(adjacentCounts[i] != 1) {
+					return false;
+				}
+				adjacent = true;
+				i++;
+				continue;
+			}
+			if(closed && j < jEnd && adjacentNodes[j] == u) {
+				j++;
+				continue;
+			}
+			if(i == iEnd || j == jEnd) {
+				break;
+			}
+			if(adjacentNodes[i] != adjacentNodes[j] || adjacentCounts[i] != adjacentCounts[j]) {
+				return false;
+			}
+			i++;
+			j++;
+		}
+		return i == iEnd && j == jEnd && adjacent == closed;
+	}
+
+
+	/**
+	 * @return the smallest node in the orbit of v
+	 */
+	private int findOrbit(int v) {
+		while(orbitParent[v] != v) {
+			v = orbitParent[v];
+		}
+		return v;
+	}
+
+
+	/**
+	 * Compare the trace at a level with the trace of the best path, given the traces before are equal.
+	 *
+	 * @return 1 if larger, 0 if equal, -1 if smaller
+	 */
+	private int compareTrace(int level) {
+		if(level > bestDepth) {
+			return -1;
+		}
+		if(traceCells[level] != bestTraceCells[level]) {
+			return traceCells[level] > bestTraceCells[level] ? 1 : -1;
+		}
+		if(traceHash[level] != bestTraceHash[level]) {
+			return traceHash[level] > bestTraceHash[level] ? 1 : -1;
+		}
+		return 0;
+	}
+
+
+	/**
+	 * Compare a leaf with the first and best leaves.
+	 *
+	 * @param depth the level of the leaf
+	 * @return the level to go back to if an automorphism was found, -1 otherwise
+	 */
+	private int leaf(int depth) {
+		byte[] leafCertificate = certificate();
+		if(equalToFirst[depth] && Arrays.equals(leafCertificate, firstCertificate)) {
+			addAutomorphism(first);
+			return firstDifference(firstFixed, depth);
+		}
+		int comparison = compareToBest[depth];
+		if(comparison == 0) {
+			comparison = compareCertificates(leafCertificate, bestCertificate);
+		}
+		if(comparison > 0) {
+			setBest(depth, leafCertificate);
+			for(int i = 0; i <= depth; i++) {
+				compareToBest[i] = 0;
+			}
+		} else if(comparison == 0) {
+			addAutomorphism(best);
+			return firstDifference(bestFixed, depth);
+		}
+		return -1;
+	}
+
+
+	/**
+	 * @return the first level where the current path leaves a path
+	 */
+	private int firstDifference(int[] pathFixed, int depth) {
+		int level = 0;
+		while(level < depth-1 && fixed[level] == pathFixed[level]) {
+			level++;
+		}
+		return level;
+	}
+
+
+	private void setBest(int depth, byte[] leafCertificate) {
+		bestDepth = depth;
+		best = Arrays.copyOf(lab, numberOfNodes);
+		bestCertificate = leafCertificate;
+		bestFixed = Arrays.copyOf(fixed, depth);
+		bestTraceCells = Arrays.copyOf(traceCells, depth+1);
+		bestTraceHash = Arrays.copyOf(traceHash, depth+1);
+	}
+
+
+	/**
+	 * Record the automorphism mapping a leaf with the same certificate to the current leaf.
+	 *
+	 * @param labelling the labelling of the other leaf
+	 */
+	private void addAutomorphism(int[] labelling) {
+		int moved = 0;
+		for(int i = 0; i < numberOfNodes; i++) {
+			if(labelling[i] != lab[i]) {
+				moved++;
+			}
+		}
+		if(moved == 0) {
+			return;
+		}
+		int[] points = new int[moved];
+		int[] images = new int[moved];
+		int k = 0;
+		for(int i = 0; i < numberOfNodes; i++) {
+			if(labelling[i] != lab[i]) {
+				points[k] = labelling[i];
+				images[k] = lab[i];
+				k++;
+			}
+		}
+		generatorPoints.add(points);
+		generatorImages.add(images);
+	}
+
+
+	/**
+	 * Write the certificate of the current discrete partition.
+	 */
+	private byte[] certificate() {
+		int n = numberOfNodes;
+		int[] position = count; // the counts are all zero between refinements, and reset afterwards
+		for(int i = 0; i < n; i++) {
+			position[lab[i]] = i;
+		}
+		bufferLength = 0;
+		writeInt(n);
+		for(int i = 0; i < n; i++) {
+			writeInt(colours[lab[i]]);
+			writeInt(selfLoops[lab[i]]);
+		}
+		for(int i = 0; i < n; i++) {
+			int v = lab[i];
+			int later = 0;
+			for(int a = adjacentStart[v]; a < adjacentStart[v+1]; a++) {
+				int j = position[adjacentNodes[a]];
+				if(j > i) {
+					sortKeys[later++] = ((long)j<<32) | adjacentCounts[a];
+				}
+			}
+			Arrays.sort(sortKeys, 0, later);
+			writeInt(later);
+			int previous = i;
+			for(int k = 0; k < later; k++) {
+				int j = (int)(sortKeys[k]>>>32);
+				writeInt(j-previous-1);
+				writeInt((int)sortKeys[k]);
+				previous = j;
+			}
+		}
+		Arrays.fill(position, 0);
+		return Arrays.copyOf(buffer, bufferLength);
+	}
+
+
+	/**
+	 * Append a non negative int to the buffer, seven bits to a byte, low bits first.
+	 */
+	private void writeInt(int value) {
+		if(bufferLength+5 > buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length*2);
+		}
+		while((value & ~0x7F) != 0) {
+			buffer[bufferLength++] = (byte)((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[bufferLength++] = (byte)value;
+	}
+
+
+	/**
+	 * Lexicographic comparison of unsigned bytes, a shorter array that is a prefix of a longer one is smaller.
+	 */
+	private static int compareCertificates(byte[] a, byte[] b) {
+		int length = Math.min(a.length, b.length);
+		for(int i = 0; i < length; i++) {
+			if(a[i] != b[i]) {
+				return Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+			}
+		}
+		return Integer.compare(a.length, b.length);
+	}
+
+
+	/**
+	 * The splitmix64 finaliser, so every bit of the input affects every bit of the output.
+	 */
+	private static long mix(long h) {
+		h = (h ^ (h>>>30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h>>>27)) * 0x94D049BB133111EBL;
+		return h ^ (h>>>31);
+	}
+
+}
@@ -1,5 +1,6 @@
 package uk.ac.kent.dover.fastGraph.isomorphism;
 
+import uk.ac.kent.dover.fastGraph.Connected;
 import uk.ac.kent.dover.fastGraph.FastGraph;
 import uk.ac.kent.dover.fastGraph.FastGraphException;
 
@@ -27,7 +28,8 @@ public class Isomorphism {
 	}
 
 	/**
-	 * Check if two graphs are isomorphic.
+	 * Check if two graphs are isomorphic, by comparing their CanonicalLabelling certificates,
+	 * which works for graphs of thousands of nodes.
 	 *
 	 * @param g1 one FastGraph to be tested
 	 * @param g2 the other FastGraph to be tested
@@ -35,12 +37,10 @@ public class Isomorphism {
 	 * @throws FastGraphException if one of the two graphs are not connected
 	 */
 	public static boolean isomorphic(FastGraph g1, FastGraph g2) throws FastGraphException {
-		FastGraphIsomorphism fgi1, fgi2;
-
-		fgi1 = new FastGraphIsomorphism(g1);
-		fgi2 = new FastGraphIsomorphism(g2);
-		Isomorphism i = new Isomorphism(fgi1);
-		return i.isomorphic(fgi2);
+		if (!Connected.connected(g1) || !Connected.connected(g2)) {
+			throw new FastGraphException("Graph must be connected to test for isomorphism.");
+		}
+		return CanonicalLabelling.isomorphic(g1, g2);
 	}
 
 	/**